@@ -74,4 +74,17 @@ public interface AbstractElement {
      * @param graphicState the current state / context of the renderer
      */
     void render(final Graphics2D g2, final CgmGraphicState graphicState);
+
+    /**
+     * Compile this element into a display list.
+     *
+     * The default implementation is suitable for attribute and control elements, which only update the graphic state.
+     * Elements that draw must override this to add their primitives to the builder.
+     *
+     * @param builder the display list being built
+     * @param graphicState the current state / context of the compiler
+     */
+    default void compile(final CgmDisplayList.Builder builder, final CgmGraphicState graphicState) {
+        render(null, graphicState);
+    }
 }
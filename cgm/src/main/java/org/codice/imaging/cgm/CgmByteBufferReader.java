@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2014, 2016, Codice
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.codice.imaging.cgm;
+
+import java.awt.Point;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CGM input data reader for data that is already in memory.
+ *
+ * This reads parameters straight out of a ByteBuffer, rather than through DataInput calls. Point lists (which make up
+ * most of the data for polylines and polygons) are read in one pass over the buffer.
+ */
+final class CgmByteBufferReader extends CgmInputReader {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructor.
+     *
+     * @param cgmData the CGM data, between the buffer position and limit. The buffer is not modified.
+     */
+    CgmByteBufferReader(final ByteBuffer cgmData) {
+        buffer = cgmData.slice().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    @Override
+    int readUnsignedShort() throws IOException {
+        checkRemaining(Short.BYTES);
+        return Short.toUnsignedInt(buffer.getShort());
+    }
+
+    @Override
+    int readShort() throws IOException {
+        checkRemaining(Short.BYTES);
+        return buffer.getShort();
+    }
+
+    @Override
+    int readUnsignedByte() throws IOException {
+        checkRemaining(Byte.BYTES);
+        return Byte.toUnsignedInt(buffer.get());
+    }
+
+    @Override
+    byte readByte() throws IOException {
+        checkRemaining(Byte.BYTES);
+        return buffer.get();
+    }
+
+    @Override
+    void skipBytes(final int i) throws IOException {
+        checkRemaining(i);
+        buffer.position(buffer.position() + i);
+    }
+
+    @Override
+    List<Point> readPoints(final int parameterListLength) throws IOException {
+        int numberOfPoints = (parameterListLength + getNumberOfBytesInPoint() - 1) / getNumberOfBytesInPoint();
+        checkRemaining(numberOfPoints * getNumberOfBytesInPoint());
+        List<Point> points = new ArrayList<>(numberOfPoints);
+        for (int i = 0; i < numberOfPoints; ++i) {
+            int x = buffer.getShort();
+            int y = buffer.getShort();
+            points.add(new Point(x, y));
+        }
+        return points;
+    }
+
+    private void checkRemaining(final int count) throws EOFException {
+        if (buffer.remaining() < count) {
+            throw new EOFException("End of CGM data: needed " + count + " bytes, but only " + buffer.remaining() + " left");
+        }
+    }
+}
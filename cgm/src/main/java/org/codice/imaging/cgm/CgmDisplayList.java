@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2014, 2016, Codice
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.codice.imaging.cgm;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiled, immutable form of a CGM command list.
+ *
+ * Compiling runs the attribute and control elements once, and keeps only the drawing primitives, each with the shape
+ * (or laid out text), stroke, colour and coordinate transform that applies to it. Rendering a display list then only
+ * has to draw those objects, and primitives that fall entirely outside the clip of the target graphics are skipped
+ * using a bounding box index.
+ *
+ * The display list coordinate space is the same as the graphics passed to CgmRenderer, so the caller can render at
+ * any scale or offset by setting the transform and clip of the target graphics first.
+ */
+public final class CgmDisplayList {
+
+    private static final int MAX_GRID_CELLS = 64;
+
+    private static final double PIXEL_MARGIN = 1.0;
+
+    private static final double SQRT_TWO = Math.sqrt(2.0);
+
+    private static final FontRenderContext FONT_RENDER_CONTEXT = new FontRenderContext(null, false, false);
+
+    private final List<DisplayItem> items;
+
+    private final Rectangle2D bounds;
+
+    private final GridIndex index;
+
+    private CgmDisplayList(final List<DisplayItem> displayItems) {
+        items = Collections.unmodifiableList(displayItems);
+        bounds = new Rectangle2D.Double();
+        for (int i = 0; i < items.size(); ++i) {
+            if (i == 0) {
+                bounds.setRect(items.get(i).getBounds());
+            } else {
+                bounds.add(items.get(i).getBounds());
+            }
+        }
+        index = new GridIndex(items, bounds);
+    }
+
+    /**
+     * Compile a CGM command list into a display list.
+     *
+     * @param commandList the list of CGM commands, from CgmParser.
+     * @param sizeX the column size of the graphics target
+     * @param sizeY the row size of the graphics target
+     * @return the compiled display list
+     */
+    public static CgmDisplayList compile(final List<AbstractElement> commandList, final int sizeX, final int sizeY) {
+        CgmGraphicState graphicState = new CgmGraphicState(sizeX, sizeY);
+        Builder builder = new Builder();
+        for (AbstractElement command : commandList) {
+            command.compile(builder, graphicState);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Render the display list to the specified graphics.
+     *
+     * Only primitives that intersect the clip bounds of the graphics are drawn. The transform, colour and stroke of
+     * the graphics are restored before returning.
+     *
+     * @param g2 the graphics to render to
+     */
+    public void render(final Graphics2D g2) {
+        BitSet visible = index.query(g2.getClipBounds());
+        AffineTransform baseTransform = g2.getTransform();
+        Color baseColour = g2.getColor();
+        Stroke baseStroke = g2.getStroke();
+        AffineTransform currentTransform = null;
+        Color currentColour = baseColour;
+        Stroke currentStroke = baseStroke;
+        try {
+            for (int i = visible.nextSetBit(0); i >= 0; i = visible.nextSetBit(i + 1)) {
+                DisplayItem item = items.get(i);
+                if (item.getTransform() != currentTransform) {
+                    currentTransform = item.getTransform();
+                    g2.setTransform(baseTransform);
+                    g2.transform(currentTransform);
+                }
+                Color colour = baseColour;
+                if (item.getColour() != null) {
+                    colour = item.getColour();
+                }
+                if (!colour.equals(currentColour)) {
+                    g2.setColor(colour);
+                    currentColour = colour;
+                }
+                if ((item.getStroke() != null) && (item.getStroke() != currentStroke)) {
+                    g2.setStroke(item.getStroke());
+                    currentStroke = item.getStroke();
+                }
+                item.paint(g2);
+            }
+        } finally {
+            g2.setTransform(baseTransform);
+            g2.setColor(baseColour);
+            g2.setStroke(baseStroke);
+        }
+    }
+
+    /**
+     * Get the bounds of everything drawn by this display list.
+     *
+     * @return the bounding box, in display list coordinates. This will be empty if nothing is drawn.
+     */
+    public Rectangle2D getBounds() {
+        return (Rectangle2D) bounds.clone();
+    }
+
+    /**
+     * Get the number of drawing primitives in this display list.
+     *
+     * @return the number of primitives
+     */
+    public int getPrimitiveCount() {
+        return items.size();
+    }
+
+    /**
+     * Collects the drawing primitives from CGM elements during compilation.
+     */
+    static final class Builder {
+        private final List<DisplayItem> items = new ArrayList<>();
+        private AffineTransform transform = new AffineTransform();
+        private Color currentColour = null;
+
+        private Builder() {
+        }
+
+        /**
+         * Concatenate a transform with the transform applied to subsequent primitives.
+         *
+         * @param additionalTransform the transform to concatenate
+         */
+        void transform(final AffineTransform additionalTransform) {
+            AffineTransform updated = new AffineTransform(transform);
+            updated.concatenate(additionalTransform);
+            transform = updated;
+        }
+
+        /**
+         * Add a stroked shape.
+         *
+         * @param shape the shape to draw, which must not be modified afterwards
+         * @param stroke the stroke to draw the shape with
+         * @param colour the colour to draw with, or null to keep the current colour
+         */
+        void draw(final Shape shape, final Stroke stroke, final Color colour) {
+            if (colour != null) {
+                currentColour = colour;
+            }
+            if ((currentColour != null) && (currentColour.getAlpha() == 0)) {
+                return;
+            }
+            Rectangle2D strokedBounds = getStrokedBounds(shape, stroke);
+            items.add(new ShapeItem(transform, currentColour, getDeviceBounds(strokedBounds, transform), shape, stroke));
+        }
+
+        /**
+         * Add a text string.
+         *
+         * @param text the text to draw
+         * @param font the font to draw the text in
+         * @param colour the colour to draw with, or null to use the current colour
+         * @param x the x position of the text baseline
+         * @param y the y position of the text baseline
+         * @param invertY true if the y axis should be flipped for the text, otherwise false
+         */
+        void drawText(final String text, final Font font, final Color colour, final float x, final float y, final boolean invertY) {
+            Color textColour = currentColour;
+            if (colour != null) {
+                textColour = colour;
+            }
+            AffineTransform textTransform = transform;
+            if (invertY) {
+                textTransform = new AffineTransform(transform);
+                textTransform.scale(1.0, -1.0);
+            }
+            GlyphVector glyphs = font.createGlyphVector(FONT_RENDER_CONTEXT, text);
+            Rectangle2D textBounds = glyphs.getVisualBounds();
+            textBounds.setRect(textBounds.getX() + x, textBounds.getY() + y, textBounds.getWidth(), textBounds.getHeight());
+            items.add(new TextItem(textTransform, textColour, getDeviceBounds(textBounds, textTransform), glyphs, x, y));
+        }
+
+        private static Rectangle2D getStrokedBounds(final Shape shape, final Stroke stroke) {
+            if (!(stroke instanceof BasicStroke)) {
+                return stroke.createStrokedShape(shape).getBounds2D();
+            }
+            BasicStroke basicStroke = (BasicStroke) stroke;
+            double extent = SQRT_TWO;
+            if (basicStroke.getLineJoin() == BasicStroke.JOIN_MITER) {
+                extent = Math.max(extent, basicStroke.getMiterLimit());
+            }
+            double padding = basicStroke.getLineWidth() / 2.0 * extent;
+            Rectangle2D shapeBounds = shape.getBounds2D();
+            return new Rectangle2D.Double(shapeBounds.getX() - padding, shapeBounds.getY() - padding,
+                    shapeBounds.getWidth() + 2 * padding, shapeBounds.getHeight() + 2 * padding);
+        }
+
+        private static Rectangle2D getDeviceBounds(final Rectangle2D userBounds, final AffineTransform itemTransform) {
+            Rectangle2D deviceBounds = itemTransform.createTransformedShape(userBounds).getBounds2D();
+            deviceBounds.setRect(deviceBounds.getX() - PIXEL_MARGIN, deviceBounds.getY() - PIXEL_MARGIN,
+                    deviceBounds.getWidth() + 2 * PIXEL_MARGIN, deviceBounds.getHeight() + 2 * PIXEL_MARGIN);
+            return deviceBounds;
+        }
+
+        private CgmDisplayList build() {
+            return new CgmDisplayList(new ArrayList<>(items));
+        }
+    }
+
+    /**
+     * A single drawing primitive, with the state needed to draw it.
+     */
+    private abstract static class DisplayItem {
+        private final AffineTransform transform;
+        private final Color colour;
+        private final Rectangle2D bounds;
+
+        DisplayItem(final AffineTransform itemTransform, final Color itemColour, final Rectangle2D itemBounds) {
+            transform = itemTransform;
+            colour = itemColour;
+            bounds = itemBounds;
+        }
+
+        AffineTransform getTransform() {
+            return transform;
+        }
+
+        Color getColour() {
+            return colour;
+        }
+
+        Rectangle2D getBounds() {
+            return bounds;
+        }
+
+        abstract Stroke getStroke();
+
+        abstract void paint(Graphics2D g2);
+    }
+
+    private static final class ShapeItem extends DisplayItem {
+        private final Shape shape;
+        private final Stroke stroke;
+
+        ShapeItem(final AffineTransform itemTransform, final Color itemColour, final Rectangle2D itemBounds,
+                final Shape itemShape, final Stroke itemStroke) {
+            super(itemTransform, itemColour, itemBounds);
+            shape = itemShape;
+            stroke = itemStroke;
+        }
+
+        @Override
+        Stroke getStroke() {
+            return stroke;
+        }
+
+        @Override
+        void paint(final Graphics2D g2) {
+            g2.draw(shape);
+        }
+    }
+
+    private static final class TextItem extends DisplayItem {
+        private final GlyphVector glyphs;
+        private final float x;
+        private final float y;
+
+        TextItem(final AffineTransform itemTransform, final Color itemColour, final Rectangle2D itemBounds,
+                final GlyphVector itemGlyphs, final float itemX, final float itemY) {
+            super(itemTransform, itemColour, itemBounds);
+            glyphs = itemGlyphs;
+            x = itemX;
+            y = itemY;
+        }
+
+        @Override
+        Stroke getStroke() {
+            return null;
+        }
+
+        @Override
+        void paint(final Graphics2D g2) {
+            g2.drawGlyphVector(glyphs, x, y);
+        }
+    }
+
+    /**
+     * Uniform grid over the primitive bounding boxes, used to find the primitives that intersect a clip rectangle.
+     */
+    private static final class GridIndex {
+        private final List<DisplayItem> items;
+        private final Rectangle2D extent;
+        private final int columns;
+        private final int rows;
+        private final double cellWidth;
+        private final double cellHeight;
+        private final int[][] cells;
+
+        GridIndex(final List<DisplayItem> displayItems, final Rectangle2D displayBounds) {
+            items = displayItems;
+            extent = displayBounds;
+            int gridSize = (int) Math.ceil(Math.sqrt(items.size()));
+            gridSize = Math.max(1, Math.min(gridSize, MAX_GRID_CELLS));
+            columns = gridSize;
+            rows = gridSize;
+            cellWidth = Math.max(extent.getWidth() / columns, Double.MIN_NORMAL);
+            cellHeight = Math.max(extent.getHeight() / rows, Double.MIN_NORMAL);
+            List<List<Integer>> cellContents = new ArrayList<>(columns * rows);
+            for (int i = 0; i < columns * rows; ++i) {
+                cellContents.add(new ArrayList<>());
+            }
+            for (int i = 0; i < items.size(); ++i) {
+                Rectangle2D itemBounds = items.get(i).getBounds();
+                for (int row = getRow(itemBounds.getMinY()); row <= getRow(itemBounds.getMaxY()); ++row) {
+                    for (int column = getColumn(itemBounds.getMinX()); column <= getColumn(itemBounds.getMaxX()); ++column) {
+                        cellContents.get(row * columns + column).add(i);
+                    }
+                }
+            }
+            cells = new int[cellContents.size()][];
+            for (int i = 0; i < cells.length; ++i) {
+                cells[i] = cellContents.get(i).stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+
+        private int getColumn(final double x) {
+            return Math.max(0, Math.min(columns - 1, (int) ((x - extent.getX()) / cellWidth)));
+        }
+
+        private int getRow(final double y) {
+            return Math.max(0, Math.min(rows - 1, (int) ((y - extent.getY()) / cellHeight)));
+        }
+
+        BitSet query(final Rectangle2D clip) {
+            BitSet visible = new BitSet(items.size());
+            if (clip == null) {
+                visible.set(0, items.size());
+                return visible;
+            }
+            if (items.isEmpty() || !clip.intersects(extent)) {
+                return visible;
+            }
+            for (int row = getRow(clip.getMinY()); row <= getRow(clip.getMaxY()); ++row) {
+                for (int column = getColumn(clip.getMinX()); column <= getColumn(clip.getMaxX()); ++column) {
+                    for (int i : cells[row * columns + column]) {
+                        if (!visible.get(i) && items.get(i).getBounds().intersects(clip)) {
+                            visible.set(i);
+                        }
+                    }
+                }
+            }
+            return visible;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2014, 2016, Codice
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.codice.imaging.cgm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.imageio.stream.ImageInputStream;
+import org.codice.imaging.nitf.core.graphic.GraphicSegment;
+
+/**
+ * Cache of compiled display lists for graphic segments.
+ *
+ * Each graphic segment is parsed and compiled the first time it is requested, and the display list is reused for
+ * later requests, e.g. when the segment is drawn again at a different scale or for a different tile. Entries are
+ * held weakly, so a display list is discarded once its graphic segment is no longer in use.
+ */
+public final class CgmDisplayListCache {
+
+    private final Map<GraphicSegment, CgmDisplayList> displayLists = new WeakHashMap<>();
+
+    /**
+     * Get the display list for a graphic segment, compiling it if required.
+     *
+     * The display list is compiled for a target of the size of the segment bounding box.
+     *
+     * @param segment the graphic segment, which must have its data loaded
+     * @return the compiled display list
+     * @throws IOException if the CGM data could not be read or parsed
+     */
+    public synchronized CgmDisplayList get(final GraphicSegment segment) throws IOException {
+        CgmDisplayList displayList = displayLists.get(segment);
+        if (displayList == null) {
+            displayList = compile(segment);
+            displayLists.put(segment, displayList);
+        }
+        return displayList;
+    }
+
+    /**
+     * Remove the display list for a graphic segment, if present.
+     *
+     * @param segment the graphic segment
+     */
+    public synchronized void invalidate(final GraphicSegment segment) {
+        displayLists.remove(segment);
+    }
+
+    /**
+     * Get the number of cached display lists.
+     *
+     * @return the number of display lists currently held
+     */
+    public synchronized int size() {
+        return displayLists.size();
+    }
+
+    private static CgmDisplayList compile(final GraphicSegment segment) throws IOException {
+        ImageInputStream data = segment.getData();
+        if (data == null) {
+            throw new IOException("Graphic segment has no data to render");
+        }
+        byte[] bytes = new byte[(int) segment.getDataLength()];
+        data.seek(0);
+        data.readFully(bytes);
+        CgmParser parser = new CgmParser(ByteBuffer.wrap(bytes));
+        parser.buildCommandList();
+        return CgmDisplayList.compile(parser.getCommandList(), segment.getBoundingBox2Column(), segment.getBoundingBox2Row());
+    }
+}
@@ -172,6 +172,24 @@ enum CgmIdentifier {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CgmIdentifier.class);
 
+    static final int ELEMENT_ID_BITS = 7;
+    private static final int CLASS_BITS = 4;
+    private static final int MAX_ELEMENT_IDS = 1 << ELEMENT_ID_BITS;
+    private static final int MAX_CLASSES = 1 << CLASS_BITS;
+    static final int TABLE_SIZE = MAX_CLASSES * MAX_ELEMENT_IDS;
+
+    private static final CgmIdentifier[] IDENTIFIERS_BY_INDEX = new CgmIdentifier[TABLE_SIZE];
+
+    static {
+        for (CgmIdentifier cgmIdentifier : values()) {
+            int elementClass = cgmIdentifier.classId.getClassIdentifier();
+            if (isValidTableIndex(elementClass, cgmIdentifier.id)
+                    && (IDENTIFIERS_BY_INDEX[getTableIndex(elementClass, cgmIdentifier.id)] == null)) {
+                IDENTIFIERS_BY_INDEX[getTableIndex(elementClass, cgmIdentifier.id)] = cgmIdentifier;
+            }
+        }
+    }
+
     private final CgmClass classId;
     private final int id;
     private final String friendlyName;
@@ -187,14 +205,44 @@ enum CgmIdentifier {
     }
 
     static CgmIdentifier findIdentifier(final int elementClass, final int elementId) {
-        LOGGER.trace(String.format("Searching for %d:%d", elementClass, elementId));
-        for (CgmIdentifier cgmIdentifier : values()) {
-            if ((cgmIdentifier.classId.getClassIdentifier() == elementClass) && (cgmIdentifier.id == elementId)) {
-                return cgmIdentifier;
-            }
+        CgmIdentifier cgmIdentifier = null;
+        if (isValidTableIndex(elementClass, elementId)) {
+            cgmIdentifier = IDENTIFIERS_BY_INDEX[getTableIndex(elementClass, elementId)];
+        }
+        if (cgmIdentifier == null) {
+            LOGGER.warn("Could not find identifier for {}:{}", elementClass, elementId);
+            return UNKNOWN;
         }
-        LOGGER.warn(String.format("Could not find identifier for %d:%d", elementClass, elementId));
-        return UNKNOWN;
+        return cgmIdentifier;
+    }
+
+    /**
+     * Get the index of an element class and element identifier in a table of elements.
+     *
+     * The element class is 4 bits and the element identifier is 7 bits in the command header, so the table has
+     * TABLE_SIZE entries.
+     *
+     * @param elementClass the element class, from the command header
+     * @param elementId the element identifier, from the command header
+     * @return the table index
+     */
+    static int getTableIndex(final int elementClass, final int elementId) {
+        return (elementClass << ELEMENT_ID_BITS) | elementId;
+    }
+
+    static boolean isValidTableIndex(final int elementClass, final int elementId) {
+        return (elementClass >= 0) && (elementClass < MAX_CLASSES) && (elementId >= 0) && (elementId < MAX_ELEMENT_IDS);
+    }
+
+    /**
+     * Get the index of this identifier in a table of elements.
+     *
+     * This is only valid for identifiers that are not in the PSEUDO class.
+     *
+     * @return the table index
+     */
+    int getTableIndex() {
+        return getTableIndex(classId.getClassIdentifier(), id);
     }
 
     CgmClass getClassIdentifier() {
@@ -59,6 +59,16 @@ class CgmInputReader {
         dataStream = dataInput;
     }
 
+    /**
+     * Constructor for subclasses that do not read through a DataInput.
+     *
+     * Subclasses must override all of the primitive read methods (readUnsignedShort(), readShort(),
+     * readUnsignedByte(), readByte() and skipBytes()).
+     */
+    CgmInputReader() {
+        dataStream = null;
+    }
+
     int readUnsignedShort() throws IOException {
         return dataStream.readUnsignedShort();
     }
@@ -70,18 +80,26 @@ class CgmInputReader {
         }
     }
 
-    private int readShort() throws IOException {
+    int readShort() throws IOException {
         return dataStream.readShort();
     }
 
+    int readUnsignedByte() throws IOException {
+        return dataStream.readUnsignedByte();
+    }
+
+    byte readByte() throws IOException {
+        return dataStream.readByte();
+    }
+
     String getStringFixed() throws IOException {
-        int count = dataStream.readUnsignedByte();
+        int count = readUnsignedByte();
         if (count > LONG_COUNT_FLAG_VALUE) {
             throw new UnsupportedOperationException("[IMG-98] CGM does not yet support long form strings.");
         }
         StringBuilder builder = new StringBuilder();
         for (int i = 0; i < count; ++i) {
-            builder.append((char) dataStream.readByte());
+            builder.append((char) readByte());
         }
         return builder.toString();
     }
@@ -89,13 +107,13 @@ class CgmInputReader {
     int readSignedIntegerAtIntegerPrecision() throws IOException {
         // BIIF profile BPCGM 01.00 doesn't allow changing this from the default.
         // The default is 16 bits
-        return dataStream.readShort();
+        return readShort();
     }
 
     int readSignedIntegerAtVdcIntegerPrecision() throws IOException {
         // BIIF profile BPCGM 01.00 doesn't allow changing this from the default.
         // The default is 16 bits
-        return dataStream.readShort();
+        return readShort();
     }
 
     Point readPoint() throws IOException {
@@ -110,20 +128,20 @@ class CgmInputReader {
 
     Color readColour(final int length) throws IOException {
         // BIIF profile BPCGM 01.00 only allows direct colour
-        int red = dataStream.readUnsignedByte();
-        int green = dataStream.readUnsignedByte();
-        int blue = dataStream.readUnsignedByte();
+        int red = readUnsignedByte();
+        int green = readUnsignedByte();
+        int blue = readUnsignedByte();
         return new Color(red, green, blue);
     }
 
     int readSizeSpecification() throws IOException {
         // BIIF profile BPCGM 01.00 only allows integer 16 bit.
-        return dataStream.readShort();
+        return readShort();
     }
 
     int readSignedIntegerAtIndexPrecision() throws IOException {
         // BIIF profile BPCGM 01.00 only allows integer 16 bit.
-        return dataStream.readShort();
+        return readShort();
     }
 
     List<Point> readPoints(final int parameterListLength) throws IOException {
@@ -28,12 +28,9 @@ package org.codice.imaging.cgm;
 import java.io.DataInput;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,57 +48,40 @@ public class CgmParser {
     private static final int ELEMENT_CLASS_BIT_MASK = 0xF000;
     private static final int ELEMENT_CLASS_BIT_SHIFT = 12;
 
-    private static final Map<CgmIdentifier, Class> ELEMENTS = new HashMap<>();
+    private static final ElementConstructor[] ELEMENTS = new ElementConstructor[CgmIdentifier.TABLE_SIZE];
 
     private CgmInputReader dataReader = null;
     private final List<AbstractElement> commands = new ArrayList<>();
     private static final Logger LOGGER = LoggerFactory.getLogger(CgmParser.class);
 
-    private static AbstractElement getElement(final CgmIdentifier elementId) {
-        if (ELEMENTS.containsKey(elementId)) {
-            LOGGER.trace("About to instantiate:" + elementId.getFriendlyName());
-            return instantiateElement(elementId);
-        }
-        return new NoArgumentsElement(CgmIdentifier.UNKNOWN);
-    }
-
-    private static AbstractElement instantiateElement(final CgmIdentifier elementId) {
-        Class elementClass = ELEMENTS.get(elementId);
-        AbstractElement element = instantiateElementWithNoArguments(elementClass);
-        if (element == null) {
-            element = instantiateElementWithElementId(elementClass, elementId);
-        }
-        return element;
+    /**
+     * Constructor for an element, which may or may not use the identifier.
+     */
+    private interface ElementConstructor {
+        AbstractElement create(CgmIdentifier elementId);
     }
 
-    private static AbstractElement instantiateElementWithNoArguments(final Class elementClass) {
-        try {
-            Constructor<AbstractElement> defaultConstructor = elementClass.getDeclaredConstructor();
-            return defaultConstructor.newInstance();
-        } catch (NoSuchMethodException | SecurityException | InstantiationException
-            | IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
-            LOGGER.error(ex.getMessage(), ex);
+    private static AbstractElement getElement(final CgmIdentifier elementId) {
+        if (elementId != CgmIdentifier.UNKNOWN) {
+            ElementConstructor constructor = ELEMENTS[elementId.getTableIndex()];
+            if (constructor != null) {
+                return constructor.create(elementId);
+            }
         }
-        return null;
+        return new NoArgumentsElement(CgmIdentifier.UNKNOWN);
     }
 
-    private static AbstractElement instantiateElementWithElementId(final Class elementClass, final CgmIdentifier elementId) {
-        try {
-            Constructor<AbstractElement> constructor = elementClass.getDeclaredConstructor(CgmIdentifier.class);
-            return constructor.newInstance(elementId);
-        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
-            LOGGER.error(ex.getMessage(), ex);
-        }
-        return null;
+    private static void register(final CgmIdentifier elementId, final ElementConstructor constructor) {
+        ELEMENTS[elementId.getTableIndex()] = constructor;
     }
 
     static {
-        ELEMENTS.put(CgmIdentifier.NO_OP, NoArgumentsElement.class);
-        ELEMENTS.put(CgmIdentifier.BEGIN_METAFILE, BeginMetafileElement.class);
-        ELEMENTS.put(CgmIdentifier.END_METAFILE, EndMetafileElement.class);
-        ELEMENTS.put(CgmIdentifier.BEGIN_PICTURE, BeginPictureElement.class);
-        ELEMENTS.put(CgmIdentifier.BEGIN_PICTURE_BODY, BeginPictureBodyElement.class);
-        ELEMENTS.put(CgmIdentifier.END_PICTURE, EndPictureElement.class);
+        register(CgmIdentifier.NO_OP, NoArgumentsElement::new);
+        register(CgmIdentifier.BEGIN_METAFILE, elementId -> new BeginMetafileElement());
+        register(CgmIdentifier.END_METAFILE, elementId -> new EndMetafileElement());
+        register(CgmIdentifier.BEGIN_PICTURE, elementId -> new BeginPictureElement());
+        register(CgmIdentifier.BEGIN_PICTURE_BODY, elementId -> new BeginPictureBodyElement());
+        register(CgmIdentifier.END_PICTURE, elementId -> new EndPictureElement());
         // BEGIN_SEGMENT prohibited in BIIF Profile BPCGM01.00
         // END_SEGMENT prohibited in BIIF Profile BPCGM01.00
         // BEGIN_FIGURE prohibited in BIIF Profile BPCGM01.00
@@ -115,8 +95,8 @@ public class CgmParser {
         // BEGIN_TILE_ARRAY prohibited in BIIF Profile BPCGM01.00
         // END_TILE_ARRAY prohibited in BIIF Profile BPCGM01.00
 
-        ELEMENTS.put(CgmIdentifier.METAFILE_VERSION, MetafileVersionElement.class);
-        ELEMENTS.put(CgmIdentifier.METAFILE_DESCRIPTION, MetafileDescriptionElement.class);
+        register(CgmIdentifier.METAFILE_VERSION, elementId -> new MetafileVersionElement());
+        register(CgmIdentifier.METAFILE_DESCRIPTION, elementId -> new MetafileDescriptionElement());
         // TODO: [IMG-30]  VDC TYPE (must be Integer)
         // TODO: [IMG-31]  Integer precision (must be 16 bits)
         // REAL_PRECISION prohibited in BIIF Profile BPCGM01.00
@@ -125,9 +105,9 @@ public class CgmParser {
         // TODO: [IMG-34]  Colour index precision (colour selection mode must be 1)
         // MAXIMUM_COLOUR_INDEX prohibited in BIIF Profile BPCGM01.00
         // TODO: [IMG-35]  Colour value extent (must be 0, 0, 0 through 255, 255, 255)
-        ELEMENTS.put(CgmIdentifier.METAFILE_ELEMENT_LIST, MetafileElementsListElement.class);
+        register(CgmIdentifier.METAFILE_ELEMENT_LIST, elementId -> new MetafileElementsListElement());
         // METAFILE_DEFAULTS_REPLACEMENT prohibited in BIIF Profile BPCGM01.00
-        ELEMENTS.put(CgmIdentifier.FONT_LIST, FontListElement.class);
+        register(CgmIdentifier.FONT_LIST, elementId -> new FontListElement());
         // TODO: [IMG-36]  CHARACTER_SET_LIST - must be ISO 10646-1 Character Set Basic Latin
         // CHARACTER_CODING_ANNOUNCER prohibited in BIIF Profile BPCGM01.00
         // TODO: [IMG-37]  NAME_PRECISION - (Note: must be version 1)
@@ -141,12 +121,12 @@ public class CgmParser {
         // PICTURE_DIRECTORY?
 
         // SCALING_MODE prohibited in BIIF Profile BPCGM01.00
-        ELEMENTS.put(CgmIdentifier.COLOUR_SELECTION_MODE, ColourSelectionModeElement.class);
-        ELEMENTS.put(CgmIdentifier.LINE_WIDTH_SPECIFICATION_MODE, LineWidthSpecificationModeElement.class);
-        ELEMENTS.put(CgmIdentifier.MARKER_SIZE_SPECIFICATION_MODE, MarkerSizeSpecificationModeElement.class);
-        ELEMENTS.put(CgmIdentifier.EDGE_WIDTH_SPECIFICATION_MODE, EdgeWidthSpecificationModeElement.class);
-        ELEMENTS.put(CgmIdentifier.VDC_EXTENT, VdcExtentElement.class);
-        ELEMENTS.put(CgmIdentifier.BACKGROUND_COLOUR, NoArgumentsElement.class);
+        register(CgmIdentifier.COLOUR_SELECTION_MODE, elementId -> new ColourSelectionModeElement());
+        register(CgmIdentifier.LINE_WIDTH_SPECIFICATION_MODE, elementId -> new LineWidthSpecificationModeElement());
+        register(CgmIdentifier.MARKER_SIZE_SPECIFICATION_MODE, elementId -> new MarkerSizeSpecificationModeElement());
+        register(CgmIdentifier.EDGE_WIDTH_SPECIFICATION_MODE, elementId -> new EdgeWidthSpecificationModeElement());
+        register(CgmIdentifier.VDC_EXTENT, elementId -> new VdcExtentElement());
+        register(CgmIdentifier.BACKGROUND_COLOUR, NoArgumentsElement::new);
         // DEVICE_VIEWPORT prohibited in BIIF Profile BPCGM01.10
         // DEVICE_VIEWPORT_SPECIFICATION_MODE prohibited in BIIF Profile BPCGM01.10
         // DEVICE_VIEWPORT_MAPPING prohibited in BIIF Profile BPCGM01.10
@@ -177,23 +157,23 @@ public class CgmParser {
         // MITRE_LIMIT prohibited in BIIF Profile BPCGM01.10
         // TRANSPARENT_CELL_COLOUR prohibited in BIIF Profile BPCGM01.10
 
-        ELEMENTS.put(CgmIdentifier.POLYLINE, PolylineElement.class);
-        ELEMENTS.put(CgmIdentifier.DISJOINT_POLYLINE, NoArgumentsElement.class);
-        ELEMENTS.put(CgmIdentifier.POLYMARKER, NoArgumentsElement.class);
-        ELEMENTS.put(CgmIdentifier.TEXT, TextElement.class);
+        register(CgmIdentifier.POLYLINE, elementId -> new PolylineElement());
+        register(CgmIdentifier.DISJOINT_POLYLINE, NoArgumentsElement::new);
+        register(CgmIdentifier.POLYMARKER, NoArgumentsElement::new);
+        register(CgmIdentifier.TEXT, elementId -> new TextElement());
         // RESTRICTED_TEXT prohibited in BIIF Profile BPCGM01.10
         // APPEND_TEXT prohibited in BIIF Profile BPCGM01.10
-        ELEMENTS.put(CgmIdentifier.POLYGON, PolygonElement.class);
-        ELEMENTS.put(CgmIdentifier.POLYGON_SET, PolygonSetElement.class);
+        register(CgmIdentifier.POLYGON, elementId -> new PolygonElement());
+        register(CgmIdentifier.POLYGON_SET, elementId -> new PolygonSetElement());
         // CELL_ARRAY prohibited in BIIF Profile BPCGM01.10
         // GENERALISED_DRAWING_PRIMITIVE prohibited in BIIF Profile BPCGM01.10
-        ELEMENTS.put(CgmIdentifier.RECTANGLE, RectangleElement.class);
-        ELEMENTS.put(CgmIdentifier.CIRCLE, CircleElement.class);
+        register(CgmIdentifier.RECTANGLE, elementId -> new RectangleElement());
+        register(CgmIdentifier.CIRCLE, elementId -> new CircleElement());
         // CIRCULAR_ARC_3_POINT prohibited in BIIF Profile BPCGM01.10
         // CIRCULAR_ARC_3_POINT_CLOSE prohibited in BIIF Profile BPCGM01.10
-        ELEMENTS.put(CgmIdentifier.CIRCULAR_ARC_CENTRE, CircularArcCentreElement.class);
+        register(CgmIdentifier.CIRCULAR_ARC_CENTRE, elementId -> new CircularArcCentreElement());
         // TODO: [IMG-43]  CIRCULAR_ARC_CENTRE_CLOSE
-        ELEMENTS.put(CgmIdentifier.ELLIPSE, EllipseElement.class);
+        register(CgmIdentifier.ELLIPSE, elementId -> new EllipseElement());
         // TODO: [IMG-44]  ELLIPTICAL_ARC
         // TODO: [IMG-45]  ELLIPICAL_ARC_CLOSE
         // CIRCULAR_ARC_CENTRE_REVERSED prohibited in BIIF Profile BPCGM01.10
@@ -208,35 +188,35 @@ public class CgmParser {
         // TILE prohibited in BIIF Profile BPCGM01.10
 
         // LINE_BUNDLE_INDEX prohibited in BIIF Profile BPCGM01.10
-        ELEMENTS.put(CgmIdentifier.LINE_TYPE, LineTypeElement.class);
-        ELEMENTS.put(CgmIdentifier.LINE_WIDTH, LineWidthElement.class);
-        ELEMENTS.put(CgmIdentifier.LINE_COLOUR, LineColourElement.class);
+        register(CgmIdentifier.LINE_TYPE, elementId -> new LineTypeElement());
+        register(CgmIdentifier.LINE_WIDTH, elementId -> new LineWidthElement());
+        register(CgmIdentifier.LINE_COLOUR, elementId -> new LineColourElement());
         // MARKER_BUNDLE_INDEX prohibited in BIIF Profile BPCGM01.10
         // MARKER_TYPE prohibited in BIIF Profile BPCGM01.10
         // MARKER_SIZE prohibited in BIIF Profile BPCGM01.10
         // MARKER_COLOUR prohibited in BIIF Profile BPCGM01.10
         // TEXT_BUNDLE_INDEX prohibited in BIIF Profile BPCGM01.10
-        ELEMENTS.put(CgmIdentifier.TEXT_FONT_INDEX, TextFontIndexElement.class);
-        ELEMENTS.put(CgmIdentifier.TEXT_PRECISION, NoArgumentsElement.class);
-        ELEMENTS.put(CgmIdentifier.CHARACTER_EXPANSION_FACTOR, NoArgumentsElement.class);
-        ELEMENTS.put(CgmIdentifier.CHARACTER_SPACING, NoArgumentsElement.class);
-        ELEMENTS.put(CgmIdentifier.TEXT_COLOUR, TextColourElement.class);
-        ELEMENTS.put(CgmIdentifier.CHARACTER_HEIGHT, CharacterHeightElement.class);
-        ELEMENTS.put(CgmIdentifier.CHARACTER_ORIENTATION, CharacterOrientationElement.class);
-        ELEMENTS.put(CgmIdentifier.TEXT_PATH, NoArgumentsElement.class);
-        ELEMENTS.put(CgmIdentifier.TEXT_ALIGNMENT, NoArgumentsElement.class);
+        register(CgmIdentifier.TEXT_FONT_INDEX, elementId -> new TextFontIndexElement());
+        register(CgmIdentifier.TEXT_PRECISION, NoArgumentsElement::new);
+        register(CgmIdentifier.CHARACTER_EXPANSION_FACTOR, NoArgumentsElement::new);
+        register(CgmIdentifier.CHARACTER_SPACING, NoArgumentsElement::new);
+        register(CgmIdentifier.TEXT_COLOUR, elementId -> new TextColourElement());
+        register(CgmIdentifier.CHARACTER_HEIGHT, elementId -> new CharacterHeightElement());
+        register(CgmIdentifier.CHARACTER_ORIENTATION, elementId -> new CharacterOrientationElement());
+        register(CgmIdentifier.TEXT_PATH, NoArgumentsElement::new);
+        register(CgmIdentifier.TEXT_ALIGNMENT, NoArgumentsElement::new);
         // CHARACTER_SET_INDEX prohibited in BIIF Profile BPCGM01.10
         // ALTERNATE_CHARACTER_SET_INDEX prohibited in BIIF Profile BPCGM01.10
         // FILL_BUNDLE_INDEX prohibited in BIIF Profile BPCGM01.10
-        ELEMENTS.put(CgmIdentifier.INTERIOR_STYLE, InteriorStyleElement.class);
-        ELEMENTS.put(CgmIdentifier.FILL_COLOUR, FillColourElement.class);
-        ELEMENTS.put(CgmIdentifier.HATCH_INDEX, HatchIndexElement.class);
+        register(CgmIdentifier.INTERIOR_STYLE, elementId -> new InteriorStyleElement());
+        register(CgmIdentifier.FILL_COLOUR, elementId -> new FillColourElement());
+        register(CgmIdentifier.HATCH_INDEX, elementId -> new HatchIndexElement());
         // PATTERN_INDEX　prohibited in BIIF Profile BPCGM01.10
         // EDGE_BUNDLE_INDEX prohibited in BIIF Profile BPCGM01.10
-        ELEMENTS.put(CgmIdentifier.EDGE_TYPE, EdgeTypeElement.class);
-        ELEMENTS.put(CgmIdentifier.EDGE_WIDTH, EdgeWidthElement.class);
-        ELEMENTS.put(CgmIdentifier.EDGE_COLOUR, EdgeColourElement.class);
-        ELEMENTS.put(CgmIdentifier.EDGE_VISIBILITY, EdgeVisibilityElement.class);
+        register(CgmIdentifier.EDGE_TYPE, elementId -> new EdgeTypeElement());
+        register(CgmIdentifier.EDGE_WIDTH, elementId -> new EdgeWidthElement());
+        register(CgmIdentifier.EDGE_COLOUR, elementId -> new EdgeColourElement());
+        register(CgmIdentifier.EDGE_VISIBILITY, elementId -> new EdgeVisibilityElement());
         // FILL_REFERENCE_POINT prohibited in BIIF Profile BPCGM01.10
         // PATTERN_TABLE prohibited in BIIF Profile BPCGM01.10
         // PATTERN_SIZE prohibited in BIIF Profile BPCGM01.10
@@ -279,7 +259,19 @@ public class CgmParser {
      * @param graphicSegmentData the CGM data to parse
      */
     public CgmParser(final byte[] graphicSegmentData) {
-        dataReader = new CgmInputReader(graphicSegmentData);
+        this(ByteBuffer.wrap(graphicSegmentData));
+    }
+
+    /**
+     * Constructor.
+     *
+     * Parameters are read straight from the buffer, which is faster than reading from a stream.
+     *
+     * @param graphicSegmentData the CGM data to parse, between the buffer position and limit. The buffer is not
+     * modified.
+     */
+    public CgmParser(final ByteBuffer graphicSegmentData) {
+        dataReader = new CgmByteBufferReader(graphicSegmentData);
     }
 
     /**
@@ -57,4 +57,16 @@ public class CgmRenderer {
             command.render(g2, graphicState);
         }
     }
+
+    /**
+     * Render a compiled display list.
+     *
+     * Unlike render(List), this does not depend on the size passed to setTargetImageGraphics(), since that is fixed
+     * when the display list is compiled.
+     *
+     * @param displayList the display list to render
+     */
+    public final void render(final CgmDisplayList displayList) {
+        displayList.render(g2);
+    }
 }
@@ -58,8 +58,16 @@ class CircleElement extends ElementHelpers implements AbstractElement {
     @Override
     public void render(final Graphics2D g2, final CgmGraphicState graphicState) {
         applyFilledPrimitiveAttributes(g2, graphicState);
-        Ellipse2D circle = new Ellipse2D.Float(centre.x - radius, centre.y - radius, radius * 2, radius * 2);
-        g2.draw(circle);
+        g2.draw(getCircle());
+    }
+
+    @Override
+    public void compile(final CgmDisplayList.Builder builder, final CgmGraphicState graphicState) {
+        compileFilledPrimitive(builder, graphicState, getCircle());
+    }
+
+    private Ellipse2D getCircle() {
+        return new Ellipse2D.Float(centre.x - radius, centre.y - radius, radius * 2, radius * 2);
     }
 
 }
@@ -69,14 +69,22 @@ class CircularArcCentreElement extends ElementHelpers implements AbstractElement
     public void render(final Graphics2D g2, final CgmGraphicState graphicState) {
         g2.setColor(graphicState.getLineColour());
         g2.setStroke(graphicState.getLineStroke());
+        g2.draw(getArc());
+    }
+
+    @Override
+    public void compile(final CgmDisplayList.Builder builder, final CgmGraphicState graphicState) {
+        builder.draw(getArc(), graphicState.getLineStroke(), graphicState.getLineColour());
+    }
+
+    private Arc2D getArc() {
         double startAngle = -1.0 * Math.toDegrees(Math.atan2(deltaYforStartVector, deltaXforStartVector));
         double endAngle = -1.0 * Math.toDegrees(Math.atan2(deltaYforEndVector, deltaXforEndVector));
         double extent = endAngle - startAngle;
         if (extent > 0.0) {
             extent -= FULL_CIRCLE;
         }
-        Arc2D arc = new Arc2D.Double(centre.x - radius, centre.y - radius, radius * 2, radius * 2, startAngle, extent, Arc2D.OPEN);
-        g2.draw(arc);
+        return new Arc2D.Double(centre.x - radius, centre.y - radius, radius * 2, radius * 2, startAngle, extent, Arc2D.OPEN);
     }
 
 }
@@ -26,6 +26,7 @@
 package org.codice.imaging.cgm;
 
 import java.awt.Graphics2D;
+import java.awt.Shape;
 
 /**
  *
@@ -53,4 +54,8 @@ abstract class ElementHelpers implements AbstractElement {
         g2.setStroke(graphicState.getEdgeStroke());
     }
 
+    protected void compileFilledPrimitive(final CgmDisplayList.Builder builder, final CgmGraphicState graphicState, final Shape shape) {
+        builder.draw(shape, graphicState.getEdgeStroke(), graphicState.getEdgeColour());
+    }
+
 }
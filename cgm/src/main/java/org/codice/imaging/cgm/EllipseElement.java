@@ -63,10 +63,18 @@ class EllipseElement extends ElementHelpers implements AbstractElement {
     @Override
     public void render(final Graphics2D g2, final CgmGraphicState graphicState) {
         applyFilledPrimitiveAttributes(g2, graphicState);
+        g2.draw(getEllipse());
+    }
+
+    @Override
+    public void compile(final CgmDisplayList.Builder builder, final CgmGraphicState graphicState) {
+        compileFilledPrimitive(builder, graphicState, getEllipse());
+    }
+
+    private Ellipse2D getEllipse() {
         float xOffset = Math.max(Math.abs(centre.x - endpointOfFirstConjugateDiameter.x), Math.abs(centre.x - endpointOfSecondConjugateDiameter.x));
         float yOffset = Math.max(Math.abs(centre.y - endpointOfFirstConjugateDiameter.y), Math.abs(centre.y - endpointOfSecondConjugateDiameter.y));
-        Ellipse2D ellipse = new Ellipse2D.Float(centre.x - xOffset, centre.y - yOffset, xOffset * 2, yOffset * 2);
-        g2.draw(ellipse);
+        return new Ellipse2D.Float(centre.x - xOffset, centre.y - yOffset, xOffset * 2, yOffset * 2);
     }
 
 }
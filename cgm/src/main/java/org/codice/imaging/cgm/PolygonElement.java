@@ -63,11 +63,20 @@ class PolygonElement extends ElementHelpers implements AbstractElement {
     public void render(final Graphics2D g2, final CgmGraphicState graphicState) {
         g2.setColor(graphicState.getEdgeColour());
         g2.setStroke(graphicState.getEdgeStroke());
+        g2.draw(getPath());
+    }
+
+    @Override
+    public void compile(final CgmDisplayList.Builder builder, final CgmGraphicState graphicState) {
+        builder.draw(getPath(), graphicState.getEdgeStroke(), graphicState.getEdgeColour());
+    }
+
+    private GeneralPath getPath() {
         GeneralPath line = new GeneralPath(Path2D.WIND_EVEN_ODD, points.size());
         line.moveTo(points.get(0).x, points.get(0).y);
         for (int i = 1; i < points.size(); ++i) {
             line.lineTo(points.get(i).x, points.get(i).y);
         }
-        g2.draw(line);
+        return line;
     }
 }
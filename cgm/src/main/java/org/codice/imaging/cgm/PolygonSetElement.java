@@ -73,12 +73,21 @@ class PolygonSetElement extends ElementHelpers {
     public void render(final Graphics2D g2, final CgmGraphicState graphicState) {
         LOGGER.debug("figure out how to render edge out flags");
         applyFilledPrimitiveAttributes(g2, graphicState);
+        g2.draw(getPolygon());
+    }
+
+    @Override
+    public void compile(final CgmDisplayList.Builder builder, final CgmGraphicState graphicState) {
+        compileFilledPrimitive(builder, graphicState, getPolygon());
+    }
+
+    private Polygon getPolygon() {
         Polygon polygon = new Polygon();
         for (int pointIndex = 0; pointIndex < points.size(); ++pointIndex) {
             Point point = points.get(pointIndex);
             polygon.addPoint(point.x, point.y);
         }
-        g2.draw(polygon);
+        return polygon;
     }
 
 }
@@ -27,6 +27,7 @@ package org.codice.imaging.cgm;
 
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.io.IOException;
 
 
@@ -58,10 +59,20 @@ class RectangleElement extends ElementHelpers implements AbstractElement {
     @Override
     public void render(final Graphics2D g2, final CgmGraphicState graphicState) {
         applyFilledPrimitiveAttributes(g2, graphicState);
+        Rectangle rectangle = getRectangle();
+        g2.drawRect(rectangle.x, rectangle.y, rectangle.width, rectangle.height);
+    }
+
+    @Override
+    public void compile(final CgmDisplayList.Builder builder, final CgmGraphicState graphicState) {
+        compileFilledPrimitive(builder, graphicState, getRectangle());
+    }
+
+    private Rectangle getRectangle() {
         int width = Math.abs(firstCorner.x - secondCorner.x);
         int height = Math.abs(firstCorner.y - secondCorner.y);
         int smallestX = Math.min(firstCorner.x, secondCorner.x);
         int smallestY = Math.min(firstCorner.y, secondCorner.y);
-        g2.drawRect(smallestX, smallestY, width, height);
+        return new Rectangle(smallestX, smallestY, width, height);
     }
 }
@@ -78,4 +78,14 @@ class TextElement extends ElementHelpers implements AbstractElement {
             localGraphics.drawString(text, textPosition.x, -1 * textPosition.y);
         }
     }
+
+    @Override
+    public void compile(final CgmDisplayList.Builder builder, final CgmGraphicState graphicState) {
+        if (!graphicState.characterOrientationHasInvertedY()) {
+            builder.drawText(text, graphicState.getFont(), graphicState.getTextColour(), textPosition.x,
+                    (int) graphicState.getSizeY() - textPosition.y, false);
+        } else {
+            builder.drawText(text, graphicState.getFont(), graphicState.getTextColour(), textPosition.x, -1 * textPosition.y, true);
+        }
+    }
 }
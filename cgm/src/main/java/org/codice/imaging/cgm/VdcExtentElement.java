@@ -27,6 +27,7 @@ package org.codice.imaging.cgm;
 
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.geom.AffineTransform;
 import java.io.IOException;
 
 class VdcExtentElement extends ElementHelpers implements AbstractElement {
@@ -54,6 +55,16 @@ class VdcExtentElement extends ElementHelpers implements AbstractElement {
     @Override
     public void render(final Graphics2D g2, final CgmGraphicState graphicState) {
         graphicState.setVdcExtent(vdcExtent);
+        g2.transform(getVdcTransform(graphicState));
+    }
+
+    @Override
+    public void compile(final CgmDisplayList.Builder builder, final CgmGraphicState graphicState) {
+        graphicState.setVdcExtent(vdcExtent);
+        builder.transform(getVdcTransform(graphicState));
+    }
+
+    private AffineTransform getVdcTransform(final CgmGraphicState graphicState) {
         double scaleX = 1.0;
         double translateX = 0.0;
         if (vdcExtent.isIncreasingLeft()) {
@@ -66,13 +77,9 @@ class VdcExtentElement extends ElementHelpers implements AbstractElement {
             scaleY = -1.0;
             translateY = (graphicState.getSizeY());
         }
-        if (scaleX < 0) {
-            g2.translate(translateX, 0);
-        }
-        if (scaleY < 0) {
-            g2.translate(0, translateY);
-        }
-        g2.scale(scaleX, scaleY);
+        AffineTransform transform = AffineTransform.getTranslateInstance(translateX, translateY);
+        transform.scale(scaleX, scaleY);
+        return transform;
     }
 
 }
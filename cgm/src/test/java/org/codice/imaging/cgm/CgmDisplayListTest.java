@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2014, Codice
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.codice.imaging.cgm;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.NitfReader;
+import org.codice.imaging.nitf.core.common.impl.NitfInputStreamReader;
+import org.codice.imaging.nitf.core.graphic.GraphicSegment;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests for compiled CGM display lists.
+ */
+public class CgmDisplayListTest {
+
+    private static final String[] TEST_FILES = {"i_3051e.ntf", "i_3052a.ntf", "i_3060a.ntf", "i_3063f.ntf", "i_3068a.ntf",
+        "ns3059a.nsf", "ns3073a.nsf", "ns3101b.nsf"};
+
+    @Test
+    public void checkDisplayListMatchesDirectRendering() throws IOException, NitfFormatException {
+        for (String testfile : TEST_FILES) {
+            for (GraphicSegment segment : getGraphicSegments(testfile)) {
+                int width = segment.getBoundingBox2Column();
+                int height = segment.getBoundingBox2Row();
+                CgmParser parser = parse(segment);
+
+                BufferedImage expected = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                CgmRenderer renderer = new CgmRenderer();
+                renderer.setTargetImageGraphics((Graphics2D) expected.getGraphics(), width, height);
+                renderer.render(parser.getCommandList());
+
+                CgmDisplayList displayList = CgmDisplayList.compile(parser.getCommandList(), width, height);
+                BufferedImage actual = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+                renderer.setTargetImageGraphics((Graphics2D) actual.getGraphics(), width, height);
+                renderer.render(displayList);
+
+                assertArrayEquals(testfile, getPixels(expected), getPixels(actual));
+            }
+        }
+    }
+
+    @Test
+    public void checkClippedTilesMatchWholeRendering() throws IOException, NitfFormatException {
+        GraphicSegment segment = getGraphicSegments("ns3101b.nsf").get(0);
+        int width = segment.getBoundingBox2Column();
+        int height = segment.getBoundingBox2Row();
+        CgmDisplayList displayList = new CgmDisplayListCache().get(segment);
+        assertTrue(displayList.getPrimitiveCount() > 0);
+
+        BufferedImage whole = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        displayList.render(whole.createGraphics());
+
+        int tileSize = Math.max(1, Math.min(width, height) / 3);
+        BufferedImage tiled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y += tileSize) {
+            for (int x = 0; x < width; x += tileSize) {
+                Graphics2D g2 = tiled.createGraphics();
+                g2.clipRect(x, y, tileSize, tileSize);
+                displayList.render(g2);
+                g2.dispose();
+            }
+        }
+        assertArrayEquals(getPixels(whole), getPixels(tiled));
+    }
+
+    @Test
+    public void checkClipOutsideBoundsDrawsNothing() throws IOException, NitfFormatException {
+        GraphicSegment segment = getGraphicSegments("i_3051e.ntf").get(0);
+        CgmDisplayList displayList = new CgmDisplayListCache().get(segment);
+        int width = (int) Math.ceil(displayList.getBounds().getMaxX()) + 20;
+        int height = (int) Math.ceil(displayList.getBounds().getMaxY()) + 20;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.clipRect(width - 10, height - 10, 10, 10);
+        displayList.render(g2);
+        for (int pixel : getPixels(image)) {
+            assertEquals(0, pixel);
+        }
+    }
+
+    @Test
+    public void checkCacheReusesDisplayList() throws IOException, NitfFormatException {
+        List<GraphicSegment> segments = getGraphicSegments("ns3101b.nsf");
+        CgmDisplayListCache cache = new CgmDisplayListCache();
+        CgmDisplayList displayList = cache.get(segments.get(0));
+        assertSame(displayList, cache.get(segments.get(0)));
+        assertEquals(1, cache.size());
+        cache.invalidate(segments.get(0));
+        assertEquals(0, cache.size());
+    }
+
+    private List<GraphicSegment> getGraphicSegments(final String testfile) throws NitfFormatException {
+        String inputFileName = "/JitcNitf21Samples/" + testfile;
+        assertNotNull("Test file missing: " + inputFileName, getClass().getResource(inputFileName));
+        NitfReader reader = new NitfInputStreamReader(new BufferedInputStream(getClass().getResourceAsStream(inputFileName)));
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy();
+        NitfParser.parse(reader, parseStrategy);
+        return new ArrayList<>(parseStrategy.getDataSource().getGraphicSegments());
+    }
+
+    private CgmParser parse(final GraphicSegment segment) throws IOException {
+        segment.getData().seek(0);
+        CgmParser parser = new CgmParser(segment.getData());
+        parser.buildCommandList();
+        return parser;
+    }
+
+    private int[] getPixels(final BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}
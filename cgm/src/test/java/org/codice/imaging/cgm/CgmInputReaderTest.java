@@ -25,7 +25,10 @@
  */
 package org.codice.imaging.cgm;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import static org.junit.Assert.assertEquals;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -50,4 +53,24 @@ public class CgmInputReaderTest {
         exception.expectMessage("[IMG-98] CGM does not yet support long form strings.");
         reader.getStringFixed();
     }
+
+    @Test
+    public void checkBufferReaderMatchesStreamReader() throws IOException {
+        byte[] testData = new byte[]{(byte) 0x03, (byte) 0x41, (byte) 0x42, (byte) 0x43, (byte) 0xFF, (byte) 0xFE,
+            (byte) 0x10, (byte) 0x20, (byte) 0x30, (byte) 0x00, (byte) 0x01, (byte) 0x80, (byte) 0x00};
+        CgmInputReader streamReader = new CgmInputReader(testData);
+        CgmInputReader bufferReader = new CgmByteBufferReader(ByteBuffer.wrap(testData));
+        assertEquals(streamReader.getStringFixed(), bufferReader.getStringFixed());
+        assertEquals(streamReader.readSignedIntegerAtIntegerPrecision(), bufferReader.readSignedIntegerAtIntegerPrecision());
+        assertEquals(streamReader.readColour(3), bufferReader.readColour(3));
+        assertEquals(streamReader.readPoints(4), bufferReader.readPoints(4));
+    }
+
+    @Test
+    public void checkBufferReaderEndOfData() throws IOException {
+        CgmInputReader reader = new CgmByteBufferReader(ByteBuffer.wrap(new byte[]{(byte) 0x00, (byte) 0x01, (byte) 0x02}));
+        reader.readUnsignedShort();
+        exception.expect(EOFException.class);
+        reader.readUnsignedShort();
+    }
 }
@@ -30,6 +30,8 @@ import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.imageio.stream.ImageInputStream;
 import javax.imageio.ImageIO;
 import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
 import org.codice.imaging.nitf.core.common.NitfFormatException;
@@ -39,6 +41,7 @@ import org.codice.imaging.nitf.core.graphic.GraphicSegment;
 import org.codice.imaging.nitf.core.header.impl.NitfParser;
 import org.junit.After;
 import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -134,6 +137,32 @@ public class CgmParserTest {
         testOneImage(parentDirectory, testfile);
     }
 
+    @Test
+    public void checkBufferParseMatchesStreamParse() throws IOException, NitfFormatException {
+        for (String testfile : new String[] {"i_3051e.ntf", "i_3060a.ntf", "i_3068a.ntf", "ns3101b.nsf"}) {
+            String inputFileName = "/JitcNitf21Samples/" + testfile;
+            assertNotNull("Test file missing: " + inputFileName, getClass().getResource(inputFileName));
+            NitfReader reader = new NitfInputStreamReader(new BufferedInputStream(getClass().getResourceAsStream(inputFileName)));
+            SlottedParseStrategy parseStrategy = new SlottedParseStrategy();
+            NitfParser.parse(reader, parseStrategy);
+            for (GraphicSegment segment : parseStrategy.getDataSource().getGraphicSegments()) {
+                ImageInputStream data = segment.getData();
+                data.seek(0);
+                CgmParser streamParser = new CgmParser(data);
+                streamParser.buildCommandList();
+
+                byte[] bytes = new byte[(int) segment.getDataLength()];
+                data.seek(0);
+                data.readFully(bytes);
+                CgmParser bufferParser = new CgmParser(ByteBuffer.wrap(bytes));
+                bufferParser.buildCommandList();
+
+                assertEquals(streamParser.getCommandList().size(), bufferParser.getCommandList().size());
+                assertEquals(streamParser.getCommandListAsString(), bufferParser.getCommandListAsString());
+            }
+        }
+    }
+
     private void testOneImage(String parentDirectory, String testfile) throws IOException {
         String inputFileName = "/" + parentDirectory + "/" + testfile;
         LOGGER.info("================================== Testing :" + inputFileName);
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.common;
+
+import java.nio.ByteBuffer;
+
+import org.codice.imaging.nitf.core.header.NitfHeader;
+
+/**
+ * Handler for the results of incremental (push mode) parsing.
+ * <p>
+ * The parser calls these methods as soon as each part of the file is complete. Segment data is passed on as it
+ * arrives, possibly over several calls, and is not buffered by the parser.
+ */
+public interface PushParseHandler {
+
+    /**
+     * Handle the file-level header.
+     *
+     * @param nitfHeader the file-level header, including any header TREs
+     * @throws NitfFormatException if there is a problem handling the header
+     */
+    void handleFileHeader(NitfHeader nitfHeader) throws NitfFormatException;
+
+    /**
+     * Handle a segment subheader.
+     *
+     * @param segmentType the kind of segment
+     * @param segment the segment, including any subheader TREs but without data
+     * @param dataLength the length of the data that will follow for this segment
+     * @throws NitfFormatException if there is a problem handling the subheader
+     */
+    void handleSegmentSubheader(SegmentType segmentType, CommonSegment segment, long dataLength) throws NitfFormatException;
+
+    /**
+     * Handle part of the data for the current segment.
+     *
+     * @param segmentType the kind of segment
+     * @param data the next part of the segment data, between the buffer position and limit. The buffer is only
+     * valid during this call.
+     * @throws NitfFormatException if there is a problem handling the data
+     */
+    void handleSegmentData(SegmentType segmentType, ByteBuffer data) throws NitfFormatException;
+
+    /**
+     * Handle the end of the current segment.
+     *
+     * This is called after all of the segment data has been passed to handleSegmentData(), including for
+     * segments with no data.
+     *
+     * @param segmentType the kind of segment
+     * @throws NitfFormatException if there is a problem completing the segment
+     */
+    void handleSegmentEnd(SegmentType segmentType) throws NitfFormatException;
+
+    /**
+     * Handle the end of the file.
+     *
+     * @throws NitfFormatException if there is a problem completing the file
+     */
+    void handleEndOfFile() throws NitfFormatException;
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Source of NITF file content that is read by byte range.
+ * <p>
+ * This is the model for remote storage (for example, HTTP range requests or object storage GET with a Range
+ * header), where each read is a separate, relatively expensive request, but any part of the file can be read
+ * without reading the parts before it.
+ */
+public interface RangeSource extends Closeable {
+
+    /**
+     * Return the size of the file.
+     *
+     * @return the size of the file in bytes.
+     * @throws IOException if the size could not be determined.
+     */
+    long getSize() throws IOException;
+
+    /**
+     * Read a range of bytes.
+     *
+     * @param offset the offset of the first byte to read, from the start of the file.
+     * @param length the number of bytes to read.
+     * @return buffer holding the bytes read, between its position and limit. This will only be shorter than length
+     * if the range extends past the end of the file.
+     * @throws IOException if the range could not be read.
+     */
+    ByteBuffer read(long offset, int length) throws IOException;
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.image;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+
+/**
+ * Source of image blocks, for writing an image segment without holding the whole image in memory.
+ * <p>
+ * Blocks are requested once each, in the order they are stored in the file: row by row, left to right within each
+ * row and, for band sequential (IMODE S) images, all of the blocks for the first band before any of the blocks for
+ * the next band.
+ */
+@FunctionalInterface
+public interface ImageBlockProducer {
+
+    /**
+     * Produce the data for one block.
+     *
+     * @param blockRow the zero-based row of the block within the image
+     * @param blockColumn the zero-based column of the block within the image
+     * @param band the zero-based band for band sequential images, otherwise always zero
+     * @return the block data between the buffer position and limit, or null if the block is not recorded (which
+     * is only valid for the masked compression variants, such as NM).
+     * @throws IOException if the block data cannot be produced
+     * @throws NitfFormatException if the block data is not valid for the image segment
+     */
+    ByteBuffer getBlock(int blockRow, int blockColumn, int band) throws IOException, NitfFormatException;
+}
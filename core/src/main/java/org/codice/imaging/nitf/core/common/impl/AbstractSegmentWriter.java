@@ -16,6 +16,7 @@ package org.codice.imaging.nitf.core.common.impl;
 
 import java.io.DataOutput;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 
 import javax.imageio.stream.ImageInputStream;
 
@@ -207,22 +208,54 @@ public abstract class AbstractSegmentWriter {
 
     /**
      * Write out the data for the segment.
+     * <p>
+     * If the data is an unchanged region of an existing file (see FileRegionImageInputStream), and the target is a
+     * channel or file, the data is transferred directly to the target. Otherwise it is copied through a buffer. For a
+     * ChannelDataOutput target, the buffer matches the output buffer size, so that full chunks bypass the output
+     * buffer and are written together with any buffered subheader.
+     * <p>
+     * Read and write problems are logged. Use copySegmentData(ImageInputStream) if the caller needs to know.
      *
      * @param data the data to write.
      */
     public final void writeSegmentData(final ImageInputStream data) {
         try {
-            if (data == null) {
-                return;
-            }
-            data.seek(0);
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int bytesRead;
-            while ((bytesRead = data.read(buffer)) != -1) {
-                mOutput.write(buffer, 0, bytesRead);
-            }
+            copySegmentData(data);
         } catch (IOException ioe) {
             LOG.warn(ioe.getMessage(), ioe);
         }
     }
+
+    /**
+     * Write out the data for the segment, as for writeSegmentData(ImageInputStream), reporting any problems.
+     *
+     * @param data the data to write.
+     * @throws IOException if the data could not be read or written.
+     */
+    public final void copySegmentData(final ImageInputStream data) throws IOException {
+        if (data == null) {
+            return;
+        }
+        if ((data instanceof FileRegionImageInputStream) && (mOutput instanceof ChannelDataOutput)) {
+            ((FileRegionImageInputStream) data).transferTo(((ChannelDataOutput) mOutput).getFlushedChannel());
+            return;
+        }
+        if ((data instanceof FileRegionImageInputStream) && (mOutput instanceof RandomAccessFile)) {
+            ((FileRegionImageInputStream) data).transferTo(((RandomAccessFile) mOutput).getChannel());
+            return;
+        }
+        data.seek(0);
+        byte[] buffer = new byte[getCopyBufferSize()];
+        int bytesRead;
+        while ((bytesRead = data.read(buffer)) != -1) {
+            mOutput.write(buffer, 0, bytesRead);
+        }
+    }
+
+    private int getCopyBufferSize() {
+        if (mOutput instanceof ChannelDataOutput) {
+            return ((ChannelDataOutput) mOutput).getBufferSize();
+        }
+        return BUFFER_SIZE;
+    }
 }
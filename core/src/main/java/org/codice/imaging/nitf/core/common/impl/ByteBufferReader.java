@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.common.impl;
+
+import java.nio.ByteBuffer;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.NitfReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+    NitfReader implementation over bytes that are already in memory.
+    <p>
+    The buffer may hold a whole NITF file, or only a part of one (for example, a segment subheader). A read that
+    runs past the end of the buffer fails, but the number of bytes that would have been needed is recorded (see
+    getRequiredLength()), which allows an incremental parser to retry once more data has arrived.
+*/
+public class ByteBufferReader extends SharedReader implements NitfReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ByteBufferReader.class);
+
+    private final ByteBuffer buffer;
+
+    private final long fileOffset;
+
+    private final boolean wholeFile;
+
+    private long requiredLength = 0;
+
+    /**
+        Constructor for a buffer holding a whole NITF file.
+        <p>
+        Reading starts at the current position of the buffer, which is taken as the start of the file.
+
+        @param nitfBuffer the buffer to read the NITF file contents from. The buffer itself is not modified.
+    */
+    public ByteBufferReader(final ByteBuffer nitfBuffer) {
+        this(nitfBuffer, 0, true);
+    }
+
+    /**
+        Constructor for a buffer holding part of a NITF file.
+        <p>
+        Reading starts at the current position of the buffer. Since the end of the file is not available,
+        canSeek() returns false, although seeks within the buffer are still supported.
+
+        @param nitfBuffer the buffer to read from. The buffer itself is not modified.
+        @param startOffset the offset in the file of the first byte in the buffer.
+    */
+    public ByteBufferReader(final ByteBuffer nitfBuffer, final long startOffset) {
+        this(nitfBuffer, startOffset, false);
+    }
+
+    private ByteBufferReader(final ByteBuffer nitfBuffer, final long startOffset, final boolean isWholeFile) {
+        if (nitfBuffer == null) {
+            throw new IllegalArgumentException("ByteBufferReader(): argument 'nitfBuffer' may not be null.");
+        }
+        buffer = nitfBuffer.slice();
+        fileOffset = startOffset;
+        wholeFile = isWholeFile;
+    }
+
+    /**
+     * Return the number of bytes (from the start of the buffer) that reads have needed so far.
+     * <p>
+     * If this is larger than the buffer, a read has failed because the data was not yet available.
+     *
+     * @return the required length in bytes.
+     */
+    public final long getRequiredLength() {
+        return requiredLength;
+    }
+
+    /**
+     * Check whether any read or skip has run past the end of the buffer.
+     *
+     * @return true if a read needed more data than the buffer holds, otherwise false.
+     */
+    public final boolean isUnderflow() {
+        return requiredLength > buffer.limit();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final Boolean canSeek() {
+        return wholeFile;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getCurrentOffset() {
+        return fileOffset + buffer.position();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void seekToEndOfFile() throws NitfFormatException {
+        buffer.position(buffer.limit());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void seekBackwards(final long relativeOffset) throws NitfFormatException {
+        if (buffer.position() - relativeOffset < 0) {
+            LOG.warn("Offset before start of buffer seeking backwards");
+            throw new NitfFormatException("Unable to seek backwards: Negative seek offset");
+        }
+        buffer.position((int) (buffer.position() - relativeOffset));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void seekToAbsoluteOffset(final long absoluteOffset) throws NitfFormatException {
+        long target = absoluteOffset - fileOffset;
+        if ((target < 0) || (target > buffer.limit())) {
+            LOG.warn("Offset outside buffer seeking to absolute offset");
+            throw new NitfFormatException("Unable to seek to absolute offset: offset outside buffer", absoluteOffset);
+        }
+        buffer.position((int) target);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final byte[] readBytesRaw(final int count) throws NitfFormatException {
+        require(count);
+        byte[] bytes = new byte[count];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void skip(final long count) throws NitfFormatException {
+        require(count);
+        buffer.position((int) (buffer.position() + count));
+    }
+
+    private void require(final long count) throws NitfFormatException {
+        long end = buffer.position() + count;
+        requiredLength = Math.max(requiredLength, end);
+        if (end > buffer.limit()) {
+            throw new NitfFormatException("End of data reading from NITF buffer.", getCurrentOffset());
+        }
+    }
+}
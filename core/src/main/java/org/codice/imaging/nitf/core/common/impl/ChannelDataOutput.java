@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.common.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+    DataOutput implementation that buffers output for a channel.
+    <p>
+    Header and subheader fields are written as many small values. Rather than issuing a write for each of them,
+    they are assembled in a reusable direct buffer, which is only written out when it is full, when a large block of
+    data (such as segment data) is written, or on flush(). In the large block case, the buffered fields and the
+    block are written together with a single gathering write if the channel supports it.
+    <p>
+    Callers must call flush() once all of the output has been written.
+*/
+public class ChannelDataOutput implements DataOutput, Flushable {
+
+    private static final int KILOBYTE = 1024;
+
+    /**
+        The default buffer size, in bytes.
+    */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * KILOBYTE;
+
+    private final WritableByteChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final ByteBuffer[] gather = new ByteBuffer[2];
+
+    /**
+        Constructor using the default buffer size.
+
+        @param outputChannel the channel to write to.
+    */
+    public ChannelDataOutput(final WritableByteChannel outputChannel) {
+        this(outputChannel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+        Constructor.
+
+        @param outputChannel the channel to write to.
+        @param bufferSize the size of the buffer, in bytes. Writes of at least this size are not buffered.
+    */
+    public ChannelDataOutput(final WritableByteChannel outputChannel, final int bufferSize) {
+        if (outputChannel == null) {
+            throw new IllegalArgumentException("ChannelDataOutput(): argument 'outputChannel' may not be null.");
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid bufferSize parameter ( " + bufferSize + " ), it should be > 0.");
+        }
+        channel = outputChannel;
+        buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Get the size of the buffer.
+     * <p>
+     * Writes of at least this size are written directly to the channel, together with any buffered output.
+     *
+     * @return the buffer size, in bytes.
+     */
+    public final int getBufferSize() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Write out any buffered output, and return the underlying channel.
+     * <p>
+     * This allows the caller to write to the channel directly (for example, with FileChannel.transferTo()) without
+     * reordering the output.
+     *
+     * @return the channel, with all output written so far.
+     * @throws IOException on writing problems.
+     */
+    public final WritableByteChannel getFlushedChannel() throws IOException {
+        flush();
+        return channel;
+    }
+
+    /**
+     * Write out any buffered output.
+     *
+     * @throws IOException on writing problems.
+     */
+    @Override
+    public final void flush() throws IOException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void write(final int b) throws IOException {
+        ensureSpace(1);
+        buffer.put((byte) b);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void write(final byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void write(final byte[] b, final int off, final int len) throws IOException {
+        if (len >= buffer.capacity()) {
+            writeGathered(ByteBuffer.wrap(b, off, len));
+        } else if (len <= buffer.remaining()) {
+            buffer.put(b, off, len);
+        } else {
+            flush();
+            buffer.put(b, off, len);
+        }
+    }
+
+    /**
+     * Write out the remaining content of a buffer.
+     * <p>
+     * As for write(byte[], int, int), small buffers are copied into the output buffer, and large buffers are written
+     * directly to the channel.
+     *
+     * @param source the data to write, between the buffer position and limit. The buffer position is advanced to
+     * its limit.
+     * @throws IOException on writing problems.
+     */
+    public final void write(final ByteBuffer source) throws IOException {
+        int len = source.remaining();
+        if (len >= buffer.capacity()) {
+            writeGathered(source);
+        } else if (len <= buffer.remaining()) {
+            buffer.put(source);
+        } else {
+            flush();
+            buffer.put(source);
+        }
+    }
+
+    private void writeGathered(final ByteBuffer block) throws IOException {
+        buffer.flip();
+        try {
+            if (channel instanceof GatheringByteChannel) {
+                gather[0] = buffer;
+                gather[1] = block;
+                while (block.hasRemaining()) {
+                    ((GatheringByteChannel) channel).write(gather);
+                }
+            } else {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                while (block.hasRemaining()) {
+                    channel.write(block);
+                }
+            }
+        } finally {
+            gather[1] = null;
+            buffer.clear();
+        }
+    }
+
+    private void ensureSpace(final int count) throws IOException {
+        if (buffer.remaining() < count) {
+            flush();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void writeBoolean(final boolean v) throws IOException {
+        if (v) {
+            write(1);
+        } else {
+            write(0);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void writeByte(final int v) throws IOException {
+        write(v);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void writeShort(final int v) throws IOException {
+        ensureSpace(Short.BYTES);
+        buffer.putShort((short) v);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void writeChar(final int v) throws IOException {
+        ensureSpace(Character.BYTES);
+        buffer.putChar((char) v);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void writeInt(final int v) throws IOException {
+        ensureSpace(Integer.BYTES);
+        buffer.putInt(v);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void writeLong(final long v) throws IOException {
+        ensureSpace(Long.BYTES);
+        buffer.putLong(v);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void writeFloat(final float v) throws IOException {
+        writeInt(Float.floatToIntBits(v));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void writeDouble(final double v) throws IOException {
+        writeLong(Double.doubleToLongBits(v));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void writeBytes(final String s) throws IOException {
+        for (int i = 0; i < s.length(); ++i) {
+            write(s.charAt(i));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void writeChars(final String s) throws IOException {
+        for (int i = 0; i < s.length(); ++i) {
+            writeChar(s.charAt(i));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void writeUTF(final String s) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeUTF(s);
+        write(bytes.toByteArray());
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.common.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import javax.imageio.stream.ImageInputStream;
+
+import org.codice.imaging.nitf.core.HeapStrategy;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.NitfReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+    NitfReader implementation using a FileChannel and a read-ahead window.
+    <p>
+    Reads are satisfied from a reusable direct buffer holding a window of the file. When a read falls outside the
+    window, the window is refilled from the requested offset, so consecutive small field reads cost a single
+    system call per window rather than one per field. Seeks only move the logical position, and do not cause any
+    I/O if the target offset is still inside the window.
+    <p>
+    All channel access uses positional reads, so the channel position is never changed. That allows several
+    readers (e.g. one per thread) to share a single FileChannel.
+*/
+public class FileChannelReader extends SharedReader implements NitfReader {
+
+    private static final int KILOBYTE = 1024;
+
+    /**
+        The default size of the read-ahead window, in bytes.
+    */
+    public static final int DEFAULT_WINDOW_SIZE = 256 * KILOBYTE;
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileChannelReader.class);
+
+    private final FileChannel channel;
+
+    private final boolean ownsChannel;
+
+    private final ByteBuffer window;
+
+    private long windowStart = 0;
+
+    private long position = 0;
+
+    /**
+        Constructor for File.
+
+        @param file the File to read the NITF file contents from.
+        @throws NitfFormatException if file does not exist as a regular file, or some other error occurs during opening of the file.
+    */
+    public FileChannelReader(final File file) throws NitfFormatException {
+        this(openChannel(file.toPath()), true, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+        Constructor for string file name.
+
+        @param filename the name of the file to read the NITF file contents from.
+        @throws NitfFormatException if file does not exist as a regular file, or some other error occurs during opening of the file.
+    */
+    public FileChannelReader(final String filename) throws NitfFormatException {
+        this(new File(filename));
+    }
+
+    /**
+        Constructor for an existing (possibly shared) channel.
+        <p>
+        The channel is not closed by close(), since other readers may still be using it.
+
+        @param fileChannel the channel to read the NITF file contents from.
+        @param windowSize the size of the read-ahead window, in bytes.
+    */
+    public FileChannelReader(final FileChannel fileChannel, final int windowSize) {
+        this(fileChannel, false, windowSize);
+    }
+
+    private FileChannelReader(final FileChannel fileChannel, final boolean closeChannel, final int windowSize) {
+        if (fileChannel == null) {
+            throw new IllegalArgumentException("FileChannelReader(): argument 'fileChannel' may not be null.");
+        }
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Invalid windowSize parameter ( " + windowSize + " ), it should be > 0.");
+        }
+        channel = fileChannel;
+        ownsChannel = closeChannel;
+        window = ByteBuffer.allocateDirect(windowSize);
+        window.limit(0);
+    }
+
+    private static FileChannel openChannel(final Path path) throws NitfFormatException {
+        try {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException ex) {
+            LOG.warn(FileReader.FILE_NOT_FOUND_EXCEPTION_MESSAGE + path, ex);
+            throw new NitfFormatException(path + FileReader.NOT_FOUND_MESSAGE_JOINER + ex.getMessage());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final Boolean canSeek() {
+        return true;
+    }
+
+    /**
+     * Close underlying resources.
+     * <p>
+     * If this reader was constructed from an existing channel, the channel is left open.
+     *
+     * @throws NitfFormatException if an error occurs during close.
+     */
+    public final void close() throws NitfFormatException {
+        window.limit(0);
+        if (!ownsChannel) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            throw new NitfFormatException("IO Exception during close()" + ex.getMessage());
+        }
+    }
+
+    /**
+     * Return a heap strategy that leaves segment data in this file.
+     * <p>
+     * Rather than reading the data, the strategy returns a FileRegionImageInputStream over the data in the file,
+     * which is only read when it is used. If the segment is written out again unchanged, the writer can transfer
+     * the data directly from this file. The returned streams need the channel to stay open, so this reader should
+     * not be closed while they are still in use.
+     *
+     * @return heap strategy for segment data that stays in this file.
+     */
+    public final HeapStrategy<ImageInputStream> getDataHeapStrategy() {
+        return new FileRegionHeapStrategy();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getCurrentOffset() {
+        return position;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void seekToEndOfFile() throws NitfFormatException {
+        try {
+            position = channel.size();
+        } catch (IOException ex) {
+            LOG.warn("IO Exception seeking to end of file", ex);
+            throw new NitfFormatException("Unable to seek to end of file: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void seekBackwards(final long relativeOffset) throws NitfFormatException {
+        if (position - relativeOffset < 0) {
+            LOG.warn("Negative offset seeking backwards");
+            throw new NitfFormatException("Unable to seek backwards: Negative seek offset");
+        }
+        position -= relativeOffset;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void seekToAbsoluteOffset(final long absoluteOffset) throws NitfFormatException {
+        if (absoluteOffset < 0) {
+            LOG.warn("Negative offset seeking to absolute offset");
+            throw new NitfFormatException("Unable to seek to absolute offset: Negative seek offset");
+        }
+        position = absoluteOffset;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final byte[] readBytesRaw(final int count) throws NitfFormatException {
+        byte[] bytes = new byte[count];
+        try {
+            int copied = copyFromWindow(bytes, 0, count);
+            if (copied < count) {
+                if (count - copied >= window.capacity()) {
+                    readDirect(bytes, copied, count - copied);
+                } else {
+                    fillWindow(position + copied);
+                    int available = copyFromWindow(bytes, copied, count - copied);
+                    if (copied + available < count) {
+                        throw new NitfFormatException("End of file reading from NITF file.", position + copied + available);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            LOG.warn("IO Exception reading raw bytes", ex);
+            throw new NitfFormatException(FileReader.GENERIC_READ_ERROR_MESSAGE + ex.getMessage(), position);
+        }
+        position += count;
+        return bytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void skip(final long count) throws NitfFormatException {
+        position += count;
+    }
+
+    /**
+     * Copy bytes at the current logical position from the window, if present.
+     *
+     * @param destination the array to copy into
+     * @param offset the offset into the destination array (and from the logical position)
+     * @param length the maximum number of bytes to copy
+     * @return the number of bytes actually copied, which will be zero if the position is outside the window.
+     */
+    private int copyFromWindow(final byte[] destination, final int offset, final int length) {
+        long start = position + offset;
+        if ((start < windowStart) || (start >= windowStart + window.limit())) {
+            return 0;
+        }
+        int windowOffset = (int) (start - windowStart);
+        int toCopy = Math.min(length, window.limit() - windowOffset);
+        window.position(windowOffset);
+        window.get(destination, offset, toCopy);
+        return toCopy;
+    }
+
+    private void fillWindow(final long fileOffset) throws IOException {
+        window.clear();
+        windowStart = fileOffset;
+        try {
+            while (window.hasRemaining()) {
+                int read = channel.read(window, fileOffset + window.position());
+                if (read == -1) {
+                    break;
+                }
+            }
+        } finally {
+            window.flip();
+        }
+    }
+
+    private void readDirect(final byte[] destination, final int offset, final int length) throws IOException, NitfFormatException {
+        ByteBuffer target = ByteBuffer.wrap(destination, offset, length);
+        long fileOffset = position + offset;
+        while (target.hasRemaining()) {
+            int read = channel.read(target, fileOffset + target.position() - offset);
+            if (read == -1) {
+                throw new NitfFormatException("End of file reading from NITF file.", fileOffset + target.position() - offset);
+            }
+        }
+    }
+
+    /**
+     * Heap strategy that records where the data is in the file, rather than reading it.
+     */
+    private final class FileRegionHeapStrategy implements HeapStrategy<ImageInputStream> {
+
+        @Override
+        public ImageInputStream handleSegment(final NitfReader reader, final long length) throws NitfFormatException {
+            ImageInputStream stream = new FileRegionImageInputStream(channel, reader.getCurrentOffset(), length);
+            reader.skip(length);
+            return stream;
+        }
+
+        @Override
+        public void cleanUp() {
+            // Nothing to do
+        }
+    }
+}
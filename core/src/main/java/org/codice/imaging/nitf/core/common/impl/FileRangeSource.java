@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.common.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.codice.imaging.nitf.core.common.RangeSource;
+
+/**
+    RangeSource implementation over a local file.
+    <p>
+    This is mainly a stand-in for remote storage, for example in testing, but can also be used to get the lazy
+    loading behaviour of RangeReader for local files.
+*/
+public class FileRangeSource implements RangeSource {
+
+    private final FileChannel channel;
+
+    /**
+        Constructor.
+
+        @param file the file to read from.
+        @throws IOException if the file could not be opened.
+    */
+    public FileRangeSource(final File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getSize() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final ByteBuffer read(final long offset, final int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) == -1) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void close() throws IOException {
+        channel.close();
+    }
+}
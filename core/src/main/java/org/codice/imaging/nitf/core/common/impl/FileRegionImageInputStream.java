@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.common.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+    ImageInputStream over a region of a file, such as the data of a segment in an existing NITF file.
+    <p>
+    Nothing is read until the stream is used. Since the stream knows where its data lives, a writer can copy the
+    whole region to a channel with transferTo(WritableByteChannel), which lets the operating system move the bytes
+    directly (e.g. with sendfile or copy_file_range) rather than copying them through a buffer.
+    <p>
+    All channel access uses positional reads, so several streams can share a channel. Closing the stream does
+    not close the channel.
+*/
+public final class FileRegionImageInputStream extends ImageInputStreamImpl {
+
+    private final FileChannel channel;
+
+    private final long regionOffset;
+
+    private final long regionLength;
+
+    /**
+        Constructor.
+
+        @param fileChannel the channel to read from.
+        @param offset the offset of the start of the region in the file.
+        @param length the length of the region in bytes.
+    */
+    public FileRegionImageInputStream(final FileChannel fileChannel, final long offset, final long length) {
+        if (fileChannel == null) {
+            throw new IllegalArgumentException("FileRegionImageInputStream(): argument 'fileChannel' may not be null.");
+        }
+        channel = fileChannel;
+        regionOffset = offset;
+        regionLength = length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read() throws IOException {
+        byte[] bytes = new byte[1];
+        if (read(bytes, 0, 1) == -1) {
+            return -1;
+        }
+        return Byte.toUnsignedInt(bytes[0]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(final byte[] destination, final int offset, final int count) throws IOException {
+        checkClosed();
+        if (count == 0) {
+            return 0;
+        }
+        bitOffset = 0;
+        int toRead = (int) Math.min(count, regionLength - streamPos);
+        if (toRead <= 0) {
+            return -1;
+        }
+        int read = channel.read(ByteBuffer.wrap(destination, offset, toRead), regionOffset + streamPos);
+        if (read == -1) {
+            return -1;
+        }
+        streamPos += read;
+        return read;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long length() {
+        return regionLength;
+    }
+
+    /**
+     * Copy the whole region to a channel.
+     * <p>
+     * This does not depend on, or change, the stream position. The bytes are written at the current position of
+     * the target channel.
+     *
+     * @param target the channel to write to.
+     * @throws IOException if the region could not be copied, including if the file is shorter than the region.
+     */
+    public void transferTo(final WritableByteChannel target) throws IOException {
+        checkClosed();
+        long transferred = 0;
+        while (transferred < regionLength) {
+            long count = channel.transferTo(regionOffset + transferred, regionLength - transferred, target);
+            if (count <= 0) {
+                throw new IOException("Unable to transfer file region at offset " + (regionOffset + transferred));
+            }
+            transferred += count;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.common.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+
+import org.codice.imaging.nitf.core.HeapStrategy;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.NitfReader;
+import org.codice.imaging.nitf.core.common.RangeSource;
+import org.codice.imaging.nitf.core.header.impl.SegmentLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+    NitfReader implementation over a RangeSource, such as remote or object storage.
+    <p>
+    Bytes are fetched on demand and kept in a bounded cache. Each fetch is widened to whole blocks, and covers
+    the whole of the requested read that is not already cached, so a run of small field reads costs one request
+    per block rather than one per field. Skipping does not fetch anything.
+    <p>
+    To read the headers of a file in only a few requests, pass prefetch(List) as the segment layout listener to
+    NitfParser.parse(NitfReader, ParseStrategy, Consumer), which fetches all of the segment subheaders at once
+    (merging nearby ones into a single range). To load segment data only as it is used, use
+    getDataHeapStrategy() as the image (or DES) heap strategy, which returns streams that fetch blocks when they
+    are read.
+*/
+public class RangeReader extends SharedReader implements NitfReader {
+
+    private static final int KILOBYTE = 1024;
+
+    /**
+        The default block size, in bytes.
+    */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * KILOBYTE;
+
+    /**
+        The default maximum amount of data to cache, in bytes.
+    */
+    public static final long DEFAULT_CACHE_SIZE = 16L * KILOBYTE * KILOBYTE;
+
+    private static final String END_OF_FILE_MESSAGE = "End of file reading from NITF source.";
+
+    private static final Logger LOG = LoggerFactory.getLogger(RangeReader.class);
+
+    private final RangeSource source;
+
+    private final int blockSize;
+
+    private final long cacheSize;
+
+    // Cached ranges by file offset. The ranges never overlap.
+    private final TreeMap<Long, ByteBuffer> cache = new TreeMap<>();
+
+    private final Deque<Long> cacheOrder = new ArrayDeque<>();
+
+    private long cachedBytes = 0;
+
+    private long sourceSize = -1;
+
+    private long position = 0;
+
+    private int requestCount = 0;
+
+    /**
+        Constructor using the default block and cache sizes.
+
+        @param rangeSource the source to read the NITF file contents from.
+    */
+    public RangeReader(final RangeSource rangeSource) {
+        this(rangeSource, DEFAULT_BLOCK_SIZE, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+        Constructor.
+
+        @param rangeSource the source to read the NITF file contents from.
+        @param fetchBlockSize the size of the blocks that fetches are aligned to, in bytes.
+        @param maximumCacheSize the maximum amount of data to keep cached, in bytes. Older ranges are discarded
+        first, although the most recently fetched range is always kept.
+    */
+    public RangeReader(final RangeSource rangeSource, final int fetchBlockSize, final long maximumCacheSize) {
+        if (rangeSource == null) {
+            throw new IllegalArgumentException("RangeReader(): argument 'rangeSource' may not be null.");
+        }
+        if (fetchBlockSize <= 0) {
+            throw new IllegalArgumentException("Invalid fetchBlockSize parameter ( " + fetchBlockSize + " ), it should be > 0.");
+        }
+        source = rangeSource;
+        blockSize = fetchBlockSize;
+        cacheSize = maximumCacheSize;
+    }
+
+    /**
+     * Return the number of range requests made to the source.
+     *
+     * @return the request count.
+     */
+    public final synchronized int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Close the underlying source, and discard any cached data.
+     *
+     * @throws NitfFormatException if an error occurs during close.
+     */
+    public final synchronized void close() throws NitfFormatException {
+        cache.clear();
+        cacheOrder.clear();
+        cachedBytes = 0;
+        try {
+            source.close();
+        } catch (IOException ex) {
+            throw new NitfFormatException("IO Exception during close()" + ex.getMessage());
+        }
+    }
+
+    /**
+     * Fetch the subheaders of the specified segments.
+     * <p>
+     * Subheaders that are separated by less than a block are fetched in the same request. This is intended to be
+     * used as the segment layout listener for NitfParser.parse(NitfReader, ParseStrategy, Consumer). Since it is
+     * only an optimisation, fetch errors are logged rather than thrown, and will be reported if the subheader
+     * is read.
+     *
+     * @param segments the segment layout from the file header.
+     */
+    public final void prefetch(final List<SegmentLayout> segments) {
+        int index = 0;
+        while (index < segments.size()) {
+            long start = segments.get(index).getSubheaderOffset();
+            long end = segments.get(index).getDataOffset();
+            index++;
+            while ((index < segments.size()) && (segments.get(index).getSubheaderOffset() - end < blockSize)) {
+                end = segments.get(index).getDataOffset();
+                index++;
+            }
+            try {
+                prefetchRange(start, end);
+            } catch (NitfFormatException ex) {
+                LOG.warn("Failed to prefetch range {} to {}", start, end, ex);
+            }
+        }
+    }
+
+    private synchronized void prefetchRange(final long start, final long end) throws NitfFormatException {
+        long offset = start;
+        while (offset < end) {
+            Map.Entry<Long, ByteBuffer> cached = findCached(offset);
+            if (cached != null) {
+                offset = cached.getKey() + cached.getValue().limit();
+            } else {
+                offset = fetchRange(offset, end, false);
+            }
+        }
+    }
+
+    /**
+     * Return a heap strategy that loads segment data from this reader only when it is read.
+     * <p>
+     * The returned strategy must only be used for segments parsed from this reader. The streams it returns read
+     * through the cache of this reader, and remain usable until the reader is closed.
+     *
+     * @return heap strategy for lazily loaded segment data.
+     */
+    public final HeapStrategy<ImageInputStream> getDataHeapStrategy() {
+        return new RangeHeapStrategy();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final Boolean canSeek() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final long getCurrentOffset() {
+        return position;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void seekToEndOfFile() throws NitfFormatException {
+        position = getSourceSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void seekBackwards(final long relativeOffset) throws NitfFormatException {
+        if (position - relativeOffset < 0) {
+            LOG.warn("Negative offset seeking backwards");
+            throw new NitfFormatException("Unable to seek backwards: Negative seek offset");
+        }
+        position -= relativeOffset;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void seekToAbsoluteOffset(final long absoluteOffset) throws NitfFormatException {
+        if (absoluteOffset < 0) {
+            LOG.warn("Negative offset seeking to absolute offset");
+            throw new NitfFormatException("Unable to seek to absolute offset: Negative seek offset");
+        }
+        position = absoluteOffset;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final byte[] readBytesRaw(final int count) throws NitfFormatException {
+        byte[] bytes = new byte[count];
+        read(position, bytes, 0, count);
+        position += count;
+        return bytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void skip(final long count) throws NitfFormatException {
+        position += count;
+    }
+
+    private synchronized void read(final long offset, final byte[] destination, final int destinationOffset, final int length)
+            throws NitfFormatException {
+        int copied = 0;
+        while (copied < length) {
+            long current = offset + copied;
+            Map.Entry<Long, ByteBuffer> cached = findCached(current);
+            if (cached == null) {
+                fetchRange(current, offset + length, true);
+                continue;
+            }
+            ByteBuffer bytes = cached.getValue().duplicate();
+            bytes.position((int) (current - cached.getKey()));
+            int count = Math.min(length - copied, bytes.remaining());
+            bytes.get(destination, destinationOffset + copied, count);
+            copied += count;
+        }
+    }
+
+    private Map.Entry<Long, ByteBuffer> findCached(final long offset) {
+        Map.Entry<Long, ByteBuffer> entry = cache.floorEntry(offset);
+        if ((entry != null) && (offset < entry.getKey() + entry.getValue().limit())) {
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Fetch the range around offset that is not already cached, widened to block boundaries.
+     *
+     * @param offset the first uncached offset that is required.
+     * @param end the end of the required range.
+     * @param required true if end of file before offset should be reported as an error.
+     * @return the end of the fetched range.
+     * @throws NitfFormatException if the range could not be read.
+     */
+    private long fetchRange(final long offset, final long end, final boolean required) throws NitfFormatException {
+        long fetchStart = offset - (offset % blockSize);
+        Map.Entry<Long, ByteBuffer> previous = cache.floorEntry(offset);
+        if (previous != null) {
+            fetchStart = Math.max(fetchStart, previous.getKey() + previous.getValue().limit());
+        }
+        long fetchEnd = Math.min(roundUpToBlock(end), getSourceSize());
+        Long next = cache.higherKey(offset);
+        if (next != null) {
+            fetchEnd = Math.min(fetchEnd, next);
+        }
+        if (fetchEnd <= offset) {
+            if (required) {
+                throw new NitfFormatException(END_OF_FILE_MESSAGE, offset);
+            }
+            return end;
+        }
+        try {
+            requestCount++;
+            ByteBuffer bytes = source.read(fetchStart, (int) (fetchEnd - fetchStart)).slice();
+            if (fetchStart + bytes.limit() <= offset) {
+                throw new NitfFormatException(END_OF_FILE_MESSAGE, offset);
+            }
+            addToCache(fetchStart, bytes);
+            return fetchStart + bytes.limit();
+        } catch (IOException ex) {
+            LOG.warn("IO Exception reading range", ex);
+            throw new NitfFormatException(FileReader.GENERIC_READ_ERROR_MESSAGE + ex.getMessage(), offset);
+        }
+    }
+
+    private long roundUpToBlock(final long offset) {
+        long remainder = offset % blockSize;
+        if (remainder == 0) {
+            return offset;
+        }
+        return offset + blockSize - remainder;
+    }
+
+    private void addToCache(final long offset, final ByteBuffer bytes) {
+        cache.put(offset, bytes);
+        cacheOrder.addLast(offset);
+        cachedBytes += bytes.limit();
+        while ((cachedBytes > cacheSize) && (cacheOrder.size() > 1)) {
+            ByteBuffer evicted = cache.remove(cacheOrder.removeFirst());
+            cachedBytes -= evicted.limit();
+        }
+    }
+
+    private long getSourceSize() throws NitfFormatException {
+        if (sourceSize < 0) {
+            try {
+                sourceSize = source.getSize();
+            } catch (IOException ex) {
+                LOG.warn("IO Exception getting source size", ex);
+                throw new NitfFormatException(FileReader.GENERIC_READ_ERROR_MESSAGE + ex.getMessage());
+            }
+        }
+        return sourceSize;
+    }
+
+    /**
+     * Heap strategy that records the location of the data, rather than reading it.
+     */
+    private final class RangeHeapStrategy implements HeapStrategy<ImageInputStream> {
+
+        @Override
+        public ImageInputStream handleSegment(final NitfReader reader, final long length) throws NitfFormatException {
+            ImageInputStream stream = new RangeImageInputStream(reader.getCurrentOffset(), length);
+            reader.skip(length);
+            return stream;
+        }
+
+        @Override
+        public void cleanUp() {
+            // Nothing to do
+        }
+    }
+
+    /**
+     * ImageInputStream over a range of the source, reading through the cache.
+     */
+    private final class RangeImageInputStream extends ImageInputStreamImpl {
+
+        private final long start;
+
+        private final long length;
+
+        RangeImageInputStream(final long startOffset, final long dataLength) {
+            start = startOffset;
+            length = dataLength;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] bytes = new byte[1];
+            if (read(bytes, 0, 1) == -1) {
+                return -1;
+            }
+            return Byte.toUnsignedInt(bytes[0]);
+        }
+
+        @Override
+        public int read(final byte[] destination, final int offset, final int count) throws IOException {
+            if (count == 0) {
+                return 0;
+            }
+            bitOffset = 0;
+            int toRead = (int) Math.min(count, length - streamPos);
+            if (toRead <= 0) {
+                return -1;
+            }
+            try {
+                RangeReader.this.read(start + streamPos, destination, offset, toRead);
+            } catch (NitfFormatException ex) {
+                throw new IOException(ex);
+            }
+            streamPos += toRead;
+            return toRead;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+    }
+}
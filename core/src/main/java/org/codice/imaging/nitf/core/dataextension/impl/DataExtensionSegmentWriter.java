@@ -45,13 +45,15 @@ public class DataExtensionSegmentWriter extends AbstractSegmentWriter {
     }
 
     /**
-     * Write out the subheader information for this data extension segment.
+     * Write out the subheader of the specified data extension segment, without the segment data.
+     * <p>
+     * The output is exactly getHeaderLength() bytes for the current segment content.
      *
      * @param des the header to write
-     * @throws IOException on write failure
-     * @throws NitfFormatException on TRE parse problems
+     * @throws IOException on write failure.
+     * @throws NitfFormatException on TRE parsing failure.
      */
-    public final void writeDESHeader(final DataExtensionSegment des) throws IOException, NitfFormatException {
+    public final void writeDESSubheader(final DataExtensionSegment des) throws IOException, NitfFormatException {
         writeFixedLengthString(DE, DE.length());
         writeFixedLengthString(des.getIdentifier(), DESID_LENGTH);
         writeFixedLengthNumber(des.getDESVersion(), DESVER_LENGTH);
@@ -67,6 +69,17 @@ public class DataExtensionSegmentWriter extends AbstractSegmentWriter {
             byte[] treData = mTreParser.getTREs(des, TreSource.TreOverflowDES);
             mOutput.write(treData);
         }
+    }
+
+    /**
+     * Write out the subheader information and data for this data extension segment.
+     *
+     * @param des the header to write
+     * @throws IOException on write failure
+     * @throws NitfFormatException on TRE parse problems
+     */
+    public final void writeDESHeader(final DataExtensionSegment des) throws IOException, NitfFormatException {
+        writeDESSubheader(des);
         des.consume(this::writeSegmentData);
     }
 }
@@ -229,7 +229,7 @@ class GraphicSegmentImpl extends CommonBasicSegmentImpl
                 + GraphicSegmentConstants.SRES.length()
                 + GraphicSegmentConstants.SXSHDL_LENGTH;
         TreParser treParser = new TreParser();
-        int extendedDataLength = treParser.getTREs(this, TreSource.GraphicExtendedSubheaderData).length;
+        int extendedDataLength = treParser.getTREsLength(this, TreSource.GraphicExtendedSubheaderData);
         if (extendedDataLength > 0) {
             headerLength += GraphicSegmentConstants.SXSOFL_LENGTH;
             headerLength += extendedDataLength;
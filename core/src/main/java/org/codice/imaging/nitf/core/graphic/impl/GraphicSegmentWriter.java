@@ -55,13 +55,15 @@ public class GraphicSegmentWriter extends AbstractSegmentWriter {
     }
 
     /**
-     * Write out the specified graphic segment.
+     * Write out the subheader of the specified graphic segment, without the segment data.
+     * <p>
+     * The output is exactly getHeaderLength() bytes for the current segment content.
      *
      * @param graphicSegment the segment content to write out
      * @throws IOException on write failure.
      * @throws NitfFormatException on TRE parsing failure.
      */
-    public final void writeGraphicSegment(final GraphicSegment graphicSegment) throws IOException, NitfFormatException {
+    public final void writeGraphicSubheader(final GraphicSegment graphicSegment) throws IOException, NitfFormatException {
         writeFixedLengthString(SY, SY.length());
         writeFixedLengthString(graphicSegment.getIdentifier(), SID_LENGTH);
         writeFixedLengthString(graphicSegment.getGraphicName(), SNAME_LENGTH);
@@ -89,6 +91,17 @@ public class GraphicSegmentWriter extends AbstractSegmentWriter {
             writeFixedLengthNumber(graphicSegment.getExtendedHeaderDataOverflow(), SXSOFL_LENGTH);
             writeBytes(graphicExtendedSubheaderData, graphicExtendedSubheaderDataLength - SXSOFL_LENGTH);
         }
+    }
+
+    /**
+     * Write out the specified graphic segment.
+     *
+     * @param graphicSegment the segment content to write out
+     * @throws IOException on write failure.
+     * @throws NitfFormatException on TRE parsing failure.
+     */
+    public final void writeGraphicSegment(final GraphicSegment graphicSegment) throws IOException, NitfFormatException {
+        writeGraphicSubheader(graphicSegment);
         writeSegmentData(graphicSegment.getData());
     }
 
@@ -18,14 +18,20 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
-import org.codice.imaging.nitf.core.header.NitfHeader;
+import org.codice.imaging.nitf.core.DataSource;
 import org.codice.imaging.nitf.core.impl.RGBColourImpl;
 import org.codice.imaging.nitf.core.common.impl.AbstractSegmentParser;
 import org.codice.imaging.nitf.core.common.FileType;
 import org.codice.imaging.nitf.core.common.NitfFormatException;
 import org.codice.imaging.nitf.core.common.NitfReader;
 import org.codice.imaging.nitf.core.common.ParseStrategy;
+import org.codice.imaging.nitf.core.common.SegmentType;
 import org.codice.imaging.nitf.core.security.impl.FileSecurityMetadataParser;
 import org.codice.imaging.nitf.core.tre.TreCollection;
 import org.codice.imaging.nitf.core.tre.TreSource;
@@ -81,41 +87,236 @@ public final class NitfParser extends AbstractSegmentParser {
      */
     public static void parse(final NitfReader nitfReader, final ParseStrategy parseStrategy) throws NitfFormatException {
         NitfParser parser = new NitfParser(nitfReader, parseStrategy);
+        parser.readHeaders();
+        parser.handleSegments();
+    }
 
-        parser.readBaseHeaders();
-        if (parser.isStreamingMode()) {
-            parser.handleStreamingMode();
+    /**
+     * Parse a NITF file from a specific reader and parsing strategy, reporting the segment layout.
+     * <p>
+     * This is the same as parse(NitfReader, ParseStrategy), except that once the file header has been read, the
+     * location of each segment is passed to layoutListener before any segment is handled. For example, a reader
+     * can use this to fetch all of the subheaders at once.
+     *
+     * @param nitfReader the reader to use
+     * @param parseStrategy the parsing strategy
+     * @param layoutListener the consumer of the segments described by the file header, in file order
+     * @throws NitfFormatException if an error occurs during parsing
+     */
+    public static void parse(final NitfReader nitfReader, final ParseStrategy parseStrategy,
+            final Consumer<List<SegmentLayout>> layoutListener) throws NitfFormatException {
+        NitfParser parser = new NitfParser(nitfReader, parseStrategy);
+        parser.readHeaders();
+        layoutListener.accept(parser.getSegmentLayout());
+        parser.handleSegments();
+    }
+
+    /**
+     * Parse a NITF file, handling the segments concurrently.
+     * <p>
+     * The file header holds the subheader and data length of every segment, so once it has been read from a
+     * seekable reader, the absolute offset of each segment is known. Each segment is then handled on the executor
+     * using its own reader (from segmentReaderFactory) and its own parsing strategy (from segmentStrategyFactory),
+     * and the resulting segments are added to the data source of parseStrategy in file order.
+     * <p>
+     * The readers returned by segmentReaderFactory must be independent of each other and of nitfReader, for
+     * example FileChannelReader instances sharing a single FileChannel. If nitfReader cannot seek, the segments are
+     * handled sequentially, as for parse(NitfReader, ParseStrategy).
+     *
+     * @param nitfReader the reader to read the file header from
+     * @param parseStrategy the parsing strategy that will hold the parse results
+     * @param segmentReaderFactory factory for a reader over the same file, called once per segment
+     * @param segmentStrategyFactory factory for a parsing strategy, called once per segment
+     * @param executor the executor to handle the segments on
+     * @throws NitfFormatException if an error occurs during parsing
+     */
+    public static void parse(final NitfReader nitfReader, final ParseStrategy parseStrategy,
+            final Callable<NitfReader> segmentReaderFactory, final Callable<ParseStrategy> segmentStrategyFactory,
+            final ExecutorService executor) throws NitfFormatException {
+        NitfParser parser = new NitfParser(nitfReader, parseStrategy);
+        parser.readHeaders();
+        if (nitfReader.canSeek()) {
+            parser.handleSegmentsInParallel(segmentReaderFactory, segmentStrategyFactory, executor);
+        } else {
+            parser.handleSegments();
         }
+    }
+
+    /**
+     * Parse only the file header of a NITF file.
+     * <p>
+     * The file header (and any header TREs) is passed to the parsing strategy as for parse(NitfReader,
+     * ParseStrategy), but none of the segments are handled. Instead, the reader is left positioned at the start of
+     * the first segment subheader, and the location of each segment is returned, so that the caller can read (or
+     * skip) the segments itself.
+     *
+     * @param nitfReader the reader to use
+     * @param parseStrategy the parsing strategy
+     * @return the segments described by the file header, in file order
+     * @throws NitfFormatException if an error occurs during parsing
+     */
+    public static List<SegmentLayout> parseFileHeader(final NitfReader nitfReader, final ParseStrategy parseStrategy)
+            throws NitfFormatException {
+        NitfParser parser = new NitfParser(nitfReader, parseStrategy);
+        parser.readHeaders();
+        return parser.getSegmentLayout();
+    }
 
-        NitfHeader nitfHeader = parser.nitfFileHeader;
+    private void readHeaders() throws NitfFormatException {
+        readBaseHeaders();
+        if (isStreamingMode()) {
+            handleStreamingMode();
+        }
+    }
 
+    private void handleSegments() {
         try {
-            for (Long dataLength : parser.li) {
-                parseStrategy.handleImageSegment(nitfReader, dataLength);
+            for (Long dataLength : li) {
+                parsingStrategy.handleImageSegment(reader, dataLength);
             }
-            if (nitfHeader.getFileType() == FileType.NITF_TWO_ZERO) {
-                for (Integer dataLength : parser.ls) {
-                    parseStrategy.handleSymbolSegment(nitfReader, dataLength);
+            if (nitfFileHeader.getFileType() == FileType.NITF_TWO_ZERO) {
+                for (Integer dataLength : ls) {
+                    parsingStrategy.handleSymbolSegment(reader, dataLength);
                 }
-                for (Integer dataLength : parser.ll) {
-                    parseStrategy.handleLabelSegment(nitfReader, dataLength);
+                for (Integer dataLength : ll) {
+                    parsingStrategy.handleLabelSegment(reader, dataLength);
                 }
             } else {
-                for (Integer dataLength : parser.ls) {
-                    parseStrategy.handleGraphicSegment(nitfReader, dataLength);
+                for (Integer dataLength : ls) {
+                    parsingStrategy.handleGraphicSegment(reader, dataLength);
                 }
             }
-            for (Integer dataLength : parser.lt) {
-                parseStrategy.handleTextSegment(nitfReader, dataLength);
+            for (Integer dataLength : lt) {
+                parsingStrategy.handleTextSegment(reader, dataLength);
             }
-            for (Long dataLength : parser.ld) {
-                parseStrategy.handleDataExtensionSegment(nitfReader, dataLength);
+            for (Long dataLength : ld) {
+                parsingStrategy.handleDataExtensionSegment(reader, dataLength);
             }
         } catch (NitfFormatException ex) {
             LOGGER.error(ex.getMessage(), ex);
         }
     }
 
+    private void handleSegmentsInParallel(final Callable<NitfReader> segmentReaderFactory,
+            final Callable<ParseStrategy> segmentStrategyFactory, final ExecutorService executor) throws NitfFormatException {
+        final FileType fileType = reader.getFileType();
+        List<SegmentLayout> layout = getSegmentLayout();
+        List<Future<ParseStrategy>> results = new ArrayList<>();
+        for (final SegmentLayout segment : layout) {
+            results.add(executor.submit(() -> {
+                NitfReader segmentReader = segmentReaderFactory.call();
+                segmentReader.setFileType(fileType);
+                segmentReader.seekToAbsoluteOffset(segment.getSubheaderOffset());
+                ParseStrategy segmentStrategy = segmentStrategyFactory.call();
+                segmentStrategy.setFileHeader(nitfFileHeader);
+                handleSegment(segmentStrategy, segmentReader, segment);
+                return segmentStrategy;
+            }));
+        }
+
+        try {
+            for (int i = 0; i < layout.size(); ++i) {
+                moveSegments(results.get(i).get().getDataSource(), parsingStrategy.getDataSource(), layout.get(i).getSegmentType());
+            }
+        } catch (ExecutionException ex) {
+            throw new NitfFormatException("Failed to handle segment: " + ex.getCause().getMessage(), ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new NitfFormatException("Interrupted while handling segments", reader.getCurrentOffset());
+        } finally {
+            for (Future<ParseStrategy> result : results) {
+                result.cancel(true);
+            }
+        }
+        if (!layout.isEmpty()) {
+            reader.seekToAbsoluteOffset(layout.get(layout.size() - 1).getEndOffset());
+        }
+    }
+
+    private static void handleSegment(final ParseStrategy parseStrategy, final NitfReader nitfReader, final SegmentLayout segment)
+            throws NitfFormatException {
+        switch (segment.getSegmentType()) {
+            case IMAGE:
+                parseStrategy.handleImageSegment(nitfReader, segment.getDataLength());
+                break;
+            case GRAPHIC:
+                parseStrategy.handleGraphicSegment(nitfReader, (int) segment.getDataLength());
+                break;
+            case SYMBOL:
+                parseStrategy.handleSymbolSegment(nitfReader, (int) segment.getDataLength());
+                break;
+            case LABEL:
+                parseStrategy.handleLabelSegment(nitfReader, (int) segment.getDataLength());
+                break;
+            case TEXT:
+                parseStrategy.handleTextSegment(nitfReader, (int) segment.getDataLength());
+                break;
+            case DATA_EXTENSION:
+                parseStrategy.handleDataExtensionSegment(nitfReader, segment.getDataLength());
+                break;
+            default:
+                throw new NitfFormatException("Unsupported segment type: " + segment.getSegmentType(), segment.getSubheaderOffset());
+        }
+    }
+
+    private static void moveSegments(final DataSource source, final DataSource destination, final SegmentType segmentType) {
+        switch (segmentType) {
+            case IMAGE:
+                destination.getImageSegments().addAll(source.getImageSegments());
+                break;
+            case GRAPHIC:
+                destination.getGraphicSegments().addAll(source.getGraphicSegments());
+                break;
+            case SYMBOL:
+                destination.getSymbolSegments().addAll(source.getSymbolSegments());
+                break;
+            case LABEL:
+                destination.getLabelSegments().addAll(source.getLabelSegments());
+                break;
+            case TEXT:
+                destination.getTextSegments().addAll(source.getTextSegments());
+                break;
+            case DATA_EXTENSION:
+                destination.getDataExtensionSegments().addAll(source.getDataExtensionSegments());
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported segment type: " + segmentType);
+        }
+    }
+
+    /**
+     * Compute the location of each segment from the subheader and data length tables.
+     *
+     * This assumes the reader is positioned at the start of the first segment subheader.
+     *
+     * @return the segments in file order
+     */
+    private List<SegmentLayout> getSegmentLayout() {
+        List<SegmentLayout> layout = new ArrayList<>();
+        long offset = reader.getCurrentOffset();
+        offset = addSegmentLayout(layout, SegmentType.IMAGE, lish, li, offset);
+        if (nitfFileHeader.getFileType() == FileType.NITF_TWO_ZERO) {
+            offset = addSegmentLayout(layout, SegmentType.SYMBOL, lssh, ls, offset);
+            offset = addSegmentLayout(layout, SegmentType.LABEL, llsh, ll, offset);
+        } else {
+            offset = addSegmentLayout(layout, SegmentType.GRAPHIC, lssh, ls, offset);
+        }
+        offset = addSegmentLayout(layout, SegmentType.TEXT, ltsh, lt, offset);
+        addSegmentLayout(layout, SegmentType.DATA_EXTENSION, ldsh, ld, offset);
+        return layout;
+    }
+
+    private static long addSegmentLayout(final List<SegmentLayout> layout, final SegmentType segmentType,
+            final List<? extends Number> subheaderLengths, final List<? extends Number> dataLengths, final long firstOffset) {
+        long offset = firstOffset;
+        for (int i = 0; i < dataLengths.size(); ++i) {
+            SegmentLayout segment = new SegmentLayout(segmentType, i, offset, subheaderLengths.get(i).longValue(),
+                    dataLengths.get(i).longValue());
+            layout.add(segment);
+            offset = segment.getEndOffset();
+        }
+        return offset;
+    }
 
     private void readBaseHeaders() throws NitfFormatException {
         readFHDRFVER();
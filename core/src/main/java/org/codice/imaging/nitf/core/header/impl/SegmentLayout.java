@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.header.impl;
+
+import org.codice.imaging.nitf.core.common.SegmentType;
+
+/**
+ * The location of one segment in a NITF file.
+ * <p>
+ * This is derived from the subheader and data length tables in the file header (e.g. LISH and LI for image
+ * segments), so it is known before the segment itself has been read.
+ */
+public final class SegmentLayout {
+
+    private final SegmentType segmentType;
+    private final int index;
+    private final long subheaderOffset;
+    private final long subheaderLength;
+    private final long dataLength;
+
+    /**
+     * Constructor.
+     *
+     * @param type the kind of segment
+     * @param segmentIndex the (zero base) index of the segment among segments of the same kind
+     * @param offset the offset of the segment subheader from the start of the file
+     * @param headerLength the length of the segment subheader
+     * @param length the length of the segment data
+     */
+    SegmentLayout(final SegmentType type, final int segmentIndex, final long offset, final long headerLength,
+            final long length) {
+        segmentType = type;
+        index = segmentIndex;
+        subheaderOffset = offset;
+        subheaderLength = headerLength;
+        dataLength = length;
+    }
+
+    /**
+     * Return the kind of segment.
+     *
+     * @return the segment type
+     */
+    public SegmentType getSegmentType() {
+        return segmentType;
+    }
+
+    /**
+     * Return the index of the segment among segments of the same kind.
+     * <p>
+     * For example, the third image segment has index 2.
+     *
+     * @return the zero base index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Return the offset of the segment subheader.
+     *
+     * @return the number of bytes from the start of the file to the start of the subheader
+     */
+    public long getSubheaderOffset() {
+        return subheaderOffset;
+    }
+
+    /**
+     * Return the length of the segment subheader.
+     *
+     * @return the subheader length in bytes
+     */
+    public long getSubheaderLength() {
+        return subheaderLength;
+    }
+
+    /**
+     * Return the offset of the segment data.
+     *
+     * @return the number of bytes from the start of the file to the start of the segment data
+     */
+    public long getDataOffset() {
+        return subheaderOffset + subheaderLength;
+    }
+
+    /**
+     * Return the length of the segment data.
+     *
+     * @return the data length in bytes
+     */
+    public long getDataLength() {
+        return dataLength;
+    }
+
+    /**
+     * Return the offset of the end of the segment.
+     *
+     * @return the number of bytes from the start of the file to the first byte after the segment data
+     */
+    public long getEndOffset() {
+        return getDataOffset() + dataLength;
+    }
+}
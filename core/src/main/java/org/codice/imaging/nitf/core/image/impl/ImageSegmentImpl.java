@@ -698,12 +698,12 @@ class ImageSegmentImpl extends CommonBasicSegmentImpl implements ImageSegment {
         }
 
         TreParser treParser = new TreParser();
-        int userDefinedImageDataLength = treParser.getTREs(this, TreSource.UserDefinedImageData).length;
+        int userDefinedImageDataLength = treParser.getTREsLength(this, TreSource.UserDefinedImageData);
         if ((userDefinedImageDataLength > 0) || (getUserDefinedHeaderOverflow() != 0)) {
             len += ImageConstants.UDOFL_LENGTH;
             len += userDefinedImageDataLength;
         }
-        int extendedDataLength = treParser.getTREs(this, TreSource.ImageExtendedSubheaderData).length;
+        int extendedDataLength = treParser.getTREsLength(this, TreSource.ImageExtendedSubheaderData);
         if ((extendedDataLength > 0) || (getExtendedHeaderDataOverflow() != 0)) {
             len += ImageConstants.IXSOFL_LENGTH;
             len += extendedDataLength;
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.image.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.imageio.stream.ImageInputStream;
+
+import org.codice.imaging.nitf.core.image.ImageBlockProducer;
+import org.codice.imaging.nitf.core.image.ImageCompression;
+import org.codice.imaging.nitf.core.image.ImageMode;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+
+/**
+ * Converts an uncompressed image segment to square blocks, optionally changing the image mode.
+ * <p>
+ * The constructor records the existing layout of the image segment, and then updates the segment's blocking and
+ * image mode to the new layout. The segment can then be written out with NitfImageStreamWriter, using this instance
+ * as the block producer. The segment's data stream is only read from, so it still has the original layout.
+ * <p>
+ * The source data is read in row bands, each the height of one block row. Only one row band is held in memory at a
+ * time (roughly block size x image width x bands), so memory use does not depend on the image height, or on how
+ * the source data was blocked. If the new image mode is band sequential (S), each row band is read once per band.
+ * <p>
+ * Blocks on the right and bottom edges that extend past the image are zero filled, as required for NC data.
+ */
+public final class ImageSegmentRetiler implements ImageBlockProducer {
+
+    private static final int MAX_BLOCK_SIZE = 8192;
+
+    private static final int ALL_BANDS = -1;
+
+    private final ImageInputStream mSource;
+
+    private final ImageMode mSourceMode;
+
+    private final int mSourceBlocksPerRow;
+
+    private final int mSourceBlocksPerColumn;
+
+    private final int mSourceBlockWidth;
+
+    private final int mSourceBlockHeight;
+
+    private final ImageMode mTargetMode;
+
+    private final int mBlockSize;
+
+    private final int mRows;
+
+    private final int mColumns;
+
+    private final int mBands;
+
+    private final int mBytesPerSample;
+
+    private byte[][] mRowBand = null;
+
+    private int mRowBandIndex = -1;
+
+    private int mRowBandBand = ALL_BANDS;
+
+    /**
+     * Constructor.
+     *
+     * @param imageSegment the image segment to convert, which must be uncompressed (NC) and have a whole number of
+     * bytes per pixel per band. Its blocking and image mode are updated to the new layout.
+     * @param blockSize the width and height of the new blocks, in pixels.
+     * @param imageMode the new image mode, or null to keep the existing image mode.
+     */
+    public ImageSegmentRetiler(final ImageSegment imageSegment, final int blockSize, final ImageMode imageMode) {
+        if (imageSegment.getImageCompression() != ImageCompression.NOTCOMPRESSED) {
+            throw new IllegalArgumentException("Only uncompressed (NC) image segments can be re-tiled");
+        }
+        if ((imageSegment.getNumberOfBitsPerPixelPerBand() % Byte.SIZE) != 0) {
+            throw new IllegalArgumentException("Re-tiling requires a whole number of bytes per pixel per band");
+        }
+        if ((blockSize <= 0) || (blockSize > MAX_BLOCK_SIZE)) {
+            throw new IllegalArgumentException("Invalid blockSize parameter ( " + blockSize + " ), it should be 1 to " + MAX_BLOCK_SIZE);
+        }
+        mSource = imageSegment.getData();
+        mSourceMode = imageSegment.getImageMode();
+        mSourceBlocksPerRow = imageSegment.getNumberOfBlocksPerRow();
+        mSourceBlocksPerColumn = imageSegment.getNumberOfBlocksPerColumn();
+        mSourceBlockWidth = (int) imageSegment.getNumberOfPixelsPerBlockHorizontal();
+        mSourceBlockHeight = (int) imageSegment.getNumberOfPixelsPerBlockVertical();
+        mRows = (int) imageSegment.getNumberOfRows();
+        mColumns = (int) imageSegment.getNumberOfColumns();
+        mBands = imageSegment.getNumBands();
+        mBytesPerSample = imageSegment.getNumberOfBitsPerPixelPerBand() / Byte.SIZE;
+        mBlockSize = blockSize;
+        if (imageMode == null) {
+            mTargetMode = mSourceMode;
+        } else {
+            mTargetMode = imageMode;
+        }
+
+        imageSegment.setImageMode(mTargetMode);
+        imageSegment.setNumberOfBlocksPerRow((mColumns + blockSize - 1) / blockSize);
+        imageSegment.setNumberOfBlocksPerColumn((mRows + blockSize - 1) / blockSize);
+        imageSegment.setNumberOfPixelsPerBlockHorizontalRaw(blockSize);
+        imageSegment.setNumberOfPixelsPerBlockVerticalRaw(blockSize);
+    }
+
+    @Override
+    public ByteBuffer getBlock(final int blockRow, final int blockColumn, final int band) throws IOException {
+        int bandKey = ALL_BANDS;
+        if (mTargetMode == ImageMode.BANDSEQUENTIAL) {
+            bandKey = band;
+        }
+        if ((mRowBandIndex != blockRow) || (mRowBandBand != bandKey)) {
+            readRowBand(blockRow, bandKey);
+        }
+        if (bandKey != ALL_BANDS) {
+            return ByteBuffer.wrap(copyBand(band, blockColumn));
+        }
+        switch (mTargetMode) {
+            case PIXELINTERLEVE:
+                return ByteBuffer.wrap(interleave(blockColumn, true));
+            case ROWINTERLEVE:
+                return ByteBuffer.wrap(interleave(blockColumn, false));
+            default:
+                ByteBuffer block = ByteBuffer.allocate(mBlockSize * mBlockSize * mBands * mBytesPerSample);
+                for (int b = 0; b < mBands; ++b) {
+                    block.put(copyBand(b, blockColumn));
+                }
+                block.flip();
+                return block;
+        }
+    }
+
+    /**
+     * Copy one band of a block from the row band.
+     */
+    private byte[] copyBand(final int band, final int blockColumn) {
+        int rowLength = mBlockSize * mBytesPerSample;
+        byte[] block = new byte[mBlockSize * rowLength];
+        int firstColumn = blockColumn * mBlockSize;
+        int width = Math.min(mBlockSize, mColumns - firstColumn) * mBytesPerSample;
+        for (int row = 0; row < getRowBandHeight(); ++row) {
+            System.arraycopy(mRowBand[band], (row * mColumns + firstColumn) * mBytesPerSample, block, row * rowLength, width);
+        }
+        return block;
+    }
+
+    /**
+     * Build an interleaved block from the row band.
+     *
+     * @param blockColumn the block column
+     * @param pixelInterleaved true for pixel interleaved (P) layout, false for row interleaved (R) layout
+     */
+    private byte[] interleave(final int blockColumn, final boolean pixelInterleaved) {
+        byte[] block = new byte[mBlockSize * mBlockSize * mBands * mBytesPerSample];
+        int firstColumn = blockColumn * mBlockSize;
+        int width = Math.min(mBlockSize, mColumns - firstColumn);
+        int step = mBytesPerSample;
+        if (pixelInterleaved) {
+            step = mBands * mBytesPerSample;
+        }
+        for (int row = 0; row < getRowBandHeight(); ++row) {
+            for (int b = 0; b < mBands; ++b) {
+                int source = (row * mColumns + firstColumn) * mBytesPerSample;
+                int target = (row * mBands + b) * mBlockSize * mBytesPerSample;
+                if (pixelInterleaved) {
+                    target = (row * mBlockSize * mBands + b) * mBytesPerSample;
+                }
+                for (int column = 0; column < width; ++column) {
+                    System.arraycopy(mRowBand[b], source, block, target, mBytesPerSample);
+                    source += mBytesPerSample;
+                    target += step;
+                }
+            }
+        }
+        return block;
+    }
+
+    private int getRowBandHeight() {
+        return Math.min(mBlockSize, mRows - mRowBandIndex * mBlockSize);
+    }
+
+    /**
+     * Read the rows for one block row of the new layout into band-separated buffers.
+     *
+     * @param blockRow the block row of the new layout
+     * @param bandKey the only band to read, or ALL_BANDS
+     */
+    private void readRowBand(final int blockRow, final int bandKey) throws IOException {
+        if (mRowBand == null) {
+            mRowBand = new byte[mBands][mBlockSize * mColumns * mBytesPerSample];
+        }
+        mRowBandIndex = blockRow;
+        mRowBandBand = bandKey;
+        byte[] pixelRun = null;
+        if (mSourceMode == ImageMode.PIXELINTERLEVE) {
+            pixelRun = new byte[mSourceBlockWidth * mBands * mBytesPerSample];
+        }
+        for (int row = 0; row < getRowBandHeight(); ++row) {
+            int imageRow = blockRow * mBlockSize + row;
+            for (int sourceBlockColumn = 0; sourceBlockColumn < mSourceBlocksPerRow; ++sourceBlockColumn) {
+                int firstColumn = sourceBlockColumn * mSourceBlockWidth;
+                int width = Math.min(mSourceBlockWidth, mColumns - firstColumn);
+                if (width <= 0) {
+                    break;
+                }
+                int target = (row * mColumns + firstColumn) * mBytesPerSample;
+                if (pixelRun != null) {
+                    mSource.seek(getSourceOffset(imageRow, sourceBlockColumn, 0));
+                    mSource.readFully(pixelRun, 0, width * mBands * mBytesPerSample);
+                    deinterleave(pixelRun, width, target, bandKey);
+                    continue;
+                }
+                for (int b = 0; b < mBands; ++b) {
+                    if ((bandKey == ALL_BANDS) || (bandKey == b)) {
+                        mSource.seek(getSourceOffset(imageRow, sourceBlockColumn, b));
+                        mSource.readFully(mRowBand[b], target, width * mBytesPerSample);
+                    }
+                }
+            }
+        }
+    }
+
+    private void deinterleave(final byte[] pixelRun, final int width, final int target, final int bandKey) {
+        for (int b = 0; b < mBands; ++b) {
+            if ((bandKey == ALL_BANDS) || (bandKey == b)) {
+                for (int column = 0; column < width; ++column) {
+                    System.arraycopy(pixelRun, (column * mBands + b) * mBytesPerSample, mRowBand[b],
+                            target + column * mBytesPerSample, mBytesPerSample);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the offset in the source data of the first pixel of an image row within a source block.
+     * <p>
+     * For pixel interleaved data, this is the offset of the first band of the first pixel.
+     */
+    private long getSourceOffset(final int imageRow, final int sourceBlockColumn, final int band) {
+        long blockPixels = (long) mSourceBlockWidth * mSourceBlockHeight;
+        long blockIndex = (long) (imageRow / mSourceBlockHeight) * mSourceBlocksPerRow + sourceBlockColumn;
+        long rowInBlock = imageRow % mSourceBlockHeight;
+        long sampleOffset;
+        switch (mSourceMode) {
+            case BANDSEQUENTIAL:
+                long blocksPerBand = (long) mSourceBlocksPerRow * mSourceBlocksPerColumn;
+                sampleOffset = (band * blocksPerBand + blockIndex) * blockPixels + rowInBlock * mSourceBlockWidth;
+                break;
+            case PIXELINTERLEVE:
+                sampleOffset = blockIndex * blockPixels * mBands + rowInBlock * mSourceBlockWidth * mBands;
+                break;
+            case ROWINTERLEVE:
+                sampleOffset = blockIndex * blockPixels * mBands + (rowInBlock * mBands + band) * mSourceBlockWidth;
+                break;
+            default:
+                sampleOffset = blockIndex * blockPixels * mBands + band * blockPixels + rowInBlock * mSourceBlockWidth;
+                break;
+        }
+        return sampleOffset * mBytesPerSample;
+    }
+}
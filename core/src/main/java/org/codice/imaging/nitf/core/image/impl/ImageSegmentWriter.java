@@ -88,14 +88,16 @@ public class ImageSegmentWriter extends AbstractSegmentWriter {
     }
 
     /**
-     * Write out the specified image segment.
+     * Write out the subheader of the specified image segment, without the segment data.
+     * <p>
+     * The output is exactly getHeaderLength() bytes for the current segment content.
      *
      * @param imageSegment the header content to write out
      * @param fileType the type of file (NITF version) to write the image header out for.
      * @throws IOException on write failure.
      * @throws NitfFormatException on TRE parsing failure.
      */
-    public final void writeImageSegment(final ImageSegment imageSegment, final FileType fileType) throws IOException, NitfFormatException {
+    public final void writeImageSubheader(final ImageSegment imageSegment, final FileType fileType) throws IOException, NitfFormatException {
         writeFixedLengthString(IM, IM.length());
         writeFixedLengthString(imageSegment.getIdentifier(), IID1_LENGTH);
         writeDateTime(imageSegment.getImageDateTime());
@@ -187,6 +189,18 @@ public class ImageSegmentWriter extends AbstractSegmentWriter {
             writeBytes(imageExtendedSubheaderData, imageExtendedSubheaderDataLength - IXSOFL_LENGTH);
         }
 
+    }
+
+    /**
+     * Write out the specified image segment.
+     *
+     * @param imageSegment the header content to write out
+     * @param fileType the type of file (NITF version) to write the image header out for.
+     * @throws IOException on write failure.
+     * @throws NitfFormatException on TRE parsing failure.
+     */
+    public final void writeImageSegment(final ImageSegment imageSegment, final FileType fileType) throws IOException, NitfFormatException {
+        writeImageSubheader(imageSegment, fileType);
         writeSegmentData(imageSegment.getData());
     }
 
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.image.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.image.ImageBlockProducer;
+import org.codice.imaging.nitf.core.image.ImageCompression;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+
+/**
+ * Drops blocks that only contain a pad value, so they are not recorded in the file.
+ * <p>
+ * This wraps a producer of uncompressed blocks, and returns null (not recorded) for any block where every sample is
+ * the pad value. Other blocks are passed through unchanged. The constructor switches the image segment to the masked
+ * variant of its compression (NC to NM, C3 to M3), so that NitfImageStreamWriter writes a block mask table marking
+ * the dropped blocks. Readers then skip those blocks without reading or decoding them.
+ * <p>
+ * JPEG 2000 (C8) is not supported, since a JPEG 2000 codestream cannot have blocks that are not recorded.
+ * <p>
+ * For compressed output, this goes between the source of uncompressed blocks and the compressor, which must then
+ * pass null blocks through (e.g. a masked JpegBlockCompressor).
+ */
+public final class PadBlockFilter implements ImageBlockProducer {
+
+    private static final Map<ImageCompression, ImageCompression> MASKED_VARIANTS = new EnumMap<>(ImageCompression.class);
+
+    static {
+        MASKED_VARIANTS.put(ImageCompression.NOTCOMPRESSED, ImageCompression.NOTCOMPRESSEDMASK);
+        MASKED_VARIANTS.put(ImageCompression.NOTCOMPRESSEDMASK, ImageCompression.NOTCOMPRESSEDMASK);
+        MASKED_VARIANTS.put(ImageCompression.JPEG, ImageCompression.JPEGMASK);
+        MASKED_VARIANTS.put(ImageCompression.JPEGMASK, ImageCompression.JPEGMASK);
+    }
+
+    private final ImageBlockProducer mSource;
+
+    private final long mPadValue;
+
+    private final byte[] mPadSample;
+
+    private ByteBuffer mPadBlock = ByteBuffer.allocate(0);
+
+    private int mDroppedBlockCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param imageSegment the image segment being written, which must have NC or C3 compression (or the masked
+     * variant) and a whole number of bytes per pixel per band. Its compression is changed to the masked variant.
+     * @param source the producer of uncompressed blocks.
+     * @param padValue the pad value, as the unsigned bits of a sample.
+     * @throws IllegalArgumentException if the image segment compression or bit depth is not supported.
+     */
+    public PadBlockFilter(final ImageSegment imageSegment, final ImageBlockProducer source, final long padValue) {
+        ImageCompression maskedCompression = MASKED_VARIANTS.get(imageSegment.getImageCompression());
+        if (maskedCompression == null) {
+            throw new IllegalArgumentException("Pad blocks cannot be dropped for "
+                    + imageSegment.getImageCompression().getTextEquivalent() + " compression");
+        }
+        if ((imageSegment.getNumberOfBitsPerPixelPerBand() % Byte.SIZE) != 0) {
+            throw new IllegalArgumentException("Dropping pad blocks requires a whole number of bytes per pixel per band");
+        }
+        imageSegment.setImageCompression(maskedCompression);
+        mSource = source;
+        mPadValue = padValue;
+        mPadSample = new byte[imageSegment.getNumberOfBitsPerPixelPerBand() / Byte.SIZE];
+        for (int i = 0; i < mPadSample.length; ++i) {
+            mPadSample[i] = (byte) (padValue >>> (Byte.SIZE * (mPadSample.length - 1 - i)));
+        }
+    }
+
+    /**
+     * Get the pad value.
+     *
+     * @return the pad value, as the unsigned bits of a sample.
+     */
+    public long getPadValue() {
+        return mPadValue;
+    }
+
+    /**
+     * Get the number of blocks that have been dropped so far.
+     *
+     * @return the number of blocks that only contained the pad value.
+     */
+    public int getDroppedBlockCount() {
+        return mDroppedBlockCount;
+    }
+
+    @Override
+    public ByteBuffer getBlock(final int blockRow, final int blockColumn, final int band) throws IOException, NitfFormatException {
+        ByteBuffer block = mSource.getBlock(blockRow, blockColumn, band);
+        if ((block == null) || isPadBlock(block)) {
+            mDroppedBlockCount++;
+            return null;
+        }
+        return block;
+    }
+
+    private boolean isPadBlock(final ByteBuffer block) {
+        int length = block.remaining();
+        if (mPadBlock.capacity() != length) {
+            mPadBlock = ByteBuffer.allocate(length);
+            for (int i = 0; i < length; ++i) {
+                mPadBlock.put(i, mPadSample[i % mPadSample.length]);
+            }
+        }
+        mPadBlock.clear();
+        return block.mismatch(mPadBlock) == -1;
+    }
+}
@@ -16,6 +16,8 @@ package org.codice.imaging.nitf.core.impl;
 
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Function;
 
 import org.codice.imaging.nitf.core.HeapStrategy;
@@ -26,6 +28,11 @@ import org.slf4j.LoggerFactory;
 /**
  * An implementation of HeapStrategy that either stores the data in memory or on disk based
  * on the supplied configuration.
+ * <p>
+ * By default, data is only stored if it is smaller than the free heap memory. When many threads parse at once,
+ * they all see the same free memory, so they can overcommit the heap between them. To avoid that, construct the
+ * strategy with a MemoryBudget shared by all of the threads. Each segment that is stored in memory then reserves
+ * its length from the budget, and the reservations are held until cleanUp().
  *
  * @param <R> The type to be returned by this heap strategy.
  */
@@ -39,6 +46,12 @@ public class ConfigurableHeapStrategy<R> implements HeapStrategy<R> {
 
     private final HeapStrategyConfiguration heapStrategyConfiguration;
 
+    private final MemoryBudget memoryBudget;
+
+    private final MemoryExhaustionPolicy exhaustionPolicy;
+
+    private final Queue<MemoryBudget.Reservation> reservations = new ConcurrentLinkedQueue<>();
+
     /**
      * @param dataStrategyConfiguration a HeapStrategyConfiguration which tells this
      *                                  HeapStrategy when to use JVM heap or disk. May
@@ -51,12 +64,38 @@ public class ConfigurableHeapStrategy<R> implements HeapStrategy<R> {
     public ConfigurableHeapStrategy(final HeapStrategyConfiguration dataStrategyConfiguration,
             final Function<RandomAccessFile, R> fileTFunction,
             final Function<InputStream, R> inputStreamTFunction) {
+        this(dataStrategyConfiguration, null, null, fileTFunction, inputStreamTFunction);
+    }
+
+    /**
+     * @param dataStrategyConfiguration a HeapStrategyConfiguration which tells this
+     *                                  HeapStrategy when to use JVM heap or disk. May
+     *                                  not be null.
+     * @param budget the memory budget to reserve in-memory segment data from, usually shared with other
+     *               strategies. May be null, to use the free heap memory instead.
+     * @param policy what to do when a segment that would be stored in memory does not fit in the budget.
+     *               SPILL stores it in a temporary file, BLOCK and FAIL throw a NitfFormatException.
+     * @param fileTFunction a function that will convert a RandomAccessFile into the expected type
+     *                      &lt;R&gt;.
+     * @param inputStreamTFunction a function that will convert a java.io.InputStream into the
+     *                             expected type &lt;R&gt;.
+     */
+    public ConfigurableHeapStrategy(final HeapStrategyConfiguration dataStrategyConfiguration,
+            final MemoryBudget budget, final MemoryExhaustionPolicy policy,
+            final Function<RandomAccessFile, R> fileTFunction,
+            final Function<InputStream, R> inputStreamTFunction) {
         if (dataStrategyConfiguration == null) {
             throw new IllegalArgumentException("ConfigurableHeapStrategy(): argument "
                     + "'heapStrategyConfiguration' may not be null.");
         }
+        if ((budget != null) && (policy == null)) {
+            throw new IllegalArgumentException("ConfigurableHeapStrategy(): argument "
+                    + "'policy' may not be null with a memory budget.");
+        }
 
         this.heapStrategyConfiguration = dataStrategyConfiguration;
+        this.memoryBudget = budget;
+        this.exhaustionPolicy = policy;
         this.inMemoryImageDataStrategy = new InMemoryHeapStrategy<>(inputStreamTFunction);
         this.fileBackedImageDataStrategy = new FileBackedHeapStrategy<>(fileTFunction);
     }
@@ -74,25 +113,73 @@ public class ConfigurableHeapStrategy<R> implements HeapStrategy<R> {
 
         if (heapStrategyConfiguration.temporaryFilePredicate().test(length)) {
             return fileBackedImageDataStrategy.handleSegment(reader, length);
-        } else {
+        } else if (memoryBudget == null) {
+            return inMemoryImageDataStrategy.handleSegment(reader, length);
+        }
+
+        MemoryBudget.Reservation reservation = reserve(length);
+        if (reservation == null) {
+            if (exhaustionPolicy == MemoryExhaustionPolicy.SPILL) {
+                LOGGER.debug("Memory budget exhausted, storing {} bytes in a temporary file: {}", length, memoryBudget);
+                return fileBackedImageDataStrategy.handleSegment(reader, length);
+            }
+            throw new NitfFormatException("Memory budget exhausted, could not reserve " + length + " bytes: " + memoryBudget);
+        }
+        reservations.add(reservation);
+        try {
             return inMemoryImageDataStrategy.handleSegment(reader, length);
+        } catch (NitfFormatException | RuntimeException ex) {
+            reservations.remove(reservation);
+            reservation.close();
+            throw ex;
+        }
+    }
+
+    private MemoryBudget.Reservation reserve(final long length) throws NitfFormatException {
+        if (exhaustionPolicy != MemoryExhaustionPolicy.BLOCK) {
+            return memoryBudget.tryReserve(length);
+        }
+        try {
+            return memoryBudget.reserve(length);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new NitfFormatException("Interrupted waiting for the memory budget: " + ex.getMessage());
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This also releases any memory reserved from the memory budget.
+     */
     @Override
     public final void cleanUp() {
         inMemoryImageDataStrategy.cleanUp();
         fileBackedImageDataStrategy.cleanUp();
+        MemoryBudget.Reservation reservation = reservations.poll();
+        while (reservation != null) {
+            reservation.close();
+            reservation = reservations.poll();
+        }
     }
 
     /**
+     * With a memory budget, data that could never fit in the budget is only renderable if it can be stored in a
+     * temporary file instead. Otherwise, the data must be smaller than the free heap memory.
      *
      * @param length the length of the image data segment.
      * @return a boolean indicating whether the image data should be set on the ImageSegment.
      */
     public final boolean isRenderable(final long length) {
-        return heapStrategyConfiguration.maximumFileSizePredicate().test(length)
-                && (getFreeMemory() > length);
+        if (!heapStrategyConfiguration.maximumFileSizePredicate().test(length)) {
+            return false;
+        }
+        if (memoryBudget == null) {
+            return getFreeMemory() > length;
+        }
+        return (length <= memoryBudget.getCapacity())
+                || (exhaustionPolicy == MemoryExhaustionPolicy.SPILL)
+                || heapStrategyConfiguration.temporaryFilePredicate().test(length);
     }
 
     private long getFreeMemory() {
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.nio.file.Path;
+
+/**
+ * One image segment footprint found by a FootprintIndex query.
+ * <p>
+ * The footprint is the quadrilateral given by the image corner coordinates (IGEOLO), in decimal degrees, with the
+ * corners in the same order as ImageCoordinates (first row first column, first row last column, last row last column,
+ * last row first column).
+ */
+public final class FootprintEntry {
+
+    private static final int CORNER_COUNT = 4;
+
+    private final Path file;
+
+    private final int segmentIndex;
+
+    private final long subheaderOffset;
+
+    private final long dataOffset;
+
+    private final double[] cornerLatitudes;
+
+    private final double[] cornerLongitudes;
+
+    /**
+     * Constructor.
+     *
+     * @param nitfFile the file containing the image segment.
+     * @param imageIndex the zero base index of the image segment in the file.
+     * @param subheaderFileOffset the offset of the image subheader in the file.
+     * @param dataFileOffset the offset of the image data in the file.
+     * @param latitudes the latitudes of the four corners.
+     * @param longitudes the longitudes of the four corners.
+     */
+    FootprintEntry(final Path nitfFile, final int imageIndex, final long subheaderFileOffset, final long dataFileOffset,
+            final double[] latitudes, final double[] longitudes) {
+        file = nitfFile;
+        segmentIndex = imageIndex;
+        subheaderOffset = subheaderFileOffset;
+        dataOffset = dataFileOffset;
+        cornerLatitudes = latitudes.clone();
+        cornerLongitudes = longitudes.clone();
+    }
+
+    /**
+     * Return the file containing the image segment.
+     *
+     * @return the path to the NITF file, as given when the index was built.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Return the index of the image segment in the file.
+     *
+     * @return the zero base image segment index.
+     */
+    public int getSegmentIndex() {
+        return segmentIndex;
+    }
+
+    /**
+     * Return the offset of the image subheader.
+     *
+     * @return the offset from the start of the file, in bytes.
+     */
+    public long getSubheaderOffset() {
+        return subheaderOffset;
+    }
+
+    /**
+     * Return the offset of the image data.
+     *
+     * @return the offset from the start of the file, in bytes.
+     */
+    public long getDataOffset() {
+        return dataOffset;
+    }
+
+    /**
+     * Return the latitude of a corner of the footprint.
+     *
+     * @param corner the corner, from 0 to 3.
+     * @return the latitude in decimal degrees, north positive.
+     */
+    public double getCornerLatitude(final int corner) {
+        return cornerLatitudes[corner];
+    }
+
+    /**
+     * Return the longitude of a corner of the footprint.
+     *
+     * @param corner the corner, from 0 to 3.
+     * @return the longitude in decimal degrees, east positive.
+     */
+    public double getCornerLongitude(final int corner) {
+        return cornerLongitudes[corner];
+    }
+
+    /**
+     * Check whether a point is inside the footprint quadrilateral.
+     *
+     * @param latitude the latitude of the point.
+     * @param longitude the longitude of the point.
+     * @return true if the point is inside (or on the edge of) the footprint, otherwise false.
+     */
+    public boolean contains(final double latitude, final double longitude) {
+        boolean inside = false;
+        for (int i = 0; i < CORNER_COUNT; ++i) {
+            int j = (i + CORNER_COUNT - 1) % CORNER_COUNT;
+            double latI = cornerLatitudes[i];
+            double latJ = cornerLatitudes[j];
+            double lonI = cornerLongitudes[i];
+            double lonJ = cornerLongitudes[j];
+            if (isOnEdge(latitude, longitude, latI, lonI, latJ, lonJ)) {
+                return true;
+            }
+            if (((latI > latitude) != (latJ > latitude))
+                    && (longitude < (lonJ - lonI) * (latitude - latI) / (latJ - latI) + lonI)) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private static boolean isOnEdge(final double latitude, final double longitude, final double lat1, final double lon1,
+            final double lat2, final double lon2) {
+        double cross = (lat2 - lat1) * (longitude - lon1) - (lon2 - lon1) * (latitude - lat1);
+        return (cross == 0.0)
+                && (latitude >= Math.min(lat1, lat2)) && (latitude <= Math.max(lat1, lat2))
+                && (longitude >= Math.min(lon1, lon2)) && (longitude <= Math.max(lon1, lon2));
+    }
+
+    @Override
+    public String toString() {
+        return file + " image " + segmentIndex;
+    }
+}
@@ -0,0 +1,483 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.SegmentType;
+import org.codice.imaging.nitf.core.common.impl.FileChannelReader;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.header.impl.SegmentLayout;
+import org.codice.imaging.nitf.core.image.ImageCoordinatePair;
+import org.codice.imaging.nitf.core.image.ImageCoordinates;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk spatial index over the footprints of the image segments in a collection of NITF files.
+ * <p>
+ * build() parses the headers of the files in parallel (using SlottedParseStrategy.HEADERS_ONLY, so no image data is
+ * read), takes the footprint of each image segment from its corner coordinates (IGEOLO), and writes an R-tree packed
+ * with the Sort-Tile-Recursive algorithm to an index file. Each entry records the file, the image segment index and
+ * the subheader and data offsets, so a match can be opened directly.
+ * <p>
+ * open() memory maps the index file, and queries walk the tree in the mapped file, so opening an index does not
+ * depend on its size, and only the nodes and entries that a query visits are read from disk. The index file is
+ * limited to 2 GB.
+ * <p>
+ * Nodes and entries are bounded by the minimum and maximum latitude and longitude of the footprint corners.
+ * Footprints that cross the antimeridian are therefore treated as spanning the whole longitude range in between.
+ * Image segments without corner coordinates (ICORDS blank) are not indexed, and files that cannot be parsed are
+ * logged and skipped.
+ */
+public final class FootprintIndex {
+
+    /**
+     * The version of the index format written by this class.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * The maximum number of children of each tree node.
+     */
+    public static final int NODE_CAPACITY = 16;
+
+    private static final Logger LOG = LoggerFactory.getLogger(FootprintIndex.class);
+
+    // "NFPX"
+    private static final int MAGIC = 0x4E465058;
+
+    private static final int CORNER_COUNT = 4;
+
+    private static final int HEADER_SIZE = 32;
+
+    private static final int BOX_SIZE = 4 * Double.BYTES;
+
+    private static final int NODE_SIZE = BOX_SIZE + 4 * Integer.BYTES;
+
+    private static final int ENTRY_SIZE = BOX_SIZE + 2 * CORNER_COUNT * Double.BYTES + 2 * Integer.BYTES + 2 * Long.BYTES;
+
+    private static final int MIN_LAT = 0;
+
+    private static final int MIN_LON = 1;
+
+    private static final int MAX_LAT = 2;
+
+    private static final int MAX_LON = 3;
+
+    private final ByteBuffer index;
+
+    private final int fileCount;
+
+    private final int entryCount;
+
+    private final int nodeCount;
+
+    private final int rootNode;
+
+    private final long entriesOffset;
+
+    private final long pathsOffset;
+
+    private FootprintIndex(final ByteBuffer mappedIndex) throws IOException {
+        index = mappedIndex;
+        ByteBuffer header = index.duplicate();
+        if ((header.limit() < HEADER_SIZE) || (header.getInt() != MAGIC)) {
+            throw new IOException("Not a footprint index");
+        }
+        int version = header.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported footprint index version " + version);
+        }
+        fileCount = header.getInt();
+        entryCount = header.getInt();
+        nodeCount = header.getInt();
+        rootNode = header.getInt();
+        entriesOffset = HEADER_SIZE + (long) nodeCount * NODE_SIZE;
+        pathsOffset = entriesOffset + (long) entryCount * ENTRY_SIZE;
+        if (pathsOffset + (long) fileCount * Long.BYTES > index.limit()) {
+            throw new IOException("Truncated footprint index");
+        }
+    }
+
+    /**
+     * Open an index file.
+     *
+     * @param indexFile the path to the index file.
+     * @return the index, ready for queries.
+     * @throws IOException if the file could not be read, is not a footprint index, or has a different format version.
+     */
+    public static FootprintIndex open(final Path indexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Footprint index is too large to map: " + indexFile);
+            }
+            return new FootprintIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Build an index over a collection of NITF files, and write it to an index file.
+     *
+     * @param nitfFiles the files to index.
+     * @param executor the executor to parse the files on.
+     * @param indexFile the path of the index file to write.
+     * @return the new index, ready for queries.
+     * @throws IOException if the index file could not be written.
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the files to be parsed.
+     */
+    public static FootprintIndex build(final List<Path> nitfFiles, final ExecutorService executor, final Path indexFile)
+            throws IOException, InterruptedException {
+        List<Future<List<Footprint>>> futures = new ArrayList<>(nitfFiles.size());
+        for (int i = 0; i < nitfFiles.size(); ++i) {
+            final int fileIndex = i;
+            futures.add(executor.submit(() -> extractFootprints(nitfFiles.get(fileIndex), fileIndex)));
+        }
+        List<Footprint> footprints = new ArrayList<>();
+        for (int i = 0; i < futures.size(); ++i) {
+            try {
+                footprints.addAll(futures.get(i).get());
+            } catch (ExecutionException ex) {
+                LOG.warn("Skipping {}, which could not be parsed: {}", nitfFiles.get(i), ex.getCause().getMessage());
+            }
+        }
+        write(nitfFiles, footprints, indexFile);
+        return open(indexFile);
+    }
+
+    private static List<Footprint> extractFootprints(final Path nitfFile, final int fileIndex) throws NitfFormatException {
+        SlottedParseStrategy parseStrategy = SlottedParseStrategy.createHeadersOnlyWithSharedTreParser();
+        List<SegmentLayout> layouts = new ArrayList<>();
+        FileChannelReader reader = new FileChannelReader(nitfFile.toFile());
+        try {
+            NitfParser.parse(reader, parseStrategy, layouts::addAll);
+        } finally {
+            reader.close();
+        }
+        List<ImageSegment> images = parseStrategy.getDataSource().getImageSegments();
+        List<Footprint> footprints = new ArrayList<>();
+        for (SegmentLayout layout : layouts) {
+            if (layout.getSegmentType() != SegmentType.IMAGE) {
+                continue;
+            }
+            ImageCoordinates coordinates = images.get(layout.getIndex()).getImageCoordinates();
+            if (coordinates != null) {
+                footprints.add(new Footprint(fileIndex, layout, coordinates));
+            }
+        }
+        return footprints;
+    }
+
+    private static void write(final List<Path> nitfFiles, final List<Footprint> footprints, final Path indexFile) throws IOException {
+        List<Footprint> entries = strOrder(footprints);
+        List<Node> nodes = new ArrayList<>();
+        List<Node> level = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i += NODE_CAPACITY) {
+            level.add(new Node(entries.subList(i, Math.min(i + NODE_CAPACITY, entries.size())), i, true));
+        }
+        while (level.size() > 1) {
+            level = strOrder(level);
+            int base = nodes.size();
+            nodes.addAll(level);
+            List<Node> parents = new ArrayList<>();
+            for (int i = 0; i < level.size(); i += NODE_CAPACITY) {
+                parents.add(new Node(level.subList(i, Math.min(i + NODE_CAPACITY, level.size())), base + i, false));
+            }
+            level = parents;
+        }
+        nodes.addAll(level);
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(nitfFiles.size());
+            output.writeInt(entries.size());
+            output.writeInt(nodes.size());
+            output.writeInt(nodes.size() - 1);
+            output.writeLong(0);
+            for (Node node : nodes) {
+                writeBox(output, node.box);
+                output.writeInt(node.firstChild);
+                output.writeInt(node.childCount);
+                output.writeBoolean(node.leaf);
+                output.write(new byte[Integer.BYTES * 2 - 1]);
+            }
+            for (Footprint footprint : entries) {
+                writeBox(output, footprint.box);
+                for (int i = 0; i < CORNER_COUNT; ++i) {
+                    output.writeDouble(footprint.latitudes[i]);
+                    output.writeDouble(footprint.longitudes[i]);
+                }
+                output.writeInt(footprint.fileIndex);
+                output.writeInt(footprint.segmentIndex);
+                output.writeLong(footprint.subheaderOffset);
+                output.writeLong(footprint.dataOffset);
+            }
+            List<byte[]> paths = new ArrayList<>(nitfFiles.size());
+            long pathOffset = HEADER_SIZE + (long) nodes.size() * NODE_SIZE + (long) entries.size() * ENTRY_SIZE
+                    + (long) nitfFiles.size() * Long.BYTES;
+            for (Path nitfFile : nitfFiles) {
+                byte[] path = nitfFile.toString().getBytes(StandardCharsets.UTF_8);
+                paths.add(path);
+                output.writeLong(pathOffset);
+                pathOffset += Integer.BYTES + path.length;
+            }
+            for (byte[] path : paths) {
+                output.writeInt(path.length);
+                output.write(path);
+            }
+        }
+    }
+
+    private static void writeBox(final DataOutputStream output, final double[] box) throws IOException {
+        for (double value : box) {
+            output.writeDouble(value);
+        }
+    }
+
+    /**
+     * Order boxes for packing, using Sort-Tile-Recursive.
+     * <p>
+     * The boxes are sorted into vertical slices by longitude, and each slice is sorted by latitude, so that each run
+     * of NODE_CAPACITY boxes in the result is spatially compact.
+     */
+    private static <T extends Boxed> List<T> strOrder(final List<T> boxes) {
+        List<T> sorted = new ArrayList<>(boxes);
+        sorted.sort(Comparator.comparingDouble(b -> centre(b.getBox(), MIN_LON, MAX_LON)));
+        int nodes = (sorted.size() + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceSize = (int) Math.ceil(Math.sqrt(nodes)) * NODE_CAPACITY;
+        for (int start = 0; start < sorted.size(); start += sliceSize) {
+            sorted.subList(start, Math.min(start + sliceSize, sorted.size()))
+                    .sort(Comparator.comparingDouble(b -> centre(b.getBox(), MIN_LAT, MAX_LAT)));
+        }
+        return sorted;
+    }
+
+    private static double centre(final double[] box, final int min, final int max) {
+        return (box[min] + box[max]) / 2;
+    }
+
+    /**
+     * Return the number of files the index was built over.
+     *
+     * @return the file count, including files that could not be parsed.
+     */
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * Return the number of indexed image segment footprints.
+     *
+     * @return the entry count.
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Find the footprints whose bounding boxes intersect a bounding box.
+     *
+     * @param minLatitude the southern edge of the box, in decimal degrees.
+     * @param minLongitude the western edge of the box, in decimal degrees.
+     * @param maxLatitude the northern edge of the box, in decimal degrees.
+     * @param maxLongitude the eastern edge of the box, in decimal degrees.
+     * @return the matching footprints, in index order.
+     */
+    public List<FootprintEntry> query(final double minLatitude, final double minLongitude, final double maxLatitude,
+            final double maxLongitude) {
+        double[] box = new double[] {minLatitude, minLongitude, maxLatitude, maxLongitude};
+        List<FootprintEntry> matches = new ArrayList<>();
+        if (nodeCount == 0) {
+            return matches;
+        }
+        Deque<Integer> pending = new ArrayDeque<>();
+        pending.push(rootNode);
+        while (!pending.isEmpty()) {
+            int position = HEADER_SIZE + pending.pop() * NODE_SIZE;
+            if (!intersects(position, box)) {
+                continue;
+            }
+            int firstChild = index.getInt(position + BOX_SIZE);
+            int childCount = index.getInt(position + BOX_SIZE + Integer.BYTES);
+            boolean leaf = index.get(position + BOX_SIZE + 2 * Integer.BYTES) != 0;
+            for (int child = firstChild + childCount - 1; child >= firstChild; --child) {
+                if (!leaf) {
+                    pending.push(child);
+                } else if (intersects(entryPosition(child), box)) {
+                    matches.add(readEntry(child));
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Find the footprints that contain a point.
+     *
+     * @param latitude the latitude of the point, in decimal degrees.
+     * @param longitude the longitude of the point, in decimal degrees.
+     * @return the footprints whose corner quadrilateral contains the point, in index order.
+     */
+    public List<FootprintEntry> query(final double latitude, final double longitude) {
+        List<FootprintEntry> matches = query(latitude, longitude, latitude, longitude);
+        matches.removeIf(entry -> !entry.contains(latitude, longitude));
+        return matches;
+    }
+
+    private boolean intersects(final int position, final double[] box) {
+        return (index.getDouble(position + MIN_LAT * Double.BYTES) <= box[MAX_LAT])
+                && (index.getDouble(position + MAX_LAT * Double.BYTES) >= box[MIN_LAT])
+                && (index.getDouble(position + MIN_LON * Double.BYTES) <= box[MAX_LON])
+                && (index.getDouble(position + MAX_LON * Double.BYTES) >= box[MIN_LON]);
+    }
+
+    private int entryPosition(final int entry) {
+        return (int) (entriesOffset + (long) entry * ENTRY_SIZE);
+    }
+
+    private FootprintEntry readEntry(final int entry) {
+        int position = entryPosition(entry) + BOX_SIZE;
+        double[] latitudes = new double[CORNER_COUNT];
+        double[] longitudes = new double[CORNER_COUNT];
+        for (int i = 0; i < CORNER_COUNT; ++i) {
+            latitudes[i] = index.getDouble(position);
+            longitudes[i] = index.getDouble(position + Double.BYTES);
+            position += 2 * Double.BYTES;
+        }
+        int fileIndex = index.getInt(position);
+        int segmentIndex = index.getInt(position + Integer.BYTES);
+        long subheaderOffset = index.getLong(position + 2 * Integer.BYTES);
+        long dataOffset = index.getLong(position + 2 * Integer.BYTES + Long.BYTES);
+        return new FootprintEntry(getFile(fileIndex), segmentIndex, subheaderOffset, dataOffset, latitudes, longitudes);
+    }
+
+    /**
+     * Return the path of one of the indexed files.
+     *
+     * @param fileIndex the zero base index of the file, in the order given to build().
+     * @return the path of the file.
+     */
+    public Path getFile(final int fileIndex) {
+        if ((fileIndex < 0) || (fileIndex >= fileCount)) {
+            throw new IndexOutOfBoundsException("File index " + fileIndex + " is out of range, index has " + fileCount + " files");
+        }
+        int position = (int) index.getLong((int) (pathsOffset + (long) fileIndex * Long.BYTES));
+        byte[] path = new byte[index.getInt(position)];
+        ByteBuffer pathBuffer = index.duplicate();
+        pathBuffer.position(position + Integer.BYTES);
+        pathBuffer.get(path);
+        return Paths.get(new String(path, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Something with a bounding box, in MIN_LAT, MIN_LON, MAX_LAT, MAX_LON order.
+     */
+    private interface Boxed {
+        double[] getBox();
+    }
+
+    /**
+     * Footprint of one image segment, while building the index.
+     */
+    private static final class Footprint implements Boxed {
+
+        private final int fileIndex;
+
+        private final int segmentIndex;
+
+        private final long subheaderOffset;
+
+        private final long dataOffset;
+
+        private final double[] latitudes = new double[CORNER_COUNT];
+
+        private final double[] longitudes = new double[CORNER_COUNT];
+
+        private final double[] box;
+
+        Footprint(final int file, final SegmentLayout layout, final ImageCoordinates coordinates) {
+            fileIndex = file;
+            segmentIndex = layout.getIndex();
+            subheaderOffset = layout.getSubheaderOffset();
+            dataOffset = layout.getDataOffset();
+            ImageCoordinatePair[] corners = new ImageCoordinatePair[] {coordinates.getCoordinate00(), coordinates.getCoordinate0MaxCol(),
+                coordinates.getCoordinateMaxRowMaxCol(), coordinates.getCoordinateMaxRow0()};
+            for (int i = 0; i < CORNER_COUNT; ++i) {
+                latitudes[i] = corners[i].getLatitude();
+                longitudes[i] = corners[i].getLongitude();
+            }
+            box = new double[] {Arrays.stream(latitudes).min().getAsDouble(), Arrays.stream(longitudes).min().getAsDouble(),
+                Arrays.stream(latitudes).max().getAsDouble(), Arrays.stream(longitudes).max().getAsDouble()};
+        }
+
+        @Override
+        public double[] getBox() {
+            return box;
+        }
+    }
+
+    /**
+     * Tree node, while building the index.
+     */
+    private static final class Node implements Boxed {
+
+        private final double[] box = new double[] {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+
+        private final int firstChild;
+
+        private final int childCount;
+
+        private final boolean leaf;
+
+        Node(final List<? extends Boxed> children, final int first, final boolean isLeaf) {
+            for (Boxed child : children) {
+                double[] childBox = child.getBox();
+                box[MIN_LAT] = Math.min(box[MIN_LAT], childBox[MIN_LAT]);
+                box[MIN_LON] = Math.min(box[MIN_LON], childBox[MIN_LON]);
+                box[MAX_LAT] = Math.max(box[MAX_LAT], childBox[MAX_LAT]);
+                box[MAX_LON] = Math.max(box[MAX_LON], childBox[MAX_LON]);
+            }
+            firstChild = first;
+            childCount = children.size();
+            leaf = isLeaf;
+        }
+
+        @Override
+        public double[] getBox() {
+            return box;
+        }
+    }
+}
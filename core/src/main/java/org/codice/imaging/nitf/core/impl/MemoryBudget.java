@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared budget of heap memory for concurrent parses and renders.
+ * <p>
+ * Deciding whether to buffer data on the heap from Runtime.freeMemory() is racy when several threads do it at
+ * once, since they all see the same free memory. Instead, clients reserve the memory they are about to use from a
+ * shared budget, and release it (by closing the Reservation) when they no longer hold the data. A reservation is
+ * only granted if it fits in the remaining budget, so concurrent clients cannot overcommit the heap between them.
+ * <p>
+ * If a reservation does not fit, tryReserve() returns null immediately, and reserve() waits for other clients to
+ * release memory, up to the maximum wait of the budget. What the client does then is up to it, see
+ * MemoryExhaustionPolicy.
+ * <p>
+ * The budget keeps counts of granted, rejected and delayed reservations, for monitoring.
+ */
+public final class MemoryBudget {
+
+    private static final int GLOBAL_FRACTION = 2;
+
+    private static volatile MemoryBudget globalBudget;
+
+    private final long capacity;
+
+    private final long maxWaitNanos;
+
+    private long reserved = 0;
+
+    private long peakReserved = 0;
+
+    private final AtomicLong grantedCount = new AtomicLong();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private final AtomicLong waitCount = new AtomicLong();
+
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    /**
+     * Constructor for a budget that does not wait.
+     *
+     * @param capacityBytes the total number of bytes that may be reserved at once.
+     */
+    public MemoryBudget(final long capacityBytes) {
+        this(capacityBytes, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacityBytes the total number of bytes that may be reserved at once.
+     * @param maxWait the longest time reserve() waits for memory to be released.
+     * @param unit the unit of maxWait.
+     */
+    public MemoryBudget(final long capacityBytes, final long maxWait, final TimeUnit unit) {
+        if (capacityBytes < 0) {
+            throw new IllegalArgumentException("Invalid capacityBytes parameter ( " + capacityBytes + " ), it should be >= 0.");
+        }
+        if (maxWait < 0) {
+            throw new IllegalArgumentException("Invalid maxWait parameter ( " + maxWait + " ), it should be >= 0.");
+        }
+        capacity = capacityBytes;
+        maxWaitNanos = unit.toNanos(maxWait);
+    }
+
+    /**
+     * Get the process wide budget.
+     * <p>
+     * Unless replaced with setGlobal(), this is half of the maximum heap size, and does not wait.
+     *
+     * @return the global budget.
+     */
+    public static MemoryBudget getGlobal() {
+        MemoryBudget budget = globalBudget;
+        if (budget == null) {
+            synchronized (MemoryBudget.class) {
+                if (globalBudget == null) {
+                    globalBudget = new MemoryBudget(Runtime.getRuntime().maxMemory() / GLOBAL_FRACTION);
+                }
+                budget = globalBudget;
+            }
+        }
+        return budget;
+    }
+
+    /**
+     * Replace the process wide budget.
+     * <p>
+     * Reservations already granted by the previous budget are released back to it.
+     *
+     * @param budget the new global budget.
+     */
+    public static void setGlobal(final MemoryBudget budget) {
+        if (budget == null) {
+            throw new IllegalArgumentException("setGlobal(): argument 'budget' may not be null.");
+        }
+        synchronized (MemoryBudget.class) {
+            globalBudget = budget;
+        }
+    }
+
+    /**
+     * Reserve memory, if it is available now.
+     *
+     * @param bytes the number of bytes to reserve.
+     * @return the reservation, or null if it does not fit in the remaining budget.
+     */
+    public Reservation tryReserve(final long bytes) {
+        checkBytes(bytes);
+        synchronized (this) {
+            if (grant(bytes)) {
+                return new Reservation(bytes);
+            }
+        }
+        rejectedCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Reserve memory, waiting up to the maximum wait of the budget for it to become available.
+     * <p>
+     * A reservation larger than the capacity of the budget can never be granted, and is rejected without waiting.
+     *
+     * @param bytes the number of bytes to reserve.
+     * @return the reservation, or null if it did not fit in the remaining budget within the maximum wait.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public Reservation reserve(final long bytes) throws InterruptedException {
+        checkBytes(bytes);
+        synchronized (this) {
+            if (grant(bytes)) {
+                return new Reservation(bytes);
+            }
+            if ((bytes <= capacity) && (maxWaitNanos > 0)) {
+                waitCount.incrementAndGet();
+                long start = System.nanoTime();
+                long remaining = maxWaitNanos;
+                try {
+                    while (remaining > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                        if (grant(bytes)) {
+                            return new Reservation(bytes);
+                        }
+                        remaining = maxWaitNanos - (System.nanoTime() - start);
+                    }
+                } finally {
+                    totalWaitNanos.addAndGet(System.nanoTime() - start);
+                }
+            }
+        }
+        rejectedCount.incrementAndGet();
+        return null;
+    }
+
+    private static void checkBytes(final long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Invalid bytes parameter ( " + bytes + " ), it should be >= 0.");
+        }
+    }
+
+    // Caller must hold the lock
+    private boolean grant(final long bytes) {
+        if (bytes > capacity - reserved) {
+            return false;
+        }
+        reserved += bytes;
+        peakReserved = Math.max(peakReserved, reserved);
+        grantedCount.incrementAndGet();
+        return true;
+    }
+
+    private synchronized void release(final long bytes) {
+        reserved -= bytes;
+        notifyAll();
+    }
+
+    /**
+     * Get the total number of bytes that may be reserved at once.
+     *
+     * @return the capacity in bytes.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the number of bytes currently reserved.
+     *
+     * @return the reserved bytes.
+     */
+    public synchronized long getReserved() {
+        return reserved;
+    }
+
+    /**
+     * Get the number of bytes that can currently be reserved.
+     *
+     * @return the available bytes.
+     */
+    public synchronized long getAvailable() {
+        return capacity - reserved;
+    }
+
+    /**
+     * Get the largest number of bytes that have been reserved at once.
+     *
+     * @return the peak reserved bytes.
+     */
+    public synchronized long getPeakReserved() {
+        return peakReserved;
+    }
+
+    /**
+     * Get the number of reservations that have been granted.
+     *
+     * @return the granted reservation count.
+     */
+    public long getGrantedCount() {
+        return grantedCount.get();
+    }
+
+    /**
+     * Get the number of reservations that have been rejected.
+     *
+     * @return the rejected reservation count.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Get the number of reserve() calls that had to wait for memory.
+     *
+     * @return the count of reservations that waited, whether or not they were then granted.
+     */
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    /**
+     * Get the total time reserve() calls have spent waiting for memory.
+     *
+     * @param unit the unit to return the time in.
+     * @return the total wait time.
+     */
+    public long getTotalWaitTime(final TimeUnit unit) {
+        return unit.convert(totalWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MemoryBudget[reserved %d of %d bytes, peak %d, granted %d, rejected %d, waited %d]",
+                getReserved(), capacity, getPeakReserved(), getGrantedCount(), getRejectedCount(), getWaitCount());
+    }
+
+    /**
+     * Memory reserved from a MemoryBudget.
+     * <p>
+     * Closing the reservation releases the memory back to the budget. Closing it again has no effect.
+     */
+    public final class Reservation implements AutoCloseable {
+
+        private final long bytes;
+
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Reservation(final long reservedBytes) {
+            bytes = reservedBytes;
+        }
+
+        /**
+         * Get the number of bytes reserved.
+         *
+         * @return the size of the reservation, in bytes.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Release the memory back to the budget.
+         */
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+/**
+ * What a MemoryBudget client does when a reservation cannot be granted immediately.
+ */
+public enum MemoryExhaustionPolicy {
+
+    /**
+     * Wait for other clients to release memory, up to the maximum wait of the budget, then fail.
+     */
+    BLOCK,
+    /**
+     * Store the data somewhere other than the heap (e.g. in a temporary file) instead. Clients that cannot do that
+     * treat this as FAIL.
+     */
+    SPILL,
+    /**
+     * Fail immediately.
+     */
+    FAIL
+}
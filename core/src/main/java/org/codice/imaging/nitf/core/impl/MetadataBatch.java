@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar batch of metadata values, filled by MetadataExtractor.
+ * <p>
+ * Each column holds its values in a primitive array, chosen by the column type. String columns are dictionary
+ * encoded: each row holds an int code, and the dictionary maps the code back to the string. Null values are
+ * recorded in a separate bit set per column. Each row also records the index of the file it came from, and the
+ * index of the segment within that file.
+ * <p>
+ * The arrays grow as rows are added. clear() removes the rows but keeps the arrays and the string dictionaries,
+ * so a batch can be reused for the next set of files, and the string codes stay stable across uses.
+ * <p>
+ * This class is not thread safe.
+ */
+public final class MetadataBatch {
+
+    private static final int MINIMUM_CAPACITY = 16;
+
+    private final List<Column> columns = new ArrayList<>();
+
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
+
+    private int[] fileIndexes;
+
+    private int[] segmentIndexes;
+
+    private int rowCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param columnNames the names of the columns, in order.
+     * @param columnTypes the types of the columns, in the same order as the names.
+     * @param initialCapacity the number of rows to allocate space for.
+     */
+    MetadataBatch(final List<String> columnNames, final List<MetadataColumnType> columnTypes, final int initialCapacity) {
+        int capacity = Math.max(initialCapacity, MINIMUM_CAPACITY);
+        fileIndexes = new int[capacity];
+        segmentIndexes = new int[capacity];
+        for (int i = 0; i < columnNames.size(); ++i) {
+            columns.add(new Column(columnNames.get(i), columnTypes.get(i), capacity));
+            columnIndexes.put(columnNames.get(i), i);
+        }
+    }
+
+    /**
+     * Return the number of rows in the batch.
+     *
+     * @return the row count.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Return the number of columns in the batch.
+     *
+     * @return the column count.
+     */
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    /**
+     * Return the name of a column.
+     *
+     * @param column the zero base column index.
+     * @return the column name.
+     */
+    public String getColumnName(final int column) {
+        return columns.get(column).name;
+    }
+
+    /**
+     * Return the type of a column.
+     *
+     * @param column the zero base column index.
+     * @return the column type.
+     */
+    public MetadataColumnType getColumnType(final int column) {
+        return columns.get(column).type;
+    }
+
+    /**
+     * Look up a column by name.
+     *
+     * @param name the column name.
+     * @return the zero base column index, or -1 if there is no column with that name.
+     */
+    public int getColumnIndex(final String name) {
+        return columnIndexes.getOrDefault(name, -1);
+    }
+
+    /**
+     * Return the index of the file that a row was extracted from.
+     *
+     * @param row the zero base row index.
+     * @return the file index that was passed to MetadataExtractor.
+     */
+    public int getFileIndex(final int row) {
+        checkRow(row);
+        return fileIndexes[row];
+    }
+
+    /**
+     * Return the index of the segment that a row was extracted from.
+     *
+     * @param row the zero base row index.
+     * @return the zero base index of the segment among segments of the same type, or -1 for rows that represent a
+     * whole file.
+     */
+    public int getSegmentIndex(final int row) {
+        checkRow(row);
+        return segmentIndexes[row];
+    }
+
+    /**
+     * Check whether a value is null (i.e. not present, or could not be converted to the column type).
+     *
+     * @param column the zero base column index.
+     * @param row the zero base row index.
+     * @return true if the value is null, otherwise false.
+     */
+    public boolean isNull(final int column, final int row) {
+        checkRow(row);
+        return columns.get(column).nulls.get(row);
+    }
+
+    /**
+     * Return a value from an INT column.
+     *
+     * @param column the zero base column index.
+     * @param row the zero base row index.
+     * @return the value, which is 0 for null values.
+     */
+    public int getInt(final int column, final int row) {
+        checkRow(row);
+        return getColumn(column, MetadataColumnType.INT).ints[row];
+    }
+
+    /**
+     * Return a value from a LONG column.
+     *
+     * @param column the zero base column index.
+     * @param row the zero base row index.
+     * @return the value, which is 0 for null values.
+     */
+    public long getLong(final int column, final int row) {
+        checkRow(row);
+        return getColumn(column, MetadataColumnType.LONG).longs[row];
+    }
+
+    /**
+     * Return a value from a DOUBLE column.
+     *
+     * @param column the zero base column index.
+     * @param row the zero base row index.
+     * @return the value, which is NaN for null values.
+     */
+    public double getDouble(final int column, final int row) {
+        checkRow(row);
+        return getColumn(column, MetadataColumnType.DOUBLE).doubles[row];
+    }
+
+    /**
+     * Return a value from a STRING column.
+     *
+     * @param column the zero base column index.
+     * @param row the zero base row index.
+     * @return the value, or null for null values.
+     */
+    public String getString(final int column, final int row) {
+        checkRow(row);
+        Column stringColumn = getColumn(column, MetadataColumnType.STRING);
+        if (stringColumn.nulls.get(row)) {
+            return null;
+        }
+        return stringColumn.dictionary.get(stringColumn.ints[row]);
+    }
+
+    /**
+     * Return a copy of the values in an INT column.
+     *
+     * @param column the zero base column index.
+     * @return array of getRowCount() values.
+     */
+    public int[] getInts(final int column) {
+        return Arrays.copyOf(getColumn(column, MetadataColumnType.INT).ints, rowCount);
+    }
+
+    /**
+     * Return a copy of the values in a LONG column.
+     *
+     * @param column the zero base column index.
+     * @return array of getRowCount() values.
+     */
+    public long[] getLongs(final int column) {
+        return Arrays.copyOf(getColumn(column, MetadataColumnType.LONG).longs, rowCount);
+    }
+
+    /**
+     * Return a copy of the values in a DOUBLE column.
+     *
+     * @param column the zero base column index.
+     * @return array of getRowCount() values.
+     */
+    public double[] getDoubles(final int column) {
+        return Arrays.copyOf(getColumn(column, MetadataColumnType.DOUBLE).doubles, rowCount);
+    }
+
+    /**
+     * Return a copy of the dictionary codes in a STRING column.
+     *
+     * @param column the zero base column index.
+     * @return array of getRowCount() codes, which index into getDictionary(). Codes for null values are -1.
+     */
+    public int[] getDictionaryCodes(final int column) {
+        return Arrays.copyOf(getColumn(column, MetadataColumnType.STRING).ints, rowCount);
+    }
+
+    /**
+     * Return the dictionary for a STRING column.
+     *
+     * @param column the zero base column index.
+     * @return unmodifiable view of the distinct strings in the column, in code order.
+     */
+    public List<String> getDictionary(final int column) {
+        return Collections.unmodifiableList(getColumn(column, MetadataColumnType.STRING).dictionary);
+    }
+
+    /**
+     * Return a copy of the null flags for a column.
+     *
+     * @param column the zero base column index.
+     * @return bit set with a bit set for each null value.
+     */
+    public BitSet getNulls(final int column) {
+        return (BitSet) columns.get(column).nulls.clone();
+    }
+
+    /**
+     * Remove all rows.
+     * <p>
+     * The allocated arrays and the string dictionaries are kept.
+     */
+    public void clear() {
+        for (Column column : columns) {
+            column.nulls.clear();
+        }
+        rowCount = 0;
+    }
+
+    /**
+     * Add a row, with all values null.
+     *
+     * @param fileIndex the index of the file the row is extracted from.
+     * @param segmentIndex the index of the segment the row is extracted from, or -1 for a whole file.
+     * @return the index of the new row.
+     */
+    int addRow(final int fileIndex, final int segmentIndex) {
+        if (rowCount == fileIndexes.length) {
+            int capacity = rowCount * 2;
+            fileIndexes = Arrays.copyOf(fileIndexes, capacity);
+            segmentIndexes = Arrays.copyOf(segmentIndexes, capacity);
+            for (Column column : columns) {
+                column.grow(capacity);
+            }
+        }
+        int row = rowCount++;
+        fileIndexes[row] = fileIndex;
+        segmentIndexes[row] = segmentIndex;
+        for (Column column : columns) {
+            column.setNull(row);
+        }
+        return row;
+    }
+
+    void setInt(final int column, final int row, final int value) {
+        Column intColumn = columns.get(column);
+        intColumn.ints[row] = value;
+        intColumn.nulls.clear(row);
+    }
+
+    void setLong(final int column, final int row, final long value) {
+        Column longColumn = columns.get(column);
+        longColumn.longs[row] = value;
+        longColumn.nulls.clear(row);
+    }
+
+    void setDouble(final int column, final int row, final double value) {
+        Column doubleColumn = columns.get(column);
+        doubleColumn.doubles[row] = value;
+        doubleColumn.nulls.clear(row);
+    }
+
+    void setString(final int column, final int row, final String value) {
+        if (value == null) {
+            return;
+        }
+        Column stringColumn = columns.get(column);
+        stringColumn.ints[row] = stringColumn.encode(value);
+        stringColumn.nulls.clear(row);
+    }
+
+    private void checkRow(final int row) {
+        if ((row < 0) || (row >= rowCount)) {
+            throw new IndexOutOfBoundsException("Row " + row + " is out of range, batch has " + rowCount + " rows");
+        }
+    }
+
+    private Column getColumn(final int column, final MetadataColumnType type) {
+        Column result = columns.get(column);
+        if (result.type != type) {
+            throw new IllegalArgumentException("Column " + result.name + " is " + result.type + ", not " + type);
+        }
+        return result;
+    }
+
+    /**
+     * Storage for one column.
+     */
+    private static final class Column {
+
+        private final String name;
+
+        private final MetadataColumnType type;
+
+        private final BitSet nulls = new BitSet();
+
+        private final List<String> dictionary = new ArrayList<>();
+
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        // INT values, or dictionary codes for STRING.
+        private int[] ints;
+
+        private long[] longs;
+
+        private double[] doubles;
+
+        Column(final String columnName, final MetadataColumnType columnType, final int capacity) {
+            name = columnName;
+            type = columnType;
+            allocate(capacity);
+        }
+
+        private void allocate(final int capacity) {
+            switch (type) {
+                case LONG:
+                    longs = new long[capacity];
+                    break;
+                case DOUBLE:
+                    doubles = new double[capacity];
+                    break;
+                default:
+                    ints = new int[capacity];
+                    break;
+            }
+        }
+
+        void grow(final int capacity) {
+            switch (type) {
+                case LONG:
+                    longs = Arrays.copyOf(longs, capacity);
+                    break;
+                case DOUBLE:
+                    doubles = Arrays.copyOf(doubles, capacity);
+                    break;
+                default:
+                    ints = Arrays.copyOf(ints, capacity);
+                    break;
+            }
+        }
+
+        void setNull(final int row) {
+            nulls.set(row);
+            switch (type) {
+                case INT:
+                    ints[row] = 0;
+                    break;
+                case LONG:
+                    longs[row] = 0;
+                    break;
+                case DOUBLE:
+                    doubles[row] = Double.NaN;
+                    break;
+                default:
+                    ints[row] = -1;
+                    break;
+            }
+        }
+
+        int encode(final String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                codes.put(value, code);
+            }
+            return code;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+/**
+ * The storage type of a column in a MetadataBatch.
+ */
+public enum MetadataColumnType {
+
+    /**
+     * 32 bit integer values, stored in an int array.
+     */
+    INT,
+    /**
+     * 64 bit integer values, stored in a long array.
+     */
+    LONG,
+    /**
+     * Floating point values, stored in a double array.
+     */
+    DOUBLE,
+    /**
+     * String values, stored as dictionary codes in an int array.
+     */
+    STRING
+}
@@ -0,0 +1,530 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import javax.xml.transform.Source;
+
+import org.codice.imaging.nitf.core.DataSource;
+import org.codice.imaging.nitf.core.common.CommonSegment;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.NitfReader;
+import org.codice.imaging.nitf.core.common.ParseStrategy;
+import org.codice.imaging.nitf.core.common.SegmentType;
+import org.codice.imaging.nitf.core.dataextension.DataExtensionSegment;
+import org.codice.imaging.nitf.core.graphic.GraphicSegment;
+import org.codice.imaging.nitf.core.header.NitfHeader;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.header.impl.SegmentLayout;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.label.LabelSegment;
+import org.codice.imaging.nitf.core.symbol.SymbolSegment;
+import org.codice.imaging.nitf.core.text.TextSegment;
+import org.codice.imaging.nitf.core.tre.Tre;
+import org.codice.imaging.nitf.core.tre.TreCollection;
+import org.codice.imaging.nitf.core.tre.TreEntry;
+import org.codice.imaging.nitf.core.tre.TreGroup;
+import org.codice.imaging.nitf.core.tre.TreSource;
+import org.codice.imaging.nitf.core.tre.impl.TreCollectionParser;
+
+/**
+ * Extracts selected metadata from many NITF files into columnar batches.
+ * <p>
+ * The columns are declared up front: values from the file header, values from segment subheaders, and TRE field
+ * values addressed by path. Each call to extract() then reads one file, and adds one row per segment of the
+ * selected type (or one row for the whole file) to a MetadataBatch.
+ * <p>
+ * Only what the columns need is read. Subheaders of other segment types and all segment data are skipped without
+ * being read, and TREs are only parsed if their tag is used by a TRE column. No DataSource is built, and the file
+ * header and current subheader are released as soon as their row is filled.
+ * <p>
+ * TRE paths are of the form {@code TAG.FIELD}, with a {@code NAME[index].} step for each loop, for example
+ * {@code RPC00B.LINE_OFF} or {@code ACCHZB.ACHZ[0].UNIAAH}. The index defaults to 0 if it is omitted. TRE values are
+ * looked up in the segment subheader first, and then in the file header. Values that are not present, or that
+ * cannot be converted to the column type, are null.
+ * <p>
+ * Typical use:
+ * <pre>
+ * {@code
+ * MetadataExtractor<ImageSegment> extractor = new MetadataExtractor<>(SegmentType.IMAGE, ImageSegment.class);
+ * extractor.addHeaderString("FTITLE", NitfHeader::getFileTitle);
+ * extractor.addSegmentLong("NROWS", ImageSegment::getNumberOfRows);
+ * extractor.addTreColumn("LINE_OFF", "RPC00B.LINE_OFF", MetadataColumnType.DOUBLE);
+ * MetadataBatch batch = extractor.createBatch(1024);
+ * for (int i = 0; i < files.size(); ++i) {
+ *     extractor.extract(new FileChannelReader(files.get(i)), i, batch);
+ * }
+ * }
+ * </pre>
+ * <p>
+ * This class is not thread safe. Use one extractor per thread.
+ *
+ * @param <S> the type of segment that rows are extracted from.
+ */
+public final class MetadataExtractor<S extends CommonSegment> {
+
+    private static final char PATH_SEPARATOR = '.';
+
+    private final SegmentType rowSegmentType;
+
+    private final Class<S> segmentClass;
+
+    private final List<String> columnNames = new ArrayList<>();
+
+    private final List<MetadataColumnType> columnTypes = new ArrayList<>();
+
+    private final List<ColumnFiller<S>> fillers = new ArrayList<>();
+
+    private final Set<String> treTags = new HashSet<>();
+
+    private final List<Source> additionalTreDescriptors = new ArrayList<>();
+
+    private TreCollectionParser treCollectionParser = null;
+
+    /**
+     * Constructor for one row per file.
+     * <p>
+     * Segment columns cannot be added, and TRE columns only use TREs in the file header.
+     */
+    public MetadataExtractor() {
+        rowSegmentType = null;
+        segmentClass = null;
+    }
+
+    /**
+     * Constructor for one row per segment.
+     *
+     * @param segmentType the type of segment to extract a row for.
+     * @param segmentInterface the interface for segments of that type, e.g. ImageSegment.class for IMAGE.
+     */
+    public MetadataExtractor(final SegmentType segmentType, final Class<S> segmentInterface) {
+        if (segmentType == null) {
+            throw new IllegalArgumentException("MetadataExtractor(): argument 'segmentType' may not be null.");
+        }
+        if (segmentInterface == null) {
+            throw new IllegalArgumentException("MetadataExtractor(): argument 'segmentInterface' may not be null.");
+        }
+        rowSegmentType = segmentType;
+        segmentClass = segmentInterface;
+    }
+
+    /**
+     * Register an additional TRE descriptor, for use in parsing TREs.
+     *
+     * @param source the source of the TRE descriptor, as XML.
+     * @throws NitfFormatException if the descriptor could not be loaded.
+     */
+    public void registerAdditionalTREdescriptor(final Source source) throws NitfFormatException {
+        if (treCollectionParser != null) {
+            treCollectionParser.registerAdditionalTREdescriptor(source);
+        }
+        additionalTreDescriptors.add(source);
+    }
+
+    /**
+     * Add an INT column, with values from the file header.
+     *
+     * @param name the column name.
+     * @param accessor function to get the value from the header.
+     */
+    public void addHeaderInt(final String name, final ToIntFunction<NitfHeader> accessor) {
+        addColumn(name, MetadataColumnType.INT, (batch, column, row, header, segment) -> batch.setInt(column, row, accessor.applyAsInt(header)));
+    }
+
+    /**
+     * Add a LONG column, with values from the file header.
+     *
+     * @param name the column name.
+     * @param accessor function to get the value from the header.
+     */
+    public void addHeaderLong(final String name, final ToLongFunction<NitfHeader> accessor) {
+        addColumn(name, MetadataColumnType.LONG,
+                (batch, column, row, header, segment) -> batch.setLong(column, row, accessor.applyAsLong(header)));
+    }
+
+    /**
+     * Add a DOUBLE column, with values from the file header.
+     *
+     * @param name the column name.
+     * @param accessor function to get the value from the header.
+     */
+    public void addHeaderDouble(final String name, final ToDoubleFunction<NitfHeader> accessor) {
+        addColumn(name, MetadataColumnType.DOUBLE,
+                (batch, column, row, header, segment) -> batch.setDouble(column, row, accessor.applyAsDouble(header)));
+    }
+
+    /**
+     * Add a STRING column, with values from the file header.
+     *
+     * @param name the column name.
+     * @param accessor function to get the value from the header. The value may be null.
+     */
+    public void addHeaderString(final String name, final Function<NitfHeader, String> accessor) {
+        addColumn(name, MetadataColumnType.STRING,
+                (batch, column, row, header, segment) -> batch.setString(column, row, accessor.apply(header)));
+    }
+
+    /**
+     * Add an INT column, with values from the segment subheader.
+     *
+     * @param name the column name.
+     * @param accessor function to get the value from the segment.
+     */
+    public void addSegmentInt(final String name, final ToIntFunction<S> accessor) {
+        checkSegmentRows();
+        addColumn(name, MetadataColumnType.INT,
+                (batch, column, row, header, segment) -> batch.setInt(column, row, accessor.applyAsInt(segment)));
+    }
+
+    /**
+     * Add a LONG column, with values from the segment subheader.
+     *
+     * @param name the column name.
+     * @param accessor function to get the value from the segment.
+     */
+    public void addSegmentLong(final String name, final ToLongFunction<S> accessor) {
+        checkSegmentRows();
+        addColumn(name, MetadataColumnType.LONG,
+                (batch, column, row, header, segment) -> batch.setLong(column, row, accessor.applyAsLong(segment)));
+    }
+
+    /**
+     * Add a DOUBLE column, with values from the segment subheader.
+     *
+     * @param name the column name.
+     * @param accessor function to get the value from the segment.
+     */
+    public void addSegmentDouble(final String name, final ToDoubleFunction<S> accessor) {
+        checkSegmentRows();
+        addColumn(name, MetadataColumnType.DOUBLE,
+                (batch, column, row, header, segment) -> batch.setDouble(column, row, accessor.applyAsDouble(segment)));
+    }
+
+    /**
+     * Add a STRING column, with values from the segment subheader.
+     *
+     * @param name the column name.
+     * @param accessor function to get the value from the segment. The value may be null.
+     */
+    public void addSegmentString(final String name, final Function<S, String> accessor) {
+        checkSegmentRows();
+        addColumn(name, MetadataColumnType.STRING,
+                (batch, column, row, header, segment) -> batch.setString(column, row, accessor.apply(segment)));
+    }
+
+    /**
+     * Add a column with values from a TRE field.
+     *
+     * @param name the column name.
+     * @param trePath the path to the field, e.g. RPC00B.LINE_OFF.
+     * @param type the column type. String values are trimmed.
+     */
+    public void addTreColumn(final String name, final String trePath, final MetadataColumnType type) {
+        if (type == null) {
+            throw new IllegalArgumentException("addTreColumn(): argument 'type' may not be null.");
+        }
+        TrePath path = new TrePath(trePath);
+        addColumn(name, type, (batch, column, row, header, segment) -> {
+            String value = null;
+            if (segment != null) {
+                value = path.lookup(segment.getTREsRawStructure());
+            }
+            if (value == null) {
+                value = path.lookup(header.getTREsRawStructure());
+            }
+            setParsedValue(batch, column, row, type, value);
+        });
+        treTags.add(path.tag);
+    }
+
+    private void addColumn(final String name, final MetadataColumnType type, final ColumnFiller<S> filler) {
+        if ((name == null) || columnNames.contains(name)) {
+            throw new IllegalArgumentException("Column name must be unique and not null: " + name);
+        }
+        columnNames.add(name);
+        columnTypes.add(type);
+        fillers.add(filler);
+    }
+
+    private void checkSegmentRows() {
+        if (rowSegmentType == null) {
+            throw new IllegalStateException("Segment columns need one row per segment");
+        }
+    }
+
+    /**
+     * Create an empty batch with the declared columns.
+     *
+     * @param initialCapacity the number of rows to allocate space for.
+     * @return the new batch.
+     */
+    public MetadataBatch createBatch(final int initialCapacity) {
+        return new MetadataBatch(columnNames, columnTypes, initialCapacity);
+    }
+
+    /**
+     * Extract the rows for one file.
+     * <p>
+     * The reader is left positioned at the end of the last segment that was read, and is not closed.
+     *
+     * @param reader the reader to read the NITF file from, positioned at the start of the file.
+     * @param fileIndex the index to record for the rows, typically the position of the file in the caller's list.
+     * @param batch the batch to add the rows to, which must have been created by this extractor.
+     * @return the number of rows added.
+     * @throws NitfFormatException if there is a problem reading the file. Rows already added for this file are kept.
+     */
+    public int extract(final NitfReader reader, final int fileIndex, final MetadataBatch batch) throws NitfFormatException {
+        if (batch.getColumnCount() != columnNames.size()) {
+            throw new IllegalArgumentException("Batch columns do not match the declared columns");
+        }
+        ExtractionParseStrategy parseStrategy = new ExtractionParseStrategy(getTreCollectionParser());
+        List<SegmentLayout> layouts = NitfParser.parseFileHeader(reader, parseStrategy);
+        NitfHeader header = parseStrategy.getNitfHeader();
+        if (rowSegmentType == null) {
+            fillRow(batch, batch.addRow(fileIndex, -1), header, null);
+            return 1;
+        }
+        int rows = 0;
+        for (SegmentLayout layout : layouts) {
+            if (layout.getSegmentType() != rowSegmentType) {
+                continue;
+            }
+            // Skipping forwards works for non-seekable readers too.
+            long gap = layout.getSubheaderOffset() - reader.getCurrentOffset();
+            if (gap > 0) {
+                reader.skip(gap);
+            } else if (gap < 0) {
+                reader.seekToAbsoluteOffset(layout.getSubheaderOffset());
+            }
+            S segment = segmentClass.cast(NitfEventReader.parseSubheader(reader, parseStrategy, layout));
+            fillRow(batch, batch.addRow(fileIndex, layout.getIndex()), header, segment);
+            rows++;
+        }
+        return rows;
+    }
+
+    private void fillRow(final MetadataBatch batch, final int row, final NitfHeader header, final S segment) {
+        for (int column = 0; column < fillers.size(); ++column) {
+            fillers.get(column).fill(batch, column, row, header, segment);
+        }
+    }
+
+    private TreCollectionParser getTreCollectionParser() throws NitfFormatException {
+        if (treCollectionParser == null) {
+            TreCollectionParser parser = new TreCollectionParser();
+            for (Source source : additionalTreDescriptors) {
+                parser.registerAdditionalTREdescriptor(source);
+            }
+            treCollectionParser = parser;
+        }
+        return treCollectionParser;
+    }
+
+    private static void setParsedValue(final MetadataBatch batch, final int column, final int row, final MetadataColumnType type,
+            final String value) {
+        if (value == null) {
+            return;
+        }
+        String trimmed = value.trim();
+        try {
+            switch (type) {
+                case INT:
+                    batch.setInt(column, row, Integer.parseInt(trimmed));
+                    break;
+                case LONG:
+                    batch.setLong(column, row, Long.parseLong(trimmed));
+                    break;
+                case DOUBLE:
+                    batch.setDouble(column, row, Double.parseDouble(trimmed));
+                    break;
+                default:
+                    batch.setString(column, row, trimmed);
+                    break;
+            }
+        } catch (NumberFormatException ex) {
+            // Leave the value as null
+        }
+    }
+
+    /**
+     * Fills one column for one row.
+     *
+     * @param <S> the type of segment that rows are extracted from.
+     */
+    @FunctionalInterface
+    private interface ColumnFiller<S> {
+        void fill(MetadataBatch batch, int column, int row, NitfHeader header, S segment);
+    }
+
+    /**
+     * Parsed form of a TRE field path.
+     */
+    private static final class TrePath {
+
+        private final String tag;
+
+        private final String[] names;
+
+        private final int[] indexes;
+
+        TrePath(final String path) {
+            if (path == null) {
+                throw new IllegalArgumentException("TRE path may not be null");
+            }
+            String[] parts = path.split("\\" + PATH_SEPARATOR);
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("TRE path must be of the form TAG.FIELD: " + path);
+            }
+            tag = parts[0];
+            names = new String[parts.length - 1];
+            indexes = new int[parts.length - 1];
+            for (int i = 1; i < parts.length; ++i) {
+                String part = parts[i];
+                int bracket = part.indexOf('[');
+                if (bracket < 0) {
+                    names[i - 1] = part;
+                } else if (part.endsWith("]")) {
+                    names[i - 1] = part.substring(0, bracket);
+                    indexes[i - 1] = parseIndex(path, part.substring(bracket + 1, part.length() - 1));
+                } else {
+                    throw new IllegalArgumentException("Unterminated index in TRE path: " + path);
+                }
+            }
+        }
+
+        private static int parseIndex(final String path, final String index) {
+            try {
+                return Integer.parseInt(index);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Bad index in TRE path: " + path, ex);
+            }
+        }
+
+        String lookup(final TreCollection tres) {
+            for (Tre tre : tres.getTREs()) {
+                if (tag.equals(tre.getName().trim())) {
+                    return lookup(tre);
+                }
+            }
+            return null;
+        }
+
+        private String lookup(final TreGroup tre) {
+            TreGroup group = tre;
+            try {
+                for (int i = 0; i < names.length - 1; ++i) {
+                    TreEntry entry = group.getEntry(names[i]);
+                    if ((entry.getGroups() == null) || (indexes[i] >= entry.getGroups().size())) {
+                        return null;
+                    }
+                    group = entry.getGroups().get(indexes[i]);
+                }
+                return group.getFieldValue(names[names.length - 1]);
+            } catch (NitfFormatException ex) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Parse strategy that only parses the TREs used by TRE columns.
+     * <p>
+     * extract() only uses this to parse the file header and individual subheaders, so nothing is stored. If it is
+     * used to parse a whole file, it keeps the segment subheaders and skips all segment data, like a HEADERS_ONLY
+     * SlottedParseStrategy.
+     */
+    private final class ExtractionParseStrategy implements ParseStrategy {
+
+        private final TreCollectionParser tresParser;
+
+        private final SlottedStorage storage = new SlottedStorage();
+
+        ExtractionParseStrategy(final TreCollectionParser parser) {
+            tresParser = parser;
+        }
+
+        @Override
+        public void setFileHeader(final NitfHeader header) {
+            storage.setNitfHeader(header);
+        }
+
+        @Override
+        public NitfHeader getNitfHeader() {
+            return storage.getNitfHeader();
+        }
+
+        @Override
+        public TreCollection parseTREs(final NitfReader reader, final int length, final TreSource source) throws NitfFormatException {
+            return tresParser.parse(reader, length, source, treTags::contains);
+        }
+
+        @Override
+        public void handleTextSegment(final NitfReader reader, final long dataLength) throws NitfFormatException {
+            storage.getTextSegments().add((TextSegment) parseSubheaderSkippingData(reader, SegmentType.TEXT, dataLength));
+        }
+
+        @Override
+        public void handleDataExtensionSegment(final NitfReader reader, final long dataLength) throws NitfFormatException {
+            storage.getDataExtensionSegments().add(
+                    (DataExtensionSegment) parseSubheaderSkippingData(reader, SegmentType.DATA_EXTENSION, dataLength));
+        }
+
+        @Override
+        public void handleGraphicSegment(final NitfReader reader, final long dataLength) throws NitfFormatException {
+            storage.getGraphicSegments().add((GraphicSegment) parseSubheaderSkippingData(reader, SegmentType.GRAPHIC, dataLength));
+        }
+
+        @Override
+        public void handleImageSegment(final NitfReader reader, final long dataLength) throws NitfFormatException {
+            storage.getImageSegments().add((ImageSegment) parseSubheaderSkippingData(reader, SegmentType.IMAGE, dataLength));
+        }
+
+        @Override
+        public void handleLabelSegment(final NitfReader reader, final long dataLength) throws NitfFormatException {
+            storage.getLabelSegments().add((LabelSegment) parseSubheaderSkippingData(reader, SegmentType.LABEL, dataLength));
+        }
+
+        @Override
+        public void handleSymbolSegment(final NitfReader reader, final long dataLength) throws NitfFormatException {
+            storage.getSymbolSegments().add((SymbolSegment) parseSubheaderSkippingData(reader, SegmentType.SYMBOL, dataLength));
+        }
+
+        private CommonSegment parseSubheaderSkippingData(final NitfReader reader, final SegmentType segmentType, final long dataLength)
+                throws NitfFormatException {
+            CommonSegment segment = NitfEventReader.parseSubheader(reader, this, segmentType, dataLength);
+            if (dataLength > 0) {
+                reader.skip(dataLength);
+            }
+            return segment;
+        }
+
+        @Override
+        public void registerAdditionalTREdescriptor(final Source source) throws NitfFormatException {
+            tresParser.registerAdditionalTREdescriptor(source);
+        }
+
+        @Override
+        public DataSource getDataSource() {
+            return storage;
+        }
+    }
+}
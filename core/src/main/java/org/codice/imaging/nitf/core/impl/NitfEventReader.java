@@ -0,0 +1,458 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.xml.transform.Source;
+
+import org.codice.imaging.nitf.core.common.CommonSegment;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.NitfReader;
+import org.codice.imaging.nitf.core.common.ParseStrategy;
+import org.codice.imaging.nitf.core.common.SegmentType;
+import org.codice.imaging.nitf.core.dataextension.impl.DataExtensionSegmentParser;
+import org.codice.imaging.nitf.core.graphic.impl.GraphicSegmentParser;
+import org.codice.imaging.nitf.core.header.NitfHeader;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.header.impl.SegmentLayout;
+import org.codice.imaging.nitf.core.image.impl.ImageSegmentParser;
+import org.codice.imaging.nitf.core.label.impl.LabelSegmentParser;
+import org.codice.imaging.nitf.core.symbol.impl.SymbolSegmentParser;
+import org.codice.imaging.nitf.core.text.impl.TextSegmentParser;
+import org.codice.imaging.nitf.core.tre.Tre;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pull parser for a NITF file.
+ * <p>
+ * Instead of handing each segment to a ParseStrategy, this reports the structure of the file as a sequence of
+ * events, one per call to next(). The file header and each segment subheader are followed by a TRE event for each
+ * TRE they contain, and each segment subheader is followed by a SEGMENT_DATA event, where the caller can stream the
+ * segment data with getDataStream(), or ignore it. Any data that has not been read is skipped on the next call to
+ * next(), so the reader only ever moves forward, and works with non-seekable readers such as NitfInputStreamReader.
+ * <p>
+ * Only the file header and the current segment are held. Segment data is never buffered, so memory use does not
+ * depend on the size of the file, and the caller controls how fast the file is read.
+ * <p>
+ * Typical use:
+ * <pre>
+ * {@code
+ * NitfEventReader events = new NitfEventReader(reader);
+ * while (events.hasNext()) {
+ *     if ((events.next() == NitfEventType.SEGMENT_DATA) && (events.getSegmentType() == SegmentType.IMAGE)) {
+ *         InputStream data = events.getDataStream();
+ *         ...
+ *     }
+ * }
+ * }
+ * </pre>
+ */
+public class NitfEventReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NitfEventReader.class);
+
+    private static final int MAX_CHUNK_SIZE = 64 * 1024;
+
+    private static final int SINGLE_BYTE_BUFFER_SIZE = 8 * 1024;
+
+    private static final int UNSIGNED_BYTE_MASK = 0xFF;
+
+    private final NitfReader reader;
+
+    // Only used for parsing TREs, so no segment data is extracted.
+    private final SlottedParseStrategy treParseStrategy = new SlottedParseStrategy(SlottedParseStrategy.HEADERS_ONLY);
+
+    private final Deque<Tre> pendingTres = new ArrayDeque<>();
+
+    private Iterator<SegmentLayout> segments = null;
+
+    private NitfEventType currentEvent = null;
+
+    private SegmentLayout currentLayout = null;
+
+    private CommonSegment currentSegment = null;
+
+    private Tre currentTre = null;
+
+    private boolean segmentDataPending = false;
+
+    private SegmentDataInputStream dataStream = null;
+
+    /**
+     * Constructor.
+     * <p>
+     * Nothing is read until the first call to next().
+     *
+     * @param nitfReader the reader to read the NITF file from, positioned at the start of the file.
+     */
+    public NitfEventReader(final NitfReader nitfReader) {
+        if (nitfReader == null) {
+            throw new IllegalArgumentException("NitfEventReader(): argument 'nitfReader' may not be null.");
+        }
+        reader = nitfReader;
+    }
+
+    /**
+     * Register an additional TRE descriptor, for use in parsing TREs.
+     *
+     * @param source the source of the TRE descriptor, as XML.
+     * @throws NitfFormatException if the descriptor could not be loaded.
+     */
+    public final void registerAdditionalTREdescriptor(final Source source) throws NitfFormatException {
+        treParseStrategy.registerAdditionalTREdescriptor(source);
+    }
+
+    /**
+     * Check whether there are more events.
+     *
+     * @return true if next() will return another event, otherwise false.
+     */
+    public final boolean hasNext() {
+        return (currentEvent == null) || !pendingTres.isEmpty() || segmentDataPending || segments.hasNext();
+    }
+
+    /**
+     * Move to the next event.
+     * <p>
+     * If the current event is SEGMENT_DATA, any segment data that has not been read is skipped.
+     *
+     * @return the type of the new current event.
+     * @throws NitfFormatException if there is a problem reading the file.
+     */
+    public final NitfEventType next() throws NitfFormatException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("No more events in NITF file");
+        }
+        if (currentEvent == null) {
+            segments = NitfParser.parseFileHeader(reader, treParseStrategy).iterator();
+            pendingTres.addAll(getNitfHeader().getTREsRawStructure().getTREs());
+            return setCurrentEvent(NitfEventType.FILE_HEADER);
+        }
+        skipData();
+        if (dataStream != null) {
+            dataStream.invalidate();
+            dataStream = null;
+        }
+        currentTre = pendingTres.poll();
+        if (currentTre != null) {
+            return setCurrentEvent(NitfEventType.TRE);
+        }
+        if (segmentDataPending) {
+            segmentDataPending = false;
+            dataStream = new SegmentDataInputStream(currentLayout.getDataLength());
+            return setCurrentEvent(NitfEventType.SEGMENT_DATA);
+        }
+        currentSegment = null;
+        currentLayout = segments.next();
+        currentSegment = parseSubheader(reader, treParseStrategy, currentLayout);
+        pendingTres.addAll(currentSegment.getTREsRawStructure().getTREs());
+        segmentDataPending = true;
+        return setCurrentEvent(NitfEventType.SEGMENT_SUBHEADER);
+    }
+
+    private NitfEventType setCurrentEvent(final NitfEventType eventType) {
+        currentEvent = eventType;
+        return currentEvent;
+    }
+
+    /**
+     * Parse a segment subheader, without handling the segment data.
+     *
+     * @param reader the reader to use, positioned at the start of the subheader
+     * @param parseStrategy the parsing strategy, used to parse any TREs
+     * @param layout the location and type of the segment
+     * @return the segment
+     * @throws NitfFormatException if there is a problem parsing the subheader
+     */
+    static CommonSegment parseSubheader(final NitfReader reader, final ParseStrategy parseStrategy, final SegmentLayout layout)
+            throws NitfFormatException {
+        return parseSubheader(reader, parseStrategy, layout.getSegmentType(), layout.getDataLength());
+    }
+
+    /**
+     * Parse a segment subheader, without handling the segment data.
+     *
+     * @param reader the reader to use, positioned at the start of the subheader
+     * @param parseStrategy the parsing strategy, used to parse any TREs
+     * @param segmentType the type of segment
+     * @param dataLength the length of the segment data
+     * @return the segment
+     * @throws NitfFormatException if there is a problem parsing the subheader
+     */
+    static CommonSegment parseSubheader(final NitfReader reader, final ParseStrategy parseStrategy, final SegmentType segmentType,
+            final long dataLength) throws NitfFormatException {
+        switch (segmentType) {
+            case IMAGE:
+                return new ImageSegmentParser().parse(reader, parseStrategy, dataLength);
+            case GRAPHIC:
+                return new GraphicSegmentParser().parse(reader, parseStrategy, dataLength);
+            case SYMBOL:
+                return new SymbolSegmentParser().parse(reader, parseStrategy, dataLength);
+            case LABEL:
+                return new LabelSegmentParser().parse(reader, parseStrategy);
+            case TEXT:
+                return new TextSegmentParser().parse(reader, parseStrategy);
+            case DATA_EXTENSION:
+                return new DataExtensionSegmentParser().parse(reader, dataLength);
+            default:
+                throw new NitfFormatException("Unsupported segment type: " + segmentType, reader.getCurrentOffset());
+        }
+    }
+
+    /**
+     * Return the type of the current event.
+     *
+     * @return the current event type, or null if next() has not yet been called.
+     */
+    public final NitfEventType getEventType() {
+        return currentEvent;
+    }
+
+    /**
+     * Return the NITF file header.
+     * <p>
+     * This is available from the FILE_HEADER event onwards.
+     *
+     * @return the file header, or null if it has not yet been read.
+     */
+    public final NitfHeader getNitfHeader() {
+        return treParseStrategy.getNitfHeader();
+    }
+
+    /**
+     * Return the current segment.
+     * <p>
+     * This is available from the SEGMENT_SUBHEADER event until the next segment subheader is read. The segment
+     * does not hold its data.
+     *
+     * @return the current segment, or null if no segment subheader has been read yet.
+     */
+    public final CommonSegment getSegment() {
+        return currentSegment;
+    }
+
+    /**
+     * Return the type of the current segment.
+     *
+     * @return the current segment type, or null if no segment subheader has been read yet.
+     */
+    public final SegmentType getSegmentType() {
+        if (currentLayout == null) {
+            return null;
+        }
+        return currentLayout.getSegmentType();
+    }
+
+    /**
+     * Return the zero base index of the current segment among segments of the same type.
+     *
+     * @return the current segment index, or -1 if no segment subheader has been read yet.
+     */
+    public final int getSegmentIndex() {
+        if (currentLayout == null) {
+            return -1;
+        }
+        return currentLayout.getIndex();
+    }
+
+    /**
+     * Return the current TRE.
+     *
+     * @return the TRE for a TRE event, otherwise null.
+     */
+    public final Tre getTre() {
+        return currentTre;
+    }
+
+    /**
+     * Return the length of the data for the current segment.
+     *
+     * @return the data length in bytes, or 0 if no segment subheader has been read yet.
+     */
+    public final long getDataLength() {
+        if (currentLayout == null) {
+            return 0;
+        }
+        return currentLayout.getDataLength();
+    }
+
+    /**
+     * Return a stream over the data for the current segment.
+     * <p>
+     * The stream reads directly from the underlying reader, and is only valid until the next call to next(), after
+     * which any read throws an IOException. It does not need to be read to the end, and closing it skips any
+     * remaining data. Repeated calls for the same event return the same stream.
+     *
+     * @return stream over the segment data.
+     * @throws IllegalStateException if the current event is not SEGMENT_DATA.
+     */
+    public final InputStream getDataStream() {
+        if (currentEvent != NitfEventType.SEGMENT_DATA) {
+            throw new IllegalStateException("Segment data is only available for the SEGMENT_DATA event, not " + currentEvent);
+        }
+        return dataStream;
+    }
+
+    /**
+     * Skip any unread data for the current segment.
+     * <p>
+     * This is done automatically by next(), but can be used to release the data early, or to move the reader to
+     * the end of the file after the last SEGMENT_DATA event.
+     *
+     * @throws NitfFormatException if there is a problem skipping the data.
+     */
+    public final void skipData() throws NitfFormatException {
+        if (dataStream != null) {
+            dataStream.skipRemaining();
+        }
+    }
+
+    /**
+     * Bounded view of the data for one segment.
+     * <p>
+     * Each stream tracks how much of its own segment is left, and is invalidated when the event reader moves on,
+     * so a stream kept from an earlier event can not read data belonging to a later segment.
+     */
+    private final class SegmentDataInputStream extends InputStream {
+
+        private long remaining;
+
+        private boolean invalidated = false;
+
+        private byte[] buffer = null;
+
+        private int bufferPosition = 0;
+
+        private int bufferLength = 0;
+
+        SegmentDataInputStream(final long dataLength) {
+            remaining = dataLength;
+        }
+
+        void invalidate() {
+            invalidated = true;
+            buffer = null;
+            bufferPosition = 0;
+            bufferLength = 0;
+        }
+
+        void skipRemaining() throws NitfFormatException {
+            bufferPosition = bufferLength;
+            if (remaining > 0) {
+                reader.skip(remaining);
+                remaining = 0;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkValid();
+            if (bufferPosition == bufferLength) {
+                fillBuffer();
+                if (bufferLength == 0) {
+                    return -1;
+                }
+            }
+            return buffer[bufferPosition++] & UNSIGNED_BYTE_MASK;
+        }
+
+        @Override
+        public int read(final byte[] destination, final int offset, final int length) throws IOException {
+            checkValid();
+            if (length == 0) {
+                return 0;
+            }
+            if (bufferPosition < bufferLength) {
+                int count = Math.min(length, bufferLength - bufferPosition);
+                System.arraycopy(buffer, bufferPosition, destination, offset, count);
+                bufferPosition += count;
+                return count;
+            }
+            byte[] bytes = readChunk(length);
+            if (bytes.length == 0) {
+                return -1;
+            }
+            System.arraycopy(bytes, 0, destination, offset, bytes.length);
+            return bytes.length;
+        }
+
+        @Override
+        public long skip(final long count) throws IOException {
+            checkValid();
+            long toSkip = Math.max(count, 0);
+            int fromBuffer = (int) Math.min(toSkip, bufferLength - bufferPosition);
+            bufferPosition += fromBuffer;
+            long fromReader = Math.min(toSkip - fromBuffer, remaining);
+            try {
+                reader.skip(fromReader);
+            } catch (NitfFormatException ex) {
+                throw new IOException(ex);
+            }
+            remaining -= fromReader;
+            return fromBuffer + fromReader;
+        }
+
+        @Override
+        public int available() throws IOException {
+            checkValid();
+            return (int) Math.min(remaining + bufferLength - bufferPosition, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (invalidated) {
+                return;
+            }
+            try {
+                skipRemaining();
+            } catch (NitfFormatException ex) {
+                throw new IOException(ex);
+            }
+        }
+
+        private void checkValid() throws IOException {
+            if (invalidated) {
+                throw new IOException("Segment data stream is no longer valid, the event reader has moved past the segment");
+            }
+        }
+
+        private void fillBuffer() throws IOException {
+            buffer = readChunk(SINGLE_BYTE_BUFFER_SIZE);
+            bufferPosition = 0;
+            bufferLength = buffer.length;
+        }
+
+        private byte[] readChunk(final int maximumLength) throws IOException {
+            int count = (int) Math.min(Math.min(maximumLength, MAX_CHUNK_SIZE), remaining);
+            if (count == 0) {
+                return new byte[0];
+            }
+            try {
+                byte[] bytes = reader.readBytesRaw(count);
+                remaining -= count;
+                return bytes;
+            } catch (NitfFormatException ex) {
+                LOG.warn("Failed to read segment data", ex);
+                throw new IOException(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+/**
+ * The kinds of event reported by NitfEventReader.
+ */
+public enum NitfEventType {
+
+    /**
+     * The NITF file header has been parsed.
+     */
+    FILE_HEADER,
+    /**
+     * A Tagged Record Extension from the file header or the current segment subheader.
+     */
+    TRE,
+    /**
+     * A segment subheader has been parsed.
+     */
+    SEGMENT_SUBHEADER,
+    /**
+     * The data for the current segment is available to stream or skip.
+     */
+    SEGMENT_DATA
+}
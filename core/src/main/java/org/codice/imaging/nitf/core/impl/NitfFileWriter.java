@@ -19,6 +19,7 @@ import java.io.RandomAccessFile;
 
 import org.codice.imaging.nitf.core.DataSource;
 import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.impl.ChannelDataOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,8 +50,10 @@ public class NitfFileWriter extends SharedNitfWriter {
         try {
             try (RandomAccessFile outputFile = new RandomAccessFile(mOutputFileName, WRITE_MODE)) {
                 outputFile.setLength(0);
-                mOutput = outputFile;
+                ChannelDataOutput output = new ChannelDataOutput(outputFile.getChannel());
+                mOutput = output;
                 writeData();
+                output.flush();
             }
         } catch (IOException | NitfFormatException ex) {
             LOGGER.error("Could not write {}", ex.getMessage());
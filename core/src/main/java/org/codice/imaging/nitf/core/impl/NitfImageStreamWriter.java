@@ -0,0 +1,424 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.codice.imaging.nitf.core.DataSource;
+import org.codice.imaging.nitf.core.common.FileType;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.impl.ChannelDataOutput;
+import org.codice.imaging.nitf.core.dataextension.DataExtensionSegment;
+import org.codice.imaging.nitf.core.dataextension.impl.DataExtensionSegmentWriter;
+import org.codice.imaging.nitf.core.graphic.GraphicSegment;
+import org.codice.imaging.nitf.core.graphic.impl.GraphicSegmentWriter;
+import org.codice.imaging.nitf.core.header.impl.NitfHeaderWriter;
+import org.codice.imaging.nitf.core.image.ImageBlockProducer;
+import org.codice.imaging.nitf.core.image.ImageCompression;
+import org.codice.imaging.nitf.core.image.ImageMode;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.image.impl.ImageSegmentWriter;
+import org.codice.imaging.nitf.core.label.LabelSegment;
+import org.codice.imaging.nitf.core.label.impl.LabelSegmentWriter;
+import org.codice.imaging.nitf.core.symbol.SymbolSegment;
+import org.codice.imaging.nitf.core.symbol.impl.SymbolSegmentWriter;
+import org.codice.imaging.nitf.core.text.TextSegment;
+import org.codice.imaging.nitf.core.text.impl.TextSegmentWriter;
+import org.codice.imaging.nitf.core.tre.impl.TreParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writer for a NITF file where the data for one image segment is streamed, block by block.
+ * <p>
+ * The streamed image segment is one of the image segments in the data source, with its subheader fields (including
+ * compression and blocking) set up as usual, but without data. All other segments are written from the data source
+ * as usual. Blocks can be pushed with writeBlock(), or pulled from an ImageBlockProducer with writeBlocks(). They go
+ * straight to the target, so the image never has to be held in memory.
+ * <p>
+ * For uncompressed (NC) images, the data length is known from the image dimensions, so the file is written strictly
+ * sequentially and the target can be any channel (e.g. a socket or pipe). Otherwise the target must be a
+ * SeekableByteChannel (e.g. a FileChannel): the file header is written with a placeholder image data length (LI)
+ * and file length (FL), and, for masked compression variants, the block mask table is written with placeholder
+ * offsets. These are back-filled by finish(). Since the header fields are fixed width, the back-filled header is
+ * exactly the same length as the placeholder.
+ * <p>
+ * To leave out blocks that only contain a pad value, wrap the block producer in a PadBlockFilter, which switches
+ * the image segment to the masked compression variant.
+ * <p>
+ * Usage is start(), then one call to writeBlock() per block (or a call to writeBlocks()), then finish().
+ */
+public class NitfImageStreamWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NitfImageStreamWriter.class);
+
+    static final Set<ImageCompression> MASKED_COMPRESSION = EnumSet.of(ImageCompression.USERDEFINEDMASK,
+            ImageCompression.BILEVELMASK, ImageCompression.ARIDPCMMASK, ImageCompression.JPEGMASK,
+            ImageCompression.VECTORQUANTIZATIONMASK, ImageCompression.LOSSLESSJPEGMASK, ImageCompression.NOTCOMPRESSEDMASK,
+            ImageCompression.JPEG2000MASK, ImageCompression.H264MASK, ImageCompression.H265MASK,
+            ImageCompression.JPEG2000MASKTIME, ImageCompression.ZLIBMASK);
+
+    private static final int BLOCK_NOT_RECORDED = 0xFFFFFFFF;
+
+    // Block mask offsets are unsigned 32 bit values, with the largest value meaning "not recorded".
+    private static final long MAX_BLOCK_OFFSET = 0xFFFFFFFEL;
+
+    private static final int IMDATOFF_LENGTH = 4;
+
+    private static final int BMRLNTH_LENGTH = 2;
+
+    private static final int TMRLNTH_LENGTH = 2;
+
+    private static final int TPXCDLNTH_LENGTH = 2;
+
+    private static final int BMR_LENGTH = 4;
+
+    private final DataSource mDataSource;
+
+    private final ImageSegment mImageSegment;
+
+    private final int mImageSegmentIndex;
+
+    private final WritableByteChannel mChannel;
+
+    private final ChannelDataOutput mOutput;
+
+    private final TreParser mTreParser = new TreParser();
+
+    private boolean mMasked;
+
+    private boolean mUncompressed;
+
+    private int mPadPixelCodeLength = 0;
+
+    private long mPadPixelCode = 0;
+
+    private final int mBlockCount;
+
+    private final long mBytesPerBlock;
+
+    private final int[] mBlockOffsets;
+
+    private long mStartPosition = 0;
+
+    private long mImageDataPosition = 0;
+
+    private int mBlocksWritten = 0;
+
+    private long mBlockDataLength = 0;
+
+    private boolean mStarted = false;
+
+    /**
+     * Constructor.
+     *
+     * @param dataSource the segments to write out.
+     * @param imageSegment the image segment (which must be one of the image segments in dataSource) to stream data
+     * for.
+     * @param target the channel to write the file to. This must be seekable, unless the image segment is
+     * uncompressed (NC).
+     * @throws NitfFormatException if the image segment cannot be streamed to the target.
+     */
+    public NitfImageStreamWriter(final DataSource dataSource, final ImageSegment imageSegment, final WritableByteChannel target)
+            throws NitfFormatException {
+        mDataSource = dataSource;
+        mImageSegment = imageSegment;
+        mImageSegmentIndex = indexOf(dataSource.getImageSegments(), imageSegment);
+        mChannel = target;
+        mOutput = new ChannelDataOutput(target);
+        checkCompression();
+        int bandBlocks = 1;
+        long bytesPerBlock = imageSegment.getNumberOfBytesPerBlock();
+        if (imageSegment.getImageMode() == ImageMode.BANDSEQUENTIAL) {
+            bandBlocks = imageSegment.getNumBands();
+            bytesPerBlock /= imageSegment.getNumBands();
+        }
+        mBlockCount = imageSegment.getNumberOfBlocksPerRow() * imageSegment.getNumberOfBlocksPerColumn() * bandBlocks;
+        mBytesPerBlock = bytesPerBlock;
+        mBlockOffsets = new int[mBlockCount];
+    }
+
+    /**
+     * Check the compression of the streamed image segment against the target.
+     * <p>
+     * This is done again by start(), since the compression may have been changed in the meantime (e.g. by
+     * PadBlockFilter).
+     */
+    private void checkCompression() throws NitfFormatException {
+        mMasked = MASKED_COMPRESSION.contains(mImageSegment.getImageCompression());
+        mUncompressed = mImageSegment.getImageCompression() == ImageCompression.NOTCOMPRESSED;
+        if (!mUncompressed && !(mChannel instanceof SeekableByteChannel)) {
+            LOGGER.warn("Non-seekable target for {} compression", mImageSegment.getImageCompression());
+            throw new NitfFormatException("Streaming " + mImageSegment.getImageCompression().getTextEquivalent()
+                    + " image data requires a seekable target");
+        }
+    }
+
+    private static int indexOf(final List<ImageSegment> imageSegments, final ImageSegment imageSegment) {
+        for (int i = 0; i < imageSegments.size(); ++i) {
+            if (imageSegments.get(i) == imageSegment) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("NitfImageStreamWriter(): 'imageSegment' must be one of the data source image segments.");
+    }
+
+    /**
+     * Get the number of blocks to be written.
+     *
+     * @return the number of blocks, including those that are not recorded (masked).
+     */
+    public final int getBlockCount() {
+        return mBlockCount;
+    }
+
+    /**
+     * Set the pad pixel value to record in the block mask table.
+     * <p>
+     * This is only valid for masked compression variants, and must be called before start(). Readers treat samples
+     * with this value as "no data" (e.g. render them transparent) in the recorded blocks, as well as in blocks that
+     * are not recorded.
+     *
+     * @param padValue the pad value, as the unsigned bits of a sample (e.g. from PadBlockFilter.getPadValue()).
+     */
+    public final void setPadPixelValue(final long padValue) {
+        if (mStarted) {
+            throw new IllegalStateException("The pad pixel value must be set before start() is called");
+        }
+        mPadPixelCodeLength = mImageSegment.getNumberOfBitsPerPixelPerBand();
+        mPadPixelCode = padValue;
+    }
+
+    /**
+     * Write out the file header, any image segments before the streamed image segment, and the streamed image
+     * segment subheader (and placeholder block mask table, if required).
+     *
+     * @throws NitfFormatException on TRE serialisation problems.
+     * @throws IOException on write failure.
+     */
+    public final void start() throws NitfFormatException, IOException {
+        if (mStarted) {
+            throw new IllegalStateException("start() has already been called");
+        }
+        checkCompression();
+        if (!mMasked && (mPadPixelCodeLength > 0)) {
+            LOGGER.warn("Pad pixel value set for {} compression", mImageSegment.getImageCompression());
+            throw new NitfFormatException("A pad pixel value can only be recorded for masked compression");
+        }
+        mStarted = true;
+        if (mChannel instanceof SeekableByteChannel) {
+            mStartPosition = ((SeekableByteChannel) mChannel).position();
+        }
+        mImageSegment.setDataLength(getExpectedDataLength());
+        new NitfHeaderWriter(mOutput, mTreParser).writeFileHeader(mDataSource);
+        ImageSegmentWriter imageSegmentWriter = new ImageSegmentWriter(mOutput, mTreParser);
+        for (int i = 0; i < mImageSegmentIndex; ++i) {
+            imageSegmentWriter.writeImageSegment(mDataSource.getImageSegments().get(i), getFileType());
+        }
+        imageSegmentWriter.writeImageSubheader(mImageSegment, getFileType());
+        if (mChannel instanceof SeekableByteChannel) {
+            mOutput.flush();
+            mImageDataPosition = ((SeekableByteChannel) mChannel).position();
+        }
+        if (mMasked) {
+            writeMaskTable(mOutput);
+        }
+    }
+
+    /**
+     * Write out the next block.
+     *
+     * @param block the block data, between the buffer position and limit, or null if the block is not recorded
+     * (which is only valid for masked compression variants). For uncompressed images, the data must be exactly one
+     * block long.
+     * @throws NitfFormatException if the block is not valid for the image segment, or for masked compression, if
+     * the block would start too far into the image data to be recorded in the block mask table.
+     * @throws IOException on write failure.
+     */
+    public final void writeBlock(final ByteBuffer block) throws NitfFormatException, IOException {
+        if (!mStarted) {
+            throw new IllegalStateException("start() must be called before writing blocks");
+        }
+        if (mBlocksWritten >= mBlockCount) {
+            LOGGER.warn("Too many blocks written");
+            throw new NitfFormatException("Image segment only has " + mBlockCount + " blocks");
+        }
+        if (block == null) {
+            if (!mMasked) {
+                LOGGER.warn("Block {} not recorded", mBlocksWritten);
+                throw new NitfFormatException("Only masked compression can have blocks that are not recorded");
+            }
+            mBlockOffsets[mBlocksWritten++] = BLOCK_NOT_RECORDED;
+            return;
+        }
+        if (isFixedBlockSize() && (block.remaining() != mBytesPerBlock)) {
+            LOGGER.warn("Block {} has wrong length {}", mBlocksWritten, block.remaining());
+            throw new NitfFormatException("Uncompressed block " + mBlocksWritten + " is " + block.remaining()
+                    + " bytes, expected " + mBytesPerBlock);
+        }
+        if (mMasked && (mBlockDataLength > MAX_BLOCK_OFFSET)) {
+            LOGGER.warn("Block {} offset {} is too large for the block mask", mBlocksWritten, mBlockDataLength);
+            throw new NitfFormatException("Block " + mBlocksWritten + " starts at offset " + mBlockDataLength
+                    + ", which is too large for the block mask table");
+        }
+        mBlockOffsets[mBlocksWritten++] = (int) mBlockDataLength;
+        mBlockDataLength += block.remaining();
+        mOutput.write(block);
+    }
+
+    /**
+     * Write out all of the blocks, in file order.
+     *
+     * @param producer the source of the block data.
+     * @throws NitfFormatException if a block is not valid for the image segment.
+     * @throws IOException on write failure, or if the producer fails.
+     */
+    public final void writeBlocks(final ImageBlockProducer producer) throws NitfFormatException, IOException {
+        int bandBlocks = mBlockCount / (mImageSegment.getNumberOfBlocksPerRow() * mImageSegment.getNumberOfBlocksPerColumn());
+        for (int band = 0; band < bandBlocks; ++band) {
+            for (int row = 0; row < mImageSegment.getNumberOfBlocksPerColumn(); ++row) {
+                for (int column = 0; column < mImageSegment.getNumberOfBlocksPerRow(); ++column) {
+                    writeBlock(producer.getBlock(row, column, band));
+                }
+            }
+        }
+    }
+
+    /**
+     * Write out the remaining segments, and back-fill the lengths and block mask table if required.
+     * <p>
+     * The target channel is left open.
+     *
+     * @throws NitfFormatException if not all blocks were written, or on TRE serialisation problems.
+     * @throws IOException on write failure.
+     */
+    public final void finish() throws NitfFormatException, IOException {
+        if (mBlocksWritten != mBlockCount) {
+            LOGGER.warn("Only {} of {} blocks written", mBlocksWritten, mBlockCount);
+            throw new NitfFormatException("Only " + mBlocksWritten + " of " + mBlockCount + " blocks were written");
+        }
+        long expectedDataLength = mImageSegment.getDataLength();
+        mImageSegment.setDataLength(getMaskTableLength() + mBlockDataLength);
+        writeRemainingSegments();
+        mOutput.flush();
+        if (mUncompressed) {
+            return;
+        }
+        SeekableByteChannel channel = (SeekableByteChannel) mChannel;
+        long endPosition = channel.position();
+        if (expectedDataLength != mImageSegment.getDataLength()) {
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            new NitfHeaderWriter(new DataOutputStream(header), mTreParser).writeFileHeader(mDataSource);
+            writeAt(channel, header.toByteArray(), mStartPosition);
+        }
+        if (mMasked) {
+            ByteArrayOutputStream maskTable = new ByteArrayOutputStream();
+            writeMaskTable(new DataOutputStream(maskTable));
+            writeAt(channel, maskTable.toByteArray(), mImageDataPosition);
+        }
+        channel.position(endPosition);
+    }
+
+    private boolean isFixedBlockSize() {
+        return mUncompressed || (mImageSegment.getImageCompression() == ImageCompression.NOTCOMPRESSEDMASK);
+    }
+
+    private long getExpectedDataLength() {
+        if (mUncompressed) {
+            return mBytesPerBlock * mBlockCount;
+        }
+        return 0;
+    }
+
+    private long getMaskTableLength() {
+        if (!mMasked) {
+            return 0;
+        }
+        return IMDATOFF_LENGTH + BMRLNTH_LENGTH + TMRLNTH_LENGTH + TPXCDLNTH_LENGTH + getPadPixelCodeByteCount()
+                + (long) BMR_LENGTH * mBlockCount;
+    }
+
+    private int getPadPixelCodeByteCount() {
+        return (mPadPixelCodeLength + Byte.SIZE - 1) / Byte.SIZE;
+    }
+
+    /**
+     * Write the block mask table, as read by the renderer's ImageMask.
+     * <p>
+     * This has the same layout whether or not the block offsets are known yet.
+     */
+    private void writeMaskTable(final DataOutput output) throws IOException {
+        output.writeInt((int) getMaskTableLength());
+        output.writeShort(BMR_LENGTH);
+        output.writeShort(0);
+        output.writeShort(mPadPixelCodeLength);
+        for (int i = getPadPixelCodeByteCount() - 1; i >= 0; --i) {
+            output.writeByte((int) (mPadPixelCode >>> (Byte.SIZE * i)));
+        }
+        for (int offset : mBlockOffsets) {
+            output.writeInt(offset);
+        }
+    }
+
+    private static void writeAt(final SeekableByteChannel channel, final byte[] bytes, final long position) throws IOException {
+        channel.position(position);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private FileType getFileType() {
+        return mDataSource.getNitfHeader().getFileType();
+    }
+
+    private void writeRemainingSegments() throws NitfFormatException, IOException {
+        ImageSegmentWriter imageSegmentWriter = new ImageSegmentWriter(mOutput, mTreParser);
+        for (int i = mImageSegmentIndex + 1; i < mDataSource.getImageSegments().size(); ++i) {
+            imageSegmentWriter.writeImageSegment(mDataSource.getImageSegments().get(i), getFileType());
+        }
+        GraphicSegmentWriter graphicSegmentWriter = new GraphicSegmentWriter(mOutput, mTreParser);
+        for (GraphicSegment graphicSegment : mDataSource.getGraphicSegments()) {
+            graphicSegmentWriter.writeGraphicSegment(graphicSegment);
+        }
+        SymbolSegmentWriter symbolSegmentWriter = new SymbolSegmentWriter(mOutput, mTreParser);
+        for (SymbolSegment symbolSegment : mDataSource.getSymbolSegments()) {
+            symbolSegmentWriter.writeSymbolSegment(symbolSegment);
+        }
+        LabelSegmentWriter labelSegmentWriter = new LabelSegmentWriter(mOutput, mTreParser);
+        for (LabelSegment labelSegment : mDataSource.getLabelSegments()) {
+            labelSegmentWriter.writeLabel(labelSegment);
+        }
+        TextSegmentWriter textSegmentWriter = new TextSegmentWriter(mOutput, mTreParser);
+        for (TextSegment textSegment : mDataSource.getTextSegments()) {
+            textSegmentWriter.writeTextSegment(textSegment, getFileType());
+        }
+        DataExtensionSegmentWriter dataExtensionSegmentWriter = new DataExtensionSegmentWriter(mOutput, mTreParser);
+        for (DataExtensionSegment des : mDataSource.getDataExtensionSegments()) {
+            if (!des.isStreamingMode()) {
+                dataExtensionSegmentWriter.writeDESHeader(des);
+            }
+        }
+    }
+}
@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+
+import org.codice.imaging.nitf.core.DataSource;
+import org.codice.imaging.nitf.core.common.FileType;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.SegmentType;
+import org.codice.imaging.nitf.core.common.impl.AbstractSegmentWriter;
+import org.codice.imaging.nitf.core.common.impl.ChannelDataOutput;
+import org.codice.imaging.nitf.core.common.impl.FileChannelReader;
+import org.codice.imaging.nitf.core.dataextension.DataExtensionSegment;
+import org.codice.imaging.nitf.core.dataextension.impl.DataExtensionSegmentWriter;
+import org.codice.imaging.nitf.core.graphic.GraphicSegment;
+import org.codice.imaging.nitf.core.graphic.impl.GraphicSegmentWriter;
+import org.codice.imaging.nitf.core.header.impl.NitfHeaderWriter;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.header.impl.SegmentLayout;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.image.impl.ImageSegmentWriter;
+import org.codice.imaging.nitf.core.label.LabelSegment;
+import org.codice.imaging.nitf.core.label.impl.LabelSegmentWriter;
+import org.codice.imaging.nitf.core.symbol.SymbolSegment;
+import org.codice.imaging.nitf.core.symbol.impl.SymbolSegmentWriter;
+import org.codice.imaging.nitf.core.text.TextSegment;
+import org.codice.imaging.nitf.core.text.impl.TextSegmentWriter;
+import org.codice.imaging.nitf.core.tre.impl.TreParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Metadata editor that updates an existing NITF file in place.
+ * <p>
+ * The file is parsed with image and DES data left in the file, and the resulting DataSource can be modified (e.g.
+ * header fields, security metadata or TREs). On save(), the file header and every segment subheader are serialised
+ * again. If that does not change the length of the header or of any segment, only the bytes that actually differ
+ * from the file are written, so a small edit to a large file costs a handful of bytes of I/O.
+ * <p>
+ * If the layout does change (e.g. a TRE was added, or text data changed length), the file is rewritten: the new
+ * header and subheaders are written to a temporary file alongside the original, the segment data is transferred
+ * across with channel transfers rather than being copied through the heap, and the temporary file then replaces
+ * the original. The DataSource is re-read after a rewrite, so getDataSource() should be called again.
+ * <p>
+ * Text and label data is compared like the subheaders. Image, graphic, symbol and DES data is treated as unchanged
+ * unless its length changes; use a NitfWriter to replace that data.
+ */
+public class NitfInPlaceEditor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NitfInPlaceEditor.class);
+
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    /**
+     * The result of saving changes.
+     */
+    public enum SaveResult {
+        /**
+         * Nothing in the file needed to change.
+         */
+        UNCHANGED,
+        /**
+         * The changed bytes were written over the original file.
+         */
+        PATCHED,
+        /**
+         * The layout changed, so the file was rewritten.
+         */
+        REWRITTEN
+    }
+
+    private final Path mPath;
+
+    private FileChannel mChannel = null;
+
+    private DataSource mDataSource = null;
+
+    private List<SegmentLayout> mLayout = null;
+
+    private long mHeaderLength = 0;
+
+    private long mPatchedByteCount = 0;
+
+    /**
+     * Open a NITF file for editing.
+     *
+     * @param file the file to edit, which must be readable and writable.
+     * @throws NitfFormatException if the file cannot be opened or parsed.
+     */
+    public NitfInPlaceEditor(final File file) throws NitfFormatException {
+        mPath = file.toPath().toAbsolutePath();
+        open();
+    }
+
+    /**
+     * Get the parsed content of the file, to be modified before save().
+     *
+     * @return the data source for the file being edited.
+     */
+    public final DataSource getDataSource() {
+        return mDataSource;
+    }
+
+    /**
+     * Get the number of bytes written by the last save() that patched the file in place.
+     *
+     * @return the number of bytes written, or zero if the last save did not patch the file.
+     */
+    public final long getPatchedByteCount() {
+        return mPatchedByteCount;
+    }
+
+    /**
+     * Write any changes in the data source back to the file.
+     *
+     * @return how the changes were written.
+     * @throws NitfFormatException on TRE serialisation problems, or if the rewritten file cannot be parsed.
+     * @throws IOException on read or write problems.
+     */
+    public final SaveResult save() throws NitfFormatException, IOException {
+        mPatchedByteCount = 0;
+        TreParser treParser = new TreParser();
+        byte[] header = serialiseFileHeader(treParser);
+        List<SegmentContent> segments = serialiseSegments(treParser);
+        if (!matchesLayout(header, segments)) {
+            rewrite(header, segments);
+            return SaveResult.REWRITTEN;
+        }
+        mPatchedByteCount += patch(header, 0);
+        for (int i = 0; i < segments.size(); ++i) {
+            SegmentContent segment = segments.get(i);
+            mPatchedByteCount += patch(segment.getSubheader(), mLayout.get(i).getSubheaderOffset());
+            if (segment.getInlineData() != null) {
+                mPatchedByteCount += patch(segment.getInlineData(), mLayout.get(i).getDataOffset());
+            }
+        }
+        if (mPatchedByteCount == 0) {
+            return SaveResult.UNCHANGED;
+        }
+        mChannel.force(false);
+        return SaveResult.PATCHED;
+    }
+
+    /**
+     * Close the file.
+     * <p>
+     * Segment data in the data source is read from the file, so it cannot be used after this call.
+     *
+     * @throws IOException if an error occurs during close.
+     */
+    public final void close() throws IOException {
+        mChannel.close();
+    }
+
+    private void open() throws NitfFormatException {
+        try {
+            mChannel = FileChannel.open(mPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            FileChannelReader reader = new FileChannelReader(mChannel, FileChannelReader.DEFAULT_WINDOW_SIZE);
+            SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.ALL_SEGMENT_DATA);
+            parseStrategy.setImageHeapStrategy(reader.getDataHeapStrategy());
+            parseStrategy.setDataExtensionSegmentHeapStrategy(reader.getDataHeapStrategy());
+            NitfParser.parse(reader, parseStrategy, layout -> mLayout = layout);
+            mDataSource = parseStrategy.getDataSource();
+            if (mLayout.isEmpty()) {
+                mHeaderLength = mChannel.size();
+            } else {
+                mHeaderLength = mLayout.get(0).getSubheaderOffset();
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Could not open {} for editing", mPath, ex);
+            throw new NitfFormatException("Could not open " + mPath + " for editing: " + ex.getMessage());
+        }
+    }
+
+    private byte[] serialiseFileHeader(final TreParser treParser) throws NitfFormatException, IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new NitfHeaderWriter(new DataOutputStream(bytes), treParser).writeFileHeader(mDataSource);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Serialise the subheaders (and any text or label data) in the same order as the parser's segment layout.
+     */
+    private List<SegmentContent> serialiseSegments(final TreParser treParser) throws NitfFormatException, IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        FileType fileType = mDataSource.getNitfHeader().getFileType();
+        List<SegmentContent> segments = new ArrayList<>();
+
+        ImageSegmentWriter imageWriter = new ImageSegmentWriter(output, treParser);
+        for (ImageSegment image : mDataSource.getImageSegments()) {
+            imageWriter.writeImageSubheader(image, fileType);
+            segments.add(new SegmentContent(SegmentType.IMAGE, takeBytes(bytes), image.getDataLength(), null,
+                    writer -> writer.copySegmentData(image.getData())));
+        }
+        GraphicSegmentWriter graphicWriter = new GraphicSegmentWriter(output, treParser);
+        for (GraphicSegment graphic : mDataSource.getGraphicSegments()) {
+            graphicWriter.writeGraphicSubheader(graphic);
+            segments.add(new SegmentContent(SegmentType.GRAPHIC, takeBytes(bytes), graphic.getDataLength(), null,
+                    writer -> writer.copySegmentData(graphic.getData())));
+        }
+        SymbolSegmentWriter symbolWriter = new SymbolSegmentWriter(output, treParser);
+        for (SymbolSegment symbol : mDataSource.getSymbolSegments()) {
+            symbolWriter.writeSymbolSubheader(symbol);
+            segments.add(new SegmentContent(SegmentType.SYMBOL, takeBytes(bytes), symbol.getDataLength(), null,
+                    writer -> writer.copySegmentData(symbol.getData())));
+        }
+        LabelSegmentWriter labelWriter = new LabelSegmentWriter(output, treParser);
+        for (LabelSegment label : mDataSource.getLabelSegments()) {
+            labelWriter.writeLabelSubheader(label);
+            byte[] subheader = takeBytes(bytes);
+            segments.add(new SegmentContent(SegmentType.LABEL, subheader, toBytes(label.getData())));
+        }
+        TextSegmentWriter textWriter = new TextSegmentWriter(output, treParser);
+        for (TextSegment text : mDataSource.getTextSegments()) {
+            textWriter.writeTextSubheader(text, fileType);
+            byte[] subheader = takeBytes(bytes);
+            segments.add(new SegmentContent(SegmentType.TEXT, subheader, toBytes(text.getData())));
+        }
+        DataExtensionSegmentWriter desWriter = new DataExtensionSegmentWriter(output, treParser);
+        for (DataExtensionSegment des : mDataSource.getDataExtensionSegments()) {
+            if (!des.isStreamingMode()) {
+                desWriter.writeDESSubheader(des);
+                segments.add(new SegmentContent(SegmentType.DATA_EXTENSION, takeBytes(bytes), des.getDataLength(), null,
+                        writer -> copyDataExtensionData(des, writer)));
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Copy DES data, which is only available through a consumer, reporting any problems.
+     */
+    private static void copyDataExtensionData(final DataExtensionSegment des, final AbstractSegmentWriter writer)
+            throws IOException {
+        try {
+            des.consume(data -> {
+                try {
+                    writer.copySegmentData(data);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static byte[] takeBytes(final ByteArrayOutputStream bytes) {
+        byte[] result = bytes.toByteArray();
+        bytes.reset();
+        return result;
+    }
+
+    /**
+     * Convert string data to bytes the same way the segment writers do (DataOutput.writeBytes()).
+     */
+    private static byte[] toBytes(final String data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (data != null) {
+            new DataOutputStream(bytes).writeBytes(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private boolean matchesLayout(final byte[] header, final List<SegmentContent> segments) {
+        if ((header.length != mHeaderLength) || (segments.size() != mLayout.size())) {
+            return false;
+        }
+        for (int i = 0; i < segments.size(); ++i) {
+            SegmentLayout original = mLayout.get(i);
+            SegmentContent updated = segments.get(i);
+            if ((original.getSegmentType() != updated.getSegmentType())
+                    || (original.getSubheaderLength() != updated.getSubheader().length)
+                    || (original.getDataLength() != updated.getDataLength())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write each run of bytes that differs from the file content at the specified offset.
+     *
+     * @return the number of bytes written.
+     */
+    private long patch(final byte[] updated, final long offset) throws IOException {
+        ByteBuffer original = ByteBuffer.allocate(updated.length);
+        while (original.hasRemaining()) {
+            if (mChannel.read(original, offset + original.position()) == -1) {
+                throw new IOException("End of file reading from NITF file at offset " + (offset + original.position()));
+            }
+        }
+        long written = 0;
+        int i = 0;
+        while (i < updated.length) {
+            if (updated[i] == original.get(i)) {
+                ++i;
+                continue;
+            }
+            int runStart = i;
+            while ((i < updated.length) && (updated[i] != original.get(i))) {
+                ++i;
+            }
+            ByteBuffer run = ByteBuffer.wrap(updated, runStart, i - runStart);
+            while (run.hasRemaining()) {
+                written += mChannel.write(run, offset + run.position());
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Write the new header and subheaders, with the segment data transferred from the original file, to a
+     * temporary file that then replaces the original, keeping its permissions. If any data cannot be copied, or the
+     * temporary file does not have the expected length, the original is left unchanged.
+     */
+    private void rewrite(final byte[] header, final List<SegmentContent> segments) throws NitfFormatException, IOException {
+        Path tempFile = ReplacementFile.createTemporary(mPath, TEMP_FILE_SUFFIX);
+        try {
+            try (FileChannel target = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                ChannelDataOutput output = new ChannelDataOutput(target);
+                AbstractSegmentWriter dataWriter = new ImageSegmentWriter(output, new TreParser());
+                output.write(header);
+                for (SegmentContent segment : segments) {
+                    output.write(segment.getSubheader());
+                    if (segment.getInlineData() != null) {
+                        output.write(segment.getInlineData());
+                    } else {
+                        segment.getDataCopier().copyData(dataWriter);
+                    }
+                }
+                output.flush();
+                long expectedLength = header.length;
+                for (SegmentContent segment : segments) {
+                    expectedLength += segment.getSubheader().length + segment.getDataLength();
+                }
+                if (target.size() != expectedLength) {
+                    throw new IOException("Rewritten " + mPath + " is " + target.size() + " bytes, expected "
+                            + expectedLength + ", leaving the original unchanged");
+                }
+                target.force(false);
+            }
+            mChannel.close();
+            ReplacementFile.moveIntoPlace(tempFile, mPath);
+        } finally {
+            Files.deleteIfExists(tempFile);
+            if (!mChannel.isOpen()) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * Copies segment data that is not held in memory to the target.
+     */
+    @FunctionalInterface
+    private interface DataCopier {
+        void copyData(AbstractSegmentWriter writer) throws IOException;
+    }
+
+    /**
+     * Serialised form of a segment.
+     */
+    private static final class SegmentContent {
+        private final SegmentType segmentType;
+        private final byte[] subheader;
+        private final long dataLength;
+        private final byte[] inlineData;
+        private final DataCopier dataCopier;
+
+        SegmentContent(final SegmentType type, final byte[] subheaderBytes, final long length, final byte[] data,
+                final DataCopier copier) {
+            segmentType = type;
+            subheader = subheaderBytes;
+            dataLength = length;
+            inlineData = data;
+            dataCopier = copier;
+        }
+
+        SegmentContent(final SegmentType type, final byte[] subheaderBytes, final byte[] data) {
+            this(type, subheaderBytes, data.length, data, null);
+        }
+
+        SegmentType getSegmentType() {
+            return segmentType;
+        }
+
+        byte[] getSubheader() {
+            return subheader;
+        }
+
+        long getDataLength() {
+            return dataLength;
+        }
+
+        byte[] getInlineData() {
+            return inlineData;
+        }
+
+        DataCopier getDataCopier() {
+            return dataCopier;
+        }
+    }
+}
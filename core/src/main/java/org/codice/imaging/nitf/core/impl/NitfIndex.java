@@ -0,0 +1,709 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import javax.imageio.stream.ImageInputStream;
+
+import org.codice.imaging.nitf.core.DataSource;
+import org.codice.imaging.nitf.core.common.CommonSegment;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.NitfReader;
+import org.codice.imaging.nitf.core.common.SegmentType;
+import org.codice.imaging.nitf.core.common.impl.ByteBufferReader;
+import org.codice.imaging.nitf.core.common.impl.FileChannelReader;
+import org.codice.imaging.nitf.core.common.impl.FileRegionImageInputStream;
+import org.codice.imaging.nitf.core.dataextension.DataExtensionSegment;
+import org.codice.imaging.nitf.core.graphic.GraphicSegment;
+import org.codice.imaging.nitf.core.header.NitfHeader;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.header.impl.SegmentLayout;
+import org.codice.imaging.nitf.core.image.ImageMode;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.label.LabelSegment;
+import org.codice.imaging.nitf.core.symbol.SymbolSegment;
+import org.codice.imaging.nitf.core.text.TextSegment;
+import org.codice.imaging.nitf.core.tre.TreSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent index of the structure of a NITF file.
+ * <p>
+ * The index holds the raw bytes of the file header and of every segment subheader (and so the raw bytes of every
+ * TRE they contain), the offset and length of every segment, and, for masked image segments, the block offset table.
+ * It can be written to a small sidecar file next to the NITF file, and read back much faster than the NITF file can
+ * be parsed, since it is a single sequential read that does not touch the segment data.
+ * <p>
+ * The index records the size and modification time of the NITF file, and isCurrent() checks that these still
+ * match. The sidecar format is versioned, and sidecars with a different version are rejected.
+ * <p>
+ * createDataSource() returns a DataSource that decodes the file header and subheaders from the index on first use,
+ * one segment type at a time. Segment data is not copied: image, graphic and symbol data, and data extension segment
+ * data, are streams over the NITF file, and text and label data are read when the segments are first decoded.
+ * <p>
+ * Files in streaming mode (where the real file header is at the end of the file) cannot be indexed.
+ */
+public final class NitfIndex {
+
+    /**
+     * The version of the sidecar format written by this class.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * The suffix added to the NITF file name to give the default sidecar file name.
+     */
+    public static final String SIDECAR_SUFFIX = ".nidx";
+
+    private static final Logger LOG = LoggerFactory.getLogger(NitfIndex.class);
+
+    // "NIDX"
+    private static final int MAGIC = 0x4E494458;
+
+    private static final int DATA_WINDOW_SIZE = 8 * 1024;
+
+    private static final int MASK_TABLE_HEADER_LENGTH = 10;
+
+    private static final int BLOCK_NOT_RECORDED = 0xFFFFFFFF;
+
+    private static final int NO_BLOCK_TABLE = -1;
+
+    private final long fileSize;
+
+    private final long lastModified;
+
+    private final byte[] headerBytes;
+
+    private final List<IndexedSegment> segments;
+
+    private NitfIndex(final long size, final long modified, final byte[] header, final List<IndexedSegment> indexedSegments) {
+        fileSize = size;
+        lastModified = modified;
+        headerBytes = header;
+        segments = indexedSegments;
+    }
+
+    /**
+     * Return the default sidecar path for a NITF file.
+     *
+     * @param nitfFile the NITF file.
+     * @return the path of the sidecar, which is the NITF file path with SIDECAR_SUFFIX appended.
+     */
+    public static Path getSidecarPath(final File nitfFile) {
+        return Paths.get(nitfFile.getPath() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * Return the index for a NITF file, using the default sidecar if it is current.
+     * <p>
+     * If the sidecar is missing, stale, or cannot be read, the index is built from the NITF file and the sidecar is
+     * rewritten. Failure to write the sidecar (e.g. in a read-only directory) is logged, and the index is still
+     * returned.
+     *
+     * @param nitfFile the NITF file.
+     * @return the index.
+     * @throws NitfFormatException if the index had to be built, and the NITF file could not be parsed.
+     */
+    public static NitfIndex open(final File nitfFile) throws NitfFormatException {
+        Path sidecar = getSidecarPath(nitfFile);
+        if (Files.isRegularFile(sidecar)) {
+            try {
+                NitfIndex index = read(sidecar);
+                if (index.isCurrent(nitfFile)) {
+                    return index;
+                }
+                LOG.debug("Sidecar {} is stale, rebuilding", sidecar);
+            } catch (IOException ex) {
+                LOG.debug("Sidecar {} could not be read, rebuilding", sidecar, ex);
+            }
+        }
+        NitfIndex index = build(nitfFile);
+        try {
+            index.write(sidecar);
+        } catch (IOException ex) {
+            LOG.warn("Unable to write sidecar index {}: {}", sidecar, ex.getMessage());
+        }
+        return index;
+    }
+
+    /**
+     * Build the index for a NITF file, by reading the file.
+     *
+     * @param nitfFile the NITF file.
+     * @return the index.
+     * @throws NitfFormatException if the file could not be read or parsed.
+     */
+    public static NitfIndex build(final File nitfFile) throws NitfFormatException {
+        long size;
+        long modified;
+        try {
+            size = Files.size(nitfFile.toPath());
+            modified = Files.getLastModifiedTime(nitfFile.toPath()).toMillis();
+        } catch (IOException ex) {
+            throw new NitfFormatException("Unable to read file attributes of " + nitfFile + ": " + ex.getMessage());
+        }
+        FileChannelReader reader = new FileChannelReader(nitfFile);
+        try {
+            SlottedParseStrategy headerStrategy = SlottedParseStrategy.createHeadersOnlyWithSharedTreParser();
+            List<SegmentLayout> layouts = NitfParser.parseFileHeader(reader, headerStrategy);
+            long headerLength = reader.getCurrentOffset();
+            reader.seekToAbsoluteOffset(0);
+            byte[] header = reader.readBytesRaw((int) headerLength);
+            List<IndexedSegment> indexedSegments = new ArrayList<>();
+            for (SegmentLayout layout : layouts) {
+                reader.seekToAbsoluteOffset(layout.getSubheaderOffset());
+                IndexedSegment segment = new IndexedSegment(layout.getSegmentType(), layout.getIndex(), layout.getSubheaderOffset(),
+                        reader.readBytesRaw((int) layout.getSubheaderLength()), layout.getDataLength());
+                indexedSegments.add(segment);
+            }
+            NitfIndex index = new NitfIndex(size, modified, header, indexedSegments);
+            // Decoding everything once checks that the index is usable (e.g. not streaming mode), and finds the
+            // masked images.
+            List<ImageSegment> images = decodeImages(index);
+            for (IndexedSegment segment : indexedSegments) {
+                if (segment.segmentType == SegmentType.IMAGE) {
+                    segment.blockOffsets = readBlockOffsets(reader, segment, images.get(segment.index));
+                }
+            }
+            return index;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static List<ImageSegment> decodeImages(final NitfIndex index) throws NitfFormatException {
+        try {
+            return index.new IndexedDataSource(null).getImageSegments();
+        } catch (IllegalStateException ex) {
+            if (ex.getCause() instanceof NitfFormatException) {
+                throw (NitfFormatException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private static long[] readBlockOffsets(final NitfReader reader, final IndexedSegment segment, final ImageSegment image)
+            throws NitfFormatException {
+        if (!NitfImageStreamWriter.MASKED_COMPRESSION.contains(image.getImageCompression())
+                || (segment.dataLength < MASK_TABLE_HEADER_LENGTH)) {
+            return null;
+        }
+        long dataOffset = segment.getDataOffset();
+        reader.seekToAbsoluteOffset(dataOffset);
+        ByteBuffer maskHeader = ByteBuffer.wrap(reader.readBytesRaw(MASK_TABLE_HEADER_LENGTH));
+        long imageDataOffset = Integer.toUnsignedLong(maskHeader.getInt());
+        int blockMaskRecordLength = Short.toUnsignedInt(maskHeader.getShort());
+        // The pad pixel mask record length is not needed.
+        maskHeader.getShort();
+        int padPixelCodeLength = Short.toUnsignedInt(maskHeader.getShort());
+        if (blockMaskRecordLength == 0) {
+            return null;
+        }
+        if (padPixelCodeLength > 0) {
+            reader.skip((padPixelCodeLength + Byte.SIZE - 1) / Byte.SIZE);
+        }
+        int blockCount = image.getNumberOfBlocksPerRow() * image.getNumberOfBlocksPerColumn();
+        if (image.getImageMode() == ImageMode.BANDSEQUENTIAL) {
+            blockCount *= image.getNumBands();
+        }
+        ByteBuffer table = ByteBuffer.wrap(reader.readBytesRaw(blockCount * Integer.BYTES));
+        long[] offsets = new long[blockCount];
+        for (int i = 0; i < blockCount; ++i) {
+            int offset = table.getInt();
+            if (offset == BLOCK_NOT_RECORDED) {
+                offsets[i] = -1;
+            } else {
+                offsets[i] = dataOffset + imageDataOffset + Integer.toUnsignedLong(offset);
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Read an index from a sidecar file.
+     *
+     * @param sidecar the path to the sidecar file.
+     * @return the index.
+     * @throws IOException if the sidecar could not be read, is not an index, has a different format version, or is
+     * corrupt.
+     */
+    public static NitfIndex read(final Path sidecar) throws IOException {
+        // No count or length in a valid sidecar can need more bytes than the sidecar holds.
+        long sidecarSize = Files.size(sidecar);
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a NITF index: " + sidecar);
+            }
+            int version = input.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported NITF index version " + version + " in " + sidecar);
+            }
+            long size = input.readLong();
+            long modified = input.readLong();
+            byte[] header = readByteArray(input, sidecarSize);
+            int segmentCount = checkCount(input.readInt(), 1, sidecarSize, "segment count");
+            List<IndexedSegment> indexedSegments = new ArrayList<>(segmentCount);
+            for (int i = 0; i < segmentCount; ++i) {
+                SegmentType segmentType = readSegmentType(input);
+                int index = input.readInt();
+                long subheaderOffset = input.readLong();
+                byte[] subheader = readByteArray(input, sidecarSize);
+                IndexedSegment segment = new IndexedSegment(segmentType, index, subheaderOffset, subheader, input.readLong());
+                int blockCount = input.readInt();
+                if (blockCount != NO_BLOCK_TABLE) {
+                    segment.blockOffsets = new long[checkCount(blockCount, Long.BYTES, sidecarSize, "block count")];
+                    for (int j = 0; j < blockCount; ++j) {
+                        segment.blockOffsets[j] = input.readLong();
+                    }
+                }
+                indexedSegments.add(segment);
+            }
+            return new NitfIndex(size, modified, header, indexedSegments);
+        }
+    }
+
+    private static byte[] readByteArray(final DataInputStream input, final long sidecarSize) throws IOException {
+        byte[] bytes = new byte[checkCount(input.readInt(), 1, sidecarSize, "byte array length")];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    private static int checkCount(final int count, final int elementSize, final long sidecarSize, final String name) throws IOException {
+        if ((count < 0) || ((long) count * elementSize > sidecarSize)) {
+            throw new IOException("Invalid " + name + " in NITF index: " + count);
+        }
+        return count;
+    }
+
+    private static SegmentType readSegmentType(final DataInputStream input) throws IOException {
+        String name = input.readUTF();
+        try {
+            return SegmentType.valueOf(name);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Unknown segment type in NITF index: " + name, ex);
+        }
+    }
+
+    /**
+     * Write the index to a sidecar file.
+     * <p>
+     * The sidecar is written to a temporary file and then moved into place, so concurrent readers never see a
+     * partially written index. A sidecar that is replaced keeps its permissions.
+     *
+     * @param sidecar the path to the sidecar file.
+     * @throws IOException if the sidecar could not be written.
+     */
+    public void write(final Path sidecar) throws IOException {
+        Path temporary = ReplacementFile.createTemporary(sidecar, ".tmp");
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                output.writeLong(fileSize);
+                output.writeLong(lastModified);
+                writeByteArray(output, headerBytes);
+                output.writeInt(segments.size());
+                for (IndexedSegment segment : segments) {
+                    output.writeUTF(segment.segmentType.name());
+                    output.writeInt(segment.index);
+                    output.writeLong(segment.subheaderOffset);
+                    writeByteArray(output, segment.subheaderBytes);
+                    output.writeLong(segment.dataLength);
+                    if (segment.blockOffsets == null) {
+                        output.writeInt(NO_BLOCK_TABLE);
+                    } else {
+                        output.writeInt(segment.blockOffsets.length);
+                        for (long offset : segment.blockOffsets) {
+                            output.writeLong(offset);
+                        }
+                    }
+                }
+            }
+            ReplacementFile.moveIntoPlace(temporary, sidecar);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void writeByteArray(final DataOutputStream output, final byte[] bytes) throws IOException {
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Check whether this index still matches a NITF file.
+     *
+     * @param nitfFile the NITF file.
+     * @return true if the file size and modification time match those recorded in the index, otherwise false.
+     */
+    public boolean isCurrent(final File nitfFile) {
+        try {
+            return (Files.size(nitfFile.toPath()) == fileSize)
+                    && (Files.getLastModifiedTime(nitfFile.toPath()).toMillis() == lastModified);
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Return the size of the indexed file.
+     *
+     * @return the file size in bytes, when the index was built.
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Return the modification time of the indexed file.
+     *
+     * @return the modification time, in milliseconds since the epoch, when the index was built.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Return the number of segments (of all types) in the indexed file.
+     *
+     * @return the segment count.
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Return the type of a segment.
+     *
+     * @param segment the zero base index of the segment, in file order.
+     * @return the segment type.
+     */
+    public SegmentType getSegmentType(final int segment) {
+        return segments.get(segment).segmentType;
+    }
+
+    /**
+     * Return the offset of a segment subheader.
+     *
+     * @param segment the zero base index of the segment, in file order.
+     * @return the offset from the start of the file, in bytes.
+     */
+    public long getSubheaderOffset(final int segment) {
+        return segments.get(segment).subheaderOffset;
+    }
+
+    /**
+     * Return the offset of the data for a segment.
+     *
+     * @param segment the zero base index of the segment, in file order.
+     * @return the offset from the start of the file, in bytes.
+     */
+    public long getDataOffset(final int segment) {
+        return segments.get(segment).getDataOffset();
+    }
+
+    /**
+     * Return the length of the data for a segment.
+     *
+     * @param segment the zero base index of the segment, in file order.
+     * @return the data length, in bytes.
+     */
+    public long getDataLength(final int segment) {
+        return segments.get(segment).dataLength;
+    }
+
+    /**
+     * Return the block offset table for a masked image segment.
+     *
+     * @param segment the zero base index of the segment, in file order.
+     * @return copy of the absolute file offset of each block (in band sequential order, for band sequential images), with
+     * -1 for blocks that are not recorded, or null if the segment is not a masked image with a block mask table.
+     */
+    public long[] getBlockOffsets(final int segment) {
+        long[] offsets = segments.get(segment).blockOffsets;
+        if (offsets == null) {
+            return null;
+        }
+        return offsets.clone();
+    }
+
+    /**
+     * Create a DataSource that decodes the file header and subheaders from this index on first use.
+     * <p>
+     * The DataSource is equivalent to the result of parsing the file with SlottedParseStrategy.ALL_SEGMENT_DATA, except
+     * that segment data is left in the file. If fileChannel is null, no segment data is attached, which is equivalent to
+     * SlottedParseStrategy.HEADERS_ONLY.
+     *
+     * @param fileChannel channel open on the indexed file, or null. The channel must stay open while segment data is
+     * in use.
+     * @return the data source.
+     */
+    public DataSource createDataSource(final FileChannel fileChannel) {
+        return new IndexedDataSource(fileChannel);
+    }
+
+    /**
+     * The stored form of one segment.
+     */
+    private static final class IndexedSegment {
+
+        private final SegmentType segmentType;
+
+        private final int index;
+
+        private final long subheaderOffset;
+
+        private final byte[] subheaderBytes;
+
+        private final long dataLength;
+
+        private long[] blockOffsets = null;
+
+        IndexedSegment(final SegmentType type, final int segmentIndex, final long offset, final byte[] subheader, final long length) {
+            segmentType = type;
+            index = segmentIndex;
+            subheaderOffset = offset;
+            subheaderBytes = subheader;
+            dataLength = length;
+        }
+
+        long getDataOffset() {
+            return subheaderOffset + subheaderBytes.length;
+        }
+    }
+
+    /**
+     * DataSource that decodes segments from the index, one segment type at a time, on first use.
+     */
+    private final class IndexedDataSource implements DataSource {
+
+        private final FileChannel channel;
+
+        private SlottedParseStrategy parseStrategy = null;
+
+        private NitfHeader nitfHeader = null;
+
+        private List<ImageSegment> imageSegments = null;
+
+        private List<GraphicSegment> graphicSegments = null;
+
+        private List<SymbolSegment> symbolSegments = null;
+
+        private List<LabelSegment> labelSegments = null;
+
+        private List<TextSegment> textSegments = null;
+
+        private List<DataExtensionSegment> dataExtensionSegments = null;
+
+        IndexedDataSource(final FileChannel fileChannel) {
+            channel = fileChannel;
+        }
+
+        @Override
+        public synchronized NitfHeader getNitfHeader() {
+            if (nitfHeader == null) {
+                try {
+                    nitfHeader = parseHeader();
+                } catch (NitfFormatException ex) {
+                    throw new IllegalStateException("Unable to decode indexed file header", ex);
+                }
+            }
+            return nitfHeader;
+        }
+
+        private NitfHeader parseHeader() throws NitfFormatException {
+            SlottedParseStrategy strategy = getParseStrategy();
+            NitfParser.parseFileHeader(new ByteBufferReader(ByteBuffer.wrap(headerBytes), 0), strategy);
+            return strategy.getNitfHeader();
+        }
+
+        private SlottedParseStrategy getParseStrategy() throws NitfFormatException {
+            if (parseStrategy == null) {
+                parseStrategy = SlottedParseStrategy.createHeadersOnlyWithSharedTreParser();
+            }
+            return parseStrategy;
+        }
+
+        @Override
+        public synchronized void setNitfHeader(final NitfHeader nitfFileHeader) {
+            nitfHeader = nitfFileHeader;
+        }
+
+        @Override
+        public synchronized List<ImageSegment> getImageSegments() {
+            if (imageSegments == null) {
+                imageSegments = decodeSegments(SegmentType.IMAGE, ImageSegment.class);
+                for (int i = 0; i < imageSegments.size(); ++i) {
+                    ImageInputStream data = getDataStream(SegmentType.IMAGE, i);
+                    if (data != null) {
+                        imageSegments.get(i).setData(data);
+                    }
+                }
+            }
+            return imageSegments;
+        }
+
+        @Override
+        public synchronized List<GraphicSegment> getGraphicSegments() {
+            if (graphicSegments == null) {
+                graphicSegments = decodeSegments(SegmentType.GRAPHIC, GraphicSegment.class);
+                for (int i = 0; i < graphicSegments.size(); ++i) {
+                    ImageInputStream data = getDataStream(SegmentType.GRAPHIC, i);
+                    if (data != null) {
+                        graphicSegments.get(i).setData(data);
+                    }
+                }
+            }
+            return graphicSegments;
+        }
+
+        @Override
+        public synchronized List<SymbolSegment> getSymbolSegments() {
+            if (symbolSegments == null) {
+                symbolSegments = decodeSegments(SegmentType.SYMBOL, SymbolSegment.class);
+                for (int i = 0; i < symbolSegments.size(); ++i) {
+                    ImageInputStream data = getDataStream(SegmentType.SYMBOL, i);
+                    if (data != null) {
+                        symbolSegments.get(i).setData(data);
+                    }
+                }
+            }
+            return symbolSegments;
+        }
+
+        @Override
+        public synchronized List<LabelSegment> getLabelSegments() {
+            if (labelSegments == null) {
+                labelSegments = decodeSegments(SegmentType.LABEL, LabelSegment.class);
+                for (int i = 0; i < labelSegments.size(); ++i) {
+                    String data = readDataString(SegmentType.LABEL, i);
+                    if (data != null) {
+                        labelSegments.get(i).setData(data);
+                    }
+                }
+            }
+            return labelSegments;
+        }
+
+        @Override
+        public synchronized List<TextSegment> getTextSegments() {
+            if (textSegments == null) {
+                textSegments = decodeSegments(SegmentType.TEXT, TextSegment.class);
+                for (int i = 0; i < textSegments.size(); ++i) {
+                    String data = readDataString(SegmentType.TEXT, i);
+                    if (data != null) {
+                        textSegments.get(i).setData(data);
+                    }
+                }
+            }
+            return textSegments;
+        }
+
+        @Override
+        public synchronized List<DataExtensionSegment> getDataExtensionSegments() {
+            if (dataExtensionSegments == null) {
+                dataExtensionSegments = decodeSegments(SegmentType.DATA_EXTENSION, DataExtensionSegment.class);
+                for (int i = 0; i < dataExtensionSegments.size(); ++i) {
+                    attachDataExtensionData(dataExtensionSegments.get(i), i);
+                }
+            }
+            return dataExtensionSegments;
+        }
+
+        private <T extends CommonSegment> List<T> decodeSegments(final SegmentType segmentType, final Class<T> segmentInterface) {
+            NitfHeader header = getNitfHeader();
+            List<T> decoded = new ArrayList<>();
+            try {
+                for (IndexedSegment segment : segments) {
+                    if (segment.segmentType == segmentType) {
+                        NitfReader reader = new ByteBufferReader(ByteBuffer.wrap(segment.subheaderBytes), segment.subheaderOffset);
+                        reader.setFileType(header.getFileType());
+                        decoded.add(segmentInterface.cast(
+                                NitfEventReader.parseSubheader(reader, getParseStrategy(), segmentType, segment.dataLength)));
+                    }
+                }
+            } catch (NitfFormatException ex) {
+                throw new IllegalStateException("Unable to decode indexed " + segmentType + " subheader", ex);
+            }
+            return decoded;
+        }
+
+        private IndexedSegment findSegment(final SegmentType segmentType, final int segmentIndex) {
+            for (IndexedSegment segment : segments) {
+                if ((segment.segmentType == segmentType) && (segment.index == segmentIndex)) {
+                    return segment;
+                }
+            }
+            throw new IllegalStateException("No indexed " + segmentType + " segment " + segmentIndex);
+        }
+
+        private ImageInputStream getDataStream(final SegmentType segmentType, final int segmentIndex) {
+            IndexedSegment segment = findSegment(segmentType, segmentIndex);
+            if ((channel == null) || (segment.dataLength == 0)) {
+                return null;
+            }
+            return new FileRegionImageInputStream(channel, segment.getDataOffset(), segment.dataLength);
+        }
+
+        private String readDataString(final SegmentType segmentType, final int segmentIndex) {
+            IndexedSegment segment = findSegment(segmentType, segmentIndex);
+            if (channel == null) {
+                return null;
+            }
+            if (segment.dataLength == 0) {
+                return "";
+            }
+            try {
+                FileChannelReader reader = new FileChannelReader(channel, DATA_WINDOW_SIZE);
+                reader.seekToAbsoluteOffset(segment.getDataOffset());
+                return reader.readBytes((int) segment.dataLength);
+            } catch (NitfFormatException ex) {
+                throw new IllegalStateException("Unable to read indexed " + segmentType + " data", ex);
+            }
+        }
+
+        private void attachDataExtensionData(final DataExtensionSegment dataExtensionSegment, final int segmentIndex) {
+            IndexedSegment segment = findSegment(SegmentType.DATA_EXTENSION, segmentIndex);
+            if ((channel == null) || (segment.dataLength == 0)) {
+                return;
+            }
+            if (dataExtensionSegment.isTreOverflow()) {
+                try {
+                    FileChannelReader reader = new FileChannelReader(channel, DATA_WINDOW_SIZE);
+                    reader.seekToAbsoluteOffset(segment.getDataOffset());
+                    dataExtensionSegment.mergeTREs(getParseStrategy().parseTREs(reader, (int) segment.dataLength, TreSource.TreOverflowDES));
+                } catch (NitfFormatException ex) {
+                    throw new IllegalStateException("Unable to read indexed TRE overflow", ex);
+                }
+            } else if (!"STREAMING_FILE_HEADER".equals(dataExtensionSegment.getIdentifier().trim())) {
+                ImageInputStream data = getDataStream(SegmentType.DATA_EXTENSION, segmentIndex);
+                dataExtensionSegment.setDataConsumer(c -> c.accept(data));
+            }
+        }
+    }
+}
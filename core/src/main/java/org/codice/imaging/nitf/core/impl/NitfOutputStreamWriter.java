@@ -14,12 +14,13 @@
  */
 package org.codice.imaging.nitf.core.impl;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
 
 import org.codice.imaging.nitf.core.DataSource;
 import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.impl.ChannelDataOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,6 +31,8 @@ public class NitfOutputStreamWriter extends SharedNitfWriter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(NitfFileWriter.class);
 
+    private ChannelDataOutput mChannelOutput = null;
+
     /**
      * Construct a stream-based NITF writer.
      *
@@ -38,13 +41,15 @@ public class NitfOutputStreamWriter extends SharedNitfWriter {
      */
     public NitfOutputStreamWriter(final DataSource nitfDataSource, final OutputStream outputStream) {
         super(nitfDataSource);
-        mOutput = new DataOutputStream(outputStream);
+        mChannelOutput = new ChannelDataOutput(Channels.newChannel(outputStream));
+        mOutput = mChannelOutput;
     }
 
     @Override
     public final void write() {
         try {
             writeData();
+            mChannelOutput.flush();
         } catch (NitfFormatException | IOException ex) {
             LOGGER.error("Could not write {}", ex.getMessage());
         }
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import javax.xml.transform.Source;
+
+import org.codice.imaging.nitf.core.common.CommonSegment;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.PushParseHandler;
+import org.codice.imaging.nitf.core.common.impl.ByteBufferReader;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.header.impl.SegmentLayout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Incremental (push mode) parser for a NITF file.
+ * <p>
+ * Instead of reading from a NitfReader, this parser is fed the file as a series of chunks, in whatever sizes they
+ * arrive, and never blocks waiting for more. Parse state is kept between calls to feed(), and results are passed to
+ * a PushParseHandler as soon as they are complete:
+ * <ul>
+ * <li>The file header is buffered until it is complete, then parsed and passed on.</li>
+ * <li>Each segment subheader is buffered (its length is known from the file header), then parsed and passed
+ * on.</li>
+ * <li>Segment data is passed on directly from the fed chunks, without copying or buffering.</li>
+ * </ul>
+ * This makes it suitable for network receive paths, where a single thread can handle many files in progress, in
+ * contrast to NitfInputStreamReader, which blocks the calling thread until data is available.
+ * <p>
+ * Streaming mode files are not supported, since the replacement header is only available at the end of the file.
+ */
+public class NitfPushParser {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NitfPushParser.class);
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private enum State {
+        FILE_HEADER,
+        SEGMENT_SUBHEADER,
+        SEGMENT_DATA,
+        END_OF_FILE
+    }
+
+    private final PushParseHandler handler;
+
+    // Only used for parsing TREs, so no segment data is extracted.
+    private final SlottedParseStrategy treParseStrategy = new SlottedParseStrategy(SlottedParseStrategy.HEADERS_ONLY);
+
+    private State state = State.FILE_HEADER;
+
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    private long requiredLength = 0;
+
+    private long bytesConsumed = 0;
+
+    private Iterator<SegmentLayout> segments = null;
+
+    private SegmentLayout currentLayout = null;
+
+    private long remainingData = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param pushParseHandler the handler for the parse results.
+     */
+    public NitfPushParser(final PushParseHandler pushParseHandler) {
+        if (pushParseHandler == null) {
+            throw new IllegalArgumentException("NitfPushParser(): argument 'pushParseHandler' may not be null.");
+        }
+        handler = pushParseHandler;
+    }
+
+    /**
+     * Register an additional TRE descriptor, for use in parsing TREs.
+     *
+     * @param source the source of the TRE descriptor, as XML.
+     * @throws NitfFormatException if the descriptor could not be loaded.
+     */
+    public final void registerAdditionalTREdescriptor(final Source source) throws NitfFormatException {
+        treParseStrategy.registerAdditionalTREdescriptor(source);
+    }
+
+    /**
+     * Feed the next chunk of the file to the parser.
+     * <p>
+     * All of the bytes between the chunk position and limit are consumed, and the chunk position is advanced to
+     * its limit. The parser does not keep a reference to the chunk after this call returns, so the caller may
+     * reuse it.
+     *
+     * @param chunk the next bytes of the file.
+     * @throws NitfFormatException if the file is not valid, or the handler fails.
+     */
+    public final void feed(final ByteBuffer chunk) throws NitfFormatException {
+        while (chunk.hasRemaining()) {
+            switch (state) {
+                case FILE_HEADER:
+                    bytesConsumed += append(chunk, chunk.remaining());
+                    if (pending.position() >= requiredLength) {
+                        tryParseFileHeader();
+                    }
+                    break;
+                case SEGMENT_SUBHEADER:
+                    bytesConsumed += append(chunk, currentLayout.getSubheaderLength() - pending.position());
+                    if (pending.position() == currentLayout.getSubheaderLength()) {
+                        parseSegmentSubheader();
+                    }
+                    break;
+                case SEGMENT_DATA:
+                    handleSegmentData(chunk);
+                    break;
+                default:
+                    throw new NitfFormatException("Unexpected data after end of NITF file", bytesConsumed);
+            }
+        }
+    }
+
+    /**
+     * Signal that there is no more input.
+     *
+     * @throws NitfFormatException if the file was not complete.
+     */
+    public final void finish() throws NitfFormatException {
+        if (state != State.END_OF_FILE) {
+            LOG.warn("Input ended in state {} after {} bytes", state, bytesConsumed);
+            throw new NitfFormatException("Incomplete NITF file: input ended before end of file", bytesConsumed);
+        }
+    }
+
+    /**
+     * Check whether the whole file has been parsed.
+     *
+     * @return true if the end of the file has been reached, otherwise false.
+     */
+    public final boolean isComplete() {
+        return state == State.END_OF_FILE;
+    }
+
+    /**
+     * Return the number of bytes consumed so far.
+     *
+     * @return the number of bytes fed to the parser.
+     */
+    public final long getBytesConsumed() {
+        return bytesConsumed;
+    }
+
+    private int append(final ByteBuffer chunk, final long maximumLength) {
+        int count = (int) Math.min(chunk.remaining(), maximumLength);
+        if (pending.remaining() < count) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + count));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        ByteBuffer part = chunk.duplicate();
+        part.limit(part.position() + count);
+        pending.put(part);
+        chunk.position(chunk.position() + count);
+        return count;
+    }
+
+    private void tryParseFileHeader() throws NitfFormatException {
+        ByteBuffer headerBytes = pending.duplicate();
+        headerBytes.flip();
+        ByteBufferReader reader = new ByteBufferReader(headerBytes, 0);
+        List<SegmentLayout> layout;
+        try {
+            layout = NitfParser.parseFileHeader(reader, treParseStrategy);
+        } catch (NitfFormatException ex) {
+            if (!reader.isUnderflow()) {
+                throw ex;
+            }
+            requiredLength = reader.getRequiredLength();
+            return;
+        }
+        if (reader.isUnderflow()) {
+            requiredLength = reader.getRequiredLength();
+            return;
+        }
+        handler.handleFileHeader(treParseStrategy.getNitfHeader());
+        segments = layout.iterator();
+
+        // Anything after the header belongs to the segments.
+        headerBytes.position((int) reader.getCurrentOffset());
+        ByteBuffer remainder = headerBytes.slice();
+        pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        startNextSegment();
+        bytesConsumed -= remainder.remaining();
+        feed(remainder);
+    }
+
+    private void parseSegmentSubheader() throws NitfFormatException {
+        pending.flip();
+        ByteBufferReader reader = new ByteBufferReader(pending, currentLayout.getSubheaderOffset());
+        reader.setFileType(treParseStrategy.getNitfHeader().getFileType());
+        CommonSegment segment = NitfEventReader.parseSubheader(reader, treParseStrategy, currentLayout);
+        pending.clear();
+        handler.handleSegmentSubheader(currentLayout.getSegmentType(), segment, currentLayout.getDataLength());
+        state = State.SEGMENT_DATA;
+        remainingData = currentLayout.getDataLength();
+        if (remainingData == 0) {
+            endSegment();
+        }
+    }
+
+    private void handleSegmentData(final ByteBuffer chunk) throws NitfFormatException {
+        int count = (int) Math.min(chunk.remaining(), remainingData);
+        ByteBuffer data = chunk.duplicate();
+        data.limit(data.position() + count);
+        chunk.position(chunk.position() + count);
+        bytesConsumed += count;
+        remainingData -= count;
+        handler.handleSegmentData(currentLayout.getSegmentType(), data.asReadOnlyBuffer());
+        if (remainingData == 0) {
+            endSegment();
+        }
+    }
+
+    private void endSegment() throws NitfFormatException {
+        handler.handleSegmentEnd(currentLayout.getSegmentType());
+        startNextSegment();
+    }
+
+    private void startNextSegment() throws NitfFormatException {
+        if (segments.hasNext()) {
+            currentLayout = segments.next();
+            state = State.SEGMENT_SUBHEADER;
+        } else {
+            currentLayout = null;
+            state = State.END_OF_FILE;
+            pending = ByteBuffer.allocate(0);
+            handler.handleEndOfFile();
+        }
+    }
+}
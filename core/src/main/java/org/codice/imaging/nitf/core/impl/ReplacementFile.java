@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.impl;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replaces a file by writing a temporary file alongside it, and then moving that into place.
+ * <p>
+ * Files.createTempFile() always creates a file that only the owner can read, so moving it into place would change
+ * the permissions of the file being replaced. Instead, the temporary file is created with the default permissions
+ * for a new file, and is given the permissions, owner and group of the file it replaces just before the move.
+ */
+final class ReplacementFile {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplacementFile.class);
+
+    private ReplacementFile() {
+    }
+
+    /**
+     * Create an empty temporary file in the same directory as the target.
+     *
+     * @param target the file that will be replaced.
+     * @param suffix the suffix for the temporary file name.
+     * @return the path to the temporary file.
+     * @throws IOException if the temporary file could not be created.
+     */
+    static Path createTemporary(final Path target, final String suffix) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Path fileName = target.getFileName();
+        if ((directory == null) || (fileName == null)) {
+            throw new IOException("Cannot create a temporary file alongside " + target);
+        }
+        while (true) {
+            Path temporary = directory.resolve(fileName.toString() + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + suffix);
+            try {
+                return Files.createFile(temporary);
+            } catch (FileAlreadyExistsException ex) {
+                LOG.debug("Temporary file name already in use, trying another: {}", temporary);
+            }
+        }
+    }
+
+    /**
+     * Move a temporary file into place, replacing the target.
+     * <p>
+     * If the target exists, and the file system supports POSIX attributes, its permissions are copied to the
+     * temporary file first. Its owner and group are copied too where that is allowed. The move is atomic if the file
+     * system supports it.
+     *
+     * @param temporary the temporary file, holding the new content.
+     * @param target the file to replace.
+     * @throws IOException if the file could not be moved into place.
+     */
+    static void moveIntoPlace(final Path temporary, final Path target) throws IOException {
+        if (Files.exists(target)) {
+            copyPosixAttributes(target, temporary);
+        }
+        try {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void copyPosixAttributes(final Path source, final Path target) throws IOException {
+        PosixFileAttributeView targetView = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+        if (targetView == null) {
+            return;
+        }
+        PosixFileAttributes sourceAttributes = Files.readAttributes(source, PosixFileAttributes.class);
+        PosixFileAttributes targetAttributes = targetView.readAttributes();
+        try {
+            if (!sourceAttributes.owner().equals(targetAttributes.owner())) {
+                targetView.setOwner(sourceAttributes.owner());
+            }
+            if (!sourceAttributes.group().equals(targetAttributes.group())) {
+                targetView.setGroup(sourceAttributes.group());
+            }
+        } catch (IOException ex) {
+            LOG.warn("Could not keep the owner and group of {}", source, ex);
+        }
+        targetView.setPermissions(sourceAttributes.permissions());
+    }
+}
@@ -105,6 +105,8 @@ public class SlottedParseStrategy implements ParseStrategy {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SlottedParseStrategy.class);
 
+    private static final SlottedParseStrategy SHARED_TRE_PARSER_STRATEGY = new SlottedParseStrategy(HEADERS_ONLY);
+
     /**
      * The TRE parser to use. Must be initialised before use, see initialiseTreCollectionParserIfRequired()
      */
@@ -172,7 +174,41 @@ public class SlottedParseStrategy implements ParseStrategy {
         return nitfStorage;
     }
 
-    private void initialiseTreCollectionParserIfRequired() throws NitfFormatException {
+    /**
+     * Create a parse strategy for handling a single segment on another thread.
+     * <p>
+     * The new strategy extracts the same segment data as this strategy, and shares its heap strategies and TRE
+     * parser. This is intended for use with the parallel mode of NitfParser, for example as
+     * {@code NitfParser.parse(reader, strategy, readerFactory, strategy::createSegmentParseStrategy, executor)}.
+     *
+     * @return parse strategy for a single segment.
+     * @throws NitfFormatException if there is a problem loading the TRE descriptions.
+     */
+    public final SlottedParseStrategy createSegmentParseStrategy() throws NitfFormatException {
+        initialiseTreCollectionParserIfRequired();
+        SlottedParseStrategy segmentParseStrategy = new SlottedParseStrategy(segmentsToExtract);
+        segmentParseStrategy.treCollectionParser = treCollectionParser;
+        segmentParseStrategy.imageHeapStrategy = imageHeapStrategy;
+        segmentParseStrategy.desHeapStrategy = desHeapStrategy;
+        segmentParseStrategy.setFileHeader(getNitfHeader());
+        return segmentParseStrategy;
+    }
+
+    /**
+     * Create a HEADERS_ONLY parse strategy that shares its TRE parser with all other strategies created this way.
+     * <p>
+     * Loading the TRE descriptions is relatively expensive, so this suits code that parses the headers of many files
+     * or segments, possibly on several threads. Since the TRE parser is shared, additional TRE descriptors should
+     * not be registered with the returned strategy.
+     *
+     * @return new parse strategy, with no file header.
+     * @throws NitfFormatException if there is a problem loading the TRE descriptions.
+     */
+    public static SlottedParseStrategy createHeadersOnlyWithSharedTreParser() throws NitfFormatException {
+        return SHARED_TRE_PARSER_STRATEGY.createSegmentParseStrategy();
+    }
+
+    private synchronized void initialiseTreCollectionParserIfRequired() throws NitfFormatException {
         if (treCollectionParser == null) {
             treCollectionParser = new TreCollectionParser();
         }
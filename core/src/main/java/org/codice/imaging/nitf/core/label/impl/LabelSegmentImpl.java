@@ -192,7 +192,7 @@ class LabelSegmentImpl extends CommonBasicSegmentImpl implements LabelSegment {
                 + RGBColourImpl.RGB_COLOUR_LENGTH
                 + LabelConstants.LXSHDL_LENGTH;
         TreParser treParser = new TreParser();
-        int extendedDataLength = treParser.getTREs(this, TreSource.LabelExtendedSubheaderData).length;
+        int extendedDataLength = treParser.getTREsLength(this, TreSource.LabelExtendedSubheaderData);
         if (extendedDataLength > 0) {
             headerLength += LabelConstants.LXSOFL_LENGTH;
             headerLength += extendedDataLength;
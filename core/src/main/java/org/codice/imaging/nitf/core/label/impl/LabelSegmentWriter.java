@@ -51,13 +51,15 @@ public class LabelSegmentWriter extends AbstractSegmentWriter {
     }
 
     /**
-     * Write out the specified label segment.
+     * Write out the subheader of the specified label segment, without the segment data.
+     * <p>
+     * The output is exactly getHeaderLength() bytes for the current segment content.
      *
      * @param labelSegment the content to write out
      * @throws IOException on write failure.
      * @throws NitfFormatException on TRE parsing failure.
      */
-    public final void writeLabel(final LabelSegment labelSegment) throws IOException, NitfFormatException {
+    public final void writeLabelSubheader(final LabelSegment labelSegment) throws IOException, NitfFormatException {
         writeFixedLengthString(LA, LA.length());
         writeFixedLengthString(labelSegment.getIdentifier(), LID_LENGTH);
         writeSecurityMetadata(labelSegment.getSecurityMetadata());
@@ -81,6 +83,17 @@ public class LabelSegmentWriter extends AbstractSegmentWriter {
             writeFixedLengthNumber(labelSegment.getExtendedHeaderDataOverflow(), LXSOFL_LENGTH);
             writeBytes(labelExtendedSubheaderData, labelExtendedSubheaderDataLength - LXSOFL_LENGTH);
         }
+    }
+
+    /**
+     * Write out the specified label segment.
+     *
+     * @param labelSegment the content to write out
+     * @throws IOException on write failure.
+     * @throws NitfFormatException on TRE parsing failure.
+     */
+    public final void writeLabel(final LabelSegment labelSegment) throws IOException, NitfFormatException {
+        writeLabelSubheader(labelSegment);
         mOutput.writeBytes(labelSegment.getData());
     }
 }
@@ -320,7 +320,7 @@ class SymbolSegmentImpl extends CommonBasicSegmentImpl implements SymbolSegment
                 + GraphicSegmentConstants.SXSHDL_LENGTH;
         // NOTE: We don't support LUT entries in symbol segments yet.
         TreParser treParser = new TreParser();
-        int extendedDataLength = treParser.getTREs(this, TreSource.SymbolExtendedSubheaderData).length;
+        int extendedDataLength = treParser.getTREsLength(this, TreSource.SymbolExtendedSubheaderData);
         if (extendedDataLength > 0) {
             headerLength += GraphicSegmentConstants.SXSOFL_LENGTH;
             headerLength += extendedDataLength;
@@ -56,13 +56,15 @@ public class SymbolSegmentWriter extends AbstractSegmentWriter {
     }
 
     /**
-     * Write out the specified symbol segment.
+     * Write out the subheader of the specified symbol segment, without the segment data.
+     * <p>
+     * The output is exactly getHeaderLength() bytes for the current segment content.
      *
      * @param header the header content to write out
      * @throws IOException on write failure.
      * @throws NitfFormatException on TRE parsing failure.
      */
-    public final void writeSymbolSegment(final SymbolSegment header) throws IOException, NitfFormatException {
+    public final void writeSymbolSubheader(final SymbolSegment header) throws IOException, NitfFormatException {
         writeFixedLengthString(SY, SY.length());
         writeFixedLengthString(header.getIdentifier(), SID_LENGTH);
         writeFixedLengthString(header.getSymbolName(), SNAME_LENGTH);
@@ -94,6 +96,17 @@ public class SymbolSegmentWriter extends AbstractSegmentWriter {
             writeFixedLengthNumber(header.getExtendedHeaderDataOverflow(), SXSOFL_LENGTH);
             writeBytes(symbolExtendedSubheaderData, symbolExtendedSubheaderDataLength - SXSOFL_LENGTH);
         }
+    }
+
+    /**
+     * Write out the specified symbol segment.
+     *
+     * @param header the header content to write out
+     * @throws IOException on write failure.
+     * @throws NitfFormatException on TRE parsing failure.
+     */
+    public final void writeSymbolSegment(final SymbolSegment header) throws IOException, NitfFormatException {
+        writeSymbolSubheader(header);
         writeSegmentData(header.getData());
     }
 }
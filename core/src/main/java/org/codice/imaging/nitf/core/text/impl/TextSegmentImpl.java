@@ -126,7 +126,7 @@ class TextSegmentImpl extends CommonBasicSegmentImpl implements TextSegment {
                 + TextConstants.TXTFMT_LENGTH
                 + TextConstants.TXSHDL_LENGTH;
         TreParser treParser = new TreParser();
-        int extendedDataLength = treParser.getTREs(this, TreSource.TextExtendedSubheaderData).length;
+        int extendedDataLength = treParser.getTREsLength(this, TreSource.TextExtendedSubheaderData);
         if (extendedDataLength > 0) {
             headerLength += TextConstants.TXSOFL_LENGTH;
             headerLength += extendedDataLength;
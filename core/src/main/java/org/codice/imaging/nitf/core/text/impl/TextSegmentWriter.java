@@ -48,14 +48,16 @@ public class TextSegmentWriter extends AbstractSegmentWriter {
     }
 
     /**
-     * Write out the specified text segment.
+     * Write out the subheader of the specified text segment, without the segment data.
+     * <p>
+     * The output is exactly getHeaderLength() bytes for the current segment content.
      *
      * @param textSegment the content to write out
      * @param fileType the type of file (NITF version) to write the text header out for.
      * @throws IOException on write failure.
      * @throws NitfFormatException on TRE parsing failure.
      */
-    public final void writeTextSegment(final TextSegment textSegment, final FileType fileType) throws IOException, NitfFormatException {
+    public final void writeTextSubheader(final TextSegment textSegment, final FileType fileType) throws IOException, NitfFormatException {
         writeFixedLengthString(TE, TE.length());
         if (fileType == FileType.NITF_TWO_ZERO) {
             writeFixedLengthString(textSegment.getIdentifier(), TEXTID20_LENGTH);
@@ -78,6 +80,18 @@ public class TextSegmentWriter extends AbstractSegmentWriter {
             writeFixedLengthNumber(textSegment.getExtendedHeaderDataOverflow(), TXSOFL_LENGTH);
             writeBytes(textExtendedSubheaderData, textExtendedSubheaderDataLength - TXSOFL_LENGTH);
         }
+    }
+
+    /**
+     * Write out the specified text segment.
+     *
+     * @param textSegment the content to write out
+     * @param fileType the type of file (NITF version) to write the text header out for.
+     * @throws IOException on write failure.
+     * @throws NitfFormatException on TRE parsing failure.
+     */
+    public final void writeTextSegment(final TextSegment textSegment, final FileType fileType) throws IOException, NitfFormatException {
+        writeTextSubheader(textSegment, fileType);
         mOutput.writeBytes(textSegment.getData());
     }
 }
@@ -17,6 +17,7 @@ package org.codice.imaging.nitf.core.tre.impl;
 import static org.codice.imaging.nitf.core.tre.impl.TreConstants.TAGLEN_LENGTH;
 import static org.codice.imaging.nitf.core.tre.impl.TreConstants.TAG_LENGTH;
 
+import java.util.function.Predicate;
 import javax.xml.transform.Source;
 
 import org.codice.imaging.nitf.core.common.NitfFormatException;
@@ -50,6 +51,23 @@ public class TreCollectionParser {
      * @throws NitfFormatException if the TRE parsing fails (e.g. end of file or TRE that is clearly incorrect).
      */
     public final TreCollection parse(final NitfReader reader, final int treLength, final TreSource sourceSegment) throws NitfFormatException {
+        return parse(reader, treLength, sourceSegment, tag -> true);
+    }
+
+    /**
+     * Parse selected TREs from the current reader.
+     * <p>
+     * TREs with a tag that is not accepted by the filter are skipped without being read or parsed.
+     *
+     * @param reader the reader to use.
+     * @param treLength the length of the TRE.
+     * @param sourceSegment the source segment (or segment part) for the TRE.
+     * @param tagFilter filter on the TRE tag, with any padding trimmed, returning true if the TRE should be parsed.
+     * @return TRE collection, holding only the accepted TREs.
+     * @throws NitfFormatException if the TRE parsing fails (e.g. end of file or TRE that is clearly incorrect).
+     */
+    public final TreCollection parse(final NitfReader reader, final int treLength, final TreSource sourceSegment,
+            final Predicate<String> tagFilter) throws NitfFormatException {
         TreCollection treCollection = new TreCollectionImpl();
         int bytesRead = 0;
         while (bytesRead < treLength) {
@@ -57,10 +75,14 @@ public class TreCollectionParser {
             bytesRead += TAG_LENGTH;
             int fieldLength = reader.readBytesAsInteger(TAGLEN_LENGTH);
             bytesRead += TAGLEN_LENGTH;
-            Tre tre = treParser.parseOneTre(reader, tag, fieldLength, sourceSegment);
+            if (tagFilter.test(tag.trim())) {
+                Tre tre = treParser.parseOneTre(reader, tag, fieldLength, sourceSegment);
 
-            if (tre != null) {
-                treCollection.add(tre);
+                if (tre != null) {
+                    treCollection.add(tre);
+                }
+            } else if (fieldLength > 0) {
+                reader.skip(fieldLength);
             }
 
             bytesRead += fieldLength;
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ *
+ */
+package org.codice.imaging.nitf.core.tre.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable buffer for serialising TREs.
+ * <p>
+ * Fields are written straight into a reusable ByteBuffer, padded to their fixed lengths as they are written, so
+ * serialising does not need an intermediate String or byte array for each field. The buffer only grows, so once it
+ * is large enough for the TREs being written, serialising does not allocate.
+ */
+final class TreOutputBuffer {
+
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private static final int DECIMAL_BASE = 10;
+
+    private static final byte SPACE = ' ';
+
+    private static final byte ZERO = '0';
+
+    private static final byte MINUS = '-';
+
+    private static final byte UNMAPPABLE = '?';
+
+    private static final int MAX_ISO_8859_1 = 0xFF;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+    int position() {
+        return buffer.position();
+    }
+
+    void reset() {
+        buffer.clear();
+    }
+
+    void reset(final int position) {
+        buffer.position(position);
+    }
+
+    byte[] toByteArray(final int start) {
+        return Arrays.copyOfRange(buffer.array(), start, buffer.position());
+    }
+
+    void putBytes(final byte[] bytes) {
+        ensureSpace(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Write a string as ISO-8859-1, as String.getBytes() would.
+     *
+     * @param value the string to write.
+     */
+    void putString(final String value) {
+        ensureSpace(value.length());
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if (c <= MAX_ISO_8859_1) {
+                buffer.put((byte) c);
+            } else {
+                buffer.put(UNMAPPABLE);
+            }
+        }
+    }
+
+    /**
+     * Write a string, left justified and padded with spaces to the specified length.
+     *
+     * @param value the string to write, which must not be longer than the length.
+     * @param length the field length.
+     */
+    void putPaddedString(final String value, final int length) {
+        putString(value);
+        putRepeated(SPACE, length - value.length());
+    }
+
+    void putSpaces(final int length) {
+        putRepeated(SPACE, length);
+    }
+
+    /**
+     * Write bytes, right justified and padded with zero bytes to the specified length.
+     *
+     * @param value the bytes to write.
+     * @param length the field length. If the value is longer, it is written without padding.
+     */
+    void putZeroPaddedBytes(final byte[] value, final int length) {
+        putRepeated((byte) 0, length - value.length);
+        putBytes(value);
+    }
+
+    /**
+     * Write a number in decimal, zero padded to the specified length, as String.format("%0Nd") would.
+     *
+     * @param number the number to write.
+     * @param length the field length. If the number has more digits, it is written without padding.
+     */
+    void putInteger(final long number, final int length) {
+        int digits = countDigits(number);
+        int width = digits;
+        if (number < 0) {
+            width++;
+            ensureSpace(1);
+            buffer.put(MINUS);
+        }
+        putRepeated(ZERO, length - width);
+        ensureSpace(digits);
+        int end = buffer.position() + digits;
+        long remaining = number;
+        for (int i = end - 1; i >= end - digits; --i) {
+            buffer.put(i, (byte) (ZERO + Math.abs(remaining % DECIMAL_BASE)));
+            remaining /= DECIMAL_BASE;
+        }
+        buffer.position(end);
+    }
+
+    /**
+     * Overwrite a previously written field with a zero padded number.
+     *
+     * @param position the position of the field.
+     * @param number the number to write, which must not be negative.
+     * @param length the field length, which must be enough for all of the digits.
+     */
+    void patchInteger(final int position, final long number, final int length) {
+        long remaining = number;
+        for (int i = position + length - 1; i >= position; --i) {
+            buffer.put(i, (byte) (ZERO + remaining % DECIMAL_BASE));
+            remaining /= DECIMAL_BASE;
+        }
+    }
+
+    private static int countDigits(final long number) {
+        int digits = 1;
+        long remaining = number / DECIMAL_BASE;
+        while (remaining != 0) {
+            digits++;
+            remaining /= DECIMAL_BASE;
+        }
+        return digits;
+    }
+
+    private void putRepeated(final byte value, final int count) {
+        if (count <= 0) {
+            return;
+        }
+        ensureSpace(count);
+        for (int i = 0; i < count; ++i) {
+            buffer.put(value);
+        }
+    }
+
+    private void ensureSpace(final int count) {
+        if (buffer.remaining() >= count) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        while (capacity - buffer.position() < count) {
+            capacity *= 2;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+    }
+}
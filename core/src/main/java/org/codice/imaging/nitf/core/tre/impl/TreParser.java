@@ -20,12 +20,14 @@ import static org.codice.imaging.nitf.core.tre.impl.TreConstants.TAG_LENGTH;
 import static org.codice.imaging.nitf.core.tre.impl.TreConstants.UNSUPPORTED_IFTYPE_FORMAT_MESSAGE;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import jakarta.xml.bind.JAXBContext;
 import jakarta.xml.bind.JAXBException;
@@ -79,28 +81,55 @@ public class TreParser {
     // We seem unlikely to hit this: 10^9 - 2
     private static final int MAX_DES_DATA_LEN = 999999998;
 
-    private static Tres tresStructure = null;
+    // The TAGLEN field is five digits.
+    private static final int MAX_TRE_LENGTH = 99999;
+
+    /**
+     * Index of the TRE types in nitf_spec.xml, built once. Never modified after it is published.
+     */
+    private static volatile Map<String, TreType> standardTreTypes = null;
+
+    /**
+     * Index of the TRE types in use, including any additional descriptors. Never modified after it is published,
+     * so parsers on other threads always see a complete index.
+     */
+    private static volatile Map<String, TreType> treTypesByName = Collections.emptyMap();
+
+    private final TreOutputBuffer mOutputBuffer = new TreOutputBuffer();
 
     /**
         Constructor for TRE parser.
         <p>
-        This does reasonably complex initialisation, so try to re-use it if possible.
+        The TRE descriptions are loaded by the first parser, and shared by all parsers. Constructing a parser resets
+        the descriptions to the standard set, dropping any additional descriptors, so try to re-use it if possible.
 
         @throws NitfFormatException if the initialisation fails.
     */
     public TreParser() throws NitfFormatException {
-        try (InputStream is = getClass().getResourceAsStream("/nitf_spec.xml")) {
-            unmarshal(is);
-        } catch (JAXBException ex) {
-            LOG.warn("JAXBException parsing TRE XML specification", ex);
-            throw new NitfFormatException(TRE_XML_LOAD_ERROR_MESSAGE + ex.getMessage());
-        } catch (IOException ex) {
-            LOG.warn("IOException parsing TRE XML specification", ex);
-            throw new NitfFormatException(TRE_XML_LOAD_ERROR_MESSAGE + ex.getMessage());
+        useStandardTreTypes();
+    }
+
+    private static synchronized void useStandardTreTypes() throws NitfFormatException {
+        if (standardTreTypes == null) {
+            try (InputStream is = TreParser.class.getResourceAsStream("/nitf_spec.xml")) {
+                Tres tres = (Tres) getUnmarshaller().unmarshal(parseDocument(is));
+                standardTreTypes = Collections.unmodifiableMap(indexTreTypes(new HashMap<>(), tres.getTre()));
+            } catch (JAXBException ex) {
+                LOG.warn("JAXBException parsing TRE XML specification", ex);
+                throw new NitfFormatException(TRE_XML_LOAD_ERROR_MESSAGE + ex.getMessage());
+            } catch (IOException ex) {
+                LOG.warn("IOException parsing TRE XML specification", ex);
+                throw new NitfFormatException(TRE_XML_LOAD_ERROR_MESSAGE + ex.getMessage());
+            }
         }
+        treTypesByName = standardTreTypes;
     }
 
-    private void unmarshal(final InputStream inputStream) throws JAXBException {
+    private static synchronized void addTreTypes(final List<TreType> treTypes) {
+        treTypesByName = Collections.unmodifiableMap(indexTreTypes(new HashMap<>(treTypesByName), treTypes));
+    }
+
+    private static Document parseDocument(final InputStream inputStream) throws JAXBException {
         DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
         try {
             dbf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, Boolean.TRUE);
@@ -109,10 +138,9 @@ public class TreParser {
         }
         dbf.setExpandEntityReferences(false);
 
-        Document document;
         try {
             DocumentBuilder db = dbf.newDocumentBuilder();
-            document = db.parse(inputStream);
+            return db.parse(inputStream);
         } catch (SAXException | IOException e) {
             LOG.warn("Error parsing input. Set log to DEBUG for more information.");
             LOG.debug("Error parsing input. {}", e);
@@ -122,10 +150,20 @@ public class TreParser {
             LOG.debug("Error creating DocumentBuilder. {}", e);
             throw new JAXBException(e);
         }
-        tresStructure = (Tres) getUnmarshaller().unmarshal(document);
     }
 
-    private Unmarshaller getUnmarshaller() throws JAXBException {
+    /**
+     * Add TRE types to the index of TRE types by tag. If there is more than one TRE type for a tag, the first
+     * one wins.
+     */
+    private static Map<String, TreType> indexTreTypes(final Map<String, TreType> index, final List<TreType> treTypes) {
+        for (TreType treType : treTypes) {
+            index.putIfAbsent(treType.getName(), treType);
+        }
+        return index;
+    }
+
+    private static Unmarshaller getUnmarshaller() throws JAXBException {
         JAXBContext jc = JAXBContext.newInstance(Tres.class);
         return jc.createUnmarshaller();
     }
@@ -139,7 +177,7 @@ public class TreParser {
     public final void registerAdditionalTREdescriptor(final Source source) throws NitfFormatException {
         try {
             Tres extraTres = (Tres) getUnmarshaller().unmarshal(source);
-            tresStructure.getTre().addAll(extraTres.getTre());
+            addTreTypes(extraTres.getTre());
         } catch (JAXBException ex) {
             LOG.warn("JAXBException parsing additional TRE XML specification", ex);
             throw new NitfFormatException(TRE_XML_LOAD_ERROR_MESSAGE + ex.getMessage());
@@ -282,12 +320,7 @@ public class TreParser {
     }
 
     private TreType getTreTypeForTag(final String tag) {
-        for (TreType treType : tresStructure.getTre()) {
-            if (treType.getName().equals(tag.trim())) {
-                return treType;
-            }
-        }
-        return null;
+        return treTypesByName.get(tag.trim());
     }
 
     private TreEntry parseLoop(final LoopType loopType, final NitfReader reader, final TreParams params) throws NitfFormatException {
@@ -394,28 +427,46 @@ public class TreParser {
      * @throws IOException on reading or writing problems.
      */
     public final byte[] getTREs(final TaggedRecordExtensionHandler handler, final TreSource source) throws NitfFormatException, IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writeTREs(handler, source);
+        return mOutputBuffer.toByteArray(0);
+    }
+
+    /**
+     * Get the length of the serialised TREs for the specified source.
+     * <p>
+     * This is the same as getTREs(handler, source).length, but without copying out the serialised TREs.
+     *
+     * @param handler the TRE handler to read TREs from
+     * @param source the source (which has to match the header) of the TREs.
+     * @return length of the serialised TREs, in bytes - may be zero if there are no TREs.
+     * @throws NitfFormatException on TRE parsing problem.
+     */
+    public final int getTREsLength(final TaggedRecordExtensionHandler handler, final TreSource source) throws NitfFormatException {
+        writeTREs(handler, source);
+        return mOutputBuffer.position();
+    }
+
+    private void writeTREs(final TaggedRecordExtensionHandler handler, final TreSource source) throws NitfFormatException {
+        mOutputBuffer.reset();
         for (Tre tre : handler.getTREsRawStructure().getTREsForSource(source)) {
-            String name = padStringToLength(tre.getName(), TAG_LENGTH);
-            baos.write(name.getBytes(StandardCharsets.ISO_8859_1));
+            mOutputBuffer.putPaddedString(tre.getName(), TAG_LENGTH);
             if (tre.getRawData() != null) {
-                String tagLen = padIntegerToLength(tre.getRawData().length, TAGLEN_LENGTH);
-                baos.write(tagLen.getBytes(StandardCharsets.ISO_8859_1));
-                baos.write(tre.getRawData());
+                mOutputBuffer.putInteger(tre.getRawData().length, TAGLEN_LENGTH);
+                mOutputBuffer.putBytes(tre.getRawData());
             } else {
-                byte[] treData = serializeTRE(tre);
-                baos.write(padIntegerToLength(treData.length, TAGLEN_LENGTH).getBytes(StandardCharsets.ISO_8859_1));
-                baos.write(treData);
+                int tagLenPosition = mOutputBuffer.position();
+                mOutputBuffer.putSpaces(TAGLEN_LENGTH);
+                writeTRE(tre);
+                int treLength = mOutputBuffer.position() - tagLenPosition - TAGLEN_LENGTH;
+                if (treLength > MAX_TRE_LENGTH) {
+                    throw new NitfFormatException("TRE " + tre.getName() + " is too long to serialise: " + treLength);
+                }
+                mOutputBuffer.patchInteger(tagLenPosition, treLength, TAGLEN_LENGTH);
             }
         }
-        if (baos.size() > getValidSizeForTreSource(source)) {
+        if (mOutputBuffer.position() > getValidSizeForTreSource(source)) {
             throw new NitfFormatException("TREs exceed valid limit for source");
         }
-        return baos.toByteArray();
-    }
-
-    private String padIntegerToLength(final long number, final int length) {
-        return String.format("%0" + length + "d", number);
     }
 
     private String padStringToLength(final String s, final int length) {
@@ -440,55 +491,53 @@ public class TreParser {
      * @throws NitfFormatException if TRE serialisation fails.
      */
     public final byte[] serializeTRE(final Tre tre) throws NitfFormatException {
+        mOutputBuffer.reset();
+        writeTRE(tre);
+        return mOutputBuffer.toByteArray(0);
+    }
+
+    private void writeTRE(final Tre tre) throws NitfFormatException {
         TreType treType = getTreTypeForTag(tre.getName());
         checkTreLocationMatchesTreSource(treType.getLocation(), tre.getSource());
         TreParams parameters = new TreParams();
-        ByteArrayOutputStream output = new ByteArrayOutputStream();
-        serializeFieldOrLoopOrIf(treType.getFieldOrLoopOrIf(), tre, output, parameters);
-        return output.toByteArray();
+        serializeFieldOrLoopOrIf(treType.getFieldOrLoopOrIf(), tre, parameters);
     }
 
     private void serializeFieldOrLoopOrIf(final List<Object> fieldOrLoopOrIf,
             final TreGroup treGroup,
-            final ByteArrayOutputStream baos,
             final TreParams params) throws NitfFormatException {
-        try {
-            for (Object fieldLoopIf : fieldOrLoopOrIf) {
-                if (fieldLoopIf instanceof FieldType) {
-                    byte[] field = getFieldValue((FieldType) fieldLoopIf, treGroup, params);
-                    baos.write(field);
-                } else if (fieldLoopIf instanceof LoopType) {
-                    LoopType loopType = (LoopType) fieldLoopIf;
-                    TreEntry loopDataEntry = treGroup.getEntry(loopType.getName());
-                    for (TreGroup subGroup : loopDataEntry.getGroups()) {
-                        serializeFieldOrLoopOrIf(loopType.getFieldOrLoopOrIf(), subGroup, baos, params);
-                    }
-                } else if (fieldLoopIf instanceof IfType) {
-                    IfType ifType = (IfType) fieldLoopIf;
-                    if (evaluateCondition(ifType.getCond(), params)) {
-                        serializeFieldOrLoopOrIf(ifType.getFieldOrLoopOrIf(), treGroup, baos, params);
-                    }
-                } else {
-                    throw new NitfFormatException("Unexpected TRE structure type");
+        for (Object fieldLoopIf : fieldOrLoopOrIf) {
+            if (fieldLoopIf instanceof FieldType) {
+                writeFieldValue((FieldType) fieldLoopIf, treGroup, params);
+            } else if (fieldLoopIf instanceof LoopType) {
+                LoopType loopType = (LoopType) fieldLoopIf;
+                TreEntry loopDataEntry = treGroup.getEntry(loopType.getName());
+                for (TreGroup subGroup : loopDataEntry.getGroups()) {
+                    serializeFieldOrLoopOrIf(loopType.getFieldOrLoopOrIf(), subGroup, params);
+                }
+            } else if (fieldLoopIf instanceof IfType) {
+                IfType ifType = (IfType) fieldLoopIf;
+                if (evaluateCondition(ifType.getCond(), params)) {
+                    serializeFieldOrLoopOrIf(ifType.getFieldOrLoopOrIf(), treGroup, params);
                 }
+            } else {
+                throw new NitfFormatException("Unexpected TRE structure type");
             }
-        } catch (IOException ex) {
-            throw new NitfFormatException("Failed to write TRE:" + ex.getMessage());
         }
     }
 
-    private byte[] getFieldValue(final FieldType fieldType, final TreGroup treGroup, final TreParams params) throws NitfFormatException {
+    private void writeFieldValue(final FieldType fieldType, final TreGroup treGroup, final TreParams params) throws NitfFormatException {
         String fieldTypeName = getFieldTypeName(fieldType);
         if (fieldTypeName != null) {
             TreEntry entry = treGroup.getEntry(fieldTypeName);
-            return getValueForEntry(params, fieldType, entry);
+            writeValueForEntry(params, fieldType, entry);
         } else {
             // This is a pad field
             String value = fieldType.getFixedValue();
             if ((value != null) && (!value.isEmpty())) {
-                return value.getBytes(StandardCharsets.ISO_8859_1);
+                mOutputBuffer.putString(value);
             } else {
-                return padStringToLength("", fieldType.getLength().intValueExact()).getBytes(StandardCharsets.ISO_8859_1);
+                mOutputBuffer.putSpaces(fieldType.getLength().intValueExact());
             }
         }
     }
@@ -501,7 +550,7 @@ public class TreParser {
         return fieldTypeName;
     }
 
-    private byte[] getValueForEntry(final TreParams params, final FieldType fieldType, final TreEntry entry)
+    private void writeValueForEntry(final TreParams params, final FieldType fieldType, final TreEntry entry)
             throws NitfFormatException {
         String value = entry.getFieldValue();
         if (value == null) {
@@ -518,7 +567,8 @@ public class TreParser {
         }
         if ((fieldType.getLength() == null) || (fieldType.getLength().intValueExact() == value.length())) {
             params.addParameter(getFieldTypeName(fieldType), value, entry.getDataType());
-            return value.getBytes(StandardCharsets.ISO_8859_1);
+            mOutputBuffer.putString(value);
+            return;
         }
         // Try to pad out to the required length.
         if (fieldType.getType() == null) {
@@ -526,60 +576,48 @@ public class TreParser {
             LOG.error(err);
             throw new NitfFormatException(err);
         }
+        int fieldLength = fieldType.getLength().intValue();
+        int start = mOutputBuffer.position();
         if (fieldType.getType().equals("integer")) {
-            value = getValidatedIntegerValue(value, fieldType);
-            params.addParameter(getFieldTypeName(fieldType), value, entry.getDataType());
-            return value.getBytes(StandardCharsets.ISO_8859_1);
-        }
-
-        if (fieldType.getType().equals("string")) {
-            value = padStringToLength(value, fieldType.getLength().intValue());
-            if (value.length() > fieldType.getLength().intValue()) {
-               throw new NitfFormatException("Incorrect length serialising out: " + fieldType.getName());
+            writeValidatedIntegerValue(value, fieldType);
+        } else if (fieldType.getType().equals("string")) {
+            if (value.length() > fieldLength) {
+                throw new NitfFormatException("Incorrect length serialising out: " + fieldType.getName());
             }
+            mOutputBuffer.putPaddedString(value, fieldLength);
+        } else if (fieldType.getType().equals("real")) {
+            writeValidatedRealValue(value, fieldType);
+        } else if (fieldType.getType().equals("UINT")) {
+            // TODO: validate range properly
+            mOutputBuffer.putZeroPaddedBytes(value.getBytes(StandardCharsets.ISO_8859_1), fieldLength);
             params.addParameter(getFieldTypeName(fieldType), value, entry.getDataType());
-            return value.getBytes(StandardCharsets.ISO_8859_1);
-        }
-
-        if (fieldType.getType().equals("real")) {
-            value = getValidatedRealValue(value, fieldType);
-            params.addParameter(getFieldTypeName(fieldType), value, entry.getDataType());
-            return value.getBytes(StandardCharsets.ISO_8859_1);
-        }
-        if (fieldType.getType().equals("UINT")) {
-            byte[] result = getValidatedUINTValue(entry.getFieldValue().getBytes(StandardCharsets.ISO_8859_1), fieldType);
-            params.addParameter(getFieldTypeName(fieldType), value, entry.getDataType());
-            // params.addUintParameter(getFieldTypeName(fieldType), result);
-            return result;
+            return;
+        } else {
+            throw new UnsupportedOperationException("Unsupported field type for serialisation:" + fieldType.getType());
         }
-        throw new UnsupportedOperationException("Unsupported field type for serialisation:" + fieldType.getType());
+        // Padded values are rare, and later conditions may refer to them, so record the value as written.
+        params.addParameter(getFieldTypeName(fieldType),
+                new String(mOutputBuffer.toByteArray(start), StandardCharsets.ISO_8859_1), entry.getDataType());
     }
 
-
-    private String getValidatedIntegerValue(final String value, final FieldType fieldType) throws NitfFormatException {
-        String paddedValue;
-
+    private void writeValidatedIntegerValue(final String value, final FieldType fieldType) throws NitfFormatException {
         // Allow null values for TREs that require them.
-        if (value == null || value.trim().length() == 0) {
-            paddedValue = padStringToLength("", fieldType.getLength().intValue());
-        } else {
-            if (value.length() > fieldType.getLength()
-                    .intValue()) {
-                throw new NitfFormatException("Incorrect length serialising out: " + fieldType.getName());
-            }
-            try {
-                int intValue = Integer.parseInt(value);
-                validateIntegerValueRange(intValue, fieldType);
-                paddedValue = padIntegerToLength(intValue,
-                        fieldType.getLength()
-                                .intValue());
-            } catch (NumberFormatException ex) {
-                String err = "Could not parse " + fieldType.getName() + " value " + value + " as a number.";
-                LOG.error(err);
-                throw new NitfFormatException(err);
-            }
+        if (value.trim().length() == 0) {
+            mOutputBuffer.putSpaces(fieldType.getLength().intValue());
+            return;
+        }
+        if (value.length() > fieldType.getLength().intValue()) {
+            throw new NitfFormatException("Incorrect length serialising out: " + fieldType.getName());
+        }
+        try {
+            int intValue = Integer.parseInt(value);
+            validateIntegerValueRange(intValue, fieldType);
+            mOutputBuffer.putInteger(intValue, fieldType.getLength().intValue());
+        } catch (NumberFormatException ex) {
+            String err = "Could not parse " + fieldType.getName() + " value " + value + " as a number.";
+            LOG.error(err);
+            throw new NitfFormatException(err);
         }
-        return paddedValue;
     }
 
     private void validateIntegerValueRange(final int intValue, final FieldType fieldType) throws NitfFormatException {
@@ -597,26 +635,21 @@ public class TreParser {
         }
     }
 
-    private String getValidatedRealValue(final String value, final FieldType fieldType) throws NitfFormatException {
-        String paddedValue;
+    private void writeValidatedRealValue(final String value, final FieldType fieldType) throws NitfFormatException {
         // allow null values for TREs that require them, such as the PIATGB in the TGTLAT and TGTLON fields
-        if (value == null || value.trim().length() == 0) {
-            paddedValue = padStringToLength("", fieldType.getLength().intValue());
-        } else {
-            try {
-                double realValue = Double.parseDouble(value);
-                validateRealValueRange(realValue, fieldType);
-                paddedValue = padRealToLength(realValue,
-                        fieldType.getFormat(),
-                        fieldType.getLength()
-                                .intValue());
-            } catch (NumberFormatException ex) {
-                String err = "Could not parse " + fieldType.getName() + " value " + value + " as a floating point number.";
-                LOG.error(err);
-                throw new NitfFormatException(err);
-            }
+        if (value.trim().length() == 0) {
+            mOutputBuffer.putSpaces(fieldType.getLength().intValue());
+            return;
+        }
+        try {
+            double realValue = Double.parseDouble(value);
+            validateRealValueRange(realValue, fieldType);
+            mOutputBuffer.putString(padRealToLength(realValue, fieldType.getFormat(), fieldType.getLength().intValue()));
+        } catch (NumberFormatException ex) {
+            String err = "Could not parse " + fieldType.getName() + " value " + value + " as a floating point number.";
+            LOG.error(err);
+            throw new NitfFormatException(err);
         }
-        return paddedValue;
     }
 
     private void validateRealValueRange(final double realValue, final FieldType fieldType) throws NitfFormatException {
@@ -634,23 +667,6 @@ public class TreParser {
         }
     }
 
-    private byte[] getValidatedUINTValue(final byte[] value, final FieldType fieldType) {
-        // TODO: validate range properly
-        int requiredLength = fieldType.getLength().intValueExact();
-        if (requiredLength > value.length) {
-            byte[] paddedResult = new byte[requiredLength];
-            int numPadBytes = requiredLength - value.length;
-            for (int i = 0; i < numPadBytes; ++i) {
-                paddedResult[i] = 0;
-            }
-            for (int i = 0; i < value.length; ++i) {
-                paddedResult[i + numPadBytes] = value[i];
-            }
-            return paddedResult;
-        }
-        return value;
-    }
-
     private void checkTreLocationMatchesTreSource(final String location, final TreSource source) throws NitfFormatException {
         if (location == null) {
             // We don't have a fixed location for this TRE.
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.impl.FileReader;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.image.ImageCoordinates;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.impl.FootprintEntry;
+import org.codice.imaging.nitf.core.impl.FootprintIndex;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the spatial index over image footprints.
+ */
+public class FootprintIndexTest {
+
+    private static final String[] TEST_FILES = new String[] {"/gdal3453.ntf", "/autzen-utm10.ntf", "/JitcNitf21Samples/ns3361c.nsf",
+        "/JitcNitf21Samples/ns3051v.nsf", "/JitcNitf20Samples/U_1050A.NTF"};
+
+    private static final double TOLERANCE = 1e-9;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private ExecutorService executor;
+
+    @Before
+    public void createExecutor() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    private Path getTestFile(final String testfile) throws URISyntaxException {
+        assertNotNull("Test file missing", getClass().getResource(testfile));
+        return new File(getClass().getResource(testfile).toURI()).toPath();
+    }
+
+    private List<Path> getTestFiles() throws URISyntaxException {
+        List<Path> files = new ArrayList<>();
+        for (String testfile : TEST_FILES) {
+            files.add(getTestFile(testfile));
+        }
+        return files;
+    }
+
+    private List<ImageSegment> parseImages(final Path file) throws NitfFormatException {
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.HEADERS_ONLY);
+        FileReader reader = new FileReader(file.toFile());
+        NitfParser.parse(reader, parseStrategy);
+        reader.close();
+        return parseStrategy.getDataSource().getImageSegments();
+    }
+
+    private List<ImageSegment> getGeolocatedImages(final List<Path> files) throws NitfFormatException {
+        List<ImageSegment> images = new ArrayList<>();
+        for (Path file : files) {
+            for (ImageSegment image : parseImages(file)) {
+                if (image.getImageCoordinates() != null) {
+                    images.add(image);
+                }
+            }
+        }
+        return images;
+    }
+
+    @Test
+    public void checkEntriesMatchImageCoordinates() throws Exception {
+        List<Path> files = getTestFiles();
+        FootprintIndex index = FootprintIndex.build(files, executor, folder.getRoot().toPath().resolve("footprints.nfpx"));
+        assertThat(index.getFileCount(), is(files.size()));
+        assertThat(index.getEntryCount(), is(getGeolocatedImages(files).size()));
+        assertTrue(index.getEntryCount() > 0);
+
+        List<FootprintEntry> all = index.query(-90, -180, 90, 180);
+        assertThat(all.size(), is(index.getEntryCount()));
+        for (FootprintEntry entry : all) {
+            ImageSegment image = parseImages(entry.getFile()).get(entry.getSegmentIndex());
+            ImageCoordinates coordinates = image.getImageCoordinates();
+            assertEquals(coordinates.getCoordinate00().getLatitude(), entry.getCornerLatitude(0), TOLERANCE);
+            assertEquals(coordinates.getCoordinate00().getLongitude(), entry.getCornerLongitude(0), TOLERANCE);
+            assertEquals(coordinates.getCoordinateMaxRowMaxCol().getLatitude(), entry.getCornerLatitude(2), TOLERANCE);
+            assertEquals(coordinates.getCoordinateMaxRow0().getLongitude(), entry.getCornerLongitude(3), TOLERANCE);
+            assertTrue(entry.getDataOffset() > entry.getSubheaderOffset());
+            assertThat(entry.getDataOffset() - entry.getSubheaderOffset(), is((long) image.getHeaderLength()));
+        }
+    }
+
+    @Test
+    public void checkBoundingBoxQuery() throws Exception {
+        Path file = getTestFile("/gdal3453.ntf");
+        FootprintIndex index = FootprintIndex.build(Collections.singletonList(file), executor,
+                folder.getRoot().toPath().resolve("footprints.nfpx"));
+        ImageCoordinates coordinates = parseImages(file).get(0).getImageCoordinates();
+        double latitude = coordinates.getCoordinate00().getLatitude();
+        double longitude = coordinates.getCoordinate00().getLongitude();
+
+        List<FootprintEntry> hits = index.query(latitude - 0.001, longitude - 0.001, latitude + 0.001, longitude + 0.001);
+        assertThat(hits.size(), is(1));
+        assertThat(hits.get(0).getFile(), is(file));
+        assertThat(hits.get(0).getSegmentIndex(), is(0));
+
+        assertTrue(index.query(latitude + 10, longitude + 10, latitude + 11, longitude + 11).isEmpty());
+    }
+
+    @Test
+    public void checkPointQuery() throws Exception {
+        Path file = getTestFile("/gdal3453.ntf");
+        FootprintIndex index = FootprintIndex.build(Collections.singletonList(file), executor,
+                folder.getRoot().toPath().resolve("footprints.nfpx"));
+        FootprintEntry entry = index.query(-90, -180, 90, 180).get(0);
+        double centreLatitude = 0;
+        double centreLongitude = 0;
+        for (int i = 0; i < 4; ++i) {
+            centreLatitude += entry.getCornerLatitude(i) / 4;
+            centreLongitude += entry.getCornerLongitude(i) / 4;
+        }
+        assertThat(index.query(centreLatitude, centreLongitude).size(), is(1));
+        assertTrue(index.query(centreLatitude + 10, centreLongitude).isEmpty());
+    }
+
+    @Test
+    public void checkManyFootprints() throws Exception {
+        // Enough entries for several levels of the tree.
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 300; ++i) {
+            files.addAll(getTestFiles());
+        }
+        FootprintIndex index = FootprintIndex.build(files, executor, folder.getRoot().toPath().resolve("footprints.nfpx"));
+        int perCopy = getGeolocatedImages(getTestFiles()).size();
+        assertThat(index.getEntryCount(), is(perCopy * 300));
+        assertThat(index.query(-90, -180, 90, 180).size(), is(index.getEntryCount()));
+
+        FootprintEntry first = index.query(-90, -180, 90, 180).get(0);
+        double latitude = first.getCornerLatitude(0);
+        double longitude = first.getCornerLongitude(0);
+        List<FootprintEntry> hits = index.query(latitude, longitude, latitude, longitude);
+        assertThat(hits.size() % 300, is(0));
+        for (FootprintEntry hit : hits) {
+            assertThat(hit.getFile().getFileName(), is(first.getFile().getFileName()));
+        }
+    }
+
+    @Test
+    public void checkReopen() throws Exception {
+        Path indexFile = folder.getRoot().toPath().resolve("footprints.nfpx");
+        List<Path> files = getTestFiles();
+        FootprintIndex built = FootprintIndex.build(files, executor, indexFile);
+        FootprintIndex reopened = FootprintIndex.open(indexFile);
+        assertThat(reopened.getEntryCount(), is(built.getEntryCount()));
+        for (int i = 0; i < files.size(); ++i) {
+            assertThat(reopened.getFile(i), is(files.get(i)));
+        }
+    }
+
+    @Test
+    public void checkUnparseableFileSkipped() throws Exception {
+        Path bad = folder.newFile("bad.ntf").toPath();
+        Files.write(bad, "Not a NITF file".getBytes("UTF-8"));
+        Path good = getTestFile("/gdal3453.ntf");
+        FootprintIndex index = FootprintIndex.build(Arrays.asList(bad, good), executor,
+                folder.getRoot().toPath().resolve("footprints.nfpx"));
+        assertThat(index.getFileCount(), is(2));
+        assertThat(index.getEntryCount(), is(1));
+        assertThat(index.query(-90, -180, 90, 180).get(0).getFile(), is(good));
+    }
+
+    @Test
+    public void checkEmptyIndex() throws Exception {
+        FootprintIndex index = FootprintIndex.build(Collections.emptyList(), executor,
+                folder.getRoot().toPath().resolve("footprints.nfpx"));
+        assertThat(index.getEntryCount(), is(0));
+        assertTrue(index.query(-90, -180, 90, 180).isEmpty());
+        assertTrue(index.query(0, 0).isEmpty());
+    }
+
+    @Test
+    public void checkNotAnIndex() throws IOException {
+        Path notIndex = folder.newFile("footprints.nfpx").toPath();
+        Files.write(notIndex, new byte[64]);
+        exception.expect(IOException.class);
+        exception.expectMessage("Not a footprint index");
+        FootprintIndex.open(notIndex);
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.impl.FileReader;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.impl.ConfigurableHeapStrategy;
+import org.codice.imaging.nitf.core.impl.HeapStrategyConfiguration;
+import org.codice.imaging.nitf.core.impl.MemoryBudget;
+import org.codice.imaging.nitf.core.impl.MemoryExhaustionPolicy;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Tests for the shared memory budget, and its use by ConfigurableHeapStrategy.
+ */
+public class MemoryBudgetTest {
+
+    private static final String TEST_FILE = "/JitcNitf21Samples/ns3361c.nsf";
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private File getTestFile() throws URISyntaxException {
+        assertNotNull("Test file missing", getClass().getResource(TEST_FILE));
+        return new File(getClass().getResource(TEST_FILE).toURI());
+    }
+
+    @Test
+    public void checkTryReserve() {
+        MemoryBudget budget = new MemoryBudget(100);
+        MemoryBudget.Reservation first = budget.tryReserve(60);
+        assertNotNull(first);
+        assertThat(first.getBytes(), is(60L));
+        assertNull(budget.tryReserve(41));
+        MemoryBudget.Reservation second = budget.tryReserve(40);
+        assertNotNull(second);
+        assertThat(budget.getReserved(), is(100L));
+        assertThat(budget.getAvailable(), is(0L));
+
+        first.close();
+        first.close();
+        assertThat(budget.getReserved(), is(40L));
+        second.close();
+        assertThat(budget.getReserved(), is(0L));
+        assertThat(budget.getPeakReserved(), is(100L));
+        assertThat(budget.getGrantedCount(), is(2L));
+        assertThat(budget.getRejectedCount(), is(1L));
+        assertThat(budget.getWaitCount(), is(0L));
+    }
+
+    @Test
+    public void checkReserveWaitsForRelease() throws Exception {
+        MemoryBudget budget = new MemoryBudget(100, 10, TimeUnit.SECONDS);
+        MemoryBudget.Reservation held = budget.tryReserve(80);
+        CountDownLatch started = new CountDownLatch(1);
+        Thread releaser = new Thread(() -> {
+            try {
+                started.await();
+                Thread.sleep(50);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            held.close();
+        });
+        releaser.start();
+        started.countDown();
+        try (MemoryBudget.Reservation reservation = budget.reserve(50)) {
+            assertNotNull(reservation);
+            assertThat(budget.getReserved(), is(50L));
+        }
+        releaser.join();
+        assertThat(budget.getReserved(), is(0L));
+        assertThat(budget.getWaitCount(), is(1L));
+        assertTrue(budget.getTotalWaitTime(TimeUnit.NANOSECONDS) > 0);
+    }
+
+    @Test
+    public void checkReserveTimesOut() throws InterruptedException {
+        MemoryBudget budget = new MemoryBudget(100, 20, TimeUnit.MILLISECONDS);
+        MemoryBudget.Reservation held = budget.tryReserve(80);
+        assertNull(budget.reserve(50));
+        assertThat(budget.getWaitCount(), is(1L));
+        // Can never fit, so does not wait
+        assertNull(budget.reserve(101));
+        assertThat(budget.getWaitCount(), is(1L));
+        assertThat(budget.getRejectedCount(), is(2L));
+        held.close();
+    }
+
+    @Test
+    public void checkInvalidCapacity() {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid capacityBytes parameter ( -1 ), it should be >= 0.");
+        new MemoryBudget(-1);
+    }
+
+    private SlottedParseStrategy parse(final ConfigurableHeapStrategy<ImageInputStream> heapStrategy)
+            throws NitfFormatException, URISyntaxException {
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.ALL_SEGMENT_DATA);
+        parseStrategy.setImageHeapStrategy(heapStrategy);
+        FileReader reader = new FileReader(getTestFile());
+        try {
+            NitfParser.parse(reader, parseStrategy);
+        } finally {
+            reader.close();
+        }
+        return parseStrategy;
+    }
+
+    private ConfigurableHeapStrategy<ImageInputStream> createHeapStrategy(final MemoryBudget budget,
+            final MemoryExhaustionPolicy policy) {
+        return new ConfigurableHeapStrategy<>(new HeapStrategyConfiguration(length -> false), budget, policy,
+                FileImageInputStream::new, MemoryCacheImageInputStream::new);
+    }
+
+    @Test
+    public void checkHeapStrategyReservesUntilCleanUp() throws Exception {
+        MemoryBudget budget = new MemoryBudget(Long.MAX_VALUE);
+        ConfigurableHeapStrategy<ImageInputStream> heapStrategy = createHeapStrategy(budget, MemoryExhaustionPolicy.FAIL);
+        SlottedParseStrategy parseStrategy = parse(heapStrategy);
+        long total = 0;
+        for (ImageSegment image : parseStrategy.getDataSource().getImageSegments()) {
+            assertNotNull(image.getData());
+            total += image.getDataLength();
+        }
+        assertThat(budget.getReserved(), is(total));
+        assertThat(budget.getGrantedCount(), is((long) parseStrategy.getDataSource().getImageSegments().size()));
+        heapStrategy.cleanUp();
+        assertThat(budget.getReserved(), is(0L));
+    }
+
+    @Test
+    public void checkHeapStrategySpills() throws Exception {
+        MemoryBudget budget = new MemoryBudget(1);
+        ConfigurableHeapStrategy<ImageInputStream> heapStrategy = createHeapStrategy(budget, MemoryExhaustionPolicy.SPILL);
+        SlottedParseStrategy parseStrategy = parse(heapStrategy);
+        for (ImageSegment image : parseStrategy.getDataSource().getImageSegments()) {
+            assertNotNull(image.getData());
+        }
+        assertThat(budget.getReserved(), is(0L));
+        assertThat(budget.getRejectedCount(), is((long) parseStrategy.getDataSource().getImageSegments().size()));
+        assertTrue(heapStrategy.isRenderable(2));
+        heapStrategy.cleanUp();
+    }
+
+    @Test
+    public void checkHeapStrategyFailsFast() throws Exception {
+        MemoryBudget budget = new MemoryBudget(1);
+        ConfigurableHeapStrategy<ImageInputStream> heapStrategy = createHeapStrategy(budget, MemoryExhaustionPolicy.FAIL);
+        assertFalse(heapStrategy.isRenderable(2));
+        assertTrue(heapStrategy.isRenderable(1));
+        exception.expect(NitfFormatException.class);
+        exception.expectMessage("Memory budget exhausted");
+        budget.tryReserve(1);
+        heapStrategy.handleSegment(null, 1);
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.SegmentType;
+import org.codice.imaging.nitf.core.common.impl.FileChannelReader;
+import org.codice.imaging.nitf.core.common.impl.FileReader;
+import org.codice.imaging.nitf.core.common.impl.NitfInputStreamReader;
+import org.codice.imaging.nitf.core.header.NitfHeader;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.impl.MetadataBatch;
+import org.codice.imaging.nitf.core.impl.MetadataColumnType;
+import org.codice.imaging.nitf.core.impl.MetadataExtractor;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+import org.codice.imaging.nitf.core.tre.Tre;
+import org.junit.Test;
+
+/**
+ * Tests for columnar metadata extraction.
+ */
+public class MetadataExtractorTest {
+
+    private static final String MULTIPLE_IMAGES = "/JitcNitf21Samples/ns3361c.nsf";
+
+    private static final String BLOCKA_IMAGE = "/gdal3453.ntf";
+
+    private static final String ACFTB_IMAGE = "/fromVTS/GHSarNITF21_good.ntf";
+
+    @Test
+    public void checkImageRowsMatchDataSource() throws Exception {
+        MetadataExtractor<ImageSegment> extractor = createImageExtractor();
+        MetadataBatch batch = extractor.createBatch(1);
+        String[] files = new String[] {MULTIPLE_IMAGES, BLOCKA_IMAGE, MULTIPLE_IMAGES};
+        int expectedRows = 0;
+        for (int i = 0; i < files.length; ++i) {
+            FileChannelReader reader = new FileChannelReader(getTestFile(files[i]));
+            try {
+                int rows = extractor.extract(reader, i, batch);
+                assertEquals(parse(getTestFile(files[i])).getImageSegments().size(), rows);
+                expectedRows += rows;
+            } finally {
+                reader.close();
+            }
+        }
+        assertEquals(expectedRows, batch.getRowCount());
+
+        int row = 0;
+        for (int i = 0; i < files.length; ++i) {
+            DataSource expected = parse(getTestFile(files[i]));
+            for (ImageSegment image : expected.getImageSegments()) {
+                assertEquals(i, batch.getFileIndex(row));
+                assertEquals(expected.getImageSegments().indexOf(image), batch.getSegmentIndex(row));
+                assertEquals(expected.getNitfHeader().getFileTitle(), batch.getString(0, row));
+                assertEquals(expected.getNitfHeader().getComplexityLevel(), batch.getInt(1, row));
+                assertEquals(image.getIdentifier(), batch.getString(2, row));
+                assertEquals(image.getNumberOfRows(), batch.getLong(3, row));
+                assertEquals(image.getNumberOfColumns(), batch.getLong(4, row));
+                row++;
+            }
+        }
+        // Four image segments from the same file share a title.
+        assertEquals(2, batch.getDictionary(0).size());
+        assertEquals(batch.getDictionaryCodes(0)[0], batch.getDictionaryCodes(0)[5]);
+    }
+
+    @Test
+    public void checkTreColumns() throws Exception {
+        MetadataExtractor<ImageSegment> extractor = createImageExtractor();
+        extractor.addTreColumn("BLOCK_INSTANCE", "BLOCKA.BLOCK_INSTANCE", MetadataColumnType.INT);
+        extractor.addTreColumn("FRFC_LOC", "BLOCKA.FRFC_LOC", MetadataColumnType.STRING);
+        extractor.addTreColumn("FRFC_LOC_AS_NUMBER", "BLOCKA.FRFC_LOC", MetadataColumnType.DOUBLE);
+        extractor.addTreColumn("MISSING", "RPC00B.LINE_OFF", MetadataColumnType.DOUBLE);
+        extractor.addTreColumn("BAD_INDEX", "BLOCKA.BLOCK_INSTANCE[3].X", MetadataColumnType.LONG);
+        MetadataBatch batch = extractor.createBatch(4);
+
+        FileReader reader = new FileReader(getTestFile(BLOCKA_IMAGE));
+        try {
+            assertEquals(1, extractor.extract(reader, 0, batch));
+        } finally {
+            reader.close();
+        }
+
+        Tre blocka = parse(getTestFile(BLOCKA_IMAGE)).getImageSegments().get(0).getTREsRawStructure().getTREsWithName("BLOCKA").get(0);
+        assertEquals(Integer.parseInt(blocka.getFieldValue("BLOCK_INSTANCE").trim()),
+                batch.getInt(batch.getColumnIndex("BLOCK_INSTANCE"), 0));
+        int frfcColumn = batch.getColumnIndex("FRFC_LOC");
+        assertEquals(blocka.getFieldValue("FRFC_LOC").trim(), batch.getString(frfcColumn, 0));
+        assertFalse(batch.isNull(frfcColumn, 0));
+        int numberColumn = batch.getColumnIndex("FRFC_LOC_AS_NUMBER");
+        assertTrue(batch.isNull(numberColumn, 0));
+        assertTrue(Double.isNaN(batch.getDouble(numberColumn, 0)));
+        assertTrue(batch.isNull(batch.getColumnIndex("MISSING"), 0));
+        assertTrue(batch.getNulls(batch.getColumnIndex("BAD_INDEX")).get(0));
+        assertEquals(0, batch.getLongs(batch.getColumnIndex("BAD_INDEX"))[0]);
+    }
+
+    @Test
+    public void checkPaddedTreTag() throws Exception {
+        MetadataExtractor<ImageSegment> extractor = new MetadataExtractor<>(SegmentType.IMAGE, ImageSegment.class);
+        extractor.addTreColumn("AC_MSN_ID", "ACFTB.AC_MSN_ID", MetadataColumnType.STRING);
+        MetadataBatch batch = extractor.createBatch(1);
+
+        FileReader reader = new FileReader(getTestFile(ACFTB_IMAGE));
+        try {
+            assertEquals(1, extractor.extract(reader, 0, batch));
+        } finally {
+            reader.close();
+        }
+
+        int column = batch.getColumnIndex("AC_MSN_ID");
+        assertFalse(batch.isNull(column, 0));
+        assertEquals("ALASKA1_04", batch.getString(column, 0));
+    }
+
+    @Test
+    public void checkFileRowsFromStream() throws Exception {
+        MetadataExtractor<ImageSegment> extractor = new MetadataExtractor<>();
+        extractor.addHeaderString("FTITLE", NitfHeader::getFileTitle);
+        extractor.addHeaderLong("FL", h -> 0L);
+        extractor.addHeaderDouble("CLEVEL", NitfHeader::getComplexityLevel);
+        MetadataBatch batch = extractor.createBatch(0);
+        File file = getTestFile(MULTIPLE_IMAGES);
+        try (InputStream is = new FileInputStream(file)) {
+            assertEquals(1, extractor.extract(new NitfInputStreamReader(is), 7, batch));
+        }
+        DataSource expected = parse(file);
+        assertEquals(1, batch.getRowCount());
+        assertEquals(7, batch.getFileIndex(0));
+        assertEquals(-1, batch.getSegmentIndex(0));
+        assertEquals(expected.getNitfHeader().getFileTitle(), batch.getString(0, 0));
+        assertEquals(expected.getNitfHeader().getComplexityLevel(), batch.getDoubles(2)[0], 0.0);
+        assertEquals(MetadataColumnType.DOUBLE, batch.getColumnType(2));
+        assertEquals("CLEVEL", batch.getColumnName(2));
+        assertEquals(-1, batch.getColumnIndex("NO SUCH COLUMN"));
+
+        batch.clear();
+        assertEquals(0, batch.getRowCount());
+        assertEquals(1, batch.getDictionary(0).size());
+    }
+
+    @Test
+    public void checkImageSegmentsFromStream() throws Exception {
+        MetadataExtractor<ImageSegment> extractor = createImageExtractor();
+        MetadataBatch batch = extractor.createBatch(0);
+        File file = getTestFile(MULTIPLE_IMAGES);
+        try (InputStream is = new FileInputStream(file)) {
+            assertEquals(4, extractor.extract(new NitfInputStreamReader(is), 0, batch));
+        }
+        assertEquals(parse(file).getImageSegments().get(3).getIdentifier(), batch.getString(2, 3));
+        assertEquals(4, batch.getInts(1).length);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void checkNoSegmentColumnsForFileRows() {
+        new MetadataExtractor<ImageSegment>().addSegmentInt("X", s -> 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkDuplicateColumnName() {
+        MetadataExtractor<ImageSegment> extractor = createImageExtractor();
+        extractor.addSegmentDouble("IID1", s -> 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkBadTrePath() {
+        new MetadataExtractor<>().addTreColumn("X", "BLOCKA", MetadataColumnType.INT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkBadTrePathIndex() {
+        new MetadataExtractor<>().addTreColumn("X", "ACCHZB.ACHZ[A].UNIAAH", MetadataColumnType.INT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkWrongColumnType() throws Exception {
+        MetadataExtractor<ImageSegment> extractor = createImageExtractor();
+        MetadataBatch batch = extractor.createBatch(1);
+        FileReader reader = new FileReader(getTestFile(BLOCKA_IMAGE));
+        try {
+            extractor.extract(reader, 0, batch);
+        } finally {
+            reader.close();
+        }
+        batch.getDouble(0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkBatchFromOtherExtractor() throws Exception {
+        MetadataBatch batch = new MetadataExtractor<>().createBatch(1);
+        FileReader reader = new FileReader(getTestFile(BLOCKA_IMAGE));
+        try {
+            createImageExtractor().extract(reader, 0, batch);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void checkRowOutOfRange() {
+        createImageExtractor().createBatch(1).getInt(1, 0);
+    }
+
+    @Test
+    public void checkNullString() throws Exception {
+        MetadataExtractor<ImageSegment> extractor = new MetadataExtractor<>(SegmentType.IMAGE, ImageSegment.class);
+        extractor.addSegmentString("NOTHING", s -> null);
+        MetadataBatch batch = extractor.createBatch(1);
+        FileReader reader = new FileReader(getTestFile(BLOCKA_IMAGE));
+        try {
+            extractor.extract(reader, 0, batch);
+        } finally {
+            reader.close();
+        }
+        assertNull(batch.getString(0, 0));
+        assertEquals(-1, batch.getDictionaryCodes(0)[0]);
+    }
+
+    private MetadataExtractor<ImageSegment> createImageExtractor() {
+        MetadataExtractor<ImageSegment> extractor = new MetadataExtractor<>(SegmentType.IMAGE, ImageSegment.class);
+        extractor.addHeaderString("FTITLE", NitfHeader::getFileTitle);
+        extractor.addHeaderInt("CLEVEL", NitfHeader::getComplexityLevel);
+        extractor.addSegmentString("IID1", ImageSegment::getIdentifier);
+        extractor.addSegmentLong("NROWS", ImageSegment::getNumberOfRows);
+        extractor.addSegmentLong("NCOLS", ImageSegment::getNumberOfColumns);
+        return extractor;
+    }
+
+    private File getTestFile(final String testfile) throws URISyntaxException {
+        assertNotNull("Test file missing", getClass().getResource(testfile));
+        return new File(getClass().getResource(testfile).toURI());
+    }
+
+    private DataSource parse(final File file) throws NitfFormatException {
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.HEADERS_ONLY);
+        FileReader reader = new FileReader(file);
+        NitfParser.parse(reader, parseStrategy);
+        reader.close();
+        return parseStrategy.getDataSource();
+    }
+}
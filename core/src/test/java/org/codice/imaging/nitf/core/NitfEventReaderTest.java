@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.imageio.stream.ImageInputStream;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.SegmentType;
+import org.codice.imaging.nitf.core.common.impl.FileReader;
+import org.codice.imaging.nitf.core.common.impl.NitfInputStreamReader;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.impl.NitfEventReader;
+import org.codice.imaging.nitf.core.impl.NitfEventType;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Tests for the pull parser.
+ */
+public class NitfEventReaderTest {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void checkEventSequence() throws Exception {
+        File file = getTestFile("/JitcNitf21Samples/ns3051v.nsf");
+        DataSource expected = parse(file, SlottedParseStrategy.HEADERS_ONLY);
+
+        List<NitfEventType> events = new ArrayList<>();
+        List<SegmentType> segmentTypes = new ArrayList<>();
+        int tres = 0;
+        try (InputStream is = new FileInputStream(file)) {
+            NitfEventReader eventReader = new NitfEventReader(new NitfInputStreamReader(is));
+            assertNull(eventReader.getEventType());
+            while (eventReader.hasNext()) {
+                NitfEventType event = eventReader.next();
+                events.add(event);
+                if (event == NitfEventType.SEGMENT_SUBHEADER) {
+                    segmentTypes.add(eventReader.getSegmentType());
+                } else if (event == NitfEventType.TRE) {
+                    assertNotNull(eventReader.getTre());
+                    tres++;
+                }
+            }
+            assertEquals(expected.getNitfHeader().getFileTitle(), eventReader.getNitfHeader().getFileTitle());
+        }
+
+        assertThat(events.get(0), is(NitfEventType.FILE_HEADER));
+        assertEquals(countTres(expected), tres);
+        List<SegmentType> expectedTypes = new ArrayList<>();
+        addTypes(expectedTypes, SegmentType.IMAGE, expected.getImageSegments().size());
+        addTypes(expectedTypes, SegmentType.GRAPHIC, expected.getGraphicSegments().size());
+        addTypes(expectedTypes, SegmentType.TEXT, expected.getTextSegments().size());
+        addTypes(expectedTypes, SegmentType.DATA_EXTENSION, expected.getDataExtensionSegments().size());
+        assertEquals(expectedTypes, segmentTypes);
+        assertEquals(segmentTypes.size(), events.stream().filter(e -> e == NitfEventType.SEGMENT_DATA).count());
+    }
+
+    @Test
+    public void checkImageDataStreaming() throws Exception {
+        File file = getTestFile("/JitcNitf21Samples/ns3361c.nsf");
+        DataSource expected = parse(file, SlottedParseStrategy.ALL_SEGMENT_DATA);
+
+        List<byte[]> imageData = new ArrayList<>();
+        List<String> identifiers = new ArrayList<>();
+        try (InputStream is = new FileInputStream(file)) {
+            NitfEventReader eventReader = new NitfEventReader(new NitfInputStreamReader(is));
+            while (eventReader.hasNext()) {
+                if ((eventReader.next() == NitfEventType.SEGMENT_DATA) && (eventReader.getSegmentType() == SegmentType.IMAGE)) {
+                    identifiers.add(((ImageSegment) eventReader.getSegment()).getIdentifier());
+                    try (InputStream data = eventReader.getDataStream()) {
+                        imageData.add(readAll(data));
+                    }
+                }
+            }
+        }
+
+        assertEquals(expected.getImageSegments().size(), imageData.size());
+        for (int i = 0; i < imageData.size(); ++i) {
+            ImageSegment expectedImage = expected.getImageSegments().get(i);
+            assertEquals(expectedImage.getIdentifier(), identifiers.get(i));
+            assertArrayEquals(readAll(expectedImage.getData()), imageData.get(i));
+        }
+    }
+
+    @Test
+    public void checkPartialReadIsSkipped() throws Exception {
+        File file = getTestFile("/JitcNitf21Samples/ns3361c.nsf");
+        DataSource expected = parse(file, SlottedParseStrategy.HEADERS_ONLY);
+
+        FileReader reader = new FileReader(file);
+        try {
+            NitfEventReader eventReader = new NitfEventReader(reader);
+            int images = 0;
+            while (eventReader.hasNext()) {
+                if ((eventReader.next() == NitfEventType.SEGMENT_DATA) && (eventReader.getDataLength() > 1)) {
+                    InputStream data = eventReader.getDataStream();
+                    data.read();
+                    assertEquals(eventReader.getDataLength() - 1, data.available());
+                }
+                if (eventReader.getEventType() == NitfEventType.SEGMENT_SUBHEADER
+                        && eventReader.getSegmentType() == SegmentType.IMAGE) {
+                    assertEquals(images, eventReader.getSegmentIndex());
+                    images++;
+                }
+            }
+            assertEquals(expected.getImageSegments().size(), images);
+            eventReader.skipData();
+            assertEquals(new File(file.getPath()).length(), reader.getCurrentOffset());
+            assertFalse(eventReader.hasNext());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void checkStaleStreamRejected() throws Exception {
+        FileReader reader = new FileReader(getTestFile("/JitcNitf21Samples/ns3361c.nsf"));
+        try {
+            NitfEventReader eventReader = new NitfEventReader(reader);
+            InputStream staleData = null;
+            while (eventReader.hasNext() && (staleData == null)) {
+                if (eventReader.next() == NitfEventType.SEGMENT_DATA) {
+                    staleData = eventReader.getDataStream();
+                    assertThat(staleData.read() >= 0, is(true));
+                }
+            }
+            assertNotNull(staleData);
+            assertThat(eventReader.next(), is(NitfEventType.SEGMENT_SUBHEADER));
+            while (eventReader.next() != NitfEventType.SEGMENT_DATA) {
+                assertNotNull(eventReader.getSegment());
+            }
+            long offset = reader.getCurrentOffset();
+            exception.expect(IOException.class);
+            exception.expectMessage("Segment data stream is no longer valid");
+            try {
+                staleData.read();
+            } finally {
+                assertEquals(offset, reader.getCurrentOffset());
+                assertEquals(eventReader.getDataLength(), eventReader.getDataStream().available());
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void checkNextAfterEnd() throws Exception {
+        FileReader reader = new FileReader(getTestFile("/JitcNitf21Samples/ns3321a.nsf"));
+        try {
+            NitfEventReader eventReader = new NitfEventReader(reader);
+            while (eventReader.hasNext()) {
+                eventReader.next();
+            }
+            eventReader.next();
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void checkDataStreamOnlyForData() throws Exception {
+        FileReader reader = new FileReader(getTestFile("/JitcNitf21Samples/ns3321a.nsf"));
+        try {
+            NitfEventReader eventReader = new NitfEventReader(reader);
+            eventReader.next();
+            eventReader.getDataStream();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private File getTestFile(final String testfile) throws URISyntaxException {
+        assertNotNull("Test file missing", getClass().getResource(testfile));
+        return new File(getClass().getResource(testfile).toURI());
+    }
+
+    private DataSource parse(final File file, final int segmentsToExtract) throws NitfFormatException {
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(segmentsToExtract);
+        FileReader reader = new FileReader(file);
+        NitfParser.parse(reader, parseStrategy);
+        reader.close();
+        return parseStrategy.getDataSource();
+    }
+
+    private static void addTypes(final List<SegmentType> types, final SegmentType segmentType, final int count) {
+        for (int i = 0; i < count; ++i) {
+            types.add(segmentType);
+        }
+    }
+
+    private static int countTres(final DataSource dataSource) {
+        int count = dataSource.getNitfHeader().getTREsRawStructure().getTREs().size();
+        for (ImageSegment segment : dataSource.getImageSegments()) {
+            count += segment.getTREsRawStructure().getTREs().size();
+        }
+        count += dataSource.getGraphicSegments().stream().mapToInt(s -> s.getTREsRawStructure().getTREs().size()).sum();
+        count += dataSource.getTextSegments().stream().mapToInt(s -> s.getTREsRawStructure().getTREs().size()).sum();
+        count += dataSource.getDataExtensionSegments().stream().mapToInt(s -> s.getTREsRawStructure().getTREs().size()).sum();
+        return count;
+    }
+
+    private static byte[] readAll(final InputStream data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = data.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] readAll(final ImageInputStream data) throws IOException {
+        if (data == null) {
+            return new byte[0];
+        }
+        data.seek(0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = data.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import javax.imageio.stream.ImageInputStream;
+
+import org.codice.imaging.nitf.core.common.FileType;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.impl.FileReader;
+import org.codice.imaging.nitf.core.common.impl.NitfInputStreamReader;
+import org.codice.imaging.nitf.core.header.impl.NitfHeaderFactory;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.image.ImageCategory;
+import org.codice.imaging.nitf.core.image.ImageCompression;
+import org.codice.imaging.nitf.core.image.ImageMode;
+import org.codice.imaging.nitf.core.image.ImageRepresentation;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.image.PixelJustification;
+import org.codice.imaging.nitf.core.image.PixelValueType;
+import org.codice.imaging.nitf.core.image.impl.ImageBandImpl;
+import org.codice.imaging.nitf.core.image.impl.ImageSegmentFactory;
+import org.codice.imaging.nitf.core.image.impl.PadBlockFilter;
+import org.codice.imaging.nitf.core.impl.NitfImageStreamWriter;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+import org.codice.imaging.nitf.core.impl.SlottedStorage;
+import org.codice.imaging.nitf.core.text.TextSegment;
+import org.codice.imaging.nitf.core.text.impl.TextSegmentFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for writing image segment data block by block.
+ */
+public class NitfImageStreamWriterTest {
+
+    private static final int BLOCK_SIZE = 8;
+
+    private static final int BLOCKS_PER_ROW = 3;
+
+    private static final int BLOCKS_PER_COLUMN = 2;
+
+    private static final int MASK_TABLE_HEADER_LENGTH = 10;
+
+    private static final int PAD_VALUE = 0x7F;
+
+    private static final int GIGABYTE = 1 << 30;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void checkUncompressedToNonSeekableTarget() throws Exception {
+        SlottedStorage store = createStore(ImageCompression.NOTCOMPRESSED);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        NitfImageStreamWriter writer = new NitfImageStreamWriter(store, store.getImageSegments().get(0), Channels.newChannel(output));
+        writer.start();
+        writer.writeBlocks((row, column, band) -> ByteBuffer.wrap(block(row * BLOCKS_PER_ROW + column, BLOCK_SIZE * BLOCK_SIZE)));
+        writer.finish();
+
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.ALL_SEGMENT_DATA);
+        NitfParser.parse(new NitfInputStreamReader(new ByteArrayInputStream(output.toByteArray())), parseStrategy);
+        DataSource dataSource = parseStrategy.getDataSource();
+        ImageSegment image = dataSource.getImageSegments().get(0);
+        assertThat(image.getDataLength(), is((long) BLOCK_SIZE * BLOCK_SIZE * BLOCKS_PER_ROW * BLOCKS_PER_COLUMN));
+        byte[] data = readAll(image.getData());
+        for (int i = 0; i < BLOCKS_PER_ROW * BLOCKS_PER_COLUMN; ++i) {
+            assertArrayEquals(block(i, BLOCK_SIZE * BLOCK_SIZE),
+                    Arrays.copyOfRange(data, i * BLOCK_SIZE * BLOCK_SIZE, (i + 1) * BLOCK_SIZE * BLOCK_SIZE));
+        }
+        assertThat(dataSource.getTextSegments().get(0).getData(), is("Text after the image"));
+    }
+
+    @Test
+    public void checkMaskedBlocksAreBackFilled() throws Exception {
+        SlottedStorage store = createStore(ImageCompression.NOTCOMPRESSEDMASK);
+        File file = folder.newFile("masked.ntf");
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            NitfImageStreamWriter writer = new NitfImageStreamWriter(store, store.getImageSegments().get(0), channel);
+            writer.start();
+            writer.writeBlocks((row, column, band) -> {
+                if (column == 1) {
+                    return null;
+                }
+                return ByteBuffer.wrap(block(row * BLOCKS_PER_ROW + column, BLOCK_SIZE * BLOCK_SIZE));
+            });
+            writer.finish();
+        }
+
+        DataSource dataSource = parse(file);
+        assertThat(dataSource.getNitfHeader().getFileType(), is(FileType.NITF_TWO_ONE));
+        ImageSegment image = dataSource.getImageSegments().get(0);
+        int blockCount = BLOCKS_PER_ROW * BLOCKS_PER_COLUMN;
+        int maskTableLength = MASK_TABLE_HEADER_LENGTH + 4 * blockCount;
+        assertThat(image.getDataLength(), is((long) maskTableLength + 4 * BLOCK_SIZE * BLOCK_SIZE));
+        ImageInputStream data = image.getData();
+        data.seek(0);
+        assertThat(data.readInt(), is(maskTableLength));
+        assertThat((int) data.readShort(), is(4));
+        assertThat((int) data.readShort(), is(0));
+        assertThat((int) data.readShort(), is(0));
+        int recordedOffset = 0;
+        for (int n = 0; n < blockCount; ++n) {
+            int offset = data.readInt();
+            if (n % BLOCKS_PER_ROW == 1) {
+                assertThat(offset, is(0xFFFFFFFF));
+            } else {
+                assertThat(offset, is(recordedOffset));
+                recordedOffset += BLOCK_SIZE * BLOCK_SIZE;
+            }
+        }
+        byte[] lastBlock = new byte[BLOCK_SIZE * BLOCK_SIZE];
+        data.seek(maskTableLength + 3 * BLOCK_SIZE * BLOCK_SIZE);
+        data.readFully(lastBlock);
+        assertArrayEquals(block(blockCount - 1, BLOCK_SIZE * BLOCK_SIZE), lastBlock);
+        assertThat(dataSource.getTextSegments().get(0).getData(), is("Text after the image"));
+    }
+
+    @Test
+    public void checkPadBlocksAreDropped() throws Exception {
+        SlottedStorage store = createStore(ImageCompression.NOTCOMPRESSED);
+        ImageSegment streamed = store.getImageSegments().get(0);
+        File file = folder.newFile("padded.ntf");
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            NitfImageStreamWriter writer = new NitfImageStreamWriter(store, streamed, channel);
+            PadBlockFilter filter = new PadBlockFilter(streamed, (row, column, band) -> {
+                if (column == 2) {
+                    return ByteBuffer.wrap(block(PAD_VALUE - 1, BLOCK_SIZE * BLOCK_SIZE));
+                }
+                byte[] block = block(PAD_VALUE - 1, BLOCK_SIZE * BLOCK_SIZE);
+                block[row * BLOCK_SIZE + column] = 0;
+                return ByteBuffer.wrap(block);
+            }, PAD_VALUE);
+            writer.setPadPixelValue(filter.getPadValue());
+            writer.start();
+            writer.writeBlocks(filter);
+            writer.finish();
+            assertThat(filter.getDroppedBlockCount(), is(BLOCKS_PER_COLUMN));
+        }
+
+        DataSource dataSource = parse(file);
+        ImageSegment image = dataSource.getImageSegments().get(0);
+        assertThat(image.getImageCompression(), is(ImageCompression.NOTCOMPRESSEDMASK));
+        int blockCount = BLOCKS_PER_ROW * BLOCKS_PER_COLUMN;
+        int maskTableLength = MASK_TABLE_HEADER_LENGTH + 1 + 4 * blockCount;
+        assertThat(image.getDataLength(), is((long) maskTableLength + 4 * BLOCK_SIZE * BLOCK_SIZE));
+        ImageInputStream data = image.getData();
+        data.seek(0);
+        assertThat(data.readInt(), is(maskTableLength));
+        assertThat((int) data.readShort(), is(4));
+        assertThat((int) data.readShort(), is(0));
+        assertThat((int) data.readShort(), is(8));
+        assertThat(data.readUnsignedByte(), is(PAD_VALUE));
+        int recordedOffset = 0;
+        for (int n = 0; n < blockCount; ++n) {
+            int offset = data.readInt();
+            if (n % BLOCKS_PER_ROW == 2) {
+                assertThat(offset, is(0xFFFFFFFF));
+            } else {
+                assertThat(offset, is(recordedOffset));
+                recordedOffset += BLOCK_SIZE * BLOCK_SIZE;
+            }
+        }
+    }
+
+    @Test
+    public void checkPadValueRequiresMask() throws Exception {
+        SlottedStorage store = createStore(ImageCompression.NOTCOMPRESSED);
+        NitfImageStreamWriter writer = new NitfImageStreamWriter(store, store.getImageSegments().get(0),
+                Channels.newChannel(new ByteArrayOutputStream()));
+        writer.setPadPixelValue(PAD_VALUE);
+        exception.expect(NitfFormatException.class);
+        exception.expectMessage("A pad pixel value can only be recorded for masked compression");
+        writer.start();
+    }
+
+    @Test
+    public void checkPadBlockFilterUnsupportedCompression() throws Exception {
+        SlottedStorage store = createStore(ImageCompression.VECTORQUANTIZATION);
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Pad blocks cannot be dropped for C4 compression");
+        new PadBlockFilter(store.getImageSegments().get(0), (row, column, band) -> null, 0);
+    }
+
+    @Test
+    public void checkPadBlockFilterRejectsJpeg2000() throws Exception {
+        SlottedStorage store = createStore(ImageCompression.JPEG2000);
+        ImageSegment image = store.getImageSegments().get(0);
+        try {
+            new PadBlockFilter(image, (row, column, band) -> null, 0);
+        } catch (IllegalArgumentException ex) {
+            assertThat(ex.getMessage(), is("Pad blocks cannot be dropped for C8 compression"));
+            assertThat(image.getImageCompression(), is(ImageCompression.JPEG2000));
+            return;
+        }
+        throw new AssertionError("JPEG 2000 should not be switched to a masked variant");
+    }
+
+    @Test
+    public void checkVariableLengthBlocksAreBackFilled() throws Exception {
+        SlottedStorage store = createStore(ImageCompression.JPEG);
+        store.getImageSegments().get(0).setCompressionRate("00.0");
+        File file = folder.newFile("compressed.ntf");
+        int expectedLength = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            NitfImageStreamWriter writer = new NitfImageStreamWriter(store, store.getImageSegments().get(0), channel);
+            writer.start();
+            for (int i = 0; i < writer.getBlockCount(); ++i) {
+                writer.writeBlock(ByteBuffer.wrap(block(i, i + 1)));
+                expectedLength += i + 1;
+            }
+            writer.finish();
+        }
+        DataSource dataSource = parse(file);
+        assertThat(dataSource.getImageSegments().get(0).getDataLength(), is((long) expectedLength));
+        assertThat(dataSource.getTextSegments().get(0).getData(), is("Text after the image"));
+    }
+
+    @Test
+    public void checkMaskOffsetOutOfRange() throws Exception {
+        SlottedStorage store = createStore(ImageCompression.JPEGMASK);
+        store.getImageSegments().get(0).setCompressionRate("00.0");
+        // The block data is never read, so a sparse file mapping stands in for a large block.
+        File sparse = folder.newFile("sparse.bin");
+        try (RandomAccessFile file = new RandomAccessFile(sparse, "rw")) {
+            file.setLength(GIGABYTE);
+            ByteBuffer largeBlock = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, GIGABYTE);
+            NitfImageStreamWriter writer = new NitfImageStreamWriter(store, store.getImageSegments().get(0), new DiscardingChannel());
+            writer.start();
+            for (int i = 0; i < 4; ++i) {
+                writer.writeBlock(largeBlock.duplicate());
+            }
+            exception.expect(NitfFormatException.class);
+            exception.expectMessage("Block 4 starts at offset 4294967296, which is too large for the block mask table");
+            writer.writeBlock(largeBlock.duplicate());
+        }
+    }
+
+    @Test
+    public void checkWrongBlockLength() throws Exception {
+        SlottedStorage store = createStore(ImageCompression.NOTCOMPRESSED);
+        NitfImageStreamWriter writer = new NitfImageStreamWriter(store, store.getImageSegments().get(0),
+                Channels.newChannel(new ByteArrayOutputStream()));
+        writer.start();
+        exception.expect(NitfFormatException.class);
+        exception.expectMessage("Uncompressed block 0 is 3 bytes, expected 64");
+        writer.writeBlock(ByteBuffer.allocate(3));
+    }
+
+    @Test
+    public void checkUnrecordedBlockRequiresMask() throws Exception {
+        SlottedStorage store = createStore(ImageCompression.NOTCOMPRESSED);
+        NitfImageStreamWriter writer = new NitfImageStreamWriter(store, store.getImageSegments().get(0),
+                Channels.newChannel(new ByteArrayOutputStream()));
+        writer.start();
+        exception.expect(NitfFormatException.class);
+        exception.expectMessage("Only masked compression can have blocks that are not recorded");
+        writer.writeBlock(null);
+    }
+
+    @Test
+    public void checkMissingBlocks() throws Exception {
+        SlottedStorage store = createStore(ImageCompression.NOTCOMPRESSED);
+        NitfImageStreamWriter writer = new NitfImageStreamWriter(store, store.getImageSegments().get(0),
+                Channels.newChannel(new ByteArrayOutputStream()));
+        writer.start();
+        writer.writeBlock(ByteBuffer.allocate(BLOCK_SIZE * BLOCK_SIZE));
+        exception.expect(NitfFormatException.class);
+        exception.expectMessage("Only 1 of 6 blocks were written");
+        writer.finish();
+    }
+
+    @Test
+    public void checkCompressedRequiresSeekableTarget() throws Exception {
+        SlottedStorage store = createStore(ImageCompression.NOTCOMPRESSEDMASK);
+        exception.expect(NitfFormatException.class);
+        exception.expectMessage("Streaming NM image data requires a seekable target");
+        new NitfImageStreamWriter(store, store.getImageSegments().get(0), Channels.newChannel(new ByteArrayOutputStream()));
+    }
+
+    /**
+     * Seekable channel that only keeps track of the position and size.
+     */
+    private static final class DiscardingChannel implements SeekableByteChannel {
+        private long position = 0;
+        private long size = 0;
+
+        @Override
+        public int read(final ByteBuffer dst) {
+            return -1;
+        }
+
+        @Override
+        public int write(final ByteBuffer src) {
+            int count = src.remaining();
+            src.position(src.limit());
+            position += count;
+            size = Math.max(size, position);
+            return count;
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(final long newPosition) {
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(final long newSize) {
+            size = Math.min(size, newSize);
+            return this;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static SlottedStorage createStore(final ImageCompression compression) {
+        SlottedStorage store = new SlottedStorage();
+        store.setNitfHeader(NitfHeaderFactory.getDefault(FileType.NITF_TWO_ONE));
+        ImageSegment image = ImageSegmentFactory.getDefault(FileType.NITF_TWO_ONE);
+        image.setNumberOfRows(BLOCK_SIZE * BLOCKS_PER_COLUMN);
+        image.setNumberOfColumns(BLOCK_SIZE * BLOCKS_PER_ROW);
+        image.setPixelValueType(PixelValueType.INTEGER);
+        image.setImageRepresentation(ImageRepresentation.MONOCHROME);
+        image.setImageCategory(ImageCategory.VISUAL);
+        image.setActualBitsPerPixelPerBand(8);
+        image.setPixelJustification(PixelJustification.RIGHT);
+        image.setImageCompression(compression);
+        ImageBandImpl band = new ImageBandImpl();
+        band.setImageRepresentation("M");
+        image.addImageBand(band);
+        image.setImageMode(ImageMode.BLOCKINTERLEVE);
+        image.setNumberOfBlocksPerRow(BLOCKS_PER_ROW);
+        image.setNumberOfBlocksPerColumn(BLOCKS_PER_COLUMN);
+        image.setNumberOfPixelsPerBlockHorizontalRaw(BLOCK_SIZE);
+        image.setNumberOfPixelsPerBlockVerticalRaw(BLOCK_SIZE);
+        image.setNumberOfBitsPerPixelPerBand(8);
+        image.setImageMagnification("1.0 ");
+        store.getImageSegments().add(image);
+        TextSegment text = TextSegmentFactory.getDefault(FileType.NITF_TWO_ONE);
+        text.setData("Text after the image");
+        store.getTextSegments().add(text);
+        return store;
+    }
+
+    private static byte[] block(final int index, final int length) {
+        byte[] block = new byte[length];
+        Arrays.fill(block, (byte) (index + 1));
+        return block;
+    }
+
+    private DataSource parse(final File file) throws NitfFormatException {
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.ALL_SEGMENT_DATA);
+        FileReader reader = new FileReader(file);
+        NitfParser.parse(reader, parseStrategy);
+        reader.close();
+        return parseStrategy.getDataSource();
+    }
+
+    private byte[] readAll(final ImageInputStream data) throws IOException {
+        data.seek(0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BLOCK_SIZE];
+        int read;
+        while ((read = data.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+}
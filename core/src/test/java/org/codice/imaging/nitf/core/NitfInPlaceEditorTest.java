@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.impl.FileReader;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.impl.NitfInPlaceEditor;
+import org.codice.imaging.nitf.core.impl.NitfInPlaceEditor.SaveResult;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for in place editing of NITF files.
+ */
+public class NitfInPlaceEditorTest {
+
+    private static final int FTITLE_OFFSET = 39;
+
+    private static final int FTITLE_LENGTH = 80;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void checkUnchangedSave() throws Exception {
+        File file = copyTestFile("/JitcNitf21Samples/ns3361c.nsf");
+        byte[] original = Files.readAllBytes(file.toPath());
+        NitfInPlaceEditor editor = new NitfInPlaceEditor(file);
+        try {
+            assertThat(editor.save(), is(SaveResult.UNCHANGED));
+            assertEquals(0, editor.getPatchedByteCount());
+        } finally {
+            editor.close();
+        }
+        assertArrayEquals(original, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void checkSameLengthEditIsPatched() throws Exception {
+        File file = copyTestFile("/JitcNitf21Samples/ns3361c.nsf");
+        byte[] original = Files.readAllBytes(file.toPath());
+        NitfInPlaceEditor editor = new NitfInPlaceEditor(file);
+        try {
+            editor.getDataSource().getNitfHeader().setFileTitle("Edited in place");
+            assertThat(editor.save(), is(SaveResult.PATCHED));
+            assertTrue(editor.getPatchedByteCount() > 0);
+            assertTrue(editor.getPatchedByteCount() <= FTITLE_LENGTH);
+        } finally {
+            editor.close();
+        }
+
+        byte[] patched = Files.readAllBytes(file.toPath());
+        assertEquals(original.length, patched.length);
+        for (int i = 0; i < original.length; ++i) {
+            if (original[i] != patched[i]) {
+                assertTrue("Unexpected change at offset " + i, (i >= FTITLE_OFFSET) && (i < FTITLE_OFFSET + FTITLE_LENGTH));
+            }
+        }
+        assertThat(parse(file).getNitfHeader().getFileTitle().trim(), is("Edited in place"));
+    }
+
+    @Test
+    public void checkLayoutChangeIsRewritten() throws Exception {
+        File file = copyTestFile("/JitcNitf21Samples/ns3361c.nsf");
+        DataSource expected = parse(file);
+        NitfInPlaceEditor editor = new NitfInPlaceEditor(file);
+        try {
+            editor.getDataSource().getImageSegments().get(0).addImageComment("Added by the editor");
+            assertThat(editor.save(), is(SaveResult.REWRITTEN));
+            assertThat(editor.getDataSource().getImageSegments().get(0).getImageComments().size(),
+                    is(expected.getImageSegments().get(0).getImageComments().size() + 1));
+        } finally {
+            editor.close();
+        }
+        assertThat(folder.getRoot().list().length, is(1));
+
+        DataSource actual = parse(file);
+        assertThat(actual.getImageSegments().get(0).getImageComments().contains("Added by the editor"), is(true));
+        assertEquals(expected.getImageSegments().size(), actual.getImageSegments().size());
+        for (int i = 0; i < expected.getImageSegments().size(); ++i) {
+            assertArrayEquals(readAll(expected.getImageSegments().get(i).getData()), readAll(actual.getImageSegments().get(i).getData()));
+        }
+    }
+
+    @Test
+    public void checkFailedCopyLeavesOriginal() throws Exception {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Injected read failure");
+            }
+        };
+        checkRewriteFailure(new MemoryCacheImageInputStream(failing), "Injected read failure");
+    }
+
+    @Test
+    public void checkShortCopyLeavesOriginal() throws Exception {
+        checkRewriteFailure(new MemoryCacheImageInputStream(new ByteArrayInputStream(new byte[10])), "expected");
+    }
+
+    private void checkRewriteFailure(final ImageInputStream imageData, final String message) throws Exception {
+        File file = copyTestFile("/JitcNitf21Samples/ns3361c.nsf");
+        byte[] original = Files.readAllBytes(file.toPath());
+        NitfInPlaceEditor editor = new NitfInPlaceEditor(file);
+        try {
+            editor.getDataSource().getImageSegments().get(0).addImageComment("Added by the editor");
+            editor.getDataSource().getImageSegments().get(0).setData(imageData);
+            editor.save();
+            fail("Rewrite should fail when the image data cannot be copied");
+        } catch (IOException ex) {
+            assertThat(ex.getMessage().contains(message), is(true));
+        } finally {
+            editor.close();
+        }
+        assertArrayEquals(original, Files.readAllBytes(file.toPath()));
+        assertThat(folder.getRoot().list().length, is(1));
+    }
+
+    @Test
+    public void checkRewriteKeepsPermissions() throws Exception {
+        File file = copyTestFile("/JitcNitf21Samples/ns3361c.nsf");
+        assumeTrue(Files.getFileAttributeView(file.toPath(), PosixFileAttributeView.class) != null);
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+        Files.setPosixFilePermissions(file.toPath(), permissions);
+        NitfInPlaceEditor editor = new NitfInPlaceEditor(file);
+        try {
+            editor.getDataSource().getImageSegments().get(0).addImageComment("Added by the editor");
+            assertThat(editor.save(), is(SaveResult.REWRITTEN));
+        } finally {
+            editor.close();
+        }
+        assertThat(Files.getPosixFilePermissions(file.toPath()), is(permissions));
+        assertThat(folder.getRoot().list().length, is(1));
+    }
+
+    @Test
+    public void checkTextData() throws Exception {
+        File file = copyTestFile("/JitcNitf21Samples/ns3201a.nsf");
+        String text = parse(file).getTextSegments().get(0).getData();
+        NitfInPlaceEditor editor = new NitfInPlaceEditor(file);
+        try {
+            String sameLength = text.substring(1) + "X";
+            editor.getDataSource().getTextSegments().get(0).setData(sameLength);
+            assertThat(editor.save(), is(SaveResult.PATCHED));
+            assertThat(parse(file).getTextSegments().get(0).getData(), is(sameLength));
+
+            editor.getDataSource().getTextSegments().get(0).setData(text + " and more");
+            assertThat(editor.save(), is(SaveResult.REWRITTEN));
+        } finally {
+            editor.close();
+        }
+        assertThat(parse(file).getTextSegments().get(0).getData(), is(text + " and more"));
+    }
+
+    private File copyTestFile(final String testfile) throws URISyntaxException, IOException {
+        assertNotNull("Test file missing", getClass().getResource(testfile));
+        File source = new File(getClass().getResource(testfile).toURI());
+        File copy = folder.newFile(source.getName());
+        Files.copy(source.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return copy;
+    }
+
+    private DataSource parse(final File file) throws NitfFormatException {
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.ALL_SEGMENT_DATA);
+        FileReader reader = new FileReader(file);
+        NitfParser.parse(reader, parseStrategy);
+        reader.close();
+        return parseStrategy.getDataSource();
+    }
+
+    private byte[] readAll(final ImageInputStream data) throws IOException {
+        data.seek(0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[FTITLE_LENGTH];
+        int read;
+        while ((read = data.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Set;
+
+import javax.imageio.stream.ImageInputStream;
+
+import org.codice.imaging.nitf.core.common.FileType;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.SegmentType;
+import org.codice.imaging.nitf.core.common.impl.FileReader;
+import org.codice.imaging.nitf.core.header.impl.NitfHeaderFactory;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.image.ImageCategory;
+import org.codice.imaging.nitf.core.image.ImageCompression;
+import org.codice.imaging.nitf.core.image.ImageMode;
+import org.codice.imaging.nitf.core.image.ImageRepresentation;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.image.PixelJustification;
+import org.codice.imaging.nitf.core.image.PixelValueType;
+import org.codice.imaging.nitf.core.image.impl.ImageBandImpl;
+import org.codice.imaging.nitf.core.image.impl.ImageSegmentFactory;
+import org.codice.imaging.nitf.core.impl.NitfImageStreamWriter;
+import org.codice.imaging.nitf.core.impl.NitfIndex;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+import org.codice.imaging.nitf.core.impl.SlottedStorage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the sidecar index of NITF file structure.
+ */
+public class NitfIndexTest {
+
+    private static final int BLOCK_SIZE = 8;
+
+    private static final int BLOCKS_PER_ROW = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void checkIndexedDataSourceMatchesParse() throws Exception {
+        for (String testfile : new String[] {"/JitcNitf21Samples/ns3051v.nsf", "/JitcNitf21Samples/ns3361c.nsf",
+                "/JitcNitf20Samples/U_1050A.NTF", "/gdal3453.ntf"}) {
+            File file = copyTestFile(testfile);
+            NitfIndex written = NitfIndex.build(file);
+            Path sidecar = NitfIndex.getSidecarPath(file);
+            written.write(sidecar);
+            NitfIndex index = NitfIndex.read(sidecar);
+            assertTrue(index.isCurrent(file));
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                compare(parse(file), index.createDataSource(channel));
+            }
+        }
+    }
+
+    @Test
+    public void checkHeadersOnlyDataSource() throws Exception {
+        File file = copyTestFile("/JitcNitf21Samples/ns3361c.nsf");
+        DataSource dataSource = NitfIndex.build(file).createDataSource(null);
+        DataSource expected = parse(file);
+        assertEquals(expected.getImageSegments().size(), dataSource.getImageSegments().size());
+        assertNull(dataSource.getImageSegments().get(0).getData());
+        assertEquals(expected.getGraphicSegments().size(), dataSource.getGraphicSegments().size());
+        assertEquals(expected.getDataExtensionSegments().size(), dataSource.getDataExtensionSegments().size());
+        dataSource.setNitfHeader(null);
+        assertEquals(expected.getNitfHeader().getFileTitle(), dataSource.getNitfHeader().getFileTitle());
+    }
+
+    @Test
+    public void checkSegmentLayout() throws Exception {
+        File file = copyTestFile("/JitcNitf21Samples/ns3361c.nsf");
+        NitfIndex index = NitfIndex.build(file);
+        DataSource expected = parse(file);
+        assertEquals(expected.getImageSegments().size(), index.getSegmentCount());
+        assertEquals(Files.size(file.toPath()), index.getFileSize());
+        assertEquals(Files.getLastModifiedTime(file.toPath()).toMillis(), index.getLastModified());
+        for (int i = 0; i < index.getSegmentCount(); ++i) {
+            assertEquals(SegmentType.IMAGE, index.getSegmentType(i));
+            assertEquals(expected.getImageSegments().get(i).getDataLength(), index.getDataLength(i));
+            assertEquals(index.getSubheaderOffset(i) + expected.getImageSegments().get(i).getHeaderLength(), index.getDataOffset(i));
+            assertNull(index.getBlockOffsets(i));
+        }
+        assertEquals(Files.size(file.toPath()), index.getDataOffset(3) + index.getDataLength(3));
+    }
+
+    @Test
+    public void checkOpenWritesAndReusesSidecar() throws Exception {
+        File file = copyTestFile("/JitcNitf21Samples/ns3361c.nsf");
+        Path sidecar = NitfIndex.getSidecarPath(file);
+        assertFalse(Files.exists(sidecar));
+        NitfIndex.open(file);
+        assertTrue(Files.exists(sidecar));
+
+        // A current sidecar is used as is.
+        FileTime sidecarTime = Files.getLastModifiedTime(sidecar);
+        NitfIndex reopened = NitfIndex.open(file);
+        assertEquals(4, reopened.getSegmentCount());
+        assertEquals(sidecarTime, Files.getLastModifiedTime(sidecar));
+
+        // A stale sidecar is rebuilt.
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(Files.getLastModifiedTime(file.toPath()).toMillis() - 60000));
+        assertFalse(NitfIndex.read(sidecar).isCurrent(file));
+        assertTrue(NitfIndex.open(file).isCurrent(file));
+        assertTrue(NitfIndex.read(sidecar).isCurrent(file));
+    }
+
+    @Test
+    public void checkCorruptSidecarIsRebuilt() throws Exception {
+        File file = copyTestFile("/JitcNitf21Samples/ns3361c.nsf");
+        Path sidecar = NitfIndex.getSidecarPath(file);
+        Files.write(sidecar, new byte[] {1, 2, 3});
+        assertEquals(4, NitfIndex.open(file).getSegmentCount());
+        assertTrue(NitfIndex.read(sidecar).isCurrent(file));
+    }
+
+    @Test
+    public void checkCorruptLengthIsRebuilt() throws Exception {
+        File file = copyTestFile("/JitcNitf21Samples/ns3361c.nsf");
+        Path sidecar = NitfIndex.getSidecarPath(file);
+        Files.write(sidecar, sidecarPrefix(Integer.MAX_VALUE));
+        assertEquals(4, NitfIndex.open(file).getSegmentCount());
+        assertTrue(NitfIndex.read(sidecar).isCurrent(file));
+    }
+
+    @Test
+    public void checkNegativeLength() throws Exception {
+        Path sidecar = folder.newFile("negative.nidx").toPath();
+        Files.write(sidecar, sidecarPrefix(-1));
+        exception.expect(IOException.class);
+        exception.expectMessage("Invalid byte array length in NITF index: -1");
+        NitfIndex.read(sidecar);
+    }
+
+    @Test
+    public void checkRewriteKeepsSidecarPermissions() throws Exception {
+        File file = copyTestFile("/JitcNitf21Samples/ns3361c.nsf");
+        Path sidecar = NitfIndex.getSidecarPath(file);
+        NitfIndex index = NitfIndex.build(file);
+        index.write(sidecar);
+        assumeTrue(Files.getFileAttributeView(sidecar, PosixFileAttributeView.class) != null);
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-rw-r--");
+        Files.setPosixFilePermissions(sidecar, permissions);
+        index.write(sidecar);
+        assertThat(Files.getPosixFilePermissions(sidecar), is(permissions));
+        assertThat(folder.getRoot().list().length, is(2));
+    }
+
+    @Test
+    public void checkBadMagic() throws Exception {
+        Path sidecar = folder.newFile("bad.nidx").toPath();
+        Files.write(sidecar, new byte[] {0, 0, 0, 0, 0, 0, 0, 1});
+        exception.expect(IOException.class);
+        exception.expectMessage("Not a NITF index");
+        NitfIndex.read(sidecar);
+    }
+
+    @Test
+    public void checkVersionMismatch() throws Exception {
+        Path sidecar = folder.newFile("future.nidx").toPath();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeBytes("NIDX");
+        output.writeInt(NitfIndex.FORMAT_VERSION + 1);
+        output.flush();
+        Files.write(sidecar, bytes.toByteArray());
+        exception.expect(IOException.class);
+        exception.expectMessage("Unsupported NITF index version");
+        NitfIndex.read(sidecar);
+    }
+
+    @Test
+    public void checkMissingFileIsNotCurrent() throws Exception {
+        File file = copyTestFile("/JitcNitf21Samples/ns3361c.nsf");
+        NitfIndex index = NitfIndex.build(file);
+        Files.delete(file.toPath());
+        assertFalse(index.isCurrent(file));
+        exception.expect(NitfFormatException.class);
+        NitfIndex.build(file);
+    }
+
+    @Test
+    public void checkStreamingModeIsRejected() throws Exception {
+        File file = copyTestFile("/JitcNitf21Samples/ns3321a.nsf");
+        exception.expect(NitfFormatException.class);
+        exception.expectMessage("streaming mode");
+        NitfIndex.build(file);
+    }
+
+    @Test
+    public void checkMaskedImageBlockOffsets() throws Exception {
+        File file = folder.newFile("masked.ntf");
+        SlottedStorage store = createMaskedStore();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            NitfImageStreamWriter writer = new NitfImageStreamWriter(store, store.getImageSegments().get(0), channel);
+            writer.start();
+            writer.writeBlocks((row, column, band) -> {
+                if (column == 1) {
+                    return null;
+                }
+                return ByteBuffer.wrap(block(column, BLOCK_SIZE * BLOCK_SIZE));
+            });
+            writer.finish();
+        }
+
+        Path sidecar = NitfIndex.getSidecarPath(file);
+        NitfIndex.build(file).write(sidecar);
+        long[] offsets = NitfIndex.read(sidecar).getBlockOffsets(0);
+        assertEquals(BLOCKS_PER_ROW, offsets.length);
+        assertEquals(-1, offsets[1]);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (int column : new int[] {0, 2}) {
+                ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE * BLOCK_SIZE);
+                channel.read(block, offsets[column]);
+                assertArrayEquals(block(column, BLOCK_SIZE * BLOCK_SIZE), block.array());
+            }
+        }
+    }
+
+    private static SlottedStorage createMaskedStore() {
+        SlottedStorage store = new SlottedStorage();
+        store.setNitfHeader(NitfHeaderFactory.getDefault(FileType.NITF_TWO_ONE));
+        ImageSegment image = ImageSegmentFactory.getDefault(FileType.NITF_TWO_ONE);
+        image.setNumberOfRows(BLOCK_SIZE);
+        image.setNumberOfColumns(BLOCK_SIZE * BLOCKS_PER_ROW);
+        image.setPixelValueType(PixelValueType.INTEGER);
+        image.setImageRepresentation(ImageRepresentation.MONOCHROME);
+        image.setImageCategory(ImageCategory.VISUAL);
+        image.setActualBitsPerPixelPerBand(8);
+        image.setPixelJustification(PixelJustification.RIGHT);
+        image.setImageCompression(ImageCompression.NOTCOMPRESSEDMASK);
+        ImageBandImpl band = new ImageBandImpl();
+        band.setImageRepresentation("M");
+        image.addImageBand(band);
+        image.setImageMode(ImageMode.BLOCKINTERLEVE);
+        image.setNumberOfBlocksPerRow(BLOCKS_PER_ROW);
+        image.setNumberOfBlocksPerColumn(1);
+        image.setNumberOfPixelsPerBlockHorizontalRaw(BLOCK_SIZE);
+        image.setNumberOfPixelsPerBlockVerticalRaw(BLOCK_SIZE);
+        image.setNumberOfBitsPerPixelPerBand(8);
+        image.setImageMagnification("1.0 ");
+        store.getImageSegments().add(image);
+        return store;
+    }
+
+    private static byte[] block(final int index, final int length) {
+        byte[] block = new byte[length];
+        Arrays.fill(block, (byte) (index + 1));
+        return block;
+    }
+
+    private File copyTestFile(final String testfile) throws URISyntaxException, IOException {
+        assertNotNull("Test file missing", getClass().getResource(testfile));
+        File source = new File(getClass().getResource(testfile).toURI());
+        File copy = new File(folder.getRoot(), source.getName());
+        Files.copy(source.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return copy;
+    }
+
+    private DataSource parse(final File file) throws NitfFormatException {
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.ALL_SEGMENT_DATA);
+        FileReader reader = new FileReader(file);
+        NitfParser.parse(reader, parseStrategy);
+        reader.close();
+        return parseStrategy.getDataSource();
+    }
+
+    private void compare(final DataSource expected, final DataSource actual) throws IOException, NitfFormatException {
+        assertEquals(expected.getNitfHeader().getFileTitle(), actual.getNitfHeader().getFileTitle());
+        assertEquals(expected.getNitfHeader().getFileType(), actual.getNitfHeader().getFileType());
+        assertEquals(expected.getNitfHeader().getTREsRawStructure().getTREs().size(),
+                actual.getNitfHeader().getTREsRawStructure().getTREs().size());
+        assertEquals(expected.getImageSegments().size(), actual.getImageSegments().size());
+        for (int i = 0; i < expected.getImageSegments().size(); ++i) {
+            ImageSegment expectedImage = expected.getImageSegments().get(i);
+            ImageSegment actualImage = actual.getImageSegments().get(i);
+            assertEquals(expectedImage.getIdentifier(), actualImage.getIdentifier());
+            assertEquals(expectedImage.getNumberOfRows(), actualImage.getNumberOfRows());
+            assertEquals(expectedImage.getHeaderLength(), actualImage.getHeaderLength());
+            assertEquals(expectedImage.getTREsRawStructure().getTREs().size(), actualImage.getTREsRawStructure().getTREs().size());
+            assertArrayEquals(readAll(expectedImage.getData()), readAll(actualImage.getData()));
+        }
+        assertEquals(expected.getGraphicSegments().size(), actual.getGraphicSegments().size());
+        for (int i = 0; i < expected.getGraphicSegments().size(); ++i) {
+            assertEquals(expected.getGraphicSegments().get(i).getIdentifier(), actual.getGraphicSegments().get(i).getIdentifier());
+            assertArrayEquals(readAll(expected.getGraphicSegments().get(i).getData()), readAll(actual.getGraphicSegments().get(i).getData()));
+        }
+        assertEquals(expected.getSymbolSegments().size(), actual.getSymbolSegments().size());
+        for (int i = 0; i < expected.getSymbolSegments().size(); ++i) {
+            assertArrayEquals(readAll(expected.getSymbolSegments().get(i).getData()), readAll(actual.getSymbolSegments().get(i).getData()));
+        }
+        assertEquals(expected.getLabelSegments().size(), actual.getLabelSegments().size());
+        for (int i = 0; i < expected.getLabelSegments().size(); ++i) {
+            assertEquals(expected.getLabelSegments().get(i).getData(), actual.getLabelSegments().get(i).getData());
+        }
+        assertEquals(expected.getTextSegments().size(), actual.getTextSegments().size());
+        for (int i = 0; i < expected.getTextSegments().size(); ++i) {
+            assertThat(actual.getTextSegments().get(i).getData(), is(expected.getTextSegments().get(i).getData()));
+        }
+        assertEquals(expected.getDataExtensionSegments().size(), actual.getDataExtensionSegments().size());
+        for (int i = 0; i < expected.getDataExtensionSegments().size(); ++i) {
+            assertEquals(expected.getDataExtensionSegments().get(i).getIdentifier(),
+                    actual.getDataExtensionSegments().get(i).getIdentifier());
+            assertEquals(expected.getDataExtensionSegments().get(i).getTREsRawStructure().getTREs().size(),
+                    actual.getDataExtensionSegments().get(i).getTREsRawStructure().getTREs().size());
+        }
+    }
+
+    private byte[] readAll(final ImageInputStream data) throws IOException {
+        if (data == null) {
+            return new byte[0];
+        }
+        data.seek(0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BLOCK_SIZE * BLOCK_SIZE];
+        int read;
+        while ((read = data.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] sidecarPrefix(final int headerLength) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeBytes("NIDX");
+        output.writeInt(NitfIndex.FORMAT_VERSION);
+        output.writeLong(0);
+        output.writeLong(0);
+        output.writeInt(headerLength);
+        output.flush();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.stream.ImageInputStream;
+
+import org.codice.imaging.nitf.core.common.CommonSegment;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.PushParseHandler;
+import org.codice.imaging.nitf.core.common.SegmentType;
+import org.codice.imaging.nitf.core.common.impl.FileReader;
+import org.codice.imaging.nitf.core.header.NitfHeader;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.impl.NitfPushParser;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+import org.junit.Test;
+
+/**
+ * Tests for the incremental (push mode) parser.
+ */
+public class NitfPushParserTest {
+
+    @Test
+    public void checkSingleChunk() throws Exception {
+        checkChunked("/JitcNitf21Samples/ns3361c.nsf", Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void checkNetworkSizedChunks() throws Exception {
+        checkChunked("/JitcNitf21Samples/ns3361c.nsf", 1460);
+    }
+
+    @Test
+    public void checkTinyChunks() throws Exception {
+        checkChunked("/JitcNitf21Samples/ns3051v.nsf", 7);
+    }
+
+    @Test
+    public void checkNitf20() throws Exception {
+        checkChunked("/JitcNitf20Samples/U_1050A.NTF", 100);
+    }
+
+    @Test(expected = NitfFormatException.class)
+    public void checkIncompleteInput() throws Exception {
+        byte[] content = Files.readAllBytes(getTestFile("/JitcNitf21Samples/ns3361c.nsf").toPath());
+        NitfPushParser parser = new NitfPushParser(new RecordingHandler());
+        parser.feed(ByteBuffer.wrap(content, 0, content.length - 1));
+        assertFalse(parser.isComplete());
+        parser.finish();
+    }
+
+    @Test(expected = NitfFormatException.class)
+    public void checkTrailingData() throws Exception {
+        byte[] content = Files.readAllBytes(getTestFile("/JitcNitf21Samples/ns3361c.nsf").toPath());
+        NitfPushParser parser = new NitfPushParser(new RecordingHandler());
+        parser.feed(ByteBuffer.wrap(content));
+        assertTrue(parser.isComplete());
+        parser.feed(ByteBuffer.wrap(new byte[1]));
+    }
+
+    @Test(expected = NitfFormatException.class)
+    public void checkStreamingModeNotSupported() throws Exception {
+        byte[] content = Files.readAllBytes(getTestFile("/JitcNitf21Samples/ns3321a.nsf").toPath());
+        new NitfPushParser(new RecordingHandler()).feed(ByteBuffer.wrap(content));
+    }
+
+    private void checkChunked(final String testfile, final int chunkSize) throws Exception {
+        File file = getTestFile(testfile);
+        DataSource expected = parse(file);
+        byte[] content = Files.readAllBytes(file.toPath());
+
+        RecordingHandler handler = new RecordingHandler();
+        NitfPushParser parser = new NitfPushParser(handler);
+        ByteBuffer chunk = ByteBuffer.allocate(Math.min(chunkSize, content.length));
+        for (int offset = 0; offset < content.length; offset += chunk.capacity()) {
+            chunk.clear();
+            chunk.put(content, offset, Math.min(chunk.capacity(), content.length - offset));
+            chunk.flip();
+            parser.feed(chunk);
+            assertFalse(chunk.hasRemaining());
+        }
+        parser.finish();
+
+        assertTrue(parser.isComplete());
+        assertTrue(handler.endOfFile);
+        assertEquals(content.length, parser.getBytesConsumed());
+        assertEquals(expected.getNitfHeader().getFileTitle(), handler.header.getFileTitle());
+        assertEquals(expected.getNitfHeader().getTREsRawStructure().getTREs().size(),
+                handler.header.getTREsRawStructure().getTREs().size());
+        int segmentCount = expected.getImageSegments().size() + expected.getGraphicSegments().size()
+                + expected.getSymbolSegments().size() + expected.getLabelSegments().size()
+                + expected.getTextSegments().size() + expected.getDataExtensionSegments().size();
+        assertEquals(segmentCount, handler.segments.size());
+        assertEquals(segmentCount, handler.data.size());
+
+        List<Integer> imageIndexes = new ArrayList<>();
+        for (int i = 0; i < handler.types.size(); ++i) {
+            if (handler.types.get(i) == SegmentType.IMAGE) {
+                imageIndexes.add(i);
+            }
+        }
+        assertEquals(expected.getImageSegments().size(), imageIndexes.size());
+        for (int i = 0; i < imageIndexes.size(); ++i) {
+            ImageSegment expectedImage = expected.getImageSegments().get(i);
+            ImageSegment actualImage = (ImageSegment) handler.segments.get(imageIndexes.get(i));
+            assertEquals(expectedImage.getIdentifier(), actualImage.getIdentifier());
+            assertEquals(expectedImage.getTREsRawStructure().getTREs().size(), actualImage.getTREsRawStructure().getTREs().size());
+            assertArrayEquals(readAll(expectedImage.getData()), handler.data.get(imageIndexes.get(i)));
+        }
+        for (int i = 0; i < expected.getTextSegments().size(); ++i) {
+            int index = handler.types.indexOf(SegmentType.TEXT) + i;
+            assertEquals(expected.getTextSegments().get(i).getData(), new String(handler.data.get(index)));
+        }
+    }
+
+    private File getTestFile(final String testfile) throws URISyntaxException {
+        assertNotNull("Test file missing", getClass().getResource(testfile));
+        return new File(getClass().getResource(testfile).toURI());
+    }
+
+    private DataSource parse(final File file) throws NitfFormatException {
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.ALL_SEGMENT_DATA);
+        FileReader reader = new FileReader(file);
+        NitfParser.parse(reader, parseStrategy);
+        reader.close();
+        return parseStrategy.getDataSource();
+    }
+
+    private static byte[] readAll(final ImageInputStream data) throws IOException {
+        if (data == null) {
+            return new byte[0];
+        }
+        data.seek(0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = data.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static class RecordingHandler implements PushParseHandler {
+        private NitfHeader header = null;
+        private final List<SegmentType> types = new ArrayList<>();
+        private final List<CommonSegment> segments = new ArrayList<>();
+        private final List<byte[]> data = new ArrayList<>();
+        private ByteArrayOutputStream currentData = null;
+        private boolean endOfFile = false;
+
+        @Override
+        public void handleFileHeader(final NitfHeader nitfHeader) {
+            assertEquals(null, header);
+            header = nitfHeader;
+        }
+
+        @Override
+        public void handleSegmentSubheader(final SegmentType segmentType, final CommonSegment segment, final long dataLength) {
+            assertEquals(null, currentData);
+            types.add(segmentType);
+            segments.add(segment);
+            currentData = new ByteArrayOutputStream();
+        }
+
+        @Override
+        public void handleSegmentData(final SegmentType segmentType, final ByteBuffer bytes) {
+            assertEquals(types.get(types.size() - 1), segmentType);
+            byte[] part = new byte[bytes.remaining()];
+            bytes.get(part);
+            currentData.write(part, 0, part.length);
+        }
+
+        @Override
+        public void handleSegmentEnd(final SegmentType segmentType) {
+            data.add(currentData.toByteArray());
+            currentData = null;
+        }
+
+        @Override
+        public void handleEndOfFile() {
+            endOfFile = true;
+        }
+    }
+}
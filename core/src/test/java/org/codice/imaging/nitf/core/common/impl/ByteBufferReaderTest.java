@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.common.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.junit.Test;
+
+/**
+ * Tests for ByteBufferReader class
+ */
+public class ByteBufferReaderTest {
+
+    private static final byte[] CONTENT = "NITF02.10031234".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void testReadWholeFile() throws NitfFormatException {
+        ByteBufferReader reader = new ByteBufferReader(ByteBuffer.wrap(CONTENT));
+        assertTrue(reader.canSeek());
+        assertThat(reader.readBytes(9), is("NITF02.10"));
+        assertThat(reader.readBytesAsInteger(2), is(3));
+        reader.seekBackwards(2);
+        assertThat(reader.readBytes(2), is("03"));
+        reader.seekToEndOfFile();
+        assertEquals(CONTENT.length, reader.getCurrentOffset());
+        assertFalse(reader.isUnderflow());
+    }
+
+    @Test
+    public void testFragmentOffsets() throws NitfFormatException {
+        ByteBuffer buffer = ByteBuffer.wrap(CONTENT);
+        buffer.position(11);
+        ByteBufferReader reader = new ByteBufferReader(buffer, 1000);
+        assertFalse(reader.canSeek());
+        assertEquals(1000, reader.getCurrentOffset());
+        reader.skip(2);
+        assertThat(reader.readBytes(2), is("34"));
+        reader.seekToAbsoluteOffset(1001);
+        assertThat(reader.readBytes(1), is("2"));
+        assertEquals(11, buffer.position());
+    }
+
+    @Test
+    public void testUnderflow() throws NitfFormatException {
+        ByteBufferReader reader = new ByteBufferReader(ByteBuffer.wrap(CONTENT, 0, 10), 0);
+        reader.readBytes(9);
+        try {
+            reader.readBytes(2);
+            fail("Expected NitfFormatException");
+        } catch (NitfFormatException ex) {
+            assertThat(ex.getMessage(), is("End of data reading from NITF buffer."));
+        }
+        assertTrue(reader.isUnderflow());
+        assertEquals(11, reader.getRequiredLength());
+        assertEquals(9, reader.getCurrentOffset());
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.common.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.junit.Test;
+
+/**
+ * Tests for ChannelDataOutput class
+ */
+public class ChannelDataOutputTest {
+
+    private static final int BUFFER_SIZE = 32;
+
+    @Test
+    public void testMatchesDataOutputStream() throws IOException {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        writeSample(new DataOutputStream(expected));
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        ChannelDataOutput output = new ChannelDataOutput(Channels.newChannel(actual), BUFFER_SIZE);
+        writeSample(output);
+        output.flush();
+
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    @Test
+    public void testGatheringWrites() throws IOException {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        writeSample(new DataOutputStream(expected));
+
+        CountingChannel channel = new CountingChannel();
+        ChannelDataOutput output = new ChannelDataOutput(channel, BUFFER_SIZE);
+        output.writeBytes("NITF02.10");
+        output.writeBytes("03");
+        assertEquals(0, channel.writes);
+        output.write(new byte[BUFFER_SIZE * 2]);
+        assertEquals(1, channel.gatheringWrites);
+        assertEquals(9 + 2 + BUFFER_SIZE * 2, channel.bytes.size());
+        output.flush();
+
+        channel.bytes.reset();
+        writeSample(output);
+        output.flush();
+        assertArrayEquals(expected.toByteArray(), channel.bytes.toByteArray());
+    }
+
+    @Test
+    public void testSegmentDataUsesGatheringWrites() throws IOException {
+        byte[] data = new byte[BUFFER_SIZE * 3 + 5];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = (byte) i;
+        }
+        CountingChannel channel = new CountingChannel();
+        ChannelDataOutput output = new ChannelDataOutput(channel, BUFFER_SIZE);
+        AbstractSegmentWriter writer = new AbstractSegmentWriter(output, null) {
+        };
+        output.writeBytes("IM");
+        writer.writeSegmentData(new MemoryCacheImageInputStream(new ByteArrayInputStream(data)));
+        output.flush();
+
+        assertEquals(3, channel.gatheringWrites);
+        byte[] written = channel.bytes.toByteArray();
+        assertEquals("IM", new String(written, 0, 2, "US-ASCII"));
+        assertArrayEquals(data, Arrays.copyOfRange(written, 2, written.length));
+    }
+
+    private void writeSample(final DataOutput output) throws IOException {
+        output.writeBytes("NITF02.10");
+        output.writeByte(0x7F);
+        output.writeBoolean(true);
+        output.writeShort(-2);
+        output.writeChar('x');
+        output.writeInt(123456789);
+        output.writeLong(-1234567890123L);
+        output.writeFloat(1.5f);
+        output.writeDouble(-2.25);
+        output.writeChars("ab");
+        output.writeUTF("text");
+        byte[] large = new byte[BUFFER_SIZE * 3];
+        for (int i = 0; i < large.length; ++i) {
+            large[i] = (byte) i;
+        }
+        output.write(large);
+        output.write(large, 5, BUFFER_SIZE - 1);
+        output.writeBytes("END");
+    }
+
+    private static class CountingChannel implements GatheringByteChannel {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int writes = 0;
+        private int gatheringWrites = 0;
+
+        @Override
+        public long write(final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
+            gatheringWrites++;
+            long count = 0;
+            for (int i = offset; i < offset + length; ++i) {
+                count += copy(srcs[i]);
+            }
+            return count;
+        }
+
+        @Override
+        public long write(final ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(final ByteBuffer src) throws IOException {
+            writes++;
+            return copy(src);
+        }
+
+        private int copy(final ByteBuffer src) {
+            int count = src.remaining();
+            byte[] part = new byte[count];
+            src.get(part);
+            bytes.write(part, 0, count);
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.common.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.codice.imaging.nitf.core.DataSource;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Tests for FileChannelReader class
+ */
+public class FileChannelReaderTest {
+
+    private final String testfile = "/JitcNitf21Samples/ns3361c.nsf";
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private File getTestFile() throws URISyntaxException {
+        assertNotNull("Test file missing", getClass().getResource(testfile));
+        return new File(getClass().getResource(testfile).toURI());
+    }
+
+    @Test
+    public void testBadFilenameConstructorArgument() throws NitfFormatException {
+        exception.expect(NitfFormatException.class);
+        exception.expectMessage("no such file not found: no such file");
+        new FileChannelReader("no such file");
+    }
+
+    @Test
+    public void testSmallWindowMatchesFileReader() throws NitfFormatException, URISyntaxException, IOException {
+        File file = getTestFile();
+        FileReader fileReader = new FileReader(file);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            FileChannelReader channelReader = new FileChannelReader(channel, 16);
+            for (int count : new int[] {9, 2, 15, 30, 1, 40, 3, 17}) {
+                assertThat(channelReader.readBytesRaw(count), is(fileReader.readBytesRaw(count)));
+                assertEquals(fileReader.getCurrentOffset(), channelReader.getCurrentOffset());
+            }
+            channelReader.seekBackwards(20);
+            fileReader.seekBackwards(20);
+            assertThat(channelReader.readBytes(12), is(fileReader.readBytes(12)));
+            channelReader.skip(100);
+            fileReader.skip(100);
+            assertThat(channelReader.readBytes(5), is(fileReader.readBytes(5)));
+        } finally {
+            fileReader.close();
+        }
+    }
+
+    @Test
+    public void testSharedChannel() throws NitfFormatException, URISyntaxException, IOException {
+        File file = getTestFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            FileChannelReader first = new FileChannelReader(channel, FileChannelReader.DEFAULT_WINDOW_SIZE);
+            FileChannelReader second = new FileChannelReader(channel, FileChannelReader.DEFAULT_WINDOW_SIZE);
+            second.seekToAbsoluteOffset(9);
+            assertThat(first.readBytes(9), is("NSIF01.00"));
+            assertThat(second.readBytes(2), is("03"));
+            assertThat(first.readBytes(2), is("03"));
+            first.close();
+            assertThat(second.readBytes(4), is("BF01"));
+            assertThat(channel.position(), is(0L));
+        }
+    }
+
+    @Test
+    public void testReadPastEndOfFile() throws NitfFormatException, URISyntaxException {
+        FileChannelReader reader = new FileChannelReader(getTestFile());
+        try {
+            reader.seekToEndOfFile();
+            reader.seekBackwards(2);
+            exception.expect(NitfFormatException.class);
+            exception.expectMessage("End of file reading from NITF file.");
+            reader.readBytesRaw(3);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testNegativeSeek() throws NitfFormatException, URISyntaxException {
+        FileChannelReader reader = new FileChannelReader(getTestFile());
+        try {
+            exception.expect(NitfFormatException.class);
+            exception.expectMessage("Unable to seek backwards: Negative seek offset");
+            reader.seekBackwards(4);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testParseMatchesFileReader() throws NitfFormatException, URISyntaxException {
+        File file = getTestFile();
+        SlottedParseStrategy fileReaderStrategy = new SlottedParseStrategy(SlottedParseStrategy.HEADERS_ONLY);
+        FileReader fileReader = new FileReader(file);
+        NitfParser.parse(fileReader, fileReaderStrategy);
+        fileReader.close();
+
+        SlottedParseStrategy channelReaderStrategy = new SlottedParseStrategy(SlottedParseStrategy.HEADERS_ONLY);
+        FileChannelReader channelReader = new FileChannelReader(file);
+        NitfParser.parse(channelReader, channelReaderStrategy);
+        channelReader.close();
+
+        DataSource expected = fileReaderStrategy.getDataSource();
+        DataSource actual = channelReaderStrategy.getDataSource();
+        assertEquals(expected.getNitfHeader().getFileTitle(), actual.getNitfHeader().getFileTitle());
+        assertEquals(expected.getImageSegments().size(), actual.getImageSegments().size());
+        for (int i = 0; i < expected.getImageSegments().size(); ++i) {
+            assertEquals(expected.getImageSegments().get(i).getIdentifier(), actual.getImageSegments().get(i).getIdentifier());
+            assertEquals(expected.getImageSegments().get(i).getDataLength(), actual.getImageSegments().get(i).getDataLength());
+        }
+        assertEquals(expected.getGraphicSegments().size(), actual.getGraphicSegments().size());
+        assertEquals(expected.getTextSegments().size(), actual.getTextSegments().size());
+        assertEquals(expected.getDataExtensionSegments().size(), actual.getDataExtensionSegments().size());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.common.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.codice.imaging.nitf.core.DataSource;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.impl.NitfFileWriter;
+import org.codice.imaging.nitf.core.impl.NitfOutputStreamWriter;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for FileRegionImageInputStream class, and zero-copy rewriting.
+ */
+public class FileRegionImageInputStreamTest {
+
+    private final String testfile = "/JitcNitf21Samples/ns3361c.nsf";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File getTestFile() throws URISyntaxException {
+        assertNotNull("Test file missing", getClass().getResource(testfile));
+        return new File(getClass().getResource(testfile).toURI());
+    }
+
+    @Test
+    public void testReadAndTransferRegion() throws URISyntaxException, IOException {
+        File file = getTestFile();
+        byte[] content = Files.readAllBytes(file.toPath());
+        File target = temporaryFolder.newFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                FileChannel targetChannel = FileChannel.open(target.toPath(), StandardOpenOption.WRITE)) {
+            FileRegionImageInputStream stream = new FileRegionImageInputStream(channel, 100, 1000);
+            assertEquals(1000, stream.length());
+            stream.seek(10);
+            assertEquals(Byte.toUnsignedInt(content[110]), stream.read());
+            byte[] bytes = new byte[2000];
+            assertEquals(989, stream.read(bytes));
+            assertEquals(-1, stream.read());
+
+            targetChannel.write(ByteBuffer.wrap(new byte[] {'X'}));
+            stream.transferTo(targetChannel);
+            assertEquals(1001, targetChannel.position());
+        }
+        byte[] written = Files.readAllBytes(target.toPath());
+        assertArrayEquals(Arrays.copyOfRange(content, 100, 1100), Arrays.copyOfRange(written, 1, written.length));
+    }
+
+    @Test
+    public void testRewriteMatchesCopy() throws URISyntaxException, IOException, NitfFormatException {
+        File file = getTestFile();
+
+        SlottedParseStrategy copyStrategy = new SlottedParseStrategy(SlottedParseStrategy.ALL_SEGMENT_DATA);
+        FileReader fileReader = new FileReader(file);
+        NitfParser.parse(fileReader, copyStrategy);
+        fileReader.close();
+        File copied = temporaryFolder.newFile("copied.nsf");
+        new NitfFileWriter(copyStrategy.getDataSource(), copied.getPath()).write();
+
+        FileChannelReader channelReader = new FileChannelReader(file);
+        try {
+            SlottedParseStrategy regionStrategy = new SlottedParseStrategy(SlottedParseStrategy.ALL_SEGMENT_DATA);
+            regionStrategy.setImageHeapStrategy(channelReader.getDataHeapStrategy());
+            regionStrategy.setDataExtensionSegmentHeapStrategy(channelReader.getDataHeapStrategy());
+            NitfParser.parse(channelReader, regionStrategy);
+            DataSource dataSource = regionStrategy.getDataSource();
+            for (ImageSegment imageSegment : dataSource.getImageSegments()) {
+                assertTrue(imageSegment.getData() instanceof FileRegionImageInputStream);
+            }
+
+            File transferred = temporaryFolder.newFile("transferred.nsf");
+            new NitfFileWriter(dataSource, transferred.getPath()).write();
+            assertTrue(FileUtils.contentEquals(copied, transferred));
+
+            File streamed = temporaryFolder.newFile("streamed.nsf");
+            try (OutputStream outputStream = new FileOutputStream(streamed)) {
+                new NitfOutputStreamWriter(dataSource, outputStream).write();
+            }
+            assertTrue(FileUtils.contentEquals(copied, streamed));
+        } finally {
+            channelReader.close();
+        }
+    }
+}
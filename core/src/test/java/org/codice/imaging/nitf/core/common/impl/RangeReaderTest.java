@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.common.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+import javax.imageio.stream.ImageInputStream;
+
+import org.codice.imaging.nitf.core.DataSource;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Tests for RangeReader class
+ */
+public class RangeReaderTest {
+
+    private final String testfile = "/JitcNitf21Samples/ns3361c.nsf";
+
+    private static final int SMALL_BLOCK_SIZE = 1024;
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private File getTestFile() throws URISyntaxException {
+        assertNotNull("Test file missing", getClass().getResource(testfile));
+        return new File(getClass().getResource(testfile).toURI());
+    }
+
+    @Test
+    public void testSmallReadsAreCoalesced() throws NitfFormatException, URISyntaxException, IOException {
+        RangeReader reader = new RangeReader(new FileRangeSource(getTestFile()));
+        try {
+            assertThat(reader.readBytes(9), is("NSIF01.00"));
+            assertThat(reader.readBytes(2), is("03"));
+            for (int i = 0; i < 100; ++i) {
+                reader.readBytesRaw(1);
+            }
+            reader.skip(50000);
+            reader.readBytesRaw(10);
+            assertEquals(1, reader.getRequestCount());
+            reader.seekToAbsoluteOffset(200000);
+            reader.readBytesRaw(10);
+            assertEquals(2, reader.getRequestCount());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testReadPastEndOfFile() throws NitfFormatException, URISyntaxException, IOException {
+        RangeReader reader = new RangeReader(new FileRangeSource(getTestFile()), SMALL_BLOCK_SIZE, SMALL_BLOCK_SIZE);
+        try {
+            reader.seekToEndOfFile();
+            reader.seekBackwards(2);
+            exception.expect(NitfFormatException.class);
+            exception.expectMessage("End of file reading from NITF source.");
+            reader.readBytesRaw(3);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testPrefetchedHeaders() throws NitfFormatException, URISyntaxException, IOException {
+        File file = getTestFile();
+        DataSource expected = parse(new FileReader(file), SlottedParseStrategy.HEADERS_ONLY);
+
+        RangeReader reader = new RangeReader(new FileRangeSource(file), SMALL_BLOCK_SIZE, RangeReader.DEFAULT_CACHE_SIZE);
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.HEADERS_ONLY);
+        int[] requestsAfterPrefetch = new int[1];
+        NitfParser.parse(reader, parseStrategy, layout -> {
+            reader.prefetch(layout);
+            requestsAfterPrefetch[0] = reader.getRequestCount();
+            assertTrue(requestsAfterPrefetch[0] <= layout.size() + 1);
+        });
+        assertEquals(requestsAfterPrefetch[0], reader.getRequestCount());
+        reader.close();
+
+        DataSource actual = parseStrategy.getDataSource();
+        assertEquals(expected.getNitfHeader().getFileTitle(), actual.getNitfHeader().getFileTitle());
+        assertEquals(expected.getImageSegments().size(), actual.getImageSegments().size());
+        for (int i = 0; i < expected.getImageSegments().size(); ++i) {
+            assertEquals(expected.getImageSegments().get(i).getIdentifier(), actual.getImageSegments().get(i).getIdentifier());
+        }
+    }
+
+    @Test
+    public void testLazySegmentData() throws NitfFormatException, URISyntaxException, IOException {
+        File file = getTestFile();
+        DataSource expected = parse(new FileReader(file), SlottedParseStrategy.ALL_SEGMENT_DATA);
+
+        RangeReader reader = new RangeReader(new FileRangeSource(file), SMALL_BLOCK_SIZE, 4 * SMALL_BLOCK_SIZE);
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.ALL_SEGMENT_DATA);
+        parseStrategy.setImageHeapStrategy(reader.getDataHeapStrategy());
+        NitfParser.parse(reader, parseStrategy, reader::prefetch);
+        int requestsAfterParse = reader.getRequestCount();
+
+        DataSource actual = parseStrategy.getDataSource();
+        assertEquals(expected.getImageSegments().size(), actual.getImageSegments().size());
+        for (int i = 0; i < expected.getImageSegments().size(); ++i) {
+            ImageInputStream actualData = actual.getImageSegments().get(i).getData();
+            assertEquals(expected.getImageSegments().get(i).getDataLength(), actualData.length());
+            assertArrayEquals(readAll(expected.getImageSegments().get(i).getData()), readAll(actualData));
+        }
+        assertTrue(reader.getRequestCount() > requestsAfterParse);
+        reader.close();
+    }
+
+    private DataSource parse(final FileReader reader, final int segmentsToExtract) throws NitfFormatException {
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(segmentsToExtract);
+        NitfParser.parse(reader, parseStrategy);
+        reader.close();
+        return parseStrategy.getDataSource();
+    }
+
+    private byte[] readAll(final ImageInputStream data) throws IOException {
+        data.seek(0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[SMALL_BLOCK_SIZE * 3];
+        int read;
+        while ((read = data.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+}
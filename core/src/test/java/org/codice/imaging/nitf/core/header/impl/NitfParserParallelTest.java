@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.header.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.stream.ImageInputStream;
+
+import org.codice.imaging.nitf.core.DataSource;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.impl.FileChannelReader;
+import org.codice.imaging.nitf.core.common.impl.FileReader;
+import org.codice.imaging.nitf.core.common.impl.NitfInputStreamReader;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Tests for the parallel segment handling mode of NitfParser.
+ */
+public class NitfParserParallelTest {
+
+    private static final int SEGMENT_WINDOW_SIZE = 4096;
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private ExecutorService executor;
+
+    @Before
+    public void createExecutor() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void checkMultipleImageSegments() throws Exception {
+        compareParallelWithSequential("/JitcNitf21Samples/ns3361c.nsf", SlottedParseStrategy.ALL_SEGMENT_DATA);
+    }
+
+    @Test
+    public void checkStreamingModeHeadersOnly() throws Exception {
+        compareParallelWithSequential("/JitcNitf21Samples/ns3321a.nsf", SlottedParseStrategy.HEADERS_ONLY);
+    }
+
+    @Test
+    public void checkTextAndGraphicSegments() throws Exception {
+        compareParallelWithSequential("/JitcNitf21Samples/ns3051v.nsf", SlottedParseStrategy.ALL_SEGMENT_DATA);
+    }
+
+    @Test
+    public void checkNitf20Segments() throws Exception {
+        compareParallelWithSequential("/JitcNitf20Samples/U_1050A.NTF", SlottedParseStrategy.HEADERS_ONLY);
+    }
+
+    @Test
+    public void checkNonSeekableFallback() throws Exception {
+        File file = getTestFile("/JitcNitf21Samples/ns3361c.nsf");
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.HEADERS_ONLY);
+        try (InputStream is = new FileInputStream(file)) {
+            NitfParser.parse(new NitfInputStreamReader(is), parseStrategy,
+                    () -> {
+                        throw new IllegalStateException("Should not be called");
+                    },
+                    parseStrategy::createSegmentParseStrategy, executor);
+        }
+        assertEquals(parseSequential(file, SlottedParseStrategy.HEADERS_ONLY).getImageSegments().size(),
+                parseStrategy.getDataSource().getImageSegments().size());
+    }
+
+    @Test
+    public void checkSegmentFailurePropagated() throws Exception {
+        File file = getTestFile("/JitcNitf21Samples/ns3361c.nsf");
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.HEADERS_ONLY);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            FileChannelReader reader = new FileChannelReader(channel, FileChannelReader.DEFAULT_WINDOW_SIZE);
+            exception.expect(NitfFormatException.class);
+            exception.expectMessage("Failed to handle segment: no segment reader");
+            NitfParser.parse(reader, parseStrategy,
+                    () -> {
+                        throw new IllegalStateException("no segment reader");
+                    },
+                    parseStrategy::createSegmentParseStrategy, executor);
+        }
+    }
+
+    private File getTestFile(final String testfile) throws URISyntaxException {
+        assertNotNull("Test file missing", getClass().getResource(testfile));
+        return new File(getClass().getResource(testfile).toURI());
+    }
+
+    private DataSource parseSequential(final File file, final int segmentsToExtract) throws NitfFormatException {
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(segmentsToExtract);
+        FileReader reader = new FileReader(file);
+        NitfParser.parse(reader, parseStrategy);
+        reader.close();
+        return parseStrategy.getDataSource();
+    }
+
+    private void compareParallelWithSequential(final String testfile, final int segmentsToExtract)
+            throws URISyntaxException, NitfFormatException, IOException {
+        File file = getTestFile(testfile);
+        DataSource expected = parseSequential(file, segmentsToExtract);
+
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(segmentsToExtract);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            FileChannelReader reader = new FileChannelReader(channel, FileChannelReader.DEFAULT_WINDOW_SIZE);
+            NitfParser.parse(reader, parseStrategy,
+                    () -> new FileChannelReader(channel, SEGMENT_WINDOW_SIZE),
+                    parseStrategy::createSegmentParseStrategy,
+                    executor);
+            assertEquals(channel.size(), reader.getCurrentOffset());
+        }
+        DataSource actual = parseStrategy.getDataSource();
+
+        assertEquals(expected.getNitfHeader().getFileTitle(), actual.getNitfHeader().getFileTitle());
+        assertEquals(expected.getImageSegments().size(), actual.getImageSegments().size());
+        for (int i = 0; i < expected.getImageSegments().size(); ++i) {
+            ImageSegment expectedImage = expected.getImageSegments().get(i);
+            ImageSegment actualImage = actual.getImageSegments().get(i);
+            assertEquals(expectedImage.getIdentifier(), actualImage.getIdentifier());
+            assertEquals(expectedImage.getNumberOfRows(), actualImage.getNumberOfRows());
+            assertEquals(expectedImage.getHeaderLength(), actualImage.getHeaderLength());
+            assertEquals(expectedImage.getTREsRawStructure().getTREs().size(), actualImage.getTREsRawStructure().getTREs().size());
+            assertArrayEquals(readAll(expectedImage.getData()), readAll(actualImage.getData()));
+        }
+        assertEquals(expected.getGraphicSegments().size(), actual.getGraphicSegments().size());
+        for (int i = 0; i < expected.getGraphicSegments().size(); ++i) {
+            assertEquals(expected.getGraphicSegments().get(i).getIdentifier(), actual.getGraphicSegments().get(i).getIdentifier());
+        }
+        assertEquals(expected.getSymbolSegments().size(), actual.getSymbolSegments().size());
+        assertEquals(expected.getLabelSegments().size(), actual.getLabelSegments().size());
+        assertEquals(expected.getTextSegments().size(), actual.getTextSegments().size());
+        for (int i = 0; i < expected.getTextSegments().size(); ++i) {
+            assertEquals(expected.getTextSegments().get(i).getData(), actual.getTextSegments().get(i).getData());
+        }
+        assertEquals(expected.getDataExtensionSegments().size(), actual.getDataExtensionSegments().size());
+        for (int i = 0; i < expected.getDataExtensionSegments().size(); ++i) {
+            assertEquals(expected.getDataExtensionSegments().get(i).getIdentifier(),
+                    actual.getDataExtensionSegments().get(i).getIdentifier());
+        }
+    }
+
+    private byte[] readAll(final ImageInputStream data) throws IOException {
+        if (data == null) {
+            return new byte[0];
+        }
+        data.seek(0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[SEGMENT_WINDOW_SIZE];
+        int read;
+        while ((read = data.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.image.impl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.codice.imaging.nitf.core.DataSource;
+import org.codice.imaging.nitf.core.common.FileType;
+import org.codice.imaging.nitf.core.common.impl.NitfInputStreamReader;
+import org.codice.imaging.nitf.core.header.impl.NitfHeaderFactory;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.image.ImageCategory;
+import org.codice.imaging.nitf.core.image.ImageCompression;
+import org.codice.imaging.nitf.core.image.ImageMode;
+import org.codice.imaging.nitf.core.image.ImageRepresentation;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.image.PixelJustification;
+import org.codice.imaging.nitf.core.image.PixelValueType;
+import org.codice.imaging.nitf.core.impl.NitfImageStreamWriter;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+import org.codice.imaging.nitf.core.impl.SlottedStorage;
+import org.junit.Test;
+
+/**
+ * Tests for converting image segments to square blocks.
+ */
+public class ImageSegmentRetilerTest {
+
+    private static final int ROWS = 23;
+
+    private static final int COLUMNS = 37;
+
+    private static final int BANDS = 3;
+
+    @Test
+    public void checkSingleBlockBandSequentialToPixelInterleaved() throws Exception {
+        ImageSegment image = createImage(ImageMode.BANDSEQUENTIAL, 1, COLUMNS, ROWS, 1);
+        ImageSegmentRetiler retiler = new ImageSegmentRetiler(image, 16, ImageMode.PIXELINTERLEVE);
+        checkBlocks(image, retiler, 1);
+    }
+
+    @Test
+    public void checkBlockInterleavedToBandSequential() throws Exception {
+        ImageSegment image = createImage(ImageMode.BLOCKINTERLEVE, 2, 20, 12, 2);
+        ImageSegmentRetiler retiler = new ImageSegmentRetiler(image, 8, ImageMode.BANDSEQUENTIAL);
+        checkBlocks(image, retiler, 2);
+    }
+
+    @Test
+    public void checkPixelInterleavedToRowInterleaved() throws Exception {
+        ImageSegment image = createImage(ImageMode.PIXELINTERLEVE, 4, 10, 6, 1);
+        ImageSegmentRetiler retiler = new ImageSegmentRetiler(image, 32, ImageMode.ROWINTERLEVE);
+        checkBlocks(image, retiler, 1);
+    }
+
+    @Test
+    public void checkRowInterleavedKeepsMode() throws Exception {
+        ImageSegment image = createImage(ImageMode.ROWINTERLEVE, 1, COLUMNS, 5, 2);
+        ImageSegmentRetiler retiler = new ImageSegmentRetiler(image, 16, null);
+        assertThat(image.getImageMode(), is(ImageMode.ROWINTERLEVE));
+        checkBlocks(image, retiler, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkOnlyUncompressed() throws Exception {
+        ImageSegment image = createImage(ImageMode.BANDSEQUENTIAL, 1, COLUMNS, ROWS, 1);
+        image.setImageCompression(ImageCompression.JPEG);
+        new ImageSegmentRetiler(image, 16, null);
+    }
+
+    @Test
+    public void checkStreamedOutput() throws Exception {
+        ImageSegment image = createImage(ImageMode.BANDSEQUENTIAL, 1, COLUMNS, ROWS, 1);
+        ImageSegmentRetiler retiler = new ImageSegmentRetiler(image, 16, ImageMode.BLOCKINTERLEVE);
+        SlottedStorage store = new SlottedStorage();
+        store.setNitfHeader(NitfHeaderFactory.getDefault(FileType.NITF_TWO_ONE));
+        store.getImageSegments().add(image);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        NitfImageStreamWriter writer = new NitfImageStreamWriter(store, image, Channels.newChannel(output));
+        writer.start();
+        writer.writeBlocks(retiler);
+        writer.finish();
+
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.ALL_SEGMENT_DATA);
+        NitfParser.parse(new NitfInputStreamReader(new ByteArrayInputStream(output.toByteArray())), parseStrategy);
+        DataSource dataSource = parseStrategy.getDataSource();
+        ImageSegment written = dataSource.getImageSegments().get(0);
+        assertThat(written.getImageMode(), is(ImageMode.BLOCKINTERLEVE));
+        assertThat(written.getNumberOfBlocksPerRow(), is(3));
+        assertThat(written.getNumberOfBlocksPerColumn(), is(2));
+        assertThat(written.getNumberOfPixelsPerBlockHorizontal(), is(16L));
+        assertThat(written.getDataLength(), is(6L * 16 * 16 * BANDS));
+        for (int band = 0; band < BANDS; ++band) {
+            for (int row = 0; row < ROWS; ++row) {
+                for (int column = 0; column < COLUMNS; ++column) {
+                    assertThat(sample(written, written.getData(), 1, band, row, column), is(expected(band, row, column, 1)));
+                }
+            }
+        }
+    }
+
+    private void checkBlocks(final ImageSegment image, final ImageSegmentRetiler retiler, final int bytesPerSample) throws Exception {
+        int blockSize = (int) image.getNumberOfPixelsPerBlockHorizontal();
+        int bandsPerBlock = BANDS;
+        int bandBlocks = 1;
+        if (image.getImageMode() == ImageMode.BANDSEQUENTIAL) {
+            bandsPerBlock = 1;
+            bandBlocks = BANDS;
+        }
+        for (int bandBlock = 0; bandBlock < bandBlocks; ++bandBlock) {
+            for (int blockRow = 0; blockRow < image.getNumberOfBlocksPerColumn(); ++blockRow) {
+                for (int blockColumn = 0; blockColumn < image.getNumberOfBlocksPerRow(); ++blockColumn) {
+                    ByteBuffer block = retiler.getBlock(blockRow, blockColumn, bandBlock);
+                    assertThat(block.remaining(), is(blockSize * blockSize * bandsPerBlock * bytesPerSample));
+                    ImageInputStream data = new MemoryCacheImageInputStream(new ByteArrayInputStream(block.array()));
+                    for (int b = 0; b < bandsPerBlock; ++b) {
+                        int band = b + bandBlock;
+                        for (int row = 0; row < blockSize; ++row) {
+                            for (int column = 0; column < blockSize; ++column) {
+                                int imageRow = blockRow * blockSize + row;
+                                int imageColumn = blockColumn * blockSize + column;
+                                int expected = 0;
+                                if ((imageRow < image.getNumberOfRows()) && (imageColumn < image.getNumberOfColumns())) {
+                                    expected = expected(band, imageRow, imageColumn, bytesPerSample);
+                                }
+                                assertThat(sampleInBlock(image.getImageMode(), bandsPerBlock, blockSize, data, bytesPerSample, b, row, column),
+                                        is(expected));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int expected(final int band, final int row, final int column, final int bytesPerSample) {
+        int value = band * 1000 + row * 40 + column;
+        if (bytesPerSample == 1) {
+            return value & 0xFF;
+        }
+        return value;
+    }
+
+    private static ImageSegment createImage(final ImageMode mode, final int blocksPerRow, final int blockWidth, final int blockHeight,
+            final int bytesPerSample) throws Exception {
+        ImageSegment image = ImageSegmentFactory.getDefault(FileType.NITF_TWO_ONE);
+        image.setNumberOfRows(ROWS);
+        image.setNumberOfColumns(COLUMNS);
+        image.setPixelValueType(PixelValueType.INTEGER);
+        image.setImageRepresentation(ImageRepresentation.MULTIBAND);
+        image.setImageCategory(ImageCategory.MULTISPECTRAL);
+        image.setActualBitsPerPixelPerBand(bytesPerSample * Byte.SIZE);
+        image.setNumberOfBitsPerPixelPerBand(bytesPerSample * Byte.SIZE);
+        image.setPixelJustification(PixelJustification.RIGHT);
+        for (int i = 0; i < BANDS; ++i) {
+            ImageBandImpl band = new ImageBandImpl();
+            band.setImageRepresentation("M");
+            image.addImageBand(band);
+        }
+        image.setImageMode(mode);
+        image.setNumberOfBlocksPerRow(blocksPerRow);
+        image.setNumberOfBlocksPerColumn((ROWS + blockHeight - 1) / blockHeight);
+        image.setNumberOfPixelsPerBlockHorizontalRaw(blockWidth);
+        image.setNumberOfPixelsPerBlockVerticalRaw(blockHeight);
+        image.setImageMagnification("1.0 ");
+
+        int blockCount = blocksPerRow * image.getNumberOfBlocksPerColumn();
+        ByteBuffer data = ByteBuffer.allocate(blockCount * blockWidth * blockHeight * BANDS * bytesPerSample);
+        for (int band = 0; band < BANDS; ++band) {
+            for (int row = 0; row < ROWS; ++row) {
+                for (int column = 0; column < COLUMNS; ++column) {
+                    int offset = sourceOffset(image, band, row, column) * bytesPerSample;
+                    if (bytesPerSample == 1) {
+                        data.put(offset, (byte) expected(band, row, column, bytesPerSample));
+                    } else {
+                        data.putShort(offset, (short) expected(band, row, column, bytesPerSample));
+                    }
+                }
+            }
+        }
+        image.setData(new MemoryCacheImageInputStream(new ByteArrayInputStream(data.array())));
+        return image;
+    }
+
+    private static int sourceOffset(final ImageSegment image, final int band, final int row, final int column) {
+        int blockWidth = (int) image.getNumberOfPixelsPerBlockHorizontal();
+        int blockHeight = (int) image.getNumberOfPixelsPerBlockVertical();
+        int blockIndex = (row / blockHeight) * image.getNumberOfBlocksPerRow() + column / blockWidth;
+        int blockPixels = blockWidth * blockHeight;
+        int bandsPerBlock = BANDS;
+        if (image.getImageMode() == ImageMode.BANDSEQUENTIAL) {
+            blockIndex += band * image.getNumberOfBlocksPerRow() * image.getNumberOfBlocksPerColumn();
+            bandsPerBlock = 1;
+        }
+        return blockIndex * blockPixels * bandsPerBlock
+                + offsetInBlock(image.getImageMode(), bandsPerBlock, blockWidth, blockHeight, band, row % blockHeight, column % blockWidth);
+    }
+
+    private static int offsetInBlock(final ImageMode mode, final int bandsPerBlock, final int blockWidth, final int blockHeight,
+            final int band, final int row, final int column) {
+        switch (mode) {
+            case BANDSEQUENTIAL:
+                return row * blockWidth + column;
+            case PIXELINTERLEVE:
+                return (row * blockWidth + column) * bandsPerBlock + band;
+            case ROWINTERLEVE:
+                return (row * bandsPerBlock + band) * blockWidth + column;
+            default:
+                return band * blockWidth * blockHeight + row * blockWidth + column;
+        }
+    }
+
+    private static int sampleInBlock(final ImageMode mode, final int bandsPerBlock, final int blockSize, final ImageInputStream data,
+            final int bytesPerSample, final int band, final int row, final int column) throws Exception {
+        data.seek((long) offsetInBlock(mode, bandsPerBlock, blockSize, blockSize, band, row, column) * bytesPerSample);
+        if (bytesPerSample == 1) {
+            return data.readUnsignedByte();
+        }
+        return data.readUnsignedShort();
+    }
+
+    private static int sample(final ImageSegment image, final ImageInputStream data, final int bytesPerSample, final int band,
+            final int row, final int column) throws Exception {
+        data.seek((long) sourceOffset(image, band, row, column) * bytesPerSample);
+        if (bytesPerSample == 1) {
+            return data.readUnsignedByte();
+        }
+        return data.readUnsignedShort();
+    }
+}
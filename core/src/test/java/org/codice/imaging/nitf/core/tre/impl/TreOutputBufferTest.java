@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.core.tre.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Tests for the TRE serialisation buffer.
+ */
+public class TreOutputBufferTest {
+
+    @Test
+    public void checkIntegersMatchStringFormat() {
+        long[] numbers = {0, 7, 42, 12345, 99999, 123456, -3, -1234, Integer.MIN_VALUE, Long.MAX_VALUE};
+        for (int length = 1; length < 8; ++length) {
+            for (long number : numbers) {
+                TreOutputBuffer buffer = new TreOutputBuffer();
+                buffer.putInteger(number, length);
+                assertEquals(String.format("%0" + length + "d", number), asString(buffer, 0));
+            }
+        }
+    }
+
+    @Test
+    public void checkPaddedStrings() {
+        TreOutputBuffer buffer = new TreOutputBuffer();
+        buffer.putPaddedString("ABC", 6);
+        buffer.putPaddedString("DEFGHI", 6);
+        buffer.putString("é€");
+        assertEquals("ABC   DEFGHIé?", asString(buffer, 0));
+    }
+
+    @Test
+    public void checkZeroPaddedBytes() {
+        TreOutputBuffer buffer = new TreOutputBuffer();
+        buffer.putZeroPaddedBytes(new byte[] {1, 2}, 4);
+        buffer.putZeroPaddedBytes(new byte[] {3, 4, 5}, 2);
+        assertArrayEquals(new byte[] {0, 0, 1, 2, 3, 4, 5}, buffer.toByteArray(0));
+    }
+
+    @Test
+    public void checkPatchAfterGrowth() {
+        TreOutputBuffer buffer = new TreOutputBuffer();
+        buffer.putString("TAG");
+        buffer.putSpaces(5);
+        StringBuilder expected = new StringBuilder("TAG10000");
+        for (int i = 0; i < 10000; ++i) {
+            buffer.putString("X");
+            expected.append('X');
+        }
+        buffer.patchInteger(3, buffer.position() - 8, 5);
+        assertEquals(expected.toString(), asString(buffer, 0));
+        buffer.reset();
+        buffer.putString("Y");
+        assertEquals("Y", asString(buffer, 0));
+    }
+
+    private static String asString(final TreOutputBuffer buffer, final int start) {
+        return new String(buffer.toByteArray(start), StandardCharsets.ISO_8859_1);
+    }
+}
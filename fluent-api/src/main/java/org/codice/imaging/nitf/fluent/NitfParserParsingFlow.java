@@ -15,14 +15,18 @@
 package org.codice.imaging.nitf.fluent;
 
 import java.net.URI;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import javax.imageio.stream.ImageInputStream;
 import javax.xml.transform.Source;
 
 import org.codice.imaging.nitf.core.HeapStrategy;
+import org.codice.imaging.nitf.core.common.CommonSegment;
 import org.codice.imaging.nitf.core.common.NitfFormatException;
 import org.codice.imaging.nitf.core.common.ParseStrategy;
+import org.codice.imaging.nitf.core.header.NitfHeader;
 
 /**
  * A builder class that handles parsing.
@@ -78,6 +82,33 @@ public interface NitfParserParsingFlow {
      */
     NitfSegmentsFlow headerOnly() throws NitfFormatException;
 
+    /**
+     * Parses the NITF file, extracting all data, and publishes each segment as soon as it has been parsed.
+     * <p>
+     * Parsing starts when a subscriber subscribes, and proceeds on a separate thread. Segments are published in
+     * file order, parsing pauses while the subscriber has no outstanding demand, and stops if the subscriber
+     * cancels. Segment data is held by the configured image data strategy, and is cleaned up once the subscriber
+     * has completed, failed or cancelled. Only one subscriber is supported.
+     *
+     * @param headerConsumer consumer for the file header, called on the parsing thread before any segment is
+     * published. May be null.
+     * @return a publisher of the file segments.
+     * @throws NitfFormatException when a TRE descriptor is invalid. Parsing errors are passed to the subscriber.
+     */
+    Flow.Publisher<CommonSegment> publishAllData(Consumer<NitfHeader> headerConsumer) throws NitfFormatException;
+
+    /**
+     * Parses only headers from the NITF file, and publishes each segment as soon as it has been parsed.
+     * <p>
+     * This behaves as for publishAllData(), except that segment data is skipped.
+     *
+     * @param headerConsumer consumer for the file header, called on the parsing thread before any segment is
+     * published. May be null.
+     * @return a publisher of the file segments.
+     * @throws NitfFormatException when a TRE descriptor is invalid. Parsing errors are passed to the subscriber.
+     */
+    Flow.Publisher<CommonSegment> publishHeaderOnly(Consumer<NitfHeader> headerConsumer) throws NitfFormatException;
+
     /**
      * Parses the NITF file using the supplied SlottedParseStrategy.
      *
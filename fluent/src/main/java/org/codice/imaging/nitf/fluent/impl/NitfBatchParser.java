@@ -0,0 +1,398 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.fluent.impl;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.xml.transform.stream.StreamSource;
+
+import org.codice.imaging.nitf.core.HeapStrategy;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.impl.InMemoryHeapStrategy;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parses many NITF files or streams concurrently.
+ * <p>
+ * Each source is parsed as a separate task on the supplied executor, with its own parse strategy, so a failure
+ * only affects the result for that source. The per-source strategies are derived from a single prototype strategy
+ * per batch, so the TRE descriptions are loaded once per batch and the TRE parser is shared by every source.
+ * Additional TRE descriptors are registered once, on that prototype. At most maxConcurrency sources are open or waiting to be delivered at
+ * once, which bounds the memory used by the batch even if the executor itself is unbounded.
+ * <p>
+ * The executor decides the threading. A fixed pool sized to the number of processors suits files, where parsing
+ * (in particular TRE decoding) is CPU bound. Sources that spend most of their time waiting on I/O (e.g. network
+ * streams) benefit from a larger pool, or from a thread per task executor.
+ * <p>
+ * Results are delivered to a callback (parse()) or through a Flow.Publisher (publisher()), one at a time. By
+ * default, they are delivered as each source is finished; ordered(true) delivers them in source order instead.
+ * <p>
+ * The parser keeps running totals of the sources it has parsed, for monitoring.
+ */
+public final class NitfBatchParser {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NitfBatchParser.class);
+
+    private final Executor executor;
+
+    private final int maxConcurrency;
+
+    private int segmentsToExtract = SlottedParseStrategy.ALL_SEGMENT_DATA;
+
+    private Supplier<HeapStrategy<ImageInputStream>> imageDataStrategySupplier =
+            () -> new InMemoryHeapStrategy<>(MemoryCacheImageInputStream::new);
+
+    private boolean ordered = false;
+
+    private final List<String> treDescriptors = new ArrayList<>();
+
+    private final AtomicLong succeededCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private final AtomicLong totalParseNanos = new AtomicLong();
+
+    private final AtomicLong busyNanos = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param taskExecutor the executor to parse the sources on.
+     * @param concurrency the maximum number of sources being parsed or waiting for delivery at once.
+     */
+    public NitfBatchParser(final Executor taskExecutor, final int concurrency) {
+        if (taskExecutor == null) {
+            throw new IllegalArgumentException("NitfBatchParser(): argument 'taskExecutor' may not be null.");
+        }
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Invalid concurrency parameter ( " + concurrency + " ), it should be > 0.");
+        }
+        executor = taskExecutor;
+        maxConcurrency = concurrency;
+    }
+
+    /**
+     * Parse only the headers of each source.
+     *
+     * @return this parser.
+     */
+    public NitfBatchParser headerOnly() {
+        segmentsToExtract = SlottedParseStrategy.HEADERS_ONLY;
+        return this;
+    }
+
+    /**
+     * Parse the headers and all of the data of each source. This is the default.
+     *
+     * @return this parser.
+     */
+    public NitfBatchParser allData() {
+        segmentsToExtract = SlottedParseStrategy.ALL_SEGMENT_DATA;
+        return this;
+    }
+
+    /**
+     * Configure how image data is stored.
+     *
+     * @param supplier supplier for the image data strategy, called once per source.
+     * @return this parser.
+     */
+    public NitfBatchParser imageDataStrategy(final Supplier<HeapStrategy<ImageInputStream>> supplier) {
+        imageDataStrategySupplier = supplier;
+        return this;
+    }
+
+    /**
+     * Add a TRE descriptor, in addition to the standard TRE descriptions.
+     * <p>
+     * The descriptor is registered once per batch, on the prototype strategy that every source's strategy is derived
+     * from. If it cannot be registered, every source in the batch fails with that error.
+     *
+     * @param xmlDescriptor the TRE descriptor, as XML.
+     * @return this parser.
+     */
+    public NitfBatchParser treDescriptor(final String xmlDescriptor) {
+        treDescriptors.add(xmlDescriptor);
+        return this;
+    }
+
+    /**
+     * Choose whether results are delivered in source order, or as each source is finished.
+     * <p>
+     * In source order, a slow source holds back the results after it (up to maxConcurrency sources).
+     *
+     * @param inSourceOrder true to deliver results in source order.
+     * @return this parser.
+     */
+    public NitfBatchParser ordered(final boolean inSourceOrder) {
+        ordered = inSourceOrder;
+        return this;
+    }
+
+    /**
+     * Parse a batch of sources, delivering each result to a consumer.
+     * <p>
+     * The consumer is called on the parsing threads, but only by one thread at a time. This method returns once
+     * every result has been delivered.
+     *
+     * @param sources the sources to parse.
+     * @param consumer the consumer of the results.
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public void parse(final Stream<NitfBatchSource> sources, final Consumer<NitfBatchResult> consumer)
+            throws InterruptedException {
+        parse(sources, consumer, () -> false);
+    }
+
+    private void parse(final Stream<NitfBatchSource> sources, final Consumer<NitfBatchResult> consumer,
+            final BooleanSupplier cancelled) throws InterruptedException {
+        // Permits are released as results are delivered, so reordered results waiting for delivery hold them too
+        Semaphore permits = new Semaphore(maxConcurrency);
+        Delivery delivery = new Delivery(consumer, permits);
+        BatchPrototype prototype = new BatchPrototype();
+        int index = 0;
+        long start = System.nanoTime();
+        try {
+            Iterator<NitfBatchSource> iterator = sources.iterator();
+            while (iterator.hasNext() && !cancelled.getAsBoolean()) {
+                NitfBatchSource source = iterator.next();
+                int sourceIndex = index++;
+                permits.acquire();
+                try {
+                    executor.execute(() -> delivery.deliver(parseSource(sourceIndex, source, prototype)));
+                } catch (RejectedExecutionException ex) {
+                    delivery.deliver(failure(sourceIndex, source, ex, 0));
+                }
+            }
+        } finally {
+            permits.acquire(maxConcurrency);
+            permits.release(maxConcurrency);
+            busyNanos.addAndGet(System.nanoTime() - start);
+        }
+        delivery.rethrow();
+    }
+
+    /**
+     * Create a publisher for a batch of sources.
+     * <p>
+     * The batch is parsed when the subscriber subscribes, so the stream of sources must only be subscribed to once.
+     * Parsing honours the subscriber's demand, pausing when a bounded number of results are waiting for it, and
+     * no further sources are started once the subscriber cancels. Results are published in the configured order, and the
+     * publisher completes after the last result, or completes exceptionally if the batch itself fails (e.g. the
+     * stream of sources throws). Failures of individual sources are published as results.
+     *
+     * @param sources the sources to parse.
+     * @return the publisher.
+     */
+    public Flow.Publisher<NitfBatchResult> publisher(final Stream<NitfBatchSource> sources) {
+        return subscriber -> {
+            SubmissionPublisher<NitfBatchResult> publisher = new SubmissionPublisher<>(Runnable::run, maxConcurrency);
+            publisher.subscribe(subscriber);
+            Thread driver = new Thread(() -> {
+                try {
+                    parse(sources, publisher::submit, () -> !publisher.hasSubscribers());
+                    publisher.close();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    publisher.closeExceptionally(ex);
+                } catch (RuntimeException ex) {
+                    publisher.closeExceptionally(ex);
+                }
+            }, "nitf-batch-publisher");
+            driver.setDaemon(true);
+            driver.start();
+        };
+    }
+
+    private NitfBatchResult parseSource(final int index, final NitfBatchSource source, final BatchPrototype prototype) {
+        long start = System.nanoTime();
+        HeapStrategy<ImageInputStream> imageDataStrategy;
+        try {
+            imageDataStrategy = imageDataStrategySupplier.get();
+        } catch (RuntimeException ex) {
+            return failure(index, source, ex, System.nanoTime() - start);
+        }
+        try (NitfBatchSource.OpenSource openSource = source.open()) {
+            SlottedParseStrategy parseStrategy = prototype.createSegmentParseStrategy();
+            parseStrategy.setImageHeapStrategy(imageDataStrategy);
+            NitfParser.parse(openSource.getReader(), parseStrategy);
+            long elapsed = System.nanoTime() - start;
+            succeededCount.incrementAndGet();
+            totalParseNanos.addAndGet(elapsed);
+            return new NitfBatchResult(index, source, parseStrategy.getDataSource(), null, elapsed);
+        } catch (Exception ex) {
+            LOG.warn("Could not parse {}: {}", source.getName(), ex.getMessage());
+            imageDataStrategy.cleanUp();
+            return failure(index, source, ex, System.nanoTime() - start);
+        }
+    }
+
+    private NitfBatchResult failure(final int index, final NitfBatchSource source, final Exception ex, final long elapsed) {
+        failedCount.incrementAndGet();
+        totalParseNanos.addAndGet(elapsed);
+        return new NitfBatchResult(index, source, null, ex, elapsed);
+    }
+
+    /**
+     * Get the number of sources that have been parsed.
+     *
+     * @return the count of successful results.
+     */
+    public long getSucceededCount() {
+        return succeededCount.get();
+    }
+
+    /**
+     * Get the number of sources that could not be parsed.
+     *
+     * @return the count of failed results.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Get the total time spent parsing sources, summed over all of the parsing threads.
+     *
+     * @param unit the unit to return the time in.
+     * @return the total parse time.
+     */
+    public long getTotalParseTime(final TimeUnit unit) {
+        return unit.convert(totalParseNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the throughput of the batches parsed so far.
+     *
+     * @return the number of sources (successful or not) per second of batch elapsed time, or 0 if no batch has
+     * finished yet.
+     */
+    public double getThroughput() {
+        long elapsed = busyNanos.get();
+        if (elapsed == 0) {
+            return 0.0;
+        }
+        return (succeededCount.get() + failedCount.get()) / (elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * The parse strategy that the strategies for the sources in a batch are derived from.
+     * <p>
+     * The TRE descriptions are loaded by the first source to need them, so that a failure to load them is reported
+     * through the results, like any other parse failure.
+     */
+    private final class BatchPrototype {
+
+        private final SlottedParseStrategy prototype = new SlottedParseStrategy(segmentsToExtract);
+
+        private final List<String> descriptors = new ArrayList<>(treDescriptors);
+
+        private boolean registered = false;
+
+        private NitfFormatException registrationFailure = null;
+
+        synchronized SlottedParseStrategy createSegmentParseStrategy() throws NitfFormatException {
+            if (!registered) {
+                registered = true;
+                try {
+                    for (String descriptor : descriptors) {
+                        prototype.registerAdditionalTREdescriptor(new StreamSource(new StringReader(descriptor)));
+                    }
+                } catch (NitfFormatException ex) {
+                    registrationFailure = ex;
+                }
+            }
+            if (registrationFailure != null) {
+                throw registrationFailure;
+            }
+            return prototype.createSegmentParseStrategy();
+        }
+    }
+
+    /**
+     * Delivers results to the consumer one at a time, reordering them if required.
+     */
+    private final class Delivery {
+
+        private final Consumer<NitfBatchResult> consumer;
+
+        private final Semaphore permits;
+
+        private final Map<Integer, NitfBatchResult> pending = new HashMap<>();
+
+        private int nextIndex = 0;
+
+        private RuntimeException consumerFailure = null;
+
+        Delivery(final Consumer<NitfBatchResult> resultConsumer, final Semaphore resultPermits) {
+            consumer = resultConsumer;
+            permits = resultPermits;
+        }
+
+        synchronized void deliver(final NitfBatchResult result) {
+            if (!ordered) {
+                accept(result);
+                return;
+            }
+            pending.put(result.getIndex(), result);
+            NitfBatchResult next = pending.remove(nextIndex);
+            while (next != null) {
+                accept(next);
+                nextIndex++;
+                next = pending.remove(nextIndex);
+            }
+        }
+
+        private void accept(final NitfBatchResult result) {
+            try {
+                if (consumerFailure == null) {
+                    consumer.accept(result);
+                }
+            } catch (RuntimeException ex) {
+                LOG.warn("Batch result consumer failed, discarding further results", ex);
+                consumerFailure = ex;
+            } finally {
+                permits.release();
+            }
+        }
+
+        synchronized void rethrow() {
+            if (consumerFailure != null) {
+                throw consumerFailure;
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.fluent.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.codice.imaging.nitf.core.DataSource;
+
+/**
+ * The result of parsing one source with NitfBatchParser.
+ * <p>
+ * Exactly one of getDataSource() and getError() is non-null.
+ */
+public final class NitfBatchResult {
+
+    private final int index;
+
+    private final NitfBatchSource source;
+
+    private final DataSource dataSource;
+
+    private final Exception error;
+
+    private final long parseNanos;
+
+    NitfBatchResult(final int sourceIndex, final NitfBatchSource batchSource, final DataSource parsed,
+            final Exception failure, final long elapsedNanos) {
+        index = sourceIndex;
+        source = batchSource;
+        dataSource = parsed;
+        error = failure;
+        parseNanos = elapsedNanos;
+    }
+
+    /**
+     * Get the position of the source in the batch.
+     *
+     * @return the zero based index of the source.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Get the source.
+     *
+     * @return the source that was parsed.
+     */
+    public NitfBatchSource getSource() {
+        return source;
+    }
+
+    /**
+     * Check whether the source was parsed.
+     *
+     * @return true if the source was parsed, false if parsing failed.
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * Get the parsed data.
+     *
+     * @return the data source, or null if parsing failed.
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Get the reason parsing failed.
+     *
+     * @return the exception, or null if the source was parsed.
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * Get the time spent opening and parsing the source.
+     *
+     * @param unit the unit to return the time in.
+     * @return the parse time.
+     */
+    public long getParseTime(final TimeUnit unit) {
+        return unit.convert(parseNanos, TimeUnit.NANOSECONDS);
+    }
+}
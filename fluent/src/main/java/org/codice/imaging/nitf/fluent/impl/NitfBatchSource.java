@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.fluent.impl;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.NitfReader;
+import org.codice.imaging.nitf.core.common.impl.FileChannelReader;
+import org.codice.imaging.nitf.core.common.impl.NitfInputStreamReader;
+
+/**
+ * A NITF file or stream to be parsed by NitfBatchParser.
+ */
+public final class NitfBatchSource {
+
+    private final String name;
+
+    private final Path path;
+
+    private final Callable<InputStream> streamOpener;
+
+    private NitfBatchSource(final String sourceName, final Path sourcePath, final Callable<InputStream> opener) {
+        name = sourceName;
+        path = sourcePath;
+        streamOpener = opener;
+    }
+
+    /**
+     * Create a source for a file.
+     * <p>
+     * Files are read through a FileChannel, with a read-ahead window.
+     *
+     * @param file the path to the file.
+     * @return the source.
+     */
+    public static NitfBatchSource of(final Path file) {
+        if (file == null) {
+            throw new IllegalArgumentException("of(): argument 'file' may not be null.");
+        }
+        return new NitfBatchSource(file.toString(), file, null);
+    }
+
+    /**
+     * Create a source for a stream.
+     * <p>
+     * The stream is opened on the parsing thread, and closed once it has been parsed.
+     *
+     * @param name a name for the source, used for logging and in the result.
+     * @param opener opens the stream.
+     * @return the source.
+     */
+    public static NitfBatchSource of(final String name, final Callable<InputStream> opener) {
+        if (opener == null) {
+            throw new IllegalArgumentException("of(): argument 'opener' may not be null.");
+        }
+        return new NitfBatchSource(name, null, opener);
+    }
+
+    /**
+     * Get the name of the source.
+     *
+     * @return the file path, or the name given for a stream.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Parse handle for one opened source, which must be closed after parsing.
+     */
+    interface OpenSource extends AutoCloseable {
+        NitfReader getReader();
+
+        @Override
+        void close() throws NitfFormatException, IOException;
+    }
+
+    OpenSource open() throws Exception {
+        if (path != null) {
+            File file = path.toFile();
+            FileChannelReader reader = new FileChannelReader(file);
+            return new OpenSource() {
+                @Override
+                public NitfReader getReader() {
+                    return reader;
+                }
+
+                @Override
+                public void close() throws NitfFormatException {
+                    reader.close();
+                }
+            };
+        }
+        InputStream stream = streamOpener.call();
+        if (stream == null) {
+            throw new IOException("No stream for " + name);
+        }
+        NitfReader reader = new NitfInputStreamReader(new BufferedInputStream(stream));
+        return new OpenSource() {
+            @Override
+            public NitfReader getReader() {
+                return reader;
+            }
+
+            @Override
+            public void close() throws IOException {
+                stream.close();
+            }
+        };
+    }
+}
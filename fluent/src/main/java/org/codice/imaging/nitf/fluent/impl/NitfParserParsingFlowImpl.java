@@ -19,6 +19,8 @@ import java.io.StringReader;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import javax.imageio.stream.ImageInputStream;
@@ -27,11 +29,13 @@ import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
 
 import org.codice.imaging.nitf.core.HeapStrategy;
+import org.codice.imaging.nitf.core.common.CommonSegment;
 import org.codice.imaging.nitf.core.common.ParseStrategy;
 import org.codice.imaging.nitf.core.impl.InMemoryHeapStrategy;
 import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
 import org.codice.imaging.nitf.core.common.NitfFormatException;
 import org.codice.imaging.nitf.core.common.NitfReader;
+import org.codice.imaging.nitf.core.header.NitfHeader;
 import org.codice.imaging.nitf.core.header.impl.NitfParser;
 import org.codice.imaging.nitf.fluent.NitfParserParsingFlow;
 import org.codice.imaging.nitf.fluent.NitfSegmentsFlow;
@@ -120,11 +124,46 @@ public class NitfParserParsingFlowImpl implements NitfParserParsingFlow {
      * {@inheritDoc}
      */
     @Override
-    public final NitfSegmentsFlow build(final ParseStrategy parseStrategy)
+    public final Flow.Publisher<CommonSegment> publishAllData(final Consumer<NitfHeader> headerConsumer)
+            throws NitfFormatException {
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy();
+        parseStrategy.setImageHeapStrategy(imageDataStrategy);
+        return publish(parseStrategy, headerConsumer);
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public final Flow.Publisher<CommonSegment> publishHeaderOnly(final Consumer<NitfHeader> headerConsumer)
             throws NitfFormatException {
+        SlottedParseStrategy parseStrategy =
+                new SlottedParseStrategy(SlottedParseStrategy.HEADERS_ONLY);
+        parseStrategy.setImageHeapStrategy(imageDataStrategy);
+        return publish(parseStrategy, headerConsumer);
+    }
+
+    private Flow.Publisher<CommonSegment> publish(final ParseStrategy parseStrategy,
+            final Consumer<NitfHeader> headerConsumer) throws NitfFormatException {
+        registerTreDescriptors(parseStrategy);
+        return new NitfSegmentPublisher(reader, parseStrategy, headerConsumer, imageDataStrategy::cleanUp);
+    }
+
+    private void registerTreDescriptors(final ParseStrategy parseStrategy) throws NitfFormatException {
         for (Source treDescriptor : treDescriptors) {
             parseStrategy.registerAdditionalTREdescriptor(treDescriptor);
         }
+    }
+
+    /**
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public final NitfSegmentsFlow build(final ParseStrategy parseStrategy)
+            throws NitfFormatException {
+        registerTreDescriptors(parseStrategy);
         NitfParser.parse(reader, parseStrategy);
         return new NitfSegmentsFlowImpl(parseStrategy.getDataSource(), imageDataStrategy::cleanUp);
     }
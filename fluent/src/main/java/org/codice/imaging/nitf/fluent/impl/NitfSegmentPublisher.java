@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.fluent.impl;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.codice.imaging.nitf.core.common.CommonSegment;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.NitfReader;
+import org.codice.imaging.nitf.core.common.ParseStrategy;
+import org.codice.imaging.nitf.core.header.NitfHeader;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publisher of the segments of a NITF file, as the parser reaches them.
+ * <p>
+ * Parsing starts when the subscriber subscribes, on a separate thread, and each segment is published as soon as
+ * it (and its data, if requested) has been parsed, so the subscriber can start on the first segment before the
+ * rest of the file is read. The parser honours the subscriber's demand, pausing when a small number of segments
+ * are waiting for it, and stops reading the file if the subscriber cancels.
+ * <p>
+ * Segment data stays readable until the subscriber has received onComplete() or onError(), or has cancelled,
+ * after which the data strategy is cleaned up. Subscribers that need the data later must copy it.
+ * <p>
+ * The file can only be read once, so only one subscriber is allowed.
+ */
+class NitfSegmentPublisher implements Flow.Publisher<CommonSegment> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NitfSegmentPublisher.class);
+
+    private static final int BUFFER_CAPACITY = 2;
+
+    private final NitfReader reader;
+
+    private final ParseStrategy parseStrategy;
+
+    private final Consumer<NitfHeader> headerConsumer;
+
+    private final Runnable cleanUp;
+
+    private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+    NitfSegmentPublisher(final NitfReader nitfReader, final ParseStrategy strategy, final Consumer<NitfHeader> nitfHeaderConsumer,
+            final Runnable cleanUpCallback) {
+        reader = nitfReader;
+        parseStrategy = strategy;
+        headerConsumer = nitfHeaderConsumer;
+        cleanUp = cleanUpCallback;
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super CommonSegment> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(final long n) {
+                    // Nothing to deliver
+                }
+
+                @Override
+                public void cancel() {
+                    // Nothing to cancel
+                }
+            });
+            subscriber.onError(new IllegalStateException("NITF segment publisher only allows one subscriber"));
+            return;
+        }
+        AtomicBoolean cleanedUp = new AtomicBoolean(false);
+        Runnable cleanUpOnce = () -> {
+            if (cleanedUp.compareAndSet(false, true)) {
+                cleanUp.run();
+            }
+        };
+        CleanUpSubscriber cleanUpSubscriber = new CleanUpSubscriber(subscriber, cleanUpOnce);
+        SubmissionPublisher<CommonSegment> publisher = new SubmissionPublisher<>(Runnable::run, BUFFER_CAPACITY);
+        publisher.subscribe(cleanUpSubscriber);
+        Thread parser = new Thread(() -> parse(publisher, cleanUpSubscriber), "nitf-segment-publisher");
+        parser.setDaemon(true);
+        parser.start();
+    }
+
+    private void parse(final SubmissionPublisher<CommonSegment> publisher, final CleanUpSubscriber cleanUpSubscriber) {
+        ParseStrategy emitter = new SegmentEmittingParseStrategy(parseStrategy, headerConsumer, segment -> {
+            if (cleanUpSubscriber.isCancelled() || !publisher.hasSubscribers()) {
+                throw new CancellationException();
+            }
+            publisher.submit(segment);
+        });
+        try {
+            NitfParser.parse(reader, emitter);
+            publisher.close();
+        } catch (CancellationException ex) {
+            LOG.debug("Segment subscriber cancelled, stopping parsing");
+            publisher.close();
+        } catch (NitfFormatException | RuntimeException ex) {
+            publisher.closeExceptionally(ex);
+        } finally {
+            cleanUpSubscriber.parseFinished();
+        }
+    }
+
+    /**
+     * Subscriber that cleans up the data strategy once the stream has ended.
+     * <p>
+     * A cancelled subscriber is not told when the stream ends, so in that case the clean up happens when both the
+     * subscriber has cancelled and the parser has stopped using the data strategy, whichever is last.
+     */
+    private static final class CleanUpSubscriber implements Flow.Subscriber<CommonSegment> {
+
+        private final Flow.Subscriber<? super CommonSegment> subscriber;
+
+        private final Runnable cleanUp;
+
+        private volatile boolean cancelled = false;
+
+        private volatile boolean finished = false;
+
+        CleanUpSubscriber(final Flow.Subscriber<? super CommonSegment> segmentSubscriber, final Runnable cleanUpCallback) {
+            subscriber = segmentSubscriber;
+            cleanUp = cleanUpCallback;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        void parseFinished() {
+            finished = true;
+            if (cancelled) {
+                cleanUp.run();
+            }
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(final long n) {
+                    subscription.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                    subscription.cancel();
+                    if (finished) {
+                        cleanUp.run();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onNext(final CommonSegment item) {
+            subscriber.onNext(item);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            try {
+                subscriber.onError(throwable);
+            } finally {
+                cleanUp.run();
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                subscriber.onComplete();
+            } finally {
+                cleanUp.run();
+            }
+        }
+    }
+}
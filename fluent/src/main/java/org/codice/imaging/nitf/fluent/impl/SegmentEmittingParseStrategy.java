@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.fluent.impl;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.xml.transform.Source;
+
+import org.codice.imaging.nitf.core.DataSource;
+import org.codice.imaging.nitf.core.common.CommonSegment;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.NitfReader;
+import org.codice.imaging.nitf.core.common.ParseStrategy;
+import org.codice.imaging.nitf.core.header.NitfHeader;
+import org.codice.imaging.nitf.core.tre.TreCollection;
+import org.codice.imaging.nitf.core.tre.TreSource;
+
+/**
+ * ParseStrategy that passes on each segment as soon as another strategy has handled it.
+ * <p>
+ * The wrapped strategy does the parsing and storage. After each segment, the segment it stored is passed to the
+ * segment consumer, on the parsing thread, before the next segment is read.
+ */
+class SegmentEmittingParseStrategy implements ParseStrategy {
+
+    private final ParseStrategy delegate;
+
+    private final Consumer<NitfHeader> headerConsumer;
+
+    private final Consumer<CommonSegment> segmentConsumer;
+
+    SegmentEmittingParseStrategy(final ParseStrategy parseStrategy, final Consumer<NitfHeader> nitfHeaderConsumer,
+            final Consumer<CommonSegment> commonSegmentConsumer) {
+        delegate = parseStrategy;
+        headerConsumer = nitfHeaderConsumer;
+        segmentConsumer = commonSegmentConsumer;
+    }
+
+    @Override
+    public void setFileHeader(final NitfHeader nitfHeader) {
+        delegate.setFileHeader(nitfHeader);
+        if (headerConsumer != null) {
+            headerConsumer.accept(nitfHeader);
+        }
+    }
+
+    @Override
+    public NitfHeader getNitfHeader() {
+        return delegate.getNitfHeader();
+    }
+
+    @Override
+    public TreCollection parseTREs(final NitfReader reader, final int length, final TreSource source) throws NitfFormatException {
+        return delegate.parseTREs(reader, length, source);
+    }
+
+    @Override
+    public void handleTextSegment(final NitfReader reader, final long dataLength) throws NitfFormatException {
+        delegate.handleTextSegment(reader, dataLength);
+        emitLast(delegate.getDataSource().getTextSegments());
+    }
+
+    @Override
+    public void handleDataExtensionSegment(final NitfReader reader, final long dataLength) throws NitfFormatException {
+        delegate.handleDataExtensionSegment(reader, dataLength);
+        emitLast(delegate.getDataSource().getDataExtensionSegments());
+    }
+
+    @Override
+    public void handleGraphicSegment(final NitfReader reader, final long dataLength) throws NitfFormatException {
+        delegate.handleGraphicSegment(reader, dataLength);
+        emitLast(delegate.getDataSource().getGraphicSegments());
+    }
+
+    @Override
+    public void handleImageSegment(final NitfReader reader, final long dataLength) throws NitfFormatException {
+        delegate.handleImageSegment(reader, dataLength);
+        emitLast(delegate.getDataSource().getImageSegments());
+    }
+
+    @Override
+    public void handleLabelSegment(final NitfReader reader, final long dataLength) throws NitfFormatException {
+        delegate.handleLabelSegment(reader, dataLength);
+        emitLast(delegate.getDataSource().getLabelSegments());
+    }
+
+    @Override
+    public void handleSymbolSegment(final NitfReader reader, final long dataLength) throws NitfFormatException {
+        delegate.handleSymbolSegment(reader, dataLength);
+        emitLast(delegate.getDataSource().getSymbolSegments());
+    }
+
+    @Override
+    public void registerAdditionalTREdescriptor(final Source source) throws NitfFormatException {
+        delegate.registerAdditionalTREdescriptor(source);
+    }
+
+    @Override
+    public DataSource getDataSource() {
+        return delegate.getDataSource();
+    }
+
+    private void emitLast(final List<? extends CommonSegment> segments) {
+        if ((segments != null) && !segments.isEmpty()) {
+            segmentConsumer.accept(segments.get(segments.size() - 1));
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.fluent.impl;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Tests for the concurrent multi-file parse service.
+ */
+public class NitfBatchParserTest {
+
+    private static final String[] TEST_FILES = new String[] {"/JitcNitf21Samples/ns3361c.nsf", "/JitcNitf21Samples/ns3051v.nsf",
+        "/JitcNitf20Samples/U_1050A.NTF", "/gdal3453.ntf"};
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private ExecutorService executor;
+
+    @Before
+    public void createExecutor() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    private Path getTestFile(final String testfile) throws URISyntaxException {
+        assertNotNull("Test file missing: " + testfile, getClass().getResource(testfile));
+        return new File(getClass().getResource(testfile).toURI()).toPath();
+    }
+
+    private List<NitfBatchSource> getSources(final int copies) throws URISyntaxException {
+        List<NitfBatchSource> sources = new ArrayList<>();
+        for (int i = 0; i < copies; ++i) {
+            for (String testfile : TEST_FILES) {
+                sources.add(NitfBatchSource.of(getTestFile(testfile)));
+            }
+        }
+        return sources;
+    }
+
+    @Test
+    public void checkOrderedResults() throws Exception {
+        List<NitfBatchSource> sources = getSources(5);
+        NitfBatchParser parser = new NitfBatchParser(executor, 3).ordered(true).headerOnly();
+        List<NitfBatchResult> results = new ArrayList<>();
+        parser.parse(sources.stream(), results::add);
+        assertThat(results.size(), is(sources.size()));
+        for (int i = 0; i < results.size(); ++i) {
+            assertThat(results.get(i).getIndex(), is(i));
+            assertThat(results.get(i).getSource(), is(sources.get(i)));
+            assertTrue(results.get(i).isSuccess());
+            assertNotNull(results.get(i).getDataSource().getNitfHeader());
+        }
+        assertThat(results.get(3).getDataSource().getNitfHeader().getFileTitle(), is("BLAUE MOSCHEE NITF"));
+        assertThat(results.get(0).getDataSource().getImageSegments().size(), is(4));
+        assertThat(parser.getSucceededCount(), is((long) sources.size()));
+        assertThat(parser.getFailedCount(), is(0L));
+        assertTrue(parser.getTotalParseTime(TimeUnit.NANOSECONDS) > 0);
+        assertTrue(parser.getThroughput() > 0.0);
+    }
+
+    @Test
+    public void checkUnorderedResultsAllData() throws Exception {
+        List<NitfBatchSource> sources = getSources(3);
+        NitfBatchParser parser = new NitfBatchParser(executor, 8);
+        List<NitfBatchResult> results = new ArrayList<>();
+        parser.parse(sources.stream(), results::add);
+        List<Integer> indices = results.stream().map(NitfBatchResult::getIndex).sorted().collect(Collectors.toList());
+        assertThat(indices, is(IntStream.range(0, sources.size()).boxed().collect(Collectors.toList())));
+        for (NitfBatchResult result : results) {
+            assertTrue(result.isSuccess());
+            if (result.getIndex() % TEST_FILES.length == 0) {
+                assertNotNull(result.getDataSource().getImageSegments().get(0).getData());
+            }
+        }
+    }
+
+    @Test
+    public void checkFailureIsolated() throws Exception {
+        List<NitfBatchSource> sources = new ArrayList<>();
+        sources.add(NitfBatchSource.of("missing", () -> {
+            throw new IOException("no such stream");
+        }));
+        sources.add(NitfBatchSource.of("/gdal3453.ntf", () -> getClass().getResourceAsStream("/gdal3453.ntf")));
+        sources.add(NitfBatchSource.of(new File("no such file").toPath()));
+        NitfBatchParser parser = new NitfBatchParser(executor, 2).ordered(true);
+        List<NitfBatchResult> results = new ArrayList<>();
+        parser.parse(sources.stream(), results::add);
+        assertThat(results.size(), is(3));
+        assertFalse(results.get(0).isSuccess());
+        assertNull(results.get(0).getDataSource());
+        assertThat(results.get(0).getError(), instanceOf(IOException.class));
+        assertTrue(results.get(1).isSuccess());
+        assertThat(results.get(1).getDataSource().getNitfHeader().getFileTitle(), is("BLAUE MOSCHEE NITF"));
+        assertThat(results.get(2).getError(), instanceOf(NitfFormatException.class));
+        assertThat(parser.getSucceededCount(), is(1L));
+        assertThat(parser.getFailedCount(), is(2L));
+    }
+
+    @Test
+    public void checkTreDescriptor() throws Exception {
+        List<NitfBatchSource> sources = getSources(2);
+        NitfBatchParser parser = new NitfBatchParser(executor, 4)
+                .treDescriptor("<?xml version=\"1.0\"?><tres><tre name=\"ZZTEST\" location=\"image\"><field name=\"Info\" length=\"10\"/></tre></tres>");
+        List<NitfBatchResult> results = new ArrayList<>();
+        parser.parse(sources.stream(), results::add);
+        assertThat(results.size(), is(sources.size()));
+        for (NitfBatchResult result : results) {
+            assertTrue(result.isSuccess());
+        }
+    }
+
+    @Test
+    public void checkInvalidTreDescriptorFailsEachSource() throws Exception {
+        List<NitfBatchSource> sources = getSources(1);
+        NitfBatchParser parser = new NitfBatchParser(executor, 2).treDescriptor("<tres><tre");
+        List<NitfBatchResult> results = new ArrayList<>();
+        parser.parse(sources.stream(), results::add);
+        assertThat(results.size(), is(sources.size()));
+        for (NitfBatchResult result : results) {
+            assertFalse(result.isSuccess());
+            assertThat(result.getError(), instanceOf(NitfFormatException.class));
+        }
+        assertThat(parser.getFailedCount(), is((long) sources.size()));
+    }
+
+    @Test
+    public void checkConsumerFailureRethrown() throws Exception {
+        NitfBatchParser parser = new NitfBatchParser(executor, 2);
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("consumer failed");
+        parser.parse(getSources(2).stream(), result -> {
+            throw new IllegalStateException("consumer failed");
+        });
+    }
+
+    @Test
+    public void checkEmptyBatch() throws Exception {
+        NitfBatchParser parser = new NitfBatchParser(executor, 2);
+        List<NitfBatchResult> results = new ArrayList<>();
+        parser.parse(Stream.empty(), results::add);
+        assertTrue(results.isEmpty());
+    }
+
+    @Test
+    public void checkInvalidConcurrency() {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid concurrency parameter ( 0 ), it should be > 0.");
+        new NitfBatchParser(executor, 0);
+    }
+
+    @Test
+    public void checkPublisher() throws Exception {
+        List<NitfBatchSource> sources = getSources(4);
+        NitfBatchParser parser = new NitfBatchParser(executor, 2).ordered(true).headerOnly();
+        List<NitfBatchResult> results = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        parser.publisher(sources.stream()).subscribe(new Flow.Subscriber<NitfBatchResult>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(final Flow.Subscription sub) {
+                subscription = sub;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(final NitfBatchResult item) {
+                results.add(item);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(final Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+        done.get(60, TimeUnit.SECONDS);
+        assertThat(results.size(), is(sources.size()));
+        for (int i = 0; i < results.size(); ++i) {
+            assertThat(results.get(i).getIndex(), is(i));
+        }
+    }
+
+    @Test
+    public void checkPublisherCancel() throws Exception {
+        List<NitfBatchSource> sources = getSources(50);
+        NitfBatchParser parser = new NitfBatchParser(executor, 2).headerOnly();
+        CompletableFuture<NitfBatchResult> first = new CompletableFuture<>();
+        parser.publisher(sources.stream()).subscribe(new Flow.Subscriber<NitfBatchResult>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(final Flow.Subscription sub) {
+                subscription = sub;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(final NitfBatchResult item) {
+                subscription.cancel();
+                first.complete(item);
+            }
+
+            @Override
+            public void onError(final Throwable throwable) {
+                first.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        assertTrue(first.get(60, TimeUnit.SECONDS).isSuccess());
+        // Give the driver time to notice the cancellation
+        Thread.sleep(500);
+        assertTrue(parser.getSucceededCount() < sources.size());
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.fluent.impl;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.codice.imaging.nitf.core.HeapStrategy;
+import org.codice.imaging.nitf.core.common.CommonSegment;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.NitfReader;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.impl.InMemoryHeapStrategy;
+import org.junit.Test;
+
+/**
+ * Tests for publishing segments as they are parsed.
+ */
+public class SegmentPublisherTest {
+
+    private static final String TEST_FILE = "/JitcNitf21Samples/ns3361c.nsf";
+
+    private static final int NUM_IMAGES = 4;
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private File getTestFile() throws URISyntaxException {
+        assertNotNull("Test file missing", getClass().getResource(TEST_FILE));
+        return new File(getClass().getResource(TEST_FILE).toURI());
+    }
+
+    @Test
+    public void checkSegmentsPublishedAfterHeader() throws Exception {
+        List<String> events = new CopyOnWriteArrayList<>();
+        CountDownLatch cleanedUp = new CountDownLatch(1);
+        TestSubscriber subscriber = new TestSubscriber(Long.MAX_VALUE, segment -> {
+            assertThat(segment, is(instanceOf(ImageSegment.class)));
+            assertNotNull(((ImageSegment) segment).getData());
+            events.add(segment.getIdentifier());
+        });
+        new NitfParserInputFlowImpl()
+                .file(getTestFile())
+                .imageDataStrategy(() -> new CountingHeapStrategy(cleanedUp))
+                .publishAllData(header -> events.add("header"))
+                .subscribe(subscriber);
+
+        subscriber.done.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertThat(events.size(), is(NUM_IMAGES + 1));
+        assertThat(events.get(0), is("header"));
+        assertThat(subscriber.received.size(), is(NUM_IMAGES));
+        assertTrue(cleanedUp.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void checkDemandRespected() throws Exception {
+        TestSubscriber subscriber = new TestSubscriber(1, segment -> { });
+        new NitfParserInputFlowImpl()
+                .file(getTestFile())
+                .publishHeaderOnly(null)
+                .subscribe(subscriber);
+
+        assertTrue(subscriber.first.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertThat(subscriber.received.size(), is(1));
+        assertThat(subscriber.done.isDone(), is(false));
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.done.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertThat(subscriber.received.size(), is(NUM_IMAGES));
+    }
+
+    @Test
+    public void checkCancelStopsParsing() throws Exception {
+        CountDownLatch cleanedUp = new CountDownLatch(1);
+        TestSubscriber subscriber = new TestSubscriber(1, segment -> { });
+        new NitfParserInputFlowImpl()
+                .file(getTestFile())
+                .imageDataStrategy(() -> new CountingHeapStrategy(cleanedUp))
+                .publishAllData(null)
+                .subscribe(subscriber);
+
+        assertTrue(subscriber.first.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        subscriber.subscription.cancel();
+        assertTrue(cleanedUp.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertThat(subscriber.received.size(), is(1));
+        assertThat(subscriber.done.isDone(), is(false));
+    }
+
+    @Test
+    public void checkSecondSubscriberRejected() throws Exception {
+        Flow.Publisher<CommonSegment> publisher = new NitfParserInputFlowImpl()
+                .file(getTestFile())
+                .publishHeaderOnly(null);
+        TestSubscriber first = new TestSubscriber(Long.MAX_VALUE, segment -> { });
+        TestSubscriber second = new TestSubscriber(Long.MAX_VALUE, segment -> { });
+        publisher.subscribe(first);
+        publisher.subscribe(second);
+
+        first.done.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertThat(first.received.size(), is(NUM_IMAGES));
+        assertThat(second.done.isCompletedExceptionally(), is(true));
+        assertThat(second.received.size(), is(0));
+    }
+
+    private static final class TestSubscriber implements Flow.Subscriber<CommonSegment> {
+
+        private final long initialRequest;
+
+        private final Consumer<CommonSegment> consumer;
+
+        private final List<CommonSegment> received = new CopyOnWriteArrayList<>();
+
+        private final CountDownLatch first = new CountDownLatch(1);
+
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private volatile Flow.Subscription subscription;
+
+        TestSubscriber(final long request, final Consumer<CommonSegment> segmentConsumer) {
+            initialRequest = request;
+            consumer = segmentConsumer;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription flowSubscription) {
+            subscription = flowSubscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(final CommonSegment item) {
+            try {
+                consumer.accept(item);
+                received.add(item);
+                first.countDown();
+            } catch (RuntimeException | AssertionError ex) {
+                done.completeExceptionally(ex);
+                subscription.cancel();
+            }
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(null);
+        }
+    }
+
+    private static final class CountingHeapStrategy implements HeapStrategy<ImageInputStream> {
+
+        private final HeapStrategy<ImageInputStream> delegate = new InMemoryHeapStrategy<>(MemoryCacheImageInputStream::new);
+
+        private final CountDownLatch cleanedUp;
+
+        CountingHeapStrategy(final CountDownLatch latch) {
+            cleanedUp = latch;
+        }
+
+        @Override
+        public ImageInputStream handleSegment(final NitfReader reader, final long length) throws NitfFormatException {
+            return delegate.handleSegment(reader, length);
+        }
+
+        @Override
+        public void cleanUp() {
+            delegate.cleanUp();
+            cleanedUp.countDown();
+        }
+    }
+}
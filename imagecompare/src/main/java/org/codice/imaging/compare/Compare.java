@@ -26,14 +26,20 @@
 package org.codice.imaging.compare;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.stream.IntStream;
 
 /**
  * Utilities for image comparison.
+ *
+ * Comparisons work on horizontal strips of rows, which are processed in parallel.
  */
 public final class Compare {
 
     private static final int RGB_MASK = 0xFFFFFF;
 
+    private static final int STRIP_PIXELS = 64 * 1024;
+
     private Compare() {
     }
 
@@ -54,16 +60,7 @@ public final class Compare {
         if (imageUnderTest.getHeight() != referenceImage.getHeight()) {
             return false;
         }
-        for (int x = 0; x < nonPadWidth; ++x) {
-            for (int y = 0; y < nonPadHeight; ++y) {
-                int iutPixel = imageUnderTest.getRGB(x, y);
-                int refPixel = referenceImage.getRGB(x, y);
-                if (iutPixel != refPixel && ((iutPixel & RGB_MASK) != (refPixel & RGB_MASK))) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return rgbRowsMatch(imageUnderTest, referenceImage, nonPadWidth, nonPadHeight, RGB_MASK);
     }
 
     /**
@@ -79,15 +76,136 @@ public final class Compare {
         if (imageUnderTest.getHeight() != referenceImage.getHeight()) {
             return false;
         }
-        for (int x = 0; x < referenceImage.getWidth(); ++x) {
-            for (int y = 0; y < referenceImage.getHeight(); ++y) {
-                int iutPixel = imageUnderTest.getRGB(x, y);
-                int refPixel = referenceImage.getRGB(x, y);
-                if (iutPixel != refPixel) {
+        return rgbRowsMatch(imageUnderTest, referenceImage, referenceImage.getWidth(), referenceImage.getHeight(), -1);
+    }
+
+    /**
+     * Compare the samples of two images, and report the differences.
+     *
+     * @param imageUnderTest the image to check
+     * @param referenceImage the reference image
+     * @param tolerance the largest absolute difference between two samples that is not counted as a mismatch
+     * @param createDifferenceMask true to produce a mask of the mismatched pixels, otherwise false
+     * @return the comparison results
+     */
+    public static RasterComparison compareRasters(final BufferedImage imageUnderTest, final BufferedImage referenceImage,
+            final int tolerance, final boolean createDifferenceMask) {
+        return compareRasters(imageUnderTest.getRaster(), referenceImage.getRaster(), tolerance, createDifferenceMask);
+    }
+
+    /**
+     * Compare the samples of two rasters, and report the differences.
+     *
+     * Samples are compared at their native precision (e.g. 16 bits for USHORT data) with no colour conversion. The
+     * rasters must have the same size and number of bands, and integral sample types.
+     *
+     * @param rasterUnderTest the raster to check
+     * @param referenceRaster the reference raster
+     * @param tolerance the largest absolute difference between two samples that is not counted as a mismatch
+     * @param createDifferenceMask true to produce a mask of the mismatched pixels, otherwise false
+     * @return the comparison results
+     */
+    public static RasterComparison compareRasters(final Raster rasterUnderTest, final Raster referenceRaster,
+            final int tolerance, final boolean createDifferenceMask) {
+        if ((rasterUnderTest.getWidth() != referenceRaster.getWidth()) || (rasterUnderTest.getHeight() != referenceRaster.getHeight())) {
+            throw new IllegalArgumentException("Cannot compare rasters of different sizes");
+        }
+        if (rasterUnderTest.getNumBands() != referenceRaster.getNumBands()) {
+            throw new IllegalArgumentException("Cannot compare rasters with different numbers of bands");
+        }
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("Invalid tolerance parameter ( " + tolerance + " ), it should be >= 0.");
+        }
+        if (!RawRowComparator.hasIntegralSamples(rasterUnderTest) || !RawRowComparator.hasIntegralSamples(referenceRaster)) {
+            throw new UnsupportedOperationException("Only integral sample types can be compared");
+        }
+        int width = referenceRaster.getWidth();
+        int height = referenceRaster.getHeight();
+        BufferedImage mask = null;
+        if (createDifferenceMask) {
+            mask = new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_BYTE_BINARY);
+        }
+        RasterComparison.Statistics statistics = new RasterComparison.Statistics(referenceRaster.getNumBands());
+        if ((width > 0) && (height > 0)) {
+            final BufferedImage differenceMask = mask;
+            int stripHeight = getStripHeight(width);
+            statistics = IntStream.range(0, getStripCount(height, stripHeight))
+                    .parallel()
+                    .mapToObj(strip -> compareStrip(rasterUnderTest, referenceRaster, strip * stripHeight,
+                            Math.min(height, (strip + 1) * stripHeight), tolerance, differenceMask))
+                    .reduce(statistics, RasterComparison.Statistics::merge);
+        }
+        return new RasterComparison(referenceRaster, tolerance, statistics, mask);
+    }
+
+    private static int getStripHeight(final int width) {
+        return Math.max(1, STRIP_PIXELS / Math.max(1, width));
+    }
+
+    private static int getStripCount(final int height, final int stripHeight) {
+        return (height + stripHeight - 1) / stripHeight;
+    }
+
+    private static boolean rgbRowsMatch(final BufferedImage imageUnderTest, final BufferedImage referenceImage,
+            final int width, final int height, final int rgbMask) {
+        if ((width <= 0) || (height <= 0)) {
+            return true;
+        }
+        RawRowComparator rawRows = new RawRowComparator(imageUnderTest, referenceImage);
+        int stripHeight = getStripHeight(width);
+        return IntStream.range(0, getStripCount(height, stripHeight))
+                .parallel()
+                .allMatch(strip -> rgbStripMatches(imageUnderTest, referenceImage, rawRows, width,
+                        strip * stripHeight, Math.min(height, (strip + 1) * stripHeight), rgbMask));
+    }
+
+    private static boolean rgbStripMatches(final BufferedImage imageUnderTest, final BufferedImage referenceImage,
+            final RawRowComparator rawRows, final int width, final int startRow, final int endRow, final int rgbMask) {
+        int[] iutRow = new int[Math.max(width, rawRows.getRowLength())];
+        int[] refRow = new int[Math.max(width, rawRows.getRowLength())];
+        for (int y = startRow; y < endRow; ++y) {
+            if (rawRows.rowsAreEqual(y, iutRow, refRow)) {
+                continue;
+            }
+            imageUnderTest.getRGB(0, y, width, 1, iutRow, 0, width);
+            referenceImage.getRGB(0, y, width, 1, refRow, 0, width);
+            for (int x = 0; x < width; ++x) {
+                if ((iutRow[x] & rgbMask) != (refRow[x] & rgbMask)) {
                     return false;
                 }
             }
         }
         return true;
     }
+
+    private static RasterComparison.Statistics compareStrip(final Raster rasterUnderTest, final Raster referenceRaster,
+            final int startRow, final int endRow, final int tolerance, final BufferedImage differenceMask) {
+        int width = referenceRaster.getWidth();
+        int numBands = referenceRaster.getNumBands();
+        RasterComparison.Statistics statistics = new RasterComparison.Statistics(numBands);
+        int[] iutRow = new int[width * numBands];
+        int[] refRow = new int[width * numBands];
+        for (int y = startRow; y < endRow; ++y) {
+            rasterUnderTest.getPixels(rasterUnderTest.getMinX(), rasterUnderTest.getMinY() + y, width, 1, iutRow);
+            referenceRaster.getPixels(referenceRaster.getMinX(), referenceRaster.getMinY() + y, width, 1, refRow);
+            int sampleIndex = 0;
+            for (int x = 0; x < width; ++x) {
+                boolean mismatch = false;
+                for (int band = 0; band < numBands; ++band) {
+                    long difference = Math.abs((long) iutRow[sampleIndex] - (long) refRow[sampleIndex]);
+                    if (statistics.addSample(band, difference, tolerance)) {
+                        mismatch = true;
+                    }
+                    ++sampleIndex;
+                }
+                if (mismatch) {
+                    statistics.addMismatchedPixel();
+                    if (differenceMask != null) {
+                        differenceMask.getRaster().setSample(x, y, 0, 1);
+                    }
+                }
+            }
+        }
+        return statistics;
+    }
 }
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2016, Codice
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.codice.imaging.compare;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+
+/**
+ * Results of comparing the samples of two rasters.
+ *
+ * A sample is mismatched if it differs from the reference sample by more than the tolerance, and a pixel is
+ * mismatched if any of its samples are. The difference statistics (maximum, mean and mean squared difference) are
+ * calculated over all samples, including those within the tolerance.
+ */
+public final class RasterComparison {
+
+    private static final double DECIBEL_SCALE = 10.0;
+
+    private final int width;
+    private final int height;
+    private final int tolerance;
+    private final long[] peakValues;
+    private final Statistics statistics;
+    private final BufferedImage differenceMask;
+
+    RasterComparison(final Raster referenceRaster, final int sampleTolerance, final Statistics comparisonStatistics,
+            final BufferedImage mask) {
+        width = referenceRaster.getWidth();
+        height = referenceRaster.getHeight();
+        tolerance = sampleTolerance;
+        statistics = comparisonStatistics;
+        differenceMask = mask;
+        peakValues = new long[referenceRaster.getNumBands()];
+        for (int band = 0; band < peakValues.length; ++band) {
+            peakValues[band] = (1L << referenceRaster.getSampleModel().getSampleSize(band)) - 1;
+        }
+    }
+
+    /**
+     * Get the width of the compared rasters.
+     *
+     * @return the width, in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get the height of the compared rasters.
+     *
+     * @return the height, in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Get the number of bands in the compared rasters.
+     *
+     * @return the number of bands
+     */
+    public int getNumBands() {
+        return peakValues.length;
+    }
+
+    /**
+     * Get the tolerance used for the comparison.
+     *
+     * @return the largest absolute sample difference that was not counted as a mismatch
+     */
+    public int getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Check whether the rasters matched.
+     *
+     * @return true if no sample differed by more than the tolerance, otherwise false
+     */
+    public boolean isWithinTolerance() {
+        return statistics.mismatchedPixels == 0;
+    }
+
+    /**
+     * Get the number of mismatched pixels.
+     *
+     * @return the number of pixels with at least one mismatched sample
+     */
+    public long getMismatchedPixelCount() {
+        return statistics.mismatchedPixels;
+    }
+
+    /**
+     * Get the number of mismatched samples in a band.
+     *
+     * @param band the band index
+     * @return the number of samples in the band that differed by more than the tolerance
+     */
+    public long getMismatchedSampleCount(final int band) {
+        return statistics.mismatchedSamples[band];
+    }
+
+    /**
+     * Get the maximum absolute sample difference over all bands.
+     *
+     * @return the maximum absolute difference
+     */
+    public long getMaxAbsoluteDifference() {
+        long max = 0;
+        for (long bandMax : statistics.maxDifference) {
+            max = Math.max(max, bandMax);
+        }
+        return max;
+    }
+
+    /**
+     * Get the maximum absolute sample difference in a band.
+     *
+     * @param band the band index
+     * @return the maximum absolute difference
+     */
+    public long getMaxAbsoluteDifference(final int band) {
+        return statistics.maxDifference[band];
+    }
+
+    /**
+     * Get the mean absolute sample difference in a band.
+     *
+     * @param band the band index
+     * @return the mean absolute difference
+     */
+    public double getMeanAbsoluteDifference(final int band) {
+        return statistics.sumOfDifferences[band] / getPixelCount();
+    }
+
+    /**
+     * Get the mean squared sample difference in a band.
+     *
+     * @param band the band index
+     * @return the mean squared error
+     */
+    public double getMeanSquaredError(final int band) {
+        return statistics.sumOfSquaredDifferences[band] / getPixelCount();
+    }
+
+    /**
+     * Get the mean squared sample difference over all bands.
+     *
+     * @return the mean squared error
+     */
+    public double getMeanSquaredError() {
+        double sum = 0.0;
+        for (double bandSum : statistics.sumOfSquaredDifferences) {
+            sum += bandSum;
+        }
+        return sum / (getPixelCount() * getNumBands());
+    }
+
+    /**
+     * Get the peak signal to noise ratio of a band.
+     *
+     * The peak value is the largest value that the sample size of the band can represent, e.g. 255 for 8 bit samples
+     * or 65535 for 16 bit samples.
+     *
+     * @param band the band index
+     * @return the peak signal to noise ratio in decibels, or positive infinity if the band is identical
+     */
+    public double getPeakSignalToNoiseRatio(final int band) {
+        return getPeakSignalToNoiseRatio(peakValues[band], getMeanSquaredError(band));
+    }
+
+    /**
+     * Get the peak signal to noise ratio over all bands.
+     *
+     * The peak value is taken from the band with the largest sample size.
+     *
+     * @return the peak signal to noise ratio in decibels, or positive infinity if the rasters are identical
+     */
+    public double getPeakSignalToNoiseRatio() {
+        long peak = 0;
+        for (long bandPeak : peakValues) {
+            peak = Math.max(peak, bandPeak);
+        }
+        return getPeakSignalToNoiseRatio(peak, getMeanSquaredError());
+    }
+
+    /**
+     * Get the difference mask.
+     *
+     * The mask is a binary image the size of the rasters, with mismatched pixels set to 1.
+     *
+     * @return a copy of the difference mask, or null if it was not requested
+     */
+    public BufferedImage getDifferenceMask() {
+        if (differenceMask == null) {
+            return null;
+        }
+        return new BufferedImage(differenceMask.getColorModel(), differenceMask.copyData(null), false, null);
+    }
+
+    private double getPixelCount() {
+        return Math.max(1.0, (double) width * height);
+    }
+
+    private static double getPeakSignalToNoiseRatio(final long peak, final double meanSquaredError) {
+        if (meanSquaredError == 0.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return DECIBEL_SCALE * Math.log10((double) peak * peak / meanSquaredError);
+    }
+
+    /**
+     * Accumulated difference statistics for part of a raster.
+     */
+    static final class Statistics {
+        private long mismatchedPixels = 0;
+        private final long[] mismatchedSamples;
+        private final long[] maxDifference;
+        private final double[] sumOfDifferences;
+        private final double[] sumOfSquaredDifferences;
+
+        Statistics(final int numBands) {
+            mismatchedSamples = new long[numBands];
+            maxDifference = new long[numBands];
+            sumOfDifferences = new double[numBands];
+            sumOfSquaredDifferences = new double[numBands];
+        }
+
+        /**
+         * Add the difference for one sample.
+         *
+         * @param band the band index
+         * @param difference the absolute difference between the samples
+         * @param tolerance the largest difference that is not a mismatch
+         * @return true if the sample is mismatched, otherwise false
+         */
+        boolean addSample(final int band, final long difference, final int tolerance) {
+            if (difference == 0) {
+                return false;
+            }
+            maxDifference[band] = Math.max(maxDifference[band], difference);
+            sumOfDifferences[band] += difference;
+            sumOfSquaredDifferences[band] += (double) difference * difference;
+            if (difference > tolerance) {
+                mismatchedSamples[band]++;
+                return true;
+            }
+            return false;
+        }
+
+        void addMismatchedPixel() {
+            mismatchedPixels++;
+        }
+
+        Statistics merge(final Statistics other) {
+            Statistics merged = new Statistics(maxDifference.length);
+            merged.mismatchedPixels = mismatchedPixels + other.mismatchedPixels;
+            for (int band = 0; band < maxDifference.length; ++band) {
+                merged.mismatchedSamples[band] = mismatchedSamples[band] + other.mismatchedSamples[band];
+                merged.maxDifference[band] = Math.max(maxDifference[band], other.maxDifference[band]);
+                merged.sumOfDifferences[band] = sumOfDifferences[band] + other.sumOfDifferences[band];
+                merged.sumOfSquaredDifferences[band] = sumOfSquaredDifferences[band] + other.sumOfSquaredDifferences[band];
+            }
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2016, Codice
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.codice.imaging.compare;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+
+/**
+ * Checks whether a row of two images has identical raw sample data.
+ *
+ * If two images have the same colour model, identical samples imply identical colours, so the (much slower) colour
+ * conversion can be skipped for those rows. A false result does not mean the colours differ, only that they have to
+ * be checked.
+ *
+ * Images with the same sample model are compared directly in their data buffer arrays, one scanline at a time.
+ * Otherwise, the samples of the row are unpacked from each raster and compared.
+ */
+final class RawRowComparator {
+
+    private final Raster rasterUnderTest;
+    private final Raster referenceRaster;
+    private final boolean enabled;
+    private final Object iutData;
+    private final Object refData;
+    private final int iutOffset;
+    private final int refOffset;
+    private final int scanlineStride;
+
+    RawRowComparator(final BufferedImage imageUnderTest, final BufferedImage referenceImage) {
+        rasterUnderTest = imageUnderTest.getRaster();
+        referenceRaster = referenceImage.getRaster();
+        enabled = imageUnderTest.getColorModel().equals(referenceImage.getColorModel())
+                && (rasterUnderTest.getNumBands() == referenceRaster.getNumBands())
+                && hasIntegralSamples(rasterUnderTest)
+                && hasIntegralSamples(referenceRaster);
+        int stride = getScanlineStride(referenceRaster.getSampleModel());
+        if (enabled && (stride > 0) && isDirectlyAccessible(rasterUnderTest) && isDirectlyAccessible(referenceRaster)
+                && referenceRaster.getSampleModel().equals(rasterUnderTest.getSampleModel())
+                && (rasterUnderTest.getDataBuffer().getClass() == referenceRaster.getDataBuffer().getClass())) {
+            iutData = getDataArray(rasterUnderTest.getDataBuffer());
+            refData = getDataArray(referenceRaster.getDataBuffer());
+            iutOffset = rasterUnderTest.getDataBuffer().getOffset();
+            refOffset = referenceRaster.getDataBuffer().getOffset();
+            scanlineStride = stride;
+        } else {
+            iutData = null;
+            refData = null;
+            iutOffset = 0;
+            refOffset = 0;
+            scanlineStride = 0;
+        }
+    }
+
+    /**
+     * Check whether a raster has integral samples.
+     *
+     * @param raster the raster to check
+     * @return true if the samples are integers, false if they are floating point
+     */
+    static boolean hasIntegralSamples(final Raster raster) {
+        int transferType = raster.getTransferType();
+        return (transferType == DataBuffer.TYPE_BYTE)
+                || (transferType == DataBuffer.TYPE_USHORT)
+                || (transferType == DataBuffer.TYPE_SHORT)
+                || (transferType == DataBuffer.TYPE_INT);
+    }
+
+    /**
+     * The size of the scratch arrays that rowsAreEqual() needs.
+     *
+     * @return the number of elements required in each scratch array
+     */
+    int getRowLength() {
+        return referenceRaster.getWidth() * referenceRaster.getNumBands();
+    }
+
+    /**
+     * Check whether the raw data for a row is identical.
+     *
+     * @param y the row to check
+     * @param iutScratch scratch array of at least getRowLength() elements
+     * @param refScratch scratch array of at least getRowLength() elements
+     * @return true if the row is known to be identical, false if it has to be checked some other way.
+     */
+    boolean rowsAreEqual(final int y, final int[] iutScratch, final int[] refScratch) {
+        if (!enabled) {
+            return false;
+        }
+        if (iutData != null) {
+            return scanlinesAreEqual(y);
+        }
+        int width = referenceRaster.getWidth();
+        rasterUnderTest.getPixels(rasterUnderTest.getMinX(), rasterUnderTest.getMinY() + y, width, 1, iutScratch);
+        referenceRaster.getPixels(referenceRaster.getMinX(), referenceRaster.getMinY() + y, width, 1, refScratch);
+        return Arrays.equals(iutScratch, 0, getRowLength(), refScratch, 0, getRowLength());
+    }
+
+    private boolean scanlinesAreEqual(final int y) {
+        int iutStart = iutOffset + y * scanlineStride;
+        int refStart = refOffset + y * scanlineStride;
+        if (iutData instanceof byte[]) {
+            byte[] iut = (byte[]) iutData;
+            byte[] ref = (byte[]) refData;
+            return Arrays.equals(iut, iutStart, getScanlineEnd(iutStart, iut.length), ref, refStart, getScanlineEnd(refStart, ref.length));
+        } else if (iutData instanceof short[]) {
+            short[] iut = (short[]) iutData;
+            short[] ref = (short[]) refData;
+            return Arrays.equals(iut, iutStart, getScanlineEnd(iutStart, iut.length), ref, refStart, getScanlineEnd(refStart, ref.length));
+        } else {
+            int[] iut = (int[]) iutData;
+            int[] ref = (int[]) refData;
+            return Arrays.equals(iut, iutStart, getScanlineEnd(iutStart, iut.length), ref, refStart, getScanlineEnd(refStart, ref.length));
+        }
+    }
+
+    private int getScanlineEnd(final int start, final int arrayLength) {
+        return Math.min(start + scanlineStride, arrayLength);
+    }
+
+    private static boolean isDirectlyAccessible(final Raster raster) {
+        return (raster.getMinX() == 0) && (raster.getMinY() == 0)
+                && (raster.getSampleModelTranslateX() == 0) && (raster.getSampleModelTranslateY() == 0)
+                && (raster.getDataBuffer().getNumBanks() == 1)
+                && (getDataArray(raster.getDataBuffer()) != null);
+    }
+
+    private static int getScanlineStride(final SampleModel sampleModel) {
+        if (sampleModel instanceof ComponentSampleModel) {
+            return ((ComponentSampleModel) sampleModel).getScanlineStride();
+        } else if (sampleModel instanceof SinglePixelPackedSampleModel) {
+            return ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride();
+        } else if (sampleModel instanceof MultiPixelPackedSampleModel) {
+            return ((MultiPixelPackedSampleModel) sampleModel).getScanlineStride();
+        }
+        return 0;
+    }
+
+    private static Object getDataArray(final DataBuffer dataBuffer) {
+        if (dataBuffer instanceof DataBufferByte) {
+            return ((DataBufferByte) dataBuffer).getData();
+        } else if (dataBuffer instanceof DataBufferUShort) {
+            return ((DataBufferUShort) dataBuffer).getData();
+        } else if (dataBuffer instanceof DataBufferShort) {
+            return ((DataBufferShort) dataBuffer).getData();
+        } else if (dataBuffer instanceof DataBufferInt) {
+            return ((DataBufferInt) dataBuffer).getData();
+        }
+        return null;
+    }
+}
@@ -85,4 +85,34 @@ public class CheckIdenticalTest {
         imageToTest.setRGB(99, 199, 0);
         assertFalse(Compare.areIdentical(imageToTest, referenceImage));
     }
+
+    @Test
+    public void checkIdenticalDifferentImageTypes() {
+        BufferedImage referenceImage = new BufferedImage(100, 200, BufferedImage.TYPE_INT_RGB);
+        referenceImage.setRGB(10, 20, 0x123456);
+        BufferedImage imageToTest = new BufferedImage(100, 200, BufferedImage.TYPE_3BYTE_BGR);
+        imageToTest.setRGB(10, 20, 0x123456);
+        assertTrue(Compare.areIdentical(imageToTest, referenceImage));
+        imageToTest.setRGB(99, 199, 0x000001);
+        assertFalse(Compare.areIdentical(imageToTest, referenceImage));
+    }
+
+    @Test
+    public void checkIdenticalIgnoringAlpha() {
+        BufferedImage referenceImage = new BufferedImage(100, 200, BufferedImage.TYPE_INT_ARGB);
+        referenceImage.setRGB(50, 150, 0xFF123456);
+        BufferedImage imageToTest = new BufferedImage(100, 200, BufferedImage.TYPE_INT_ARGB);
+        imageToTest.setRGB(50, 150, 0x80123456);
+        assertFalse(Compare.areIdentical(imageToTest, referenceImage));
+        assertTrue(Compare.areIdentical(imageToTest, referenceImage, 100, 200));
+    }
+
+    @Test
+    public void checkIdenticalOnlyInNonPadRegion() {
+        BufferedImage referenceImage = new BufferedImage(100, 200, BufferedImage.TYPE_BYTE_GRAY);
+        referenceImage.setRGB(90, 190, 0xFFFFFF);
+        BufferedImage imageToTest = new BufferedImage(100, 200, BufferedImage.TYPE_BYTE_GRAY);
+        assertTrue(Compare.areIdentical(imageToTest, referenceImage, 90, 190));
+        assertFalse(Compare.areIdentical(imageToTest, referenceImage, 91, 191));
+    }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2016, Codice
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.codice.imaging.compare;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Check raster comparison statistics.
+ */
+public class CompareRastersTest {
+
+    private static final double EPSILON = 0.000001;
+
+    public CompareRastersTest() {
+    }
+
+    @Test
+    public void checkIdenticalRasters() {
+        BufferedImage referenceImage = new BufferedImage(300, 500, BufferedImage.TYPE_3BYTE_BGR);
+        BufferedImage imageToTest = new BufferedImage(300, 500, BufferedImage.TYPE_3BYTE_BGR);
+        RasterComparison comparison = Compare.compareRasters(imageToTest, referenceImage, 0, false);
+        assertTrue(comparison.isWithinTolerance());
+        assertEquals(0, comparison.getMismatchedPixelCount());
+        assertEquals(0, comparison.getMaxAbsoluteDifference());
+        assertEquals(Double.POSITIVE_INFINITY, comparison.getPeakSignalToNoiseRatio(), 0.0);
+        assertNull(comparison.getDifferenceMask());
+    }
+
+    @Test
+    public void checkSixteenBitStatistics() {
+        BufferedImage referenceImage = new BufferedImage(400, 300, BufferedImage.TYPE_USHORT_GRAY);
+        BufferedImage imageToTest = new BufferedImage(400, 300, BufferedImage.TYPE_USHORT_GRAY);
+        WritableRaster raster = imageToTest.getRaster();
+        raster.setSample(1, 2, 0, 1000);
+        raster.setSample(399, 299, 0, 3);
+        raster.setSample(200, 150, 0, 65535);
+        referenceImage.getRaster().setSample(200, 150, 0, 65534);
+
+        RasterComparison comparison = Compare.compareRasters(imageToTest, referenceImage, 3, true);
+        assertEquals(1, comparison.getNumBands());
+        assertFalse(comparison.isWithinTolerance());
+        assertEquals(1, comparison.getMismatchedPixelCount());
+        assertEquals(1, comparison.getMismatchedSampleCount(0));
+        assertEquals(1000, comparison.getMaxAbsoluteDifference());
+        assertEquals(1004.0 / (400 * 300), comparison.getMeanAbsoluteDifference(0), EPSILON);
+        double meanSquaredError = (1000.0 * 1000 + 9 + 1) / (400 * 300);
+        assertEquals(meanSquaredError, comparison.getMeanSquaredError(), EPSILON);
+        assertEquals(10.0 * Math.log10(65535.0 * 65535.0 / meanSquaredError), comparison.getPeakSignalToNoiseRatio(), EPSILON);
+
+        BufferedImage mask = comparison.getDifferenceMask();
+        assertEquals(1, mask.getRaster().getSample(1, 2, 0));
+        assertEquals(0, mask.getRaster().getSample(399, 299, 0));
+        assertEquals(0, mask.getRaster().getSample(200, 150, 0));
+    }
+
+    @Test
+    public void checkPerBandStatistics() {
+        BufferedImage referenceImage = new BufferedImage(64, 2048, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage imageToTest = new BufferedImage(64, 2048, BufferedImage.TYPE_INT_ARGB);
+        referenceImage.setRGB(5, 2000, 0xFF102030);
+        imageToTest.setRGB(5, 2000, 0x80102050);
+        imageToTest.setRGB(6, 10, 0x00000001);
+
+        RasterComparison comparison = Compare.compareRasters(imageToTest, referenceImage, 0, true);
+        assertEquals(4, comparison.getNumBands());
+        assertEquals(2, comparison.getMismatchedPixelCount());
+        assertEquals(0, comparison.getMismatchedSampleCount(0));
+        assertEquals(0, comparison.getMismatchedSampleCount(1));
+        assertEquals(2, comparison.getMismatchedSampleCount(2));
+        assertEquals(0x20, comparison.getMaxAbsoluteDifference(2));
+        assertEquals(1, comparison.getMismatchedSampleCount(3));
+        assertEquals(0x7F, comparison.getMaxAbsoluteDifference(3));
+        assertEquals(0x7F, comparison.getMaxAbsoluteDifference());
+        assertEquals(1, comparison.getDifferenceMask().getRaster().getSample(5, 2000, 0));
+        assertEquals(1, comparison.getDifferenceMask().getRaster().getSample(6, 10, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkDifferentSizes() {
+        Compare.compareRasters(new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_GRAY),
+                new BufferedImage(10, 11, BufferedImage.TYPE_BYTE_GRAY), 0, false);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkDifferentBands() {
+        Compare.compareRasters(new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_GRAY),
+                new BufferedImage(10, 10, BufferedImage.TYPE_3BYTE_BGR), 0, false);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.nitf.metadatacomparison;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+
+/**
+ * Aggregated results of comparing many files.
+ *
+ * This is safe to update from several threads at once.
+ */
+final class ComparisonReport {
+    private static final int MOST_COMMON_DIFFERENCES = 25;
+
+    private final LongAdder filesCompared = new LongAdder();
+    private final LongAdder filesMatching = new LongAdder();
+    private final LongAdder filesFailed = new LongAdder();
+    private final ConcurrentLinkedQueue<String> differingFiles = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<String> failedFiles = new ConcurrentLinkedQueue<>();
+    private final Map<String, LongAdder> differenceCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Record the result of comparing a file.
+     *
+     * @param filename the file that was compared
+     * @param differences the differences found
+     */
+    void addResult(String filename, List<MetadataDifference> differences) {
+        filesCompared.increment();
+        if (differences.isEmpty()) {
+            filesMatching.increment();
+            return;
+        }
+        differingFiles.add(filename);
+        Set<String> keys = new HashSet<>();
+        for (MetadataDifference difference : differences) {
+            keys.add("[" + difference.getSection() + "] " + difference.getKey().replaceAll("\\[\\d+\\]", "[*]"));
+        }
+        for (String key : keys) {
+            differenceCounts.computeIfAbsent(key, k -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Record a file that could not be compared.
+     *
+     * @param filename the file that failed
+     */
+    void addFailure(String filename) {
+        filesCompared.increment();
+        filesFailed.increment();
+        failedFiles.add(filename);
+    }
+
+    long getFilesCompared() {
+        return filesCompared.sum();
+    }
+
+    long getFilesMatching() {
+        return filesMatching.sum();
+    }
+
+    long getFilesDiffering() {
+        return differingFiles.size();
+    }
+
+    long getFilesFailed() {
+        return filesFailed.sum();
+    }
+
+    /**
+     * Log the report.
+     *
+     * @param logger the logger to write the report to
+     */
+    void log(Logger logger) {
+        logger.info("Compared {} files: {} matching, {} differing, {} failed",
+                getFilesCompared(), getFilesMatching(), getFilesDiffering(), getFilesFailed());
+        List<Map.Entry<String, LongAdder>> counts = new ArrayList<>(differenceCounts.entrySet());
+        counts.sort((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()));
+        if (!counts.isEmpty()) {
+            logger.info("Most common differences:");
+            for (Map.Entry<String, LongAdder> count : counts.subList(0, Math.min(MOST_COMMON_DIFFERENCES, counts.size()))) {
+                logger.info("  {} files: {}", count.getValue().sum(), count.getKey());
+            }
+        }
+        for (String filename : differingFiles) {
+            logger.info("Differs: {}", filename);
+        }
+        for (String filename : failedFiles) {
+            logger.info("Failed: {}", filename);
+        }
+    }
+}
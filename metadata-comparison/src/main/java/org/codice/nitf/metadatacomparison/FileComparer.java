@@ -14,22 +14,19 @@
  */
 package org.codice.nitf.metadatacomparison;
 
-import difflib.Delta;
-import difflib.DiffUtils;
-import difflib.Patch;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
+import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -40,7 +37,6 @@ import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
 import org.codice.imaging.nitf.core.common.impl.FileReader;
 import org.codice.imaging.nitf.core.common.FileType;
 import org.codice.imaging.nitf.core.common.NitfFormatException;
-import org.codice.imaging.nitf.core.common.NitfReader;
 import org.codice.imaging.nitf.core.common.TaggedRecordExtensionHandler;
 import org.codice.imaging.nitf.core.dataextension.DataExtensionSegment;
 import org.codice.imaging.nitf.core.header.NitfHeader;
@@ -65,69 +61,86 @@ public class FileComparer {
     private static final String NITF_FHDR = "NITF_FHDR";
     private static final String NITF_ICORDS = "NITF_ICORDS";
     private static final String IMAGE_STRUCTURE_METADATA = "Image Structure Metadata:\n";
+    static final String GDALINFO = "gdalinfo";
 
     private String filename = null;
+    private String gdalinfoCommand = null;
     private SlottedParseStrategy parseStrategy = null;
     private ImageSegment segment1 = null;
     private DataExtensionSegment des1 = null;
     private BufferedWriter out = null;
+    private List<String> ourLines = new ArrayList<>();
+    private List<String> theirLines = new ArrayList<>();
 
     FileComparer(String fileName) {
-        File file = new File(fileName);
-        if (file.isFile()) {
-            filename = file.getAbsolutePath();
-            generateGdalMetadata();
-            generateOurMetadata();
-            compareMetadataFiles();
-        }
+        this(fileName, GDALINFO);
+    }
+
+    FileComparer(String fileName, String gdalinfo) {
+        filename = new File(fileName).getAbsolutePath();
+        gdalinfoCommand = gdalinfo;
+    }
+
+    /**
+     * Compare our metadata for the file with the gdalinfo metadata.
+     *
+     * Both outputs are held in memory. They are only written out (as .OURS.txt and .THEIRS.txt files next to the
+     * input) if they differ, to allow the differences to be inspected.
+     *
+     * @return the structural differences, which will be empty if the metadata matches.
+     * @throws IOException if gdalinfo could not be run, or did not produce any metadata for the file.
+     * @throws NitfFormatException if we could not parse the file.
+     */
+    List<MetadataDifference> compare() throws IOException, NitfFormatException {
+        generateGdalMetadata();
+        generateOurMetadata();
+        return compareMetadata();
     }
 
 
-    private void generateOurMetadata() {
+    private void generateOurMetadata() throws IOException, NitfFormatException {
+        FileReader reader = new FileReader(new File(filename));
         try {
-            NitfReader reader = new FileReader(new File(filename));
             parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.DES_DATA);
             NitfParser.parse(reader, parseStrategy);
-        } catch (NitfFormatException e) {
-            LOGGER.error(e.getMessage(), e);
-        }
 
-        if (!parseStrategy.getDataSource().getImageSegments().isEmpty()) {
-            segment1 = parseStrategy.getDataSource().getImageSegments().get(0);
-        }
+            if (!parseStrategy.getDataSource().getImageSegments().isEmpty()) {
+                segment1 = parseStrategy.getDataSource().getImageSegments().get(0);
+            }
 
-        if (!parseStrategy.getDataSource().getDataExtensionSegments().isEmpty()) {
-            des1 = parseStrategy.getDataSource().getDataExtensionSegments().get(0);
+            if (!parseStrategy.getDataSource().getDataExtensionSegments().isEmpty()) {
+                des1 = parseStrategy.getDataSource().getDataExtensionSegments().get(0);
+            }
+            outputData();
+        } finally {
+            reader.close();
         }
-        outputData();
     }
 
-    private void outputData() {
-        try (FileWriter fstream = new FileWriter(filename + OUR_OUTPUT_EXTENSION)) {
-            out = new BufferedWriter(fstream);
-            out.write("Driver: NITF/National Imagery Transmission Format\n");
-            out.write("Files: " + filename + "\n");
-            if (segment1 == null) {
-                out.write(String.format("Size is 1, 1%n"));
-            } else {
-                out.write(String.format("Size is %d, %d%n", segment1.getNumberOfColumns(), segment1.getNumberOfRows()));
-            }
-            outputCoordinateSystem();
+    private void outputData() throws IOException, NitfFormatException {
+        StringWriter ourOutput = new StringWriter();
+        out = new BufferedWriter(ourOutput);
+        out.write("Driver: NITF/National Imagery Transmission Format\n");
+        out.write("Files: " + filename + "\n");
+        if (segment1 == null) {
+            out.write(String.format("Size is 1, 1%n"));
+        } else {
+            out.write(String.format("Size is %d, %d%n", segment1.getNumberOfColumns(), segment1.getNumberOfRows()));
+        }
+        outputCoordinateSystem();
 
-            outputBaseMetadata();
+        outputBaseMetadata();
 
-            outputTRExml();
+        outputTRExml();
 
-            outputImageStructure();
+        outputImageStructure();
 
-            outputSubdatasets();
+        outputSubdatasets();
 
-            outputRPCs();
+        outputRPCs();
 
-            out.close();
-        } catch (IOException|NitfFormatException e) {
-            LOGGER.error(e.getMessage(), e);
-        }
+        out.close();
+        ourLines = toLines(ourOutput.toString());
     }
 
     private void outputCoordinateSystem() throws IOException {
@@ -694,112 +707,76 @@ public class FileComparer {
         }
     }
 
-    private void generateGdalMetadata() {
-        try {
-            ProcessBuilder processBuilder = new ProcessBuilder("gdalinfo", "-nogcp", "-mdd", "xml:TRE", filename);
-            processBuilder.environment().put("NITF_OPEN_UNDERLYING_DS", "NO");
-            Process process = processBuilder.start();
-            BufferedWriter bufferedWriter = getBufferedWriter();
-            BufferedReader infoOutputReader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8), 1000000);
-            processMetadata(bufferedWriter, infoOutputReader);
-            if (bufferedWriter != null) {
-                bufferedWriter.close();
-            }
-        } catch (IOException e) {
-            LOGGER.error(e.getMessage(), e);
+    private void generateGdalMetadata() throws IOException {
+        ProcessBuilder processBuilder = new ProcessBuilder(gdalinfoCommand, "-nogcp", "-mdd", "xml:TRE", filename);
+        processBuilder.environment().put("NITF_OPEN_UNDERLYING_DS", "NO");
+        Process process = processBuilder.start();
+        try (BufferedReader infoOutputReader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            processMetadata(infoOutputReader);
+        } finally {
+            process.destroy();
         }
-    }
-
-    private void processMetadata(BufferedWriter bufferedWriter, BufferedReader infoOutputReader) {
-        boolean done = false;
-        try {
-            do {
-                do {
-                    String line = infoOutputReader.readLine();
-                    if (line == null) {
-                        done = true;
-                        break;
-                    }
-                    if (line.startsWith("Origin = (")) {
-                        LOGGER.debug("Filtering on Origin");
-                        continue;
-                    }
-                    if (line.startsWith("Pixel Size = (")) {
-                        LOGGER.debug("Filtering on Pixel Size");
-                        continue;
-                    }
-                    if (line.startsWith("  LINE_DEN_COEFF=") || line.startsWith("  LINE_NUM_COEFF=") || line.startsWith("  SAMP_DEN_COEFF=") || line.startsWith("  SAMP_NUM_COEFF=")) {
-                        LOGGER.debug("Filtering out RPC coefficients");
-                        continue;
-                    }
-                    if (line.startsWith("  LAT_SCALE=") || line.startsWith("  LONG_SCALE=") || line.startsWith("  LAT_OFF=") || line.startsWith("  LONG_OFF=")) {
-                        LOGGER.debug("Filtering out RPC coefficients");
-                        continue;
-                    }
-                    if (line.startsWith("Corner Coordinates:")) {
-                        LOGGER.debug("Exiting on Corner Coordinates");
-                        done = true;
-                        break;
-                    }
-                    if (line.startsWith("Band 1 Block=")) {
-                        LOGGER.debug("Exiting on Band 1 Block");
-                        done = true;
-                        break;
-                    }
-                    if (bufferedWriter != null) {
-                        bufferedWriter.write(line + "\n");
-                    }
-                } while (infoOutputReader.ready() && (!done));
-                Thread.sleep(100);
-            } while (!done);
-        } catch (IOException |InterruptedException e) {
-            LOGGER.error(e.getMessage(), e);
+        if (theirLines.isEmpty()) {
+            throw new IOException(gdalinfoCommand + " produced no metadata for " + filename);
         }
     }
 
-    private BufferedWriter getBufferedWriter() {
-        BufferedWriter bufferedWriter = null;
-        try {
-            FileWriter fstream = new FileWriter(filename + THEIR_OUTPUT_EXTENSION);
-            bufferedWriter = new BufferedWriter(fstream);
-        } catch (IOException e) {
-            LOGGER.error(e.getMessage(), e);
+    private void processMetadata(BufferedReader infoOutputReader) throws IOException {
+        String line;
+        while ((line = infoOutputReader.readLine()) != null) {
+            if (line.startsWith("Origin = (")) {
+                LOGGER.debug("Filtering on Origin");
+                continue;
+            }
+            if (line.startsWith("Pixel Size = (")) {
+                LOGGER.debug("Filtering on Pixel Size");
+                continue;
+            }
+            if (line.startsWith("  LINE_DEN_COEFF=") || line.startsWith("  LINE_NUM_COEFF=") || line.startsWith("  SAMP_DEN_COEFF=") || line.startsWith("  SAMP_NUM_COEFF=")) {
+                LOGGER.debug("Filtering out RPC coefficients");
+                continue;
+            }
+            if (line.startsWith("  LAT_SCALE=") || line.startsWith("  LONG_SCALE=") || line.startsWith("  LAT_OFF=") || line.startsWith("  LONG_OFF=")) {
+                LOGGER.debug("Filtering out RPC coefficients");
+                continue;
+            }
+            if (line.startsWith("Corner Coordinates:")) {
+                LOGGER.debug("Exiting on Corner Coordinates");
+                break;
+            }
+            if (line.startsWith("Band 1 Block=")) {
+                LOGGER.debug("Exiting on Band 1 Block");
+                break;
+            }
+            theirLines.add(line);
         }
-        return bufferedWriter;
     }
 
-    private void compareMetadataFiles() {
-        List<String> theirs = fileToLines(filename + THEIR_OUTPUT_EXTENSION);
-        List<String> ours  = fileToLines(filename + OUR_OUTPUT_EXTENSION);
+    private List<MetadataDifference> compareMetadata() {
+        MetadataView theirs = MetadataView.parse(theirLines);
+        MetadataView ours = MetadataView.parse(ourLines);
 
-        Patch<String> patch = DiffUtils.diff(theirs, ours);
+        List<MetadataDifference> differences = ours.compareWith(theirs);
 
-        if (!patch.getDeltas().isEmpty()) {
-            for (Delta<String> delta: patch.getDeltas()) {
-                    LOGGER.debug(delta.toString());
+        if (!differences.isEmpty()) {
+            for (MetadataDifference difference : differences) {
+                LOGGER.debug("{}: {}", filename, difference);
             }
-            LOGGER.debug("  * Done");
-        } else {
             try {
-                Files.delete(Paths.get(filename + THEIR_OUTPUT_EXTENSION));
-                Files.delete(Paths.get(filename + OUR_OUTPUT_EXTENSION));
+                Files.write(Paths.get(filename + THEIR_OUTPUT_EXTENSION), theirLines, StandardCharsets.UTF_8);
+                Files.write(Paths.get(filename + OUR_OUTPUT_EXTENSION), ourLines, StandardCharsets.UTF_8);
             } catch (IOException e) {
-                LOGGER.error("Error deleting {}: {}", filename, e);
+                LOGGER.error("Error writing metadata for {}: {}", filename, e);
             }
         }
+        return differences;
     }
 
-    private static List<String> fileToLines(String filename) {
-        List<String> lines = new LinkedList<>();
-        String line;
-        try (BufferedReader in = new BufferedReader(new java.io.FileReader(filename))) {
-                while ((line = in.readLine()) != null) {
-                        lines.add(line);
-                }
-        } catch (IOException e) {
-                LOGGER.error(e.getMessage(), e);
+    private static List<String> toLines(String text) {
+        if (text.isEmpty()) {
+            return new ArrayList<>();
         }
-        return lines;
+        return new ArrayList<>(Arrays.asList(text.split("\\r?\\n")));
     }
 
 }
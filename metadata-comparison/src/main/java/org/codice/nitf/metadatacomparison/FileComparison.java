@@ -15,7 +15,20 @@
 package org.codice.nitf.metadatacomparison;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.codice.imaging.nitf.core.common.NitfFormatException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,27 +43,82 @@ public class FileComparison {
             LOGGER.error("No file provided, not comparing");
             return;
         }
+        List<String> filenames = new ArrayList<>();
         for (String arg : args) {
             if (new File(arg).isDirectory()) {
                 LOGGER.info("Walking contents of {}", arg);
-                File[] files = new File(arg).listFiles();
-                for (File file : files) {
-                    handleFile(arg + "/" + file.getName());
-                }
-            } else {
-                handleFile(arg);
+                filenames.addAll(findFiles(arg));
+            } else if (shouldCompare(Paths.get(arg))) {
+                filenames.add(arg);
             }
         }
+        ExecutorService executor = Executors.newWorkStealingPool();
+        try {
+            compareFiles(filenames, executor).log(LOGGER);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Compare each of the files, in parallel.
+     *
+     * @param filenames the files to compare
+     * @param executor the executor to run the comparisons on
+     * @return the aggregated results
+     */
+    static ComparisonReport compareFiles(List<String> filenames, ExecutorService executor) {
+        return compareFiles(filenames, executor, FileComparer.GDALINFO);
     }
 
-    private static void handleFile(String filename) {
-        if (new File(filename).isFile() && (! filename.endsWith(".txt"))) {
-            LOGGER.info("Dumping output of {}", filename);
-            compareOneFile(filename);
+    /**
+     * Compare each of the files, in parallel, using the specified gdalinfo command.
+     *
+     * @param filenames the files to compare
+     * @param executor the executor to run the comparisons on
+     * @param gdalinfo the gdalinfo command to run for the reference metadata
+     * @return the aggregated results
+     */
+    static ComparisonReport compareFiles(List<String> filenames, ExecutorService executor, String gdalinfo) {
+        ComparisonReport report = new ComparisonReport();
+        List<Future<?>> comparisons = new ArrayList<>();
+        for (String filename : filenames) {
+            comparisons.add(executor.submit(() -> compareOneFile(filename, gdalinfo, report)));
         }
+        for (Future<?> comparison : comparisons) {
+            try {
+                comparison.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.error("Interrupted waiting for comparisons", e);
+                break;
+            } catch (ExecutionException e) {
+                LOGGER.error(e.getMessage(), e);
+            }
+        }
+        return report;
     }
 
-    private static void compareOneFile(String filename) {
-        new FileComparer(filename);
+    private static List<String> findFiles(String directory) {
+        try (Stream<Path> paths = Files.walk(Paths.get(directory))) {
+            return paths.filter(FileComparison::shouldCompare).map(Path::toString).collect(Collectors.toList());
+        } catch (IOException e) {
+            LOGGER.error("Failed to walk {}: {}", directory, e);
+            return new ArrayList<>();
+        }
+    }
+
+    private static boolean shouldCompare(Path path) {
+        return Files.isRegularFile(path) && (! path.toString().endsWith(".txt"));
+    }
+
+    private static void compareOneFile(String filename, String gdalinfo, ComparisonReport report) {
+        LOGGER.info("Comparing metadata of {}", filename);
+        try {
+            report.addResult(filename, new FileComparer(filename, gdalinfo).compare());
+        } catch (IOException | NitfFormatException | RuntimeException e) {
+            LOGGER.error("Failed to compare {}", filename, e);
+            report.addFailure(filename);
+        }
     }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.nitf.metadatacomparison;
+
+/**
+ * A single difference between two metadata views.
+ */
+final class MetadataDifference {
+    private final String section;
+    private final String key;
+    private final String ourValue;
+    private final String theirValue;
+
+    MetadataDifference(String sectionName, String keyName, String ours, String theirs) {
+        section = sectionName;
+        key = keyName;
+        ourValue = ours;
+        theirValue = theirs;
+    }
+
+    /**
+     * The section the difference is in, such as "Metadata" or "RPC Metadata".
+     *
+     * @return the section name
+     */
+    String getSection() {
+        return section;
+    }
+
+    /**
+     * The key that differs.
+     *
+     * @return the key within the section
+     */
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * Our value for the key.
+     *
+     * @return our value, or null if we did not produce the key
+     */
+    String getOurValue() {
+        return ourValue;
+    }
+
+    /**
+     * The gdalinfo value for the key.
+     *
+     * @return their value, or null if gdalinfo did not produce the key
+     */
+    String getTheirValue() {
+        return theirValue;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%s] %s: ours=%s theirs=%s", section, key, ourValue, theirValue);
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.nitf.metadatacomparison;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Structured view of gdalinfo-style metadata output.
+ *
+ * The output is split into sections (e.g. "Metadata", "RPC Metadata", "Metadata (xml:TRE)"), each holding a map of
+ * key to value. TRE fields are keyed by their path, e.g. "ICHIPB@image/OP_ROW_11", and repeated groups include the
+ * group index in the path. This allows two outputs to be compared independently of line ordering.
+ */
+final class MetadataView {
+    static final String GENERAL_SECTION = "General";
+    static final String TRE_SECTION = "Metadata (xml:TRE)";
+
+    private static final String COORDINATE_SYSTEM_PREFIX = "Coordinate System is";
+    private static final Pattern TRE_START = Pattern.compile("<tre name=\"([^\"]*)\" location=\"([^\"]*)\">");
+    private static final Pattern FIELD = Pattern.compile("<field name=\"([^\"]*)\" value=\"(.*)\" />");
+    private static final Pattern REPEATED_START = Pattern.compile("<repeated name=\"([^\"]*)\" number=\"([^\"]*)\">");
+    private static final Pattern GROUP_START = Pattern.compile("<group index=\"([^\"]*)\">");
+
+    private final Map<String, Map<String, String>> sections = new TreeMap<>();
+
+    private MetadataView() {
+    }
+
+    /**
+     * Parse gdalinfo-style output.
+     *
+     * @param lines the output lines
+     * @return the structured view
+     */
+    static MetadataView parse(List<String> lines) {
+        MetadataView view = new MetadataView();
+        String section = GENERAL_SECTION;
+        Deque<String> trePath = new ArrayDeque<>();
+        Map<String, Integer> treOccurrences = new HashMap<>();
+        for (int i = 0; i < lines.size(); ++i) {
+            String line = lines.get(i);
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            if (!Character.isWhitespace(line.charAt(0)) && (line.charAt(0) != '<')) {
+                if (line.startsWith(COORDINATE_SYSTEM_PREFIX)) {
+                    section = GENERAL_SECTION;
+                    String value = line.substring(COORDINATE_SYSTEM_PREFIX.length()).trim();
+                    if (":".equals(value)) {
+                        StringBuilder wkt = new StringBuilder();
+                        int depth = 0;
+                        while ((i + 1 < lines.size()) && ((wkt.length() == 0) || (depth > 0))) {
+                            i++;
+                            String wktLine = lines.get(i).trim();
+                            wkt.append(wktLine);
+                            depth += count(wktLine, '[') - count(wktLine, ']');
+                        }
+                        value = wkt.toString();
+                    }
+                    view.put(GENERAL_SECTION, "Coordinate System", value);
+                } else if (line.startsWith("Size is ")) {
+                    section = GENERAL_SECTION;
+                    view.put(GENERAL_SECTION, "Size", line.substring("Size is ".length()).trim());
+                } else if (line.endsWith(":")) {
+                    section = line.substring(0, line.length() - 1);
+                    view.sections.computeIfAbsent(section, k -> new TreeMap<>());
+                } else if (line.indexOf(": ") > 0) {
+                    section = GENERAL_SECTION;
+                    int separator = line.indexOf(": ");
+                    view.put(GENERAL_SECTION, line.substring(0, separator), line.substring(separator + 2).trim());
+                } else {
+                    section = GENERAL_SECTION;
+                    view.put(GENERAL_SECTION, line.trim(), "");
+                }
+            } else if (TRE_SECTION.equals(section)) {
+                view.parseTreLine(line.trim(), trePath, treOccurrences);
+            } else {
+                String entry = line.trim();
+                int separator = entry.indexOf('=');
+                if (separator > 0) {
+                    view.put(section, entry.substring(0, separator), entry.substring(separator + 1));
+                } else {
+                    view.put(section, entry, "");
+                }
+            }
+        }
+        return view;
+    }
+
+    private void parseTreLine(String line, Deque<String> trePath, Map<String, Integer> treOccurrences) {
+        Matcher matcher = FIELD.matcher(line);
+        if (matcher.matches()) {
+            put(TRE_SECTION, pathTo(trePath, matcher.group(1)), matcher.group(2));
+            return;
+        }
+        matcher = TRE_START.matcher(line);
+        if (matcher.matches()) {
+            String tre = matcher.group(1) + "@" + matcher.group(2);
+            int occurrence = treOccurrences.merge(tre, 1, Integer::sum);
+            if (occurrence > 1) {
+                tre = tre + "#" + occurrence;
+            }
+            trePath.clear();
+            trePath.addLast(tre);
+            return;
+        }
+        matcher = REPEATED_START.matcher(line);
+        if (matcher.matches()) {
+            put(TRE_SECTION, pathTo(trePath, matcher.group(1)), matcher.group(2));
+            trePath.addLast(matcher.group(1));
+            return;
+        }
+        matcher = GROUP_START.matcher(line);
+        if (matcher.matches()) {
+            trePath.addLast("[" + matcher.group(1) + "]");
+            return;
+        }
+        if (line.startsWith("</") && !"</tres>".equals(line) && !trePath.isEmpty()) {
+            trePath.removeLast();
+        }
+    }
+
+    private static String pathTo(Deque<String> trePath, String name) {
+        StringBuilder path = new StringBuilder();
+        for (String element : trePath) {
+            path.append(element);
+            path.append('/');
+        }
+        path.append(name);
+        return path.toString();
+    }
+
+    private static int count(String text, char c) {
+        int count = 0;
+        for (int i = 0; i < text.length(); ++i) {
+            if (text.charAt(i) == c) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void put(String section, String key, String value) {
+        sections.computeIfAbsent(section, k -> new TreeMap<>()).put(key, value);
+    }
+
+    /**
+     * Get the parsed sections.
+     *
+     * @return map of section name to the key / value map for the section
+     */
+    Map<String, Map<String, String>> getSections() {
+        return sections;
+    }
+
+    /**
+     * Compare this view (ours) with another view (theirs).
+     *
+     * @param theirs the view to compare against
+     * @return the differences, ordered by section and key
+     */
+    List<MetadataDifference> compareWith(MetadataView theirs) {
+        List<MetadataDifference> differences = new ArrayList<>();
+        Set<String> sectionNames = new TreeSet<>(sections.keySet());
+        sectionNames.addAll(theirs.sections.keySet());
+        for (String section : sectionNames) {
+            Map<String, String> ourSection = sections.getOrDefault(section, new TreeMap<>());
+            Map<String, String> theirSection = theirs.sections.getOrDefault(section, new TreeMap<>());
+            Set<String> keys = new TreeSet<>(ourSection.keySet());
+            keys.addAll(theirSection.keySet());
+            for (String key : keys) {
+                String ourValue = ourSection.get(key);
+                String theirValue = theirSection.get(key);
+                if (!Objects.equals(ourValue, theirValue)) {
+                    differences.add(new MetadataDifference(section, key, ourValue, theirValue));
+                }
+            }
+        }
+        return differences;
+    }
+}
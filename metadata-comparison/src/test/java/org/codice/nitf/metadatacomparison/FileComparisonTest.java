@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.nitf.metadatacomparison;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for FileComparison and FileComparer.
+ */
+public class FileComparisonTest {
+
+    private static final String MISSING_GDALINFO = "gdalinfo-that-does-not-exist";
+
+    private static final String EMPTY_GDALINFO = "/bin/true";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private ExecutorService executor;
+
+    private File nitfFile;
+
+    @Before
+    public void setup() throws IOException {
+        executor = Executors.newFixedThreadPool(2);
+        nitfFile = folder.newFile("sample.ntf");
+    }
+
+    @After
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void checkMissingGdalinfoIsFailure() throws Exception {
+        exception.expect(IOException.class);
+        new FileComparer(nitfFile.getPath(), MISSING_GDALINFO).compare();
+    }
+
+    @Test
+    public void checkEmptyGdalinfoOutputIsFailure() throws Exception {
+        assumeTrue(new File(EMPTY_GDALINFO).canExecute());
+        exception.expect(IOException.class);
+        exception.expectMessage(EMPTY_GDALINFO + " produced no metadata for " + nitfFile.getAbsolutePath());
+        new FileComparer(nitfFile.getPath(), EMPTY_GDALINFO).compare();
+    }
+
+    @Test
+    public void checkFailedFilesAreCounted() throws IOException {
+        File otherFile = folder.newFile("other.ntf");
+        ComparisonReport report = FileComparison.compareFiles(Arrays.asList(nitfFile.getPath(), otherFile.getPath()),
+                executor, MISSING_GDALINFO);
+        assertThat(report.getFilesCompared(), is(2L));
+        assertThat(report.getFilesFailed(), is(2L));
+        assertThat(report.getFilesDiffering(), is(0L));
+        assertThat(report.getFilesMatching(), is(0L));
+        assertThat(new File(nitfFile.getPath() + FileComparer.THEIR_OUTPUT_EXTENSION).exists(), is(false));
+    }
+
+    @Test
+    public void checkUnparseableFileIsFailure() throws Exception {
+        String gdalinfo = createFakeGdalinfo();
+        Files.write(nitfFile.toPath(), "This is not a NITF file".getBytes(StandardCharsets.US_ASCII));
+        exception.expect(NitfFormatException.class);
+        new FileComparer(nitfFile.getPath(), gdalinfo).compare();
+    }
+
+    @Test
+    public void checkUnparseableFilesAreCounted() throws Exception {
+        String gdalinfo = createFakeGdalinfo();
+        Files.write(nitfFile.toPath(), "This is not a NITF file".getBytes(StandardCharsets.US_ASCII));
+        ComparisonReport report = FileComparison.compareFiles(Collections.singletonList(nitfFile.getPath()),
+                executor, gdalinfo);
+        assertThat(report.getFilesCompared(), is(1L));
+        assertThat(report.getFilesFailed(), is(1L));
+        assertThat(report.getFilesDiffering(), is(0L));
+        assertThat(new File(nitfFile.getPath() + FileComparer.OUR_OUTPUT_EXTENSION).exists(), is(false));
+    }
+
+    /**
+     * Create a script that stands in for gdalinfo, printing some metadata for any file.
+     */
+    private String createFakeGdalinfo() throws IOException {
+        assumeTrue(new File("/bin/sh").canExecute());
+        File script = folder.newFile("gdalinfo");
+        Files.write(script.toPath(), "#!/bin/sh\necho 'Driver: NITF/National Imagery Transmission Format'\n"
+                .getBytes(StandardCharsets.US_ASCII));
+        assumeTrue(script.setExecutable(true));
+        return script.getAbsolutePath();
+    }
+
+    @Test
+    public void checkReportCounts() {
+        ComparisonReport report = new ComparisonReport();
+        report.addResult("same.ntf", Collections.emptyList());
+        report.addResult("different.ntf",
+                Collections.singletonList(new MetadataDifference("NITF", "NITF_FTITLE", "ours", "theirs")));
+        report.addFailure("broken.ntf");
+        assertThat(report.getFilesCompared(), is(3L));
+        assertThat(report.getFilesMatching(), is(1L));
+        assertThat(report.getFilesDiffering(), is(1L));
+        assertThat(report.getFilesFailed(), is(1L));
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.image.ImageBlockProducer;
+import org.codice.imaging.nitf.core.image.ImageCompression;
+import org.codice.imaging.nitf.core.image.ImageMode;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Block producer that JPEG compresses uncompressed blocks on a worker pool.
+ *
+ * The source provides blocks in the uncompressed (NC) layout for the image segment. Blocks are read from the source
+ * in order, on the calling thread, and compressed in parallel with the ImageIO JPEG writer, up to a bounded number
+ * of blocks ahead of the consumer. Compressed blocks are returned in the same order, so this can be passed straight
+ * to NitfImageStreamWriter.writeBlocks().
+ *
+ * Each block is written as a separate JPEG stream, which is the C3 layout that NitfRenderer reads. The image segment
+ * compression is set to C3, or to M3 if masking is requested. With masking, blocks that the source returns as null
+ * are not recorded, and the stream writer emits the block mask table for them.
+ *
+ * Only 8 bit data with one or three bands per block is supported, which is what baseline JPEG can represent.
+ */
+public final class JpegBlockCompressor implements ImageBlockProducer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JpegBlockCompressor.class);
+
+    private static final String JPEG_FORMAT = "jpeg";
+
+    /**
+     * COMRAT value for JPEG compression with custom (quality scaled) quantisation tables.
+     */
+    private static final String CUSTOM_TABLES_COMRAT = "00.0";
+
+    private static final int RGB_BANDS = 3;
+
+    private final ImageBlockProducer mSource;
+
+    private final ExecutorService mExecutor;
+
+    private final float mQuality;
+
+    private final int mBlockWidth;
+
+    private final int mBlockHeight;
+
+    private final int mBandsPerBlock;
+
+    private final boolean mPixelInterleaved;
+
+    private final int mBlocksPerRow;
+
+    private final int mBlocksPerColumn;
+
+    private final int mBlockCount;
+
+    private final int mMaxPending;
+
+    private final Deque<Future<ByteBuffer>> mPending = new ArrayDeque<>();
+
+    private int mNextToRead = 0;
+
+    private int mNextToReturn = 0;
+
+    /**
+     * Constructor.
+     *
+     * This sets the image compression (IC) and compression rate (COMRAT) of the image segment, so it should be
+     * called before the image segment is written out.
+     *
+     * @param imageSegment the image segment that the blocks are for.
+     * @param source the source of uncompressed blocks.
+     * @param executor the worker pool to compress blocks on.
+     * @param parallelism the maximum number of blocks to compress ahead of the consumer, which is typically the
+     * number of worker threads (or a small multiple of it).
+     * @param quality the JPEG quality, between 0 and 1.
+     * @param masked true to write a masked (M3) image segment, so that the source can omit blocks.
+     */
+    public JpegBlockCompressor(final ImageSegment imageSegment, final ImageBlockProducer source, final ExecutorService executor,
+            final int parallelism, final float quality, final boolean masked) {
+        if (imageSegment.getNumberOfBitsPerPixelPerBand() != Byte.SIZE) {
+            throw new IllegalArgumentException("JPEG compression is only supported for 8 bit data");
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Invalid parallelism parameter ( " + parallelism + " ), it should be > 0.");
+        }
+        int bandsPerBlock = imageSegment.getNumBands();
+        if (imageSegment.getImageMode() == ImageMode.BANDSEQUENTIAL) {
+            bandsPerBlock = 1;
+        }
+        if ((bandsPerBlock != 1) && (bandsPerBlock != RGB_BANDS)) {
+            throw new IllegalArgumentException("JPEG compression is only supported for one or three bands per block");
+        }
+        if ((bandsPerBlock == RGB_BANDS) && (imageSegment.getImageMode() != ImageMode.PIXELINTERLEVE)
+                && (imageSegment.getImageMode() != ImageMode.BLOCKINTERLEVE)) {
+            throw new IllegalArgumentException("JPEG compression of three bands requires IMODE P or B");
+        }
+        mSource = source;
+        mExecutor = executor;
+        mMaxPending = parallelism;
+        mQuality = quality;
+        mBlockWidth = (int) imageSegment.getNumberOfPixelsPerBlockHorizontal();
+        mBlockHeight = (int) imageSegment.getNumberOfPixelsPerBlockVertical();
+        mBandsPerBlock = bandsPerBlock;
+        mPixelInterleaved = imageSegment.getImageMode() == ImageMode.PIXELINTERLEVE;
+        mBlocksPerRow = imageSegment.getNumberOfBlocksPerRow();
+        mBlocksPerColumn = imageSegment.getNumberOfBlocksPerColumn();
+        mBlockCount = mBlocksPerRow * mBlocksPerColumn * (imageSegment.getNumBands() / bandsPerBlock);
+        if (masked) {
+            imageSegment.setImageCompression(ImageCompression.JPEGMASK);
+        } else {
+            imageSegment.setImageCompression(ImageCompression.JPEG);
+        }
+        imageSegment.setCompressionRate(CUSTOM_TABLES_COMRAT);
+    }
+
+    @Override
+    public ByteBuffer getBlock(final int blockRow, final int blockColumn, final int band) throws IOException, NitfFormatException {
+        int blockIndex = (band * mBlocksPerColumn + blockRow) * mBlocksPerRow + blockColumn;
+        if (blockIndex != mNextToReturn) {
+            throw new IllegalStateException("Blocks must be requested in order, expected block " + mNextToReturn
+                    + " but got " + blockIndex);
+        }
+        while ((mPending.size() < mMaxPending) && (mNextToRead < mBlockCount)) {
+            readAndSubmit();
+        }
+        mNextToReturn++;
+        try {
+            return mPending.removeFirst().get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for block " + blockIndex, ex);
+        } catch (ExecutionException ex) {
+            LOGGER.warn("Failed to compress block {}", blockIndex, ex.getCause());
+            throw new IOException("Failed to compress block " + blockIndex, ex.getCause());
+        }
+    }
+
+    private void readAndSubmit() throws IOException, NitfFormatException {
+        int band = mNextToRead / (mBlocksPerRow * mBlocksPerColumn);
+        int blockInBand = mNextToRead % (mBlocksPerRow * mBlocksPerColumn);
+        ByteBuffer raw = mSource.getBlock(blockInBand / mBlocksPerRow, blockInBand % mBlocksPerRow, band);
+        mNextToRead++;
+        if (raw == null) {
+            mPending.addLast(CompletableFuture.completedFuture(null));
+            return;
+        }
+        int expectedLength = mBlockWidth * mBlockHeight * mBandsPerBlock;
+        if (raw.remaining() != expectedLength) {
+            throw new NitfFormatException("Uncompressed block " + (mNextToRead - 1) + " is " + raw.remaining()
+                    + " bytes, expected " + expectedLength);
+        }
+        byte[] pixels = new byte[expectedLength];
+        raw.get(pixels);
+        mPending.addLast(mExecutor.submit(() -> compress(pixels)));
+    }
+
+    private ByteBuffer compress(final byte[] pixels) throws IOException {
+        BufferedImage image = createImage(pixels);
+        ImageWriter writer = getJpegWriter();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = new MemoryCacheImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(mQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private BufferedImage createImage(final byte[] pixels) {
+        ComponentSampleModel sampleModel;
+        ColorSpace colorSpace;
+        if (mBandsPerBlock == 1) {
+            sampleModel = new ComponentSampleModel(DataBuffer.TYPE_BYTE, mBlockWidth, mBlockHeight, 1, mBlockWidth, new int[] {0});
+            colorSpace = ColorSpace.getInstance(ColorSpace.CS_GRAY);
+        } else if (mPixelInterleaved) {
+            sampleModel = new ComponentSampleModel(DataBuffer.TYPE_BYTE, mBlockWidth, mBlockHeight, mBandsPerBlock,
+                    mBlockWidth * mBandsPerBlock, new int[] {0, 1, 2});
+            colorSpace = ColorSpace.getInstance(ColorSpace.CS_sRGB);
+        } else {
+            int bandSize = mBlockWidth * mBlockHeight;
+            sampleModel = new ComponentSampleModel(DataBuffer.TYPE_BYTE, mBlockWidth, mBlockHeight, 1, mBlockWidth,
+                    new int[] {0, bandSize, 2 * bandSize});
+            colorSpace = ColorSpace.getInstance(ColorSpace.CS_sRGB);
+        }
+        WritableRaster raster = WritableRaster.createWritableRaster(sampleModel, new DataBufferByte(pixels, pixels.length), null);
+        ColorModel colorModel = new ComponentColorModel(colorSpace, false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+
+    private static ImageWriter getJpegWriter() {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(JPEG_FORMAT);
+        if (!writers.hasNext()) {
+            throw new UnsupportedOperationException("No ImageWriter found for JPEG");
+        }
+        return writers.next();
+    }
+}
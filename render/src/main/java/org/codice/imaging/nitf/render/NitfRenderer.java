@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.BiFunction;
 
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReadParam;
@@ -31,6 +32,8 @@ import javax.imageio.stream.ImageInputStream;
 import org.codice.imaging.nitf.core.image.ImageBand;
 import org.codice.imaging.nitf.core.image.ImageRepresentation;
 import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.impl.MemoryBudget;
+import org.codice.imaging.nitf.core.impl.MemoryExhaustionPolicy;
 import org.codice.imaging.nitf.render.imagemode.ImageModeHandler;
 import org.codice.imaging.nitf.render.imagemode.ImageModeHandlerFactory;
 import org.codice.imaging.nitf.render.imagerep.ImageRepresentationHandler;
@@ -49,11 +52,35 @@ public class NitfRenderer {
             {"M"}
     };
 
+    private static final int BITS_PER_BYTE = 8;
+
+    private final MemoryBudget memoryBudget;
+
+    private final MemoryExhaustionPolicy exhaustionPolicy;
+
     /**
      * Constructor.
      */
     public NitfRenderer() {
-        // Intentionally Empty
+        this(null, null);
+    }
+
+    /**
+     * Constructor for a renderer that reserves memory from a budget.
+     * <p>
+     * renderReserved(ImageSegment) and renderToClosestDataModelReserved(ImageSegment) reserve the size of the image
+     * they allocate from the budget, and hold the reservation until the returned ReservedImage is closed.
+     * render(ImageSegment) and renderToClosestDataModel(ImageSegment) release it when they return, so they only bound
+     * the memory used while rendering.
+     *
+     * @param budget the memory budget to reserve from, usually shared with other renderers and parsers. May be null,
+     *               for no budget.
+     * @param policy what to do if the image does not fit in the budget. BLOCK waits up to the maximum wait of the
+     *               budget. The renderer cannot spill, so if the reservation is not granted an IOException is thrown.
+     */
+    public NitfRenderer(final MemoryBudget budget, final MemoryExhaustionPolicy policy) {
+        memoryBudget = budget;
+        exhaustionPolicy = policy;
     }
 
     /**
@@ -107,43 +134,107 @@ public class NitfRenderer {
 
     /**
      * Render the segment as a BufferedImage.
+     * <p>
+     * If the renderer has a memory budget, the image is only counted against it while it is being rendered. Use
+     * renderReserved(ImageSegment) to keep it counted until the caller is done with the image.
      *
      * @param imageSegment the image segment header for the segment to be rendered
      * @return rendered image
      * @throws IOException if the source data could not be read from
      */
     public final BufferedImage render(final ImageSegment imageSegment) throws IOException {
-        BufferedImage img = new BufferedImage(imageSegment.getImageLocationColumn()
-                + (int) imageSegment.getNumberOfColumns(),
-                imageSegment.getImageLocationRow()
-                        + (int) imageSegment.getNumberOfRows(),
-                BufferedImage.TYPE_INT_ARGB);
-        Graphics2D targetGraphic = img.createGraphics();
-
-        render(imageSegment, targetGraphic);
-        return img;
+        try (ReservedImage reservedImage = renderReserved(imageSegment)) {
+            return reservedImage.getImage();
+        }
+    }
+
+    /**
+     * Render the segment as a BufferedImage, holding the memory budget reservation for the image.
+     *
+     * @param imageSegment the image segment header for the segment to be rendered
+     * @return the rendered image. Close it to release the reservation when the image is no longer used.
+     * @throws IOException if the source data could not be read from, or the budget could not be reserved
+     */
+    public final ReservedImage renderReserved(final ImageSegment imageSegment) throws IOException {
+        return renderReserved(imageSegment, Integer.BYTES,
+                (width, height) -> new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB));
     }
 
     /**
      * Render the segment as a BufferedImage using a data model that matches the NITF data as close as possible.
+     * <p>
+     * If the renderer has a memory budget, the image is only counted against it while it is being rendered. Use
+     * renderToClosestDataModelReserved(ImageSegment) to keep it counted until the caller is done with the image.
      *
      * @param imageSegment the image segment header for the segment to be rendered
      * @return rendered image
      * @throws IOException if the source data could not be read from
      */
     public final BufferedImage renderToClosestDataModel(final ImageSegment imageSegment) throws IOException {
+        try (ReservedImage reservedImage = renderToClosestDataModelReserved(imageSegment)) {
+            return reservedImage.getImage();
+        }
+    }
+
+    /**
+     * Render the segment using a data model that matches the NITF data as close as possible, holding the memory
+     * budget reservation for the image.
+     *
+     * @param imageSegment the image segment header for the segment to be rendered
+     * @return the rendered image. Close it to release the reservation when the image is no longer used.
+     * @throws IOException if the source data could not be read from, or the budget could not be reserved
+     */
+    public final ReservedImage renderToClosestDataModelReserved(final ImageSegment imageSegment) throws IOException {
         ImageRepresentationHandler handler =
                 ImageRepresentationHandlerFactory.forImageSegment(imageSegment);
 
-        BufferedImage img = handler.createBufferedImage(imageSegment.getImageLocationColumn()
-                        + (int) imageSegment.getNumberOfColumns(),
-                imageSegment.getImageLocationRow()
-                        + (int) imageSegment.getNumberOfRows());
+        int bytesPerPixel = imageSegment.getNumBands()
+                * ((imageSegment.getActualBitsPerPixelPerBand() + BITS_PER_BYTE - 1) / BITS_PER_BYTE);
+        return renderReserved(imageSegment, bytesPerPixel, handler::createBufferedImage);
+    }
+
+    private ReservedImage renderReserved(final ImageSegment imageSegment, final int bytesPerPixel,
+            final BiFunction<Integer, Integer, BufferedImage> imageFactory) throws IOException {
+        MemoryBudget.Reservation reservation = reserve(imageSegment, bytesPerPixel);
+        try {
+            BufferedImage img = imageFactory.apply(imageSegment.getImageLocationColumn()
+                            + (int) imageSegment.getNumberOfColumns(),
+                    imageSegment.getImageLocationRow()
+                            + (int) imageSegment.getNumberOfRows());
+
+            Graphics2D targetGraphic = img.createGraphics();
 
-        Graphics2D targetGraphic = img.createGraphics();
+            render(imageSegment, targetGraphic);
+            return new ReservedImage(img, reservation);
+        } catch (IOException | RuntimeException ex) {
+            if (reservation != null) {
+                reservation.close();
+            }
+            throw ex;
+        }
+    }
 
-        render(imageSegment, targetGraphic);
-        return img;
+    private MemoryBudget.Reservation reserve(final ImageSegment imageSegment, final int bytesPerPixel) throws IOException {
+        if (memoryBudget == null) {
+            return null;
+        }
+        long bytes = (imageSegment.getImageLocationColumn() + imageSegment.getNumberOfColumns())
+                * (imageSegment.getImageLocationRow() + imageSegment.getNumberOfRows()) * bytesPerPixel;
+        MemoryBudget.Reservation reservation;
+        if (exhaustionPolicy == MemoryExhaustionPolicy.BLOCK) {
+            try {
+                reservation = memoryBudget.reserve(bytes);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for the memory budget", ex);
+            }
+        } else {
+            reservation = memoryBudget.tryReserve(bytes);
+        }
+        if (reservation == null) {
+            throw new IOException("Memory budget exhausted, could not reserve " + bytes + " bytes to render: " + memoryBudget);
+        }
+        return reservation;
     }
 
     private void render(final BlockRenderer renderer, final ImageSegment imageSegment, final Graphics2D target) throws IOException {
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import java.awt.image.BufferedImage;
+
+import org.codice.imaging.nitf.core.impl.MemoryBudget;
+
+/**
+ * A rendered image that holds its memory budget reservation.
+ * <p>
+ * The reservation is released when the handle is closed, so the budget counts the image for as long as the caller
+ * uses it. The image should not be used after the handle is closed.
+ */
+public final class ReservedImage implements AutoCloseable {
+
+    private final BufferedImage image;
+
+    private final MemoryBudget.Reservation reservation;
+
+    ReservedImage(final BufferedImage renderedImage, final MemoryBudget.Reservation imageReservation) {
+        image = renderedImage;
+        reservation = imageReservation;
+    }
+
+    /**
+     * Get the rendered image.
+     *
+     * @return the image.
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Get the number of bytes reserved for the image.
+     *
+     * @return the size of the reservation, or 0 if the renderer has no budget.
+     */
+    public long getReservedBytes() {
+        if (reservation == null) {
+            return 0;
+        }
+        return reservation.getBytes();
+    }
+
+    /**
+     * Release the reservation back to the budget. Closing the handle again has no effect.
+     */
+    @Override
+    public void close() {
+        if (reservation != null) {
+            reservation.close();
+        }
+    }
+}
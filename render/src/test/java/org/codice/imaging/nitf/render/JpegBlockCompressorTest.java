@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.render;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.codice.imaging.nitf.core.DataSource;
+import org.codice.imaging.nitf.core.common.FileType;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.impl.FileReader;
+import org.codice.imaging.nitf.core.header.impl.NitfHeaderFactory;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
+import org.codice.imaging.nitf.core.image.ImageCategory;
+import org.codice.imaging.nitf.core.image.ImageCompression;
+import org.codice.imaging.nitf.core.image.ImageMode;
+import org.codice.imaging.nitf.core.image.ImageRepresentation;
+import org.codice.imaging.nitf.core.image.ImageSegment;
+import org.codice.imaging.nitf.core.image.PixelJustification;
+import org.codice.imaging.nitf.core.image.PixelValueType;
+import org.codice.imaging.nitf.core.image.impl.ImageBandImpl;
+import org.codice.imaging.nitf.core.image.impl.ImageSegmentFactory;
+import org.codice.imaging.nitf.core.impl.NitfImageStreamWriter;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
+import org.codice.imaging.nitf.core.impl.SlottedStorage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for parallel JPEG compression of image blocks.
+ */
+public class JpegBlockCompressorTest {
+
+    private static final int BLOCK_SIZE = 16;
+
+    private static final int BLOCKS_PER_ROW = 3;
+
+    private static final int BLOCKS_PER_COLUMN = 2;
+
+    private static final int BLOCK_VALUE_STEP = 40;
+
+    private static final int TOLERANCE = 2;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExecutorService executor;
+
+    @Before
+    public void createExecutor() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void checkCompressedBlocksRender() throws Exception {
+        SlottedStorage store = createStore();
+        ImageSegment image = store.getImageSegments().get(0);
+        JpegBlockCompressor compressor = new JpegBlockCompressor(image, JpegBlockCompressorTest::uniformBlock, executor, 4, 1.0f, false);
+        assertThat(image.getImageCompression(), is(ImageCompression.JPEG));
+
+        ImageSegment written = writeAndParse(store, compressor);
+        assertThat(written.getImageCompression(), is(ImageCompression.JPEG));
+        assertThat(written.getCompressionRate(), is("00.0"));
+        assertTrue(written.getDataLength() > 0);
+
+        BufferedImage rendered = new NitfRenderer().render(written);
+        for (int row = 0; row < BLOCKS_PER_COLUMN; ++row) {
+            for (int column = 0; column < BLOCKS_PER_ROW; ++column) {
+                int grey = rendered.getRGB(column * BLOCK_SIZE + BLOCK_SIZE / 2, row * BLOCK_SIZE + BLOCK_SIZE / 2) & 0xFF;
+                assertTrue("Block " + row + "," + column + " was " + grey,
+                        Math.abs(grey - blockValue(row, column)) <= TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void checkMaskedBlocksAreNotRecorded() throws Exception {
+        SlottedStorage store = createStore();
+        ImageSegment image = store.getImageSegments().get(0);
+        JpegBlockCompressor compressor = new JpegBlockCompressor(image, (row, column, band) -> {
+            if ((row == 0) && (column == 1)) {
+                return null;
+            }
+            return uniformBlock(row, column, band);
+        }, executor, 2, 1.0f, true);
+
+        ImageSegment written = writeAndParse(store, compressor);
+        assertThat(written.getImageCompression(), is(ImageCompression.JPEGMASK));
+        ImageMask mask = new ImageMask(written, written.getData());
+        for (int block = 0; block < BLOCKS_PER_ROW * BLOCKS_PER_COLUMN; ++block) {
+            assertThat(mask.isMaskedBlock(block, 0), is(block == 1));
+        }
+
+        written.getData().seek(0);
+        BufferedImage rendered = new NitfRenderer().render(written);
+        assertThat(rendered.getRGB(BLOCK_SIZE + BLOCK_SIZE / 2, BLOCK_SIZE / 2) >>> 24, is(0));
+        int grey = rendered.getRGB(2 * BLOCK_SIZE + BLOCK_SIZE / 2, BLOCK_SIZE + BLOCK_SIZE / 2) & 0xFF;
+        assertTrue(Math.abs(grey - blockValue(1, 2)) <= TOLERANCE);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void checkBlocksMustBeInOrder() throws Exception {
+        SlottedStorage store = createStore();
+        JpegBlockCompressor compressor = new JpegBlockCompressor(store.getImageSegments().get(0),
+                JpegBlockCompressorTest::uniformBlock, executor, 4, 1.0f, false);
+        compressor.getBlock(0, 1, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkOnlyEightBitData() {
+        ImageSegment image = createStore().getImageSegments().get(0);
+        image.setNumberOfBitsPerPixelPerBand(16);
+        new JpegBlockCompressor(image, JpegBlockCompressorTest::uniformBlock, executor, 4, 1.0f, false);
+    }
+
+    private ImageSegment writeAndParse(final SlottedStorage store, final JpegBlockCompressor compressor) throws Exception {
+        File file = folder.newFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            NitfImageStreamWriter writer = new NitfImageStreamWriter(store, store.getImageSegments().get(0), channel);
+            writer.start();
+            writer.writeBlocks(compressor);
+            writer.finish();
+        }
+        return parse(file).getImageSegments().get(0);
+    }
+
+    private static ByteBuffer uniformBlock(final int row, final int column, final int band) {
+        byte[] block = new byte[BLOCK_SIZE * BLOCK_SIZE];
+        Arrays.fill(block, (byte) blockValue(row, column));
+        return ByteBuffer.wrap(block);
+    }
+
+    private static int blockValue(final int row, final int column) {
+        return (row * BLOCKS_PER_ROW + column + 1) * BLOCK_VALUE_STEP;
+    }
+
+    private static SlottedStorage createStore() {
+        SlottedStorage store = new SlottedStorage();
+        store.setNitfHeader(NitfHeaderFactory.getDefault(FileType.NITF_TWO_ONE));
+        ImageSegment image = ImageSegmentFactory.getDefault(FileType.NITF_TWO_ONE);
+        image.setNumberOfRows(BLOCK_SIZE * BLOCKS_PER_COLUMN);
+        image.setNumberOfColumns(BLOCK_SIZE * BLOCKS_PER_ROW);
+        image.setPixelValueType(PixelValueType.INTEGER);
+        image.setImageRepresentation(ImageRepresentation.MONOCHROME);
+        image.setImageCategory(ImageCategory.VISUAL);
+        image.setActualBitsPerPixelPerBand(8);
+        image.setPixelJustification(PixelJustification.RIGHT);
+        ImageBandImpl band = new ImageBandImpl();
+        band.setImageRepresentation("M");
+        image.addImageBand(band);
+        image.setImageMode(ImageMode.BLOCKINTERLEVE);
+        image.setNumberOfBlocksPerRow(BLOCKS_PER_ROW);
+        image.setNumberOfBlocksPerColumn(BLOCKS_PER_COLUMN);
+        image.setNumberOfPixelsPerBlockHorizontalRaw(BLOCK_SIZE);
+        image.setNumberOfPixelsPerBlockVerticalRaw(BLOCK_SIZE);
+        image.setNumberOfBitsPerPixelPerBand(8);
+        image.setImageMagnification("1.0 ");
+        store.getImageSegments().add(image);
+        return store;
+    }
+
+    private DataSource parse(final File file) throws NitfFormatException {
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.ALL_SEGMENT_DATA);
+        FileReader reader = new FileReader(file);
+        NitfParser.parse(reader, parseStrategy);
+        reader.close();
+        return parseStrategy.getDataSource();
+    }
+}
@@ -23,10 +23,16 @@ import static org.hamcrest.MatcherAssert.assertThat;
 
 import java.io.IOException;
 
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.common.impl.NitfInputStreamReader;
+import org.codice.imaging.nitf.core.header.impl.NitfParser;
 import org.codice.imaging.nitf.core.image.ImageCompression;
 import org.codice.imaging.nitf.core.image.ImageSegment;
 
 import org.codice.imaging.nitf.core.image.impl.ImageBandImpl;
+import org.codice.imaging.nitf.core.impl.MemoryBudget;
+import org.codice.imaging.nitf.core.impl.MemoryExhaustionPolicy;
+import org.codice.imaging.nitf.core.impl.SlottedParseStrategy;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -126,4 +132,57 @@ public class NitfRendererTest {
         assertThat(sourceBands.length, is(1));
         assertThat(sourceBands[0], is(0));
     }
+
+    @Test
+    public void testRenderExceedsMemoryBudget() throws IOException {
+        MemoryBudget budget = new MemoryBudget(100 * 100 * Integer.BYTES - 1);
+        NitfRenderer budgetRenderer = new NitfRenderer(budget, MemoryExhaustionPolicy.FAIL);
+        Mockito.when(mockImageSegmentHeader.getNumberOfColumns()).thenReturn(100L);
+        Mockito.when(mockImageSegmentHeader.getNumberOfRows()).thenReturn(100L);
+        exception.expect(IOException.class);
+        exception.expectMessage("Memory budget exhausted, could not reserve 40000 bytes to render");
+        budgetRenderer.render(mockImageSegmentHeader);
+    }
+
+    @Test
+    public void testReservationHeldUntilImageClosed() throws IOException, NitfFormatException {
+        MemoryBudget budget = new MemoryBudget(16 * 1024 * 1024);
+        NitfRenderer budgetRenderer = new NitfRenderer(budget, MemoryExhaustionPolicy.FAIL);
+        ImageSegment imageSegment = parseImageSegment("/Codice/headmono16.ntf");
+        try (ReservedImage reservedImage = budgetRenderer.renderReserved(imageSegment)) {
+            assertThat(reservedImage.getReservedBytes() > 0, is(true));
+            assertThat(budget.getReserved(), is(reservedImage.getReservedBytes()));
+        }
+        assertThat(budget.getReserved(), is(0L));
+    }
+
+    @Test
+    public void testReservedImageLimitsLiveRenders() throws IOException, NitfFormatException {
+        ImageSegment imageSegment = parseImageSegment("/Codice/headmono16.ntf");
+        long imageBytes = (imageSegment.getImageLocationColumn() + imageSegment.getNumberOfColumns())
+                * (imageSegment.getImageLocationRow() + imageSegment.getNumberOfRows()) * Integer.BYTES;
+        MemoryBudget budget = new MemoryBudget(imageBytes);
+        NitfRenderer budgetRenderer = new NitfRenderer(budget, MemoryExhaustionPolicy.FAIL);
+        try (ReservedImage reservedImage = budgetRenderer.renderReserved(imageSegment)) {
+            exception.expect(IOException.class);
+            exception.expectMessage("Memory budget exhausted, could not reserve " + imageBytes + " bytes to render");
+            budgetRenderer.renderReserved(imageSegment);
+        }
+    }
+
+    @Test
+    public void testRenderOnlyReservesWhileRendering() throws IOException, NitfFormatException {
+        MemoryBudget budget = new MemoryBudget(16 * 1024 * 1024);
+        NitfRenderer budgetRenderer = new NitfRenderer(budget, MemoryExhaustionPolicy.FAIL);
+        ImageSegment imageSegment = parseImageSegment("/Codice/headmono16.ntf");
+        assertThat(budgetRenderer.render(imageSegment).getWidth(), is((int) imageSegment.getNumberOfColumns()));
+        assertThat(budget.getReserved(), is(0L));
+        assertThat(budget.getPeakReserved() > 0, is(true));
+    }
+
+    private ImageSegment parseImageSegment(final String resourceName) throws NitfFormatException {
+        SlottedParseStrategy parseStrategy = new SlottedParseStrategy(SlottedParseStrategy.IMAGE_DATA);
+        NitfParser.parse(new NitfInputStreamReader(getClass().getResourceAsStream(resourceName)), parseStrategy);
+        return parseStrategy.getDataSource().getImageSegments().get(0);
+    }
 }
@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.trewrap.generator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Writer for the Java source of a generated TRE accessor class.
+ * <p>
+ * The generated class decodes every described field once, in its constructor, and holds the values in final
+ * primitive (or String) members. Each field gets a getter and a "has" method, and each top level loop gets a count
+ * method plus indexed getters for the fields in the loop body.
+ */
+final class AccessorWriter {
+
+    /**
+     * The fully qualified name of the hand written accessor base class.
+     */
+    static final String BASE_CLASS = "org.codice.imaging.nitf.trewrap.TreAccessor";
+
+    /**
+     * The suffix added to the TRE tag to form the accessor class name.
+     */
+    static final String CLASS_SUFFIX = "Accessor";
+
+    private static final String INDENT = "    ";
+
+    private static final String INDENT2 = INDENT + INDENT;
+
+    private static final String INDENT3 = INDENT2 + INDENT;
+
+    private static final String GENERATED = "@Generated(\"" + TreAccessorProcessor.class.getName() + "\")";
+
+    private static final String DECODED = "mDecoded";
+
+    private static final String THROWS = "     * @throws NitfFormatException if the field is not present, or could not be decoded.";
+
+    private final TreDescription tre;
+
+    private final String packageName;
+
+    private final StringBuilder source = new StringBuilder();
+
+    private final Set<String> usedNames = new HashSet<>();
+
+    private final List<Accessor> fieldAccessors = new ArrayList<>();
+
+    private final List<LoopAccessors> loopAccessors = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param description the TRE to write an accessor for.
+     * @param targetPackage the package to generate the accessor into.
+     */
+    AccessorWriter(final TreDescription description, final String targetPackage) {
+        tre = description;
+        packageName = targetPackage;
+        usedNames.add("TRE");
+        usedNames.add("Class");
+        usedNames.add("Decoded");
+        for (TreField field : tre.getFields()) {
+            String baseName = reserveName(toCamelCase(field.getName()));
+            if (baseName != null) {
+                fieldAccessors.add(new Accessor(field, baseName));
+            }
+        }
+        for (TreLoop loop : tre.getLoops()) {
+            String loopBaseName = toCamelCase(loop.getName());
+            String countName = reserveName(loopBaseName + "Count");
+            if (countName == null) {
+                continue;
+            }
+            LoopAccessors loopAccessor = new LoopAccessors(loop, countName);
+            for (TreField field : loop.getFields()) {
+                String baseName = loopBaseName;
+                if (!field.getName().equals(loop.getName())) {
+                    baseName += toCamelCase(field.getName());
+                }
+                baseName = reserveName(baseName);
+                if (baseName != null) {
+                    loopAccessor.fields.add(new Accessor(field, baseName));
+                }
+            }
+            loopAccessors.add(loopAccessor);
+        }
+    }
+
+    /**
+     * Get the simple name of the accessor class for a TRE.
+     *
+     * @param description the TRE description.
+     * @return the class name.
+     */
+    static String getClassName(final TreDescription description) {
+        return description.getName() + CLASS_SUFFIX;
+    }
+
+    /**
+     * Convert an upper case, underscore (or space) separated field name into camel case.
+     *
+     * @param name the field name (e.g. AC_MSN_ID).
+     * @return the camel case name (e.g. AcMsnId).
+     */
+    static String toCamelCase(final String name) {
+        StringBuilder camel = new StringBuilder();
+        for (String part : name.split("[^A-Za-z0-9]+")) {
+            if (!part.isEmpty()) {
+                camel.append(part.substring(0, 1).toUpperCase(Locale.ROOT));
+                camel.append(part.substring(1).toLowerCase(Locale.ROOT));
+            }
+        }
+        return camel.toString();
+    }
+
+    /**
+     * Write the accessor class source.
+     *
+     * @param writer the writer to write the source to.
+     * @throws IOException if writing fails.
+     */
+    void write(final Writer writer) throws IOException {
+        writeHeader();
+        writeMembers();
+        writeConstructor();
+        for (Accessor accessor : fieldAccessors) {
+            writeFieldMethods(accessor);
+        }
+        for (LoopAccessors loop : loopAccessors) {
+            writeLoopMethods(loop);
+        }
+        line("}");
+        writer.write(source.toString());
+    }
+
+    /**
+     * Write the source of the factory class that creates an accessor for any supported TRE.
+     *
+     * @param tres the TREs that accessors have been generated for.
+     * @param targetPackage the package to generate the factory into.
+     * @param writer the writer to write the source to.
+     * @throws IOException if writing fails.
+     */
+    static void writeFactory(final List<TreDescription> tres, final String targetPackage, final Writer writer) throws IOException {
+        StringBuilder factory = new StringBuilder();
+        factory.append("package ").append(targetPackage).append(";\n\n");
+        factory.append("import javax.annotation.processing.Generated;\n");
+        factory.append("import org.codice.imaging.nitf.core.tre.Tre;\n");
+        factory.append("import ").append(BASE_CLASS).append(";\n\n");
+        factory.append("/**\n * Factory for generated TRE accessors.\n */\n");
+        factory.append(GENERATED).append('\n');
+        factory.append("public final class TreAccessors {\n\n");
+        factory.append(INDENT).append("private TreAccessors() {\n").append(INDENT).append("}\n\n");
+        factory.append(INDENT).append("/**\n");
+        factory.append(INDENT).append(" * Create the typed accessor for a TRE.\n");
+        factory.append(INDENT).append(" *\n");
+        factory.append(INDENT).append(" * @param tre the TRE to create an accessor for.\n");
+        factory.append(INDENT).append(" * @return the accessor, or null if there is no accessor for the TRE tag.\n");
+        factory.append(INDENT).append(" */\n");
+        factory.append(INDENT).append("public static TreAccessor forTre(final Tre tre) {\n");
+        factory.append(INDENT2).append("switch (tre.getName().trim()) {\n");
+        for (TreDescription description : tres) {
+            factory.append(INDENT3).append("case \"").append(description.getName()).append("\":\n");
+            factory.append(INDENT3).append(INDENT).append("return new ").append(getClassName(description)).append("(tre);\n");
+        }
+        factory.append(INDENT3).append("default:\n");
+        factory.append(INDENT3).append(INDENT).append("return null;\n");
+        factory.append(INDENT2).append("}\n");
+        factory.append(INDENT).append("}\n");
+        factory.append("}\n");
+        writer.write(factory.toString());
+    }
+
+    private String reserveName(final String baseName) {
+        if (usedNames.add(baseName)) {
+            return baseName;
+        }
+        String alternative = baseName + "Field";
+        if (usedNames.add(alternative)) {
+            return alternative;
+        }
+        return null;
+    }
+
+    private void writeHeader() {
+        line("package " + packageName + ";");
+        line("");
+        if (usesBigInteger()) {
+            line("import java.math.BigInteger;");
+        }
+        line("import java.util.BitSet;");
+        if (!loopAccessors.isEmpty()) {
+            line("import java.util.List;");
+        }
+        line("import javax.annotation.processing.Generated;");
+        if (!fieldAccessors.isEmpty() || !loopAccessors.isEmpty()) {
+            line("import org.codice.imaging.nitf.core.common.NitfFormatException;");
+        }
+        line("import org.codice.imaging.nitf.core.tre.Tre;");
+        if (!loopAccessors.isEmpty()) {
+            line("import org.codice.imaging.nitf.core.tre.TreGroup;");
+        }
+        line("import " + BASE_CLASS + ";");
+        line("");
+        line("/**");
+        line(" * Typed accessor for the " + tre.getName() + " TRE.");
+        line(" * <p>");
+        line(" * Field values are decoded once, when the accessor is constructed, so the getters do not parse anything.");
+        if (!tre.getLocation().isEmpty()) {
+            line(" * This TRE is normally found in the " + escape(tre.getLocation()) + " location.");
+        }
+        line(" */");
+        line(GENERATED);
+        line("public final class " + getClassName(tre) + " extends TreAccessor {");
+        line("");
+        line(INDENT + "/**");
+        line(INDENT + " * The TRE tag, without any padding.");
+        line(INDENT + " */");
+        line(INDENT + "public static final String TAG = \"" + tre.getName() + "\";");
+        line("");
+    }
+
+    private boolean usesBigInteger() {
+        List<Accessor> all = new ArrayList<>(fieldAccessors);
+        for (LoopAccessors loop : loopAccessors) {
+            all.addAll(loop.fields);
+        }
+        for (Accessor accessor : all) {
+            if (accessor.javaType().equals("BigInteger")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeMembers() {
+        for (int i = 0; i < fieldAccessors.size(); ++i) {
+            line(INDENT + "private static final int " + fieldAccessors.get(i).slotName() + " = " + i + ";");
+            line("");
+        }
+        line(INDENT + "private final BitSet " + DECODED + " = new BitSet(" + fieldAccessors.size() + ");");
+        line("");
+        for (Accessor accessor : fieldAccessors) {
+            line(INDENT + "private final " + accessor.javaType() + " " + accessor.memberName() + ";");
+            line("");
+        }
+        for (LoopAccessors loop : loopAccessors) {
+            line(INDENT + "private final int " + loop.countMemberName() + ";");
+            line("");
+            for (Accessor accessor : loop.fields) {
+                line(INDENT + "private final " + accessor.javaType() + "[] " + accessor.memberName() + ";");
+                line("");
+                line(INDENT + "private final BitSet " + accessor.decodedName() + ";");
+                line("");
+            }
+        }
+    }
+
+    private void writeConstructor() {
+        line(INDENT + "/**");
+        line(INDENT + " * Create an accessor for an existing TRE.");
+        line(INDENT + " *");
+        line(INDENT + " * @param tre the TRE to read. Must have the " + tre.getName() + " tag.");
+        line(INDENT + " */");
+        line(INDENT + "public " + getClassName(tre) + "(final Tre tre) {");
+        line(INDENT2 + "super(tre, TAG);");
+        for (Accessor accessor : fieldAccessors) {
+            line(INDENT2 + accessor.memberName() + " = " + accessor.decodeCall("tre", DECODED, accessor.slotName()) + ";");
+        }
+        for (LoopAccessors loop : loopAccessors) {
+            String groups = Character.toLowerCase(loop.countName.charAt(0)) + loop.countName.substring(1) + "Groups";
+            line(INDENT2 + "List<TreGroup> " + groups + " = getGroups(tre, \"" + loop.loop.getName() + "\");");
+            line(INDENT2 + loop.countMemberName() + " = " + groups + ".size();");
+            for (Accessor accessor : loop.fields) {
+                line(INDENT2 + accessor.memberName() + " = new " + accessor.javaType() + "[" + loop.countMemberName() + "];");
+                line(INDENT2 + accessor.decodedName() + " = new BitSet(" + loop.countMemberName() + ");");
+            }
+            if (!loop.fields.isEmpty()) {
+                line(INDENT2 + "for (int i = 0; i < " + loop.countMemberName() + "; ++i) {");
+                line(INDENT3 + "TreGroup group = " + groups + ".get(i);");
+                for (Accessor accessor : loop.fields) {
+                    line(INDENT3 + accessor.memberName() + "[i] = " + accessor.decodeCall("group", accessor.decodedName(), "i") + ";");
+                }
+                line(INDENT2 + "}");
+            }
+        }
+        line(INDENT + "}");
+        line("");
+    }
+
+    private void writeFieldMethods(final Accessor accessor) {
+        line(INDENT + "/**");
+        line(INDENT + " * Get the " + accessor.field.getName() + " field value." + accessor.describe());
+        line(INDENT + " *");
+        line(INDENT + " * @return the decoded value" + accessor.returnNote());
+        line(THROWS);
+        line(INDENT + " */");
+        line(INDENT + "public " + accessor.javaType() + " get" + accessor.baseName + "() throws NitfFormatException {");
+        line(INDENT2 + "requireDecoded(" + DECODED + ", " + accessor.slotName() + ", \"" + accessor.field.getName() + "\");");
+        line(INDENT2 + "return " + accessor.memberName() + ";");
+        line(INDENT + "}");
+        line("");
+        line(INDENT + "/**");
+        line(INDENT + " * Check whether the " + accessor.field.getName() + " field is present and could be decoded.");
+        line(INDENT + " *");
+        line(INDENT + " * @return true if get" + accessor.baseName + "() will return a value, otherwise false.");
+        line(INDENT + " */");
+        line(INDENT + "public boolean has" + accessor.baseName + "() {");
+        line(INDENT2 + "return isDecoded(" + DECODED + ", " + accessor.slotName() + ");");
+        line(INDENT + "}");
+        line("");
+    }
+
+    private void writeLoopMethods(final LoopAccessors loop) {
+        String loopName = loop.loop.getName();
+        line(INDENT + "/**");
+        line(INDENT + " * Get the number of entries in the " + loopName + " loop.");
+        line(INDENT + " *");
+        line(INDENT + " * @return the number of loop entries, which is zero if the loop is not present.");
+        line(INDENT + " */");
+        line(INDENT + "public int get" + loop.countName + "() {");
+        line(INDENT2 + "return " + loop.countMemberName() + ";");
+        line(INDENT + "}");
+        line("");
+        for (Accessor accessor : loop.fields) {
+            line(INDENT + "/**");
+            line(INDENT + " * Get the " + accessor.field.getName() + " field value from an entry in the " + loopName + " loop."
+                    + accessor.describe());
+            line(INDENT + " *");
+            line(INDENT + " * @param index the zero-based loop entry index.");
+            line(INDENT + " * @return the decoded value" + accessor.returnNote());
+            line(THROWS);
+            line(INDENT + " */");
+            line(INDENT + "public " + accessor.javaType() + " get" + accessor.baseName + "(final int index) throws NitfFormatException {");
+            line(INDENT2 + "requireDecoded(" + accessor.decodedName() + ", index, \"" + accessor.field.getName() + "\");");
+            line(INDENT2 + "return " + accessor.memberName() + "[index];");
+            line(INDENT + "}");
+            line("");
+            line(INDENT + "/**");
+            line(INDENT + " * Check whether the " + accessor.field.getName() + " field is present and could be decoded in an entry in the "
+                    + loopName + " loop.");
+            line(INDENT + " *");
+            line(INDENT + " * @param index the zero-based loop entry index.");
+            line(INDENT + " * @return true if get" + accessor.baseName + "(index) will return a value, otherwise false.");
+            line(INDENT + " */");
+            line(INDENT + "public boolean has" + accessor.baseName + "(final int index) {");
+            line(INDENT2 + "return isDecoded(" + accessor.decodedName() + ", index);");
+            line(INDENT + "}");
+            line("");
+        }
+    }
+
+    private void line(final String text) {
+        source.append(text).append('\n');
+    }
+
+    /**
+     * Escape text from the specification for use in a Javadoc comment.
+     *
+     * @param text the text to escape.
+     * @return the escaped text.
+     */
+    static String escape(final String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("*/", "*&#47;").replace("@", "&#64;");
+    }
+
+    /**
+     * The generated methods and members for one field.
+     */
+    private static final class Accessor {
+
+        private final TreField field;
+
+        private final String baseName;
+
+        Accessor(final TreField treField, final String accessorBaseName) {
+            field = treField;
+            baseName = accessorBaseName;
+        }
+
+        String javaType() {
+            return field.getValueType().getJavaType();
+        }
+
+        String memberName() {
+            return "m" + baseName;
+        }
+
+        String decodedName() {
+            return memberName() + "Decoded";
+        }
+
+        String slotName() {
+            return "SLOT_" + field.getName().replaceAll("[^A-Za-z0-9_]", "_");
+        }
+
+        String decodeCall(final String group, final String decoded, final String bit) {
+            return field.getValueType().getDecodeMethod() + "(" + group + ", \"" + field.getName() + "\", " + decoded + ", " + bit + ")";
+        }
+
+        String describe() {
+            StringBuilder description = new StringBuilder();
+            if (!field.getLongName().isEmpty() && !field.getLongName().equals(field.getName())) {
+                description.append("\n     * <p>\n     * ").append(escape(field.getLongName())).append('.');
+            }
+            return description.toString();
+        }
+
+        String returnNote() {
+            StringBuilder note = new StringBuilder();
+            if (!field.getUnit().isEmpty()) {
+                note.append(", in ").append(escape(field.getUnit()));
+            }
+            if (field.getValueType() == ValueType.STRING) {
+                note.append(", with leading and trailing spaces removed");
+            }
+            return note.append('.').toString();
+        }
+    }
+
+    /**
+     * The generated methods and members for one top level loop.
+     */
+    private static final class LoopAccessors {
+
+        private final TreLoop loop;
+
+        private final String countName;
+
+        private final List<Accessor> fields = new ArrayList<>();
+
+        LoopAccessors(final TreLoop treLoop, final String loopCountName) {
+            loop = treLoop;
+            countName = loopCountName;
+        }
+
+        String countMemberName() {
+            return "m" + countName;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.trewrap.generator;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Request generation of typed TRE accessor classes.
+ * <p>
+ * When a package is annotated with this, TreAccessorProcessor reads the TRE descriptions from the specification
+ * resource on the compile classpath, and generates one accessor class per TRE into the annotated package, along with
+ * a TreAccessors factory class.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.PACKAGE)
+public @interface GenerateTreAccessors {
+
+    /**
+     * The name of the TRE specification resource to read.
+     *
+     * @return the resource name, relative to the root of the compile classpath.
+     */
+    String spec() default "nitf_spec.xml";
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.trewrap.generator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor that generates typed TRE accessors.
+ * <p>
+ * This runs as part of compilation of any package annotated with GenerateTreAccessors. It reads the TRE
+ * specification from the compile classpath (normally nitf_spec.xml from the core jar), and writes one accessor class
+ * per TRE, plus a TreAccessors factory class, into the annotated package.
+ */
+@SupportedAnnotationTypes("org.codice.imaging.nitf.trewrap.generator.GenerateTreAccessors")
+public class TreAccessorProcessor extends AbstractProcessor {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(GenerateTreAccessors.class)) {
+            if (element instanceof PackageElement) {
+                generate((PackageElement) element, element.getAnnotation(GenerateTreAccessors.class).spec());
+            } else {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "@GenerateTreAccessors is only supported on packages", element);
+            }
+        }
+        return true;
+    }
+
+    private void generate(final PackageElement packageElement, final String spec) {
+        String packageName = packageElement.getQualifiedName().toString();
+        try {
+            List<TreDescription> tres;
+            try (InputStream specStream = openSpec(spec)) {
+                tres = TreSpecReader.read(specStream);
+            }
+            for (TreDescription tre : tres) {
+                String className = packageName + "." + AccessorWriter.getClassName(tre);
+                try (Writer writer = processingEnv.getFiler().createSourceFile(className, packageElement).openWriter()) {
+                    new AccessorWriter(tre, packageName).write(writer);
+                }
+            }
+            try (Writer writer = processingEnv.getFiler().createSourceFile(packageName + ".TreAccessors", packageElement).openWriter()) {
+                AccessorWriter.writeFactory(tres, packageName, writer);
+            }
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                    String.format("Generated %d TRE accessors from %s", tres.size(), spec), packageElement);
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    String.format("Failed to generate TRE accessors from %s: %s", spec, ex.getMessage()), packageElement);
+        }
+    }
+
+    private InputStream openSpec(final String spec) throws IOException {
+        try {
+            FileObject resource = processingEnv.getFiler().getResource(StandardLocation.CLASS_PATH, "", spec);
+            return resource.openInputStream();
+        } catch (IOException | IllegalArgumentException ex) {
+            // Not all compilers can read class path resources through the Filer, but the processor class loader
+            // normally has the same class path.
+            InputStream stream = getClass().getClassLoader().getResourceAsStream(spec);
+            if (stream == null) {
+                throw new IOException("Could not find " + spec + " on the class path", ex);
+            }
+            return stream;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.trewrap.generator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Description of a TRE, as used for accessor generation.
+ */
+final class TreDescription extends TreFieldScope {
+
+    private final String name;
+
+    private final String location;
+
+    private final Map<String, TreLoop> loops = new LinkedHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param treName the TRE tag, without any padding.
+     * @param treLocation the location attribute from the specification, which may be empty.
+     */
+    TreDescription(final String treName, final String treLocation) {
+        name = treName;
+        location = treLocation;
+    }
+
+    /**
+     * Get the TRE tag.
+     *
+     * @return the tag, without any padding.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Get the location that this TRE is normally found in.
+     *
+     * @return the location, or an empty string if not specified.
+     */
+    String getLocation() {
+        return location;
+    }
+
+    /**
+     * Get the loop with the specified name, adding it if required.
+     *
+     * @param loopName the loop name.
+     * @return the existing or new loop.
+     */
+    TreLoop getOrAddLoop(final String loopName) {
+        return loops.computeIfAbsent(loopName, TreLoop::new);
+    }
+
+    /**
+     * Get the top level loops of this TRE.
+     *
+     * @return the loops, in specification order.
+     */
+    List<TreLoop> getLoops() {
+        return new ArrayList<>(loops.values());
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.trewrap.generator;
+
+/**
+ * Description of a single TRE field, as used for accessor generation.
+ */
+final class TreField {
+
+    private final String name;
+
+    private final String longName;
+
+    private final String unit;
+
+    private final ValueType valueType;
+
+    /**
+     * Constructor.
+     *
+     * @param fieldName the field name, as used to look up the field in a parsed TRE.
+     * @param fieldLongName the descriptive name of the field, which may be empty.
+     * @param fieldUnit the unit of the field value, which may be empty.
+     * @param type the value type for the field.
+     */
+    TreField(final String fieldName, final String fieldLongName, final String fieldUnit, final ValueType type) {
+        name = fieldName;
+        longName = fieldLongName;
+        unit = fieldUnit;
+        valueType = type;
+    }
+
+    /**
+     * Get the field name.
+     *
+     * @return the name used to look up the field in a parsed TRE.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Get the descriptive name of the field.
+     *
+     * @return the long name, or an empty string if there is none.
+     */
+    String getLongName() {
+        return longName;
+    }
+
+    /**
+     * Get the unit of the field value.
+     *
+     * @return the unit, or an empty string if there is none.
+     */
+    String getUnit() {
+        return unit;
+    }
+
+    /**
+     * Get the value type for the field.
+     *
+     * @return the value type.
+     */
+    ValueType getValueType() {
+        return valueType;
+    }
+
+    /**
+     * Combine this field with another occurrence of a field with the same name.
+     * <p>
+     * This happens when alternative conditional blocks describe the same field. If the two descriptions disagree
+     * on the value type, the combined field is held as a String (or an untrimmed String if either is binary).
+     *
+     * @param other the other occurrence of the field.
+     * @return the combined field description.
+     */
+    TreField mergeWith(final TreField other) {
+        if (other.valueType == valueType) {
+            return this;
+        }
+        if (isBinary() || other.isBinary()) {
+            return new TreField(name, longName, unit, ValueType.RAW);
+        }
+        return new TreField(name, longName, unit, ValueType.STRING);
+    }
+
+    private boolean isBinary() {
+        return (valueType == ValueType.UNSIGNED) || (valueType == ValueType.BIG_UNSIGNED) || (valueType == ValueType.IEEE754)
+                || (valueType == ValueType.RAW);
+    }
+}
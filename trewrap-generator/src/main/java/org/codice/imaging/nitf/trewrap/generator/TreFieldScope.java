@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.trewrap.generator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An ordered set of fields, with later occurrences of a field name merged into the first occurrence.
+ */
+class TreFieldScope {
+
+    private final Map<String, TreField> fields = new LinkedHashMap<>();
+
+    /**
+     * Add a field to the scope.
+     *
+     * @param field the field to add.
+     */
+    final void addField(final TreField field) {
+        fields.merge(field.getName(), field, TreField::mergeWith);
+    }
+
+    /**
+     * Get the fields in this scope.
+     *
+     * @return the fields, in specification order.
+     */
+    final List<TreField> getFields() {
+        return new ArrayList<>(fields.values());
+    }
+}
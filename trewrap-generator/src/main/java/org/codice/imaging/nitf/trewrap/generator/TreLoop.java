@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.trewrap.generator;
+
+/**
+ * Description of a top level TRE loop, as used for accessor generation.
+ * <p>
+ * Only the simple fields in the loop body are described. Loops nested inside the loop body are not.
+ */
+final class TreLoop extends TreFieldScope {
+
+    private final String name;
+
+    /**
+     * Constructor.
+     *
+     * @param loopName the loop name, as used to look up the loop in a parsed TRE.
+     */
+    TreLoop(final String loopName) {
+        name = loopName;
+    }
+
+    /**
+     * Get the loop name.
+     *
+     * @return the name used to look up the loop in a parsed TRE.
+     */
+    String getName() {
+        return name;
+    }
+}
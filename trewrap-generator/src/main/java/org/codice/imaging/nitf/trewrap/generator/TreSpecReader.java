@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.trewrap.generator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * Reader for the TRE descriptions in a nitf_spec.xml format specification.
+ * <p>
+ * This follows the same rules as the TRE parser in core: fields without a name attribute are skipped, fields with
+ * an empty name use their long name, and the contents of conditional (if) blocks are flattened into the enclosing
+ * group. Loops are only described at the top level of a TRE.
+ */
+final class TreSpecReader {
+
+    private static final String FIELD = "field";
+
+    private static final String LOOP = "loop";
+
+    private static final String IF = "if";
+
+    private static final String NAME = "name";
+
+    private TreSpecReader() {
+    }
+
+    /**
+     * Read the TRE descriptions from a specification.
+     *
+     * @param inputStream the specification XML.
+     * @return the TRE descriptions, in specification order.
+     * @throws IOException if the specification could not be read or parsed.
+     */
+    static List<TreDescription> read(final InputStream inputStream) throws IOException {
+        Document document;
+        try {
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            dbf.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, Boolean.TRUE);
+            dbf.setExpandEntityReferences(false);
+            document = dbf.newDocumentBuilder().parse(inputStream);
+        } catch (SAXException | ParserConfigurationException ex) {
+            throw new IOException("Failed to parse TRE specification: " + ex.getMessage(), ex);
+        }
+        List<TreDescription> tres = new ArrayList<>();
+        for (Element treElement : childElements(document.getDocumentElement())) {
+            if ("tre".equals(treElement.getTagName())) {
+                TreDescription tre = new TreDescription(treElement.getAttribute(NAME), treElement.getAttribute("location"));
+                readScope(treElement, tre, tre);
+                tres.add(tre);
+            }
+        }
+        return tres;
+    }
+
+    private static void readScope(final Element parent, final TreFieldScope scope, final TreDescription tre) {
+        for (Element element : childElements(parent)) {
+            switch (element.getTagName()) {
+                case FIELD:
+                    readField(element, scope);
+                    break;
+                case IF:
+                    readScope(element, scope, tre);
+                    break;
+                case LOOP:
+                    if (tre != null) {
+                        readScope(element, tre.getOrAddLoop(element.getAttribute(NAME)), null);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static void readField(final Element element, final TreFieldScope scope) {
+        if (!element.hasAttribute(NAME)) {
+            return;
+        }
+        String name = element.getAttribute(NAME);
+        if (name.isEmpty()) {
+            name = element.getAttribute("longname");
+        }
+        if (name.isEmpty()) {
+            return;
+        }
+        int length = -1;
+        if (element.hasAttribute("length")) {
+            length = Integer.parseInt(element.getAttribute("length").trim());
+        }
+        ValueType valueType = ValueType.forField(element.getAttribute("type"), length);
+        scope.addField(new TreField(name, element.getAttribute("longname"), element.getAttribute("unit"), valueType));
+    }
+
+    private static List<Element> childElements(final Element parent) {
+        List<Element> elements = new ArrayList<>();
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                elements.add((Element) node);
+            }
+        }
+        return elements;
+    }
+}
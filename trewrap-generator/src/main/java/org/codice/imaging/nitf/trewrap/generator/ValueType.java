@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.trewrap.generator;
+
+/**
+ * The Java representation of a TRE field value in a generated accessor.
+ */
+enum ValueType {
+
+    /**
+     * Integer field that fits into an int.
+     */
+    INT("int", "decodeInt"),
+
+    /**
+     * Integer field that fits into a long.
+     */
+    LONG("long", "decodeLong"),
+
+    /**
+     * Integer field that is too long for a long.
+     */
+    BIG_INTEGER("BigInteger", "decodeBigInteger"),
+
+    /**
+     * Real field, held as a double.
+     */
+    DOUBLE("double", "decodeDouble"),
+
+    /**
+     * Unsigned binary integer field that fits into a long.
+     */
+    UNSIGNED("long", "decodeUnsigned"),
+
+    /**
+     * Unsigned binary integer field that is too long for a long, or variable length.
+     */
+    BIG_UNSIGNED("BigInteger", "decodeBigUnsigned"),
+
+    /**
+     * IEEE 754 binary floating point field, held as a double.
+     */
+    IEEE754("double", "decodeIeee754"),
+
+    /**
+     * Binary field that can't be decoded, held as an untrimmed String.
+     */
+    RAW("String", "decodeRawString"),
+
+    /**
+     * Any other field, held as a trimmed String.
+     */
+    STRING("String", "decodeString");
+
+    private static final int MAX_INT_DIGITS = 9;
+
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private static final int MAX_UNSIGNED_BYTES = 7;
+
+    private final String javaType;
+
+    private final String decodeMethod;
+
+    ValueType(final String type, final String method) {
+        javaType = type;
+        decodeMethod = method;
+    }
+
+    /**
+     * Get the Java type used to hold values of this type.
+     *
+     * @return the Java type name.
+     */
+    String getJavaType() {
+        return javaType;
+    }
+
+    /**
+     * Get the name of the TreAccessor method that decodes values of this type.
+     *
+     * @return the method name.
+     */
+    String getDecodeMethod() {
+        return decodeMethod;
+    }
+
+    /**
+     * Select the value type for a field.
+     *
+     * @param type the type attribute from the specification, which may be empty.
+     * @param length the field length, or a negative value for variable length fields.
+     * @return the value type to use.
+     */
+    static ValueType forField(final String type, final int length) {
+        switch (type) {
+            case "integer":
+                if (length < 0) {
+                    return LONG;
+                } else if (length <= MAX_INT_DIGITS) {
+                    return INT;
+                } else if (length <= MAX_LONG_DIGITS) {
+                    return LONG;
+                }
+                return BIG_INTEGER;
+            case "real":
+                return DOUBLE;
+            case "UINT":
+                if ((length > 0) && (length <= MAX_UNSIGNED_BYTES)) {
+                    return UNSIGNED;
+                }
+                return BIG_UNSIGNED;
+            case "IEEE754":
+                if ((length == Float.BYTES) || (length == Double.BYTES)) {
+                    return IEEE754;
+                }
+                return RAW;
+            default:
+                return STRING;
+        }
+    }
+}
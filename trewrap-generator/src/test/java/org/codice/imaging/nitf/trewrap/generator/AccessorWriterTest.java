@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.trewrap.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.codice.imaging.nitf.core.tre.Tre;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for accessor source generation.
+ */
+public class AccessorWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TreDescription createDescription() {
+        TreDescription tre = new TreDescription("TESTAA", "image");
+        tre.addField(new TreField("AC_MSN_ID", "Mission <ID> & name", "", ValueType.STRING));
+        tre.addField(new TreField("CLASS", "", "", ValueType.STRING));
+        tre.addField(new TreField("ERR_BIAS", "", "meters", ValueType.DOUBLE));
+        tre.addField(new TreField("COEFF_COUNT", "", "", ValueType.INT));
+        tre.addField(new TreField("MULTIPLIER", "", "", ValueType.BIG_UNSIGNED));
+        TreLoop loop = tre.getOrAddLoop("COEFF");
+        loop.addField(new TreField("COEFF", "COEFF", "", ValueType.DOUBLE));
+        loop.addField(new TreField("FLAG", "", "", ValueType.UNSIGNED));
+        return tre;
+    }
+
+    @Test
+    public void checkCamelCase() {
+        assertThat(AccessorWriter.toCamelCase("AC_MSN_ID"), is("AcMsnId"));
+        assertThat(AccessorWriter.toCamelCase("LINE_NUM_COEFF"), is("LineNumCoeff"));
+        assertThat(AccessorWriter.toCamelCase("X__Y_"), is("XY"));
+        assertThat(AccessorWriter.toCamelCase("RPC00B"), is("Rpc00b"));
+        assertThat(AccessorWriter.toCamelCase("TIME INTERVALS"), is("TimeIntervals"));
+    }
+
+    @Test
+    public void checkAccessorSource() throws IOException {
+        StringWriter writer = new StringWriter();
+        new AccessorWriter(createDescription(), "org.example").write(writer);
+        String source = writer.toString();
+        assertThat(source, containsString("package org.example;"));
+        assertThat(source, containsString("public final class TESTAAAccessor extends TreAccessor {"));
+        assertThat(source, containsString("public static final String TAG = \"TESTAA\";"));
+        assertThat(source, containsString("Mission &lt;ID&gt; &amp; name"));
+        assertThat(source, containsString("public String getAcMsnId() throws NitfFormatException {"));
+        assertThat(source, containsString("public boolean hasAcMsnId() {"));
+        assertThat(source, containsString("public String getClassField() throws NitfFormatException {"));
+        assertThat(source, containsString("@return the decoded value, in meters."));
+        assertThat(source, containsString("mErrBias = decodeDouble(tre, \"ERR_BIAS\", mDecoded, SLOT_ERR_BIAS);"));
+        assertThat(source, containsString("public int getCoeffCount() throws NitfFormatException {"));
+        assertThat(source, containsString("public int getCoeffCountField() {"));
+        assertThat(source, containsString("public double getCoeff(final int index) throws NitfFormatException {"));
+        assertThat(source, containsString("public long getCoeffFlag(final int index) throws NitfFormatException {"));
+        assertThat(source, containsString("mCoeffFlag[i] = decodeUnsigned(group, \"FLAG\", mCoeffFlagDecoded, i);"));
+        assertThat(source, not(containsString("getClass()")));
+        assertThat(source, containsString("import java.math.BigInteger;"));
+        assertThat(source, containsString("public BigInteger getMultiplier() throws NitfFormatException {"));
+    }
+
+    @Test
+    public void checkFlatAccessorImports() throws IOException {
+        TreDescription tre = new TreDescription("EMPTYA", "");
+        StringWriter writer = new StringWriter();
+        new AccessorWriter(tre, "org.example").write(writer);
+        String source = writer.toString();
+        assertThat(source, not(containsString("import java.util.List;")));
+        assertThat(source, not(containsString("NitfFormatException")));
+        assertThat(source, not(containsString("BigInteger")));
+        assertThat(source, not(containsString("normally found")));
+    }
+
+    @Test
+    public void checkNameCollisions() throws IOException {
+        TreDescription tre = new TreDescription("CLASHA", "");
+        tre.addField(new TreField("AB", "", "", ValueType.STRING));
+        tre.addField(new TreField("AB_", "", "", ValueType.STRING));
+        tre.addField(new TreField("_AB", "", "", ValueType.STRING));
+        tre.addField(new TreField("LOOP_COUNT", "", "", ValueType.INT));
+        tre.addField(new TreField("LOOP_COUNT_", "", "", ValueType.INT));
+        tre.getOrAddLoop("LOOP").addField(new TreField("AB", "", "", ValueType.STRING));
+        tre.getOrAddLoop("OTHER").addField(new TreField("AB", "", "", ValueType.STRING));
+        tre.getOrAddLoop("EMPTY");
+        StringWriter writer = new StringWriter();
+        new AccessorWriter(tre, "org.example").write(writer);
+        String source = writer.toString();
+        assertThat(source, containsString("public String getAb() throws NitfFormatException {"));
+        assertThat(source, containsString("public String getAbField() throws NitfFormatException {"));
+        assertThat(source, not(containsString("\"_AB\"")));
+        assertThat(source, not(containsString("LOOP\"")));
+        assertThat(source, containsString("public String getOtherAb(final int index) throws NitfFormatException {"));
+        assertThat(source, containsString("public int getEmptyCount() {"));
+        assertThat(source, not(containsString("emptyCountGroups.get(i)")));
+    }
+
+    @Test
+    public void checkFactorySource() throws IOException {
+        StringWriter writer = new StringWriter();
+        AccessorWriter.writeFactory(Collections.singletonList(createDescription()), "org.example", writer);
+        String source = writer.toString();
+        assertThat(source, containsString("public final class TreAccessors {"));
+        assertThat(source, containsString("case \"TESTAA\":"));
+        assertThat(source, containsString("return new TESTAAAccessor(tre);"));
+    }
+
+    @Test
+    public void checkProcessorGeneratesAllAccessors() throws IOException, URISyntaxException {
+        Path sourceDir = folder.newFolder("src").toPath();
+        Path packageInfo = Files.createDirectories(sourceDir.resolve("org/example")).resolve("package-info.java");
+        Files.write(packageInfo, Arrays.asList(
+                "@org.codice.imaging.nitf.trewrap.generator.GenerateTreAccessors",
+                "package org.example;"), StandardCharsets.UTF_8);
+        // Minimal stand-in for the real base class in trewrap, so that the generated sources can be checked.
+        Path baseClass = Files.createDirectories(sourceDir.resolve("org/codice/imaging/nitf/trewrap")).resolve("TreAccessor.java");
+        Files.write(baseClass, Arrays.asList(
+                "package org.codice.imaging.nitf.trewrap;",
+                "import java.util.BitSet;",
+                "import java.util.List;",
+                "import org.codice.imaging.nitf.core.common.NitfFormatException;",
+                "import org.codice.imaging.nitf.core.tre.Tre;",
+                "import org.codice.imaging.nitf.core.tre.TreGroup;",
+                "public abstract class TreAccessor {",
+                "    protected TreAccessor(Tre tre, String tag) { }",
+                "    protected static int decodeInt(TreGroup g, String n, BitSet d, int b) { return 0; }",
+                "    protected static long decodeLong(TreGroup g, String n, BitSet d, int b) { return 0; }",
+                "    protected static double decodeDouble(TreGroup g, String n, BitSet d, int b) { return 0; }",
+                "    protected static long decodeUnsigned(TreGroup g, String n, BitSet d, int b) { return 0; }",
+                "    protected static double decodeIeee754(TreGroup g, String n, BitSet d, int b) { return 0; }",
+                "    protected static java.math.BigInteger decodeBigInteger(TreGroup g, String n, BitSet d, int b) { return null; }",
+                "    protected static java.math.BigInteger decodeBigUnsigned(TreGroup g, String n, BitSet d, int b) { return null; }",
+                "    protected static String decodeRawString(TreGroup g, String n, BitSet d, int b) { return null; }",
+                "    protected static String decodeString(TreGroup g, String n, BitSet d, int b) { return null; }",
+                "    protected static List<TreGroup> getGroups(TreGroup g, String n) { return null; }",
+                "    protected static boolean isDecoded(BitSet d, int b) { return false; }",
+                "    protected final void requireDecoded(BitSet d, int b, String n) throws NitfFormatException { }",
+                "}"), StandardCharsets.UTF_8);
+        File generatedDir = folder.newFolder("generated");
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            String classPath = classPathEntryFor(GenerateTreAccessors.class.getProtectionDomain().getCodeSource().getLocation())
+                    + File.pathSeparator + classPathEntryFor(getClass().getResource("/nitf_spec.xml"))
+                    + File.pathSeparator + classPathEntryFor(Tre.class.getProtectionDomain().getCodeSource().getLocation());
+            List<String> options = Arrays.asList("-proc:only", "-classpath", classPath, "-s", generatedDir.getPath());
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    fileManager.getJavaFileObjects(packageInfo.toFile(), baseClass.toFile()));
+            task.setProcessors(Collections.singletonList(new TreAccessorProcessor()));
+            boolean success = task.call();
+            assertTrue(diagnostics.getDiagnostics().toString(), success);
+        }
+
+        try (Stream<Path> files = Files.walk(generatedDir.toPath())) {
+            List<String> names = files.filter(Files::isRegularFile).map(p -> p.getFileName().toString()).collect(Collectors.toList());
+            assertThat(names.size(), is(66));
+            assertThat(names, hasItem("RPC00BAccessor.java"));
+            assertThat(names, hasItem("TreAccessors.java"));
+        }
+    }
+
+    @Test
+    public void checkProcessorMissingSpec() throws IOException {
+        Path sourceDir = folder.newFolder("badsrc").toPath();
+        Path packageInfo = sourceDir.resolve("package-info.java");
+        Files.write(packageInfo, Arrays.asList(
+                "@org.codice.imaging.nitf.trewrap.generator.GenerateTreAccessors(spec = \"no_such_spec.xml\")",
+                "package org.example;"), StandardCharsets.UTF_8);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            List<String> options = Arrays.asList("-proc:only", "-s", folder.newFolder("badgenerated").getPath());
+            DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    fileManager.getJavaFileObjects(packageInfo.toFile()));
+            task.setProcessors(Collections.singletonList(new TreAccessorProcessor()));
+            assertFalse(task.call());
+            assertThat(diagnostics.getDiagnostics().get(0).getMessage(null),
+                    containsString("Failed to generate TRE accessors from no_such_spec.xml"));
+        }
+    }
+
+    private String classPathEntryFor(final URL url) throws URISyntaxException {
+        String location = url.toString();
+        if (location.startsWith("jar:")) {
+            location = location.substring("jar:".length(), location.indexOf("!/"));
+        } else if (location.endsWith("/nitf_spec.xml")) {
+            location = location.substring(0, location.length() - "nitf_spec.xml".length());
+        }
+        return Paths.get(new java.net.URI(location)).toString();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.trewrap.generator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ * Tests for reading TRE specifications.
+ */
+public class TreSpecReaderTest {
+
+    private static final String SPEC = "<?xml version=\"1.0\"?>\n"
+            + "<tres>\n"
+            + "  <tre name=\"TESTAA\" length=\"40\" location=\"image\">\n"
+            + "    <field name=\"SMALL\" longname=\"Small integer\" length=\"9\" type=\"integer\" unit=\"m\"/>\n"
+            + "    <field name=\"BIG\" length=\"10\" type=\"integer\"/>\n"
+            + "    <field name=\"HUGE\" length=\"19\" type=\"integer\"/>\n"
+            + "    <field length=\"4\"/>\n"
+            + "    <field name=\"TYP\" length=\"1\" type=\"string\"/>\n"
+            + "    <if cond=\"TYP=A\">\n"
+            + "      <field name=\"VALUE\" length=\"3\" type=\"integer\"/>\n"
+            + "    </if>\n"
+            + "    <if cond=\"TYP=B\">\n"
+            + "      <field name=\"VALUE\" length=\"3\" type=\"real\"/>\n"
+            + "    </if>\n"
+            + "    <field name=\"COUNT\" length=\"2\" type=\"integer\"/>\n"
+            + "    <loop counter=\"COUNT\" name=\"COEFF\">\n"
+            + "      <field name=\"\" longname=\"COEFF\" length=\"12\" type=\"real\"/>\n"
+            + "      <field name=\"FLAG\" length=\"1\" type=\"UINT\"/>\n"
+            + "      <loop counter=\"COUNT\" name=\"NESTED\">\n"
+            + "        <field name=\"INNER\" length=\"1\" type=\"string\"/>\n"
+            + "      </loop>\n"
+            + "    </loop>\n"
+            + "  </tre>\n"
+            + "  <tre name=\"TESTAB\">\n"
+            + "    <field name=\"FLOAT\" length=\"4\" type=\"IEEE754\"/>\n"
+            + "    <field name=\"DOUBLE\" length=\"8\" type=\"IEEE754\"/>\n"
+            + "    <field name=\"ODD\" length=\"3\" type=\"IEEE754\"/>\n"
+            + "    <field name=\"VARINT\" length_var=\"X\" type=\"integer\"/>\n"
+            + "    <field name=\"VARUINT\" length_var=\"X\" type=\"UINT\"/>\n"
+            + "    <field name=\"UNTYPED\" length=\"3\"/>\n"
+            + "  </tre>\n"
+            + "</tres>\n";
+
+    private List<TreDescription> readSpec() throws IOException {
+        try (InputStream stream = new ByteArrayInputStream(SPEC.getBytes(StandardCharsets.UTF_8))) {
+            return TreSpecReader.read(stream);
+        }
+    }
+
+    @Test
+    public void checkFieldsAndTypes() throws IOException {
+        List<TreDescription> tres = readSpec();
+        assertThat(tres.size(), is(2));
+        TreDescription tre = tres.get(0);
+        assertThat(tre.getName(), is("TESTAA"));
+        assertThat(tre.getLocation(), is("image"));
+        assertThat(tre.getFields().size(), is(6));
+        assertThat(tre.getFields().get(0).getName(), is("SMALL"));
+        assertThat(tre.getFields().get(0).getLongName(), is("Small integer"));
+        assertThat(tre.getFields().get(0).getUnit(), is("m"));
+        assertThat(tre.getFields().get(0).getValueType(), is(ValueType.INT));
+        assertThat(tre.getFields().get(1).getValueType(), is(ValueType.LONG));
+        assertThat(tre.getFields().get(2).getValueType(), is(ValueType.BIG_INTEGER));
+        assertThat(tre.getFields().get(3).getName(), is("TYP"));
+        assertThat(tre.getFields().get(4).getName(), is("VALUE"));
+        assertThat(tre.getFields().get(4).getValueType(), is(ValueType.STRING));
+        assertThat(tre.getFields().get(5).getName(), is("COUNT"));
+
+        TreDescription binary = tres.get(1);
+        assertThat(binary.getLocation(), is(""));
+        assertThat(binary.getLoops(), is(empty()));
+        assertThat(binary.getFields().get(0).getValueType(), is(ValueType.IEEE754));
+        assertThat(binary.getFields().get(1).getValueType(), is(ValueType.IEEE754));
+        assertThat(binary.getFields().get(2).getValueType(), is(ValueType.RAW));
+        assertThat(binary.getFields().get(3).getValueType(), is(ValueType.LONG));
+        assertThat(binary.getFields().get(4).getValueType(), is(ValueType.BIG_UNSIGNED));
+        assertThat(binary.getFields().get(5).getValueType(), is(ValueType.STRING));
+    }
+
+    @Test
+    public void checkLoops() throws IOException {
+        List<TreLoop> loops = readSpec().get(0).getLoops();
+        assertThat(loops.size(), is(1));
+        TreLoop loop = loops.get(0);
+        assertThat(loop.getName(), is("COEFF"));
+        assertThat(loop.getFields().size(), is(2));
+        assertThat(loop.getFields().get(0).getName(), is("COEFF"));
+        assertThat(loop.getFields().get(0).getValueType(), is(ValueType.DOUBLE));
+        assertThat(loop.getFields().get(1).getValueType(), is(ValueType.UNSIGNED));
+    }
+
+    @Test
+    public void checkNitfSpec() throws IOException {
+        try (InputStream stream = getClass().getResourceAsStream("/nitf_spec.xml")) {
+            List<TreDescription> tres = TreSpecReader.read(stream);
+            assertThat(tres.size(), is(65));
+            assertThat(tres.get(0).getName(), is("ACCHZB"));
+            assertThat(tres.get(0).getLoops().get(0).getName(), is("ACCHZ"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void checkBadSpec() throws IOException {
+        try (InputStream stream = new ByteArrayInputStream("<tres>".getBytes(StandardCharsets.UTF_8))) {
+            TreSpecReader.read(stream);
+        }
+    }
+
+    @Test
+    public void checkValueTypes() {
+        assertThat(ValueType.forField("integer", -1), is(ValueType.LONG));
+        assertThat(ValueType.forField("UINT", 7), is(ValueType.UNSIGNED));
+        assertThat(ValueType.forField("UINT", 8), is(ValueType.BIG_UNSIGNED));
+        assertThat(ValueType.forField("", 8), is(ValueType.STRING));
+        assertThat(ValueType.INT.getJavaType(), is("int"));
+        assertThat(ValueType.UNSIGNED.getDecodeMethod(), is("decodeUnsigned"));
+        assertThat(java.util.Arrays.asList(ValueType.values()), contains(ValueType.INT, ValueType.LONG, ValueType.BIG_INTEGER,
+                ValueType.DOUBLE, ValueType.UNSIGNED, ValueType.BIG_UNSIGNED, ValueType.IEEE754, ValueType.RAW, ValueType.STRING));
+    }
+
+    @Test
+    public void checkMergedTypes() {
+        TreField integer = new TreField("A", "", "", ValueType.INT);
+        assertThat(integer.mergeWith(new TreField("A", "", "", ValueType.INT)).getValueType(), is(ValueType.INT));
+        assertThat(integer.mergeWith(new TreField("A", "", "", ValueType.DOUBLE)).getValueType(), is(ValueType.STRING));
+        assertThat(integer.mergeWith(new TreField("A", "", "", ValueType.BIG_UNSIGNED)).getValueType(), is(ValueType.RAW));
+        assertThat(new TreField("A", "", "", ValueType.IEEE754).mergeWith(integer).getValueType(), is(ValueType.RAW));
+        assertThat(new TreField("A", "", "", ValueType.UNSIGNED).mergeWith(integer).getValueType(), is(ValueType.RAW));
+        assertThat(new TreField("A", "", "", ValueType.RAW).mergeWith(integer).getValueType(), is(ValueType.RAW));
+    }
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.trewrap;
+
+import java.util.Arrays;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.tre.Tre;
+import org.codice.imaging.nitf.trewrap.accessors.RPC00BAccessor;
+
+/**
+ * Rational Polynomial Coefficient (RPC00B) sensor model.
+ * <p>
+ * The offsets, scales and the 80 polynomial coefficients are decoded from the TRE once, into primitive fields and
+ * arrays. Projections then work on batches of points held in primitive arrays, so that projecting large numbers
+ * of points (e.g. for orthorectification) does not involve any TRE field lookups or boxing.
+ * <p>
+ * The batch methods process the points in chunks, evaluating each polynomial term for the whole chunk in a
+ * simple loop over arrays. Those loops have no dependencies between points, so the JIT compiler can vectorise
+ * them.
+ * <p>
+ * Latitude and longitude are in decimal degrees, height is in metres above the WGS84 ellipsoid, and line and
+ * sample are in full image pixels, as for the RPC00B TRE.
+ * <p>
+ * Instances are immutable, and may be shared between threads.
+ */
+public final class RpcProjection {
+
+    /**
+     * The number of coefficients in each of the four RPC00B polynomials.
+     */
+    public static final int COEFFICIENT_COUNT = 20;
+
+    /**
+     * The default tolerance for imageToGround(), in pixels.
+     */
+    public static final double DEFAULT_TOLERANCE = 1.0e-4;
+
+    /**
+     * The maximum number of iterations for imageToGround().
+     */
+    public static final int MAX_ITERATIONS = 20;
+
+    private static final int CHUNK_SIZE = 256;
+
+    // Step in normalised ground coordinates, used for the imageToGround() Jacobian
+    private static final double DERIVATIVE_STEP = 1.0e-7;
+
+    private static final int LONGITUDE = 0;
+
+    private static final int LATITUDE = 1;
+
+    private static final int HEIGHT = 2;
+
+    // Each RPC00B term (in RPC00B order) is an earlier term multiplied by one of the normalised ground coordinates.
+    // Term 0 is the constant term.
+    private static final int[] TERM_PARENT = new int[] {
+        -1, 0, 0, 0, 1, 1, 2, 1, 2, 3, 4, 7, 8, 9, 7, 8, 9, 7, 8, 9};
+
+    private static final int[] TERM_FACTOR = new int[] {
+        -1, LONGITUDE, LATITUDE, HEIGHT, LATITUDE, HEIGHT, HEIGHT, LONGITUDE, LATITUDE, HEIGHT,
+        HEIGHT, LONGITUDE, LONGITUDE, LONGITUDE, LATITUDE, LATITUDE, LATITUDE, HEIGHT, HEIGHT, HEIGHT};
+
+    private final double lineOffset;
+
+    private final double sampleOffset;
+
+    private final double latitudeOffset;
+
+    private final double longitudeOffset;
+
+    private final double heightOffset;
+
+    private final double lineScale;
+
+    private final double sampleScale;
+
+    private final double latitudeScale;
+
+    private final double longitudeScale;
+
+    private final double heightScale;
+
+    private final double[] lineNumerator;
+
+    private final double[] lineDenominator;
+
+    private final double[] sampleNumerator;
+
+    private final double[] sampleDenominator;
+
+    private RpcProjection(final RPC00BAccessor rpc) throws NitfFormatException {
+        if (!"1".equals(rpc.getSuccess())) {
+            throw new NitfFormatException("RPC00B SUCCESS flag is not set, coefficients are not valid");
+        }
+        lineOffset = rpc.getLineOff();
+        sampleOffset = rpc.getSampOff();
+        latitudeOffset = rpc.getLatOff();
+        longitudeOffset = rpc.getLongOff();
+        heightOffset = rpc.getHeightOff();
+        lineScale = rpc.getLineScale();
+        sampleScale = rpc.getSampScale();
+        latitudeScale = rpc.getLatScale();
+        longitudeScale = rpc.getLongScale();
+        heightScale = rpc.getHeightScale();
+        lineNumerator = new double[COEFFICIENT_COUNT];
+        lineDenominator = new double[COEFFICIENT_COUNT];
+        sampleNumerator = new double[COEFFICIENT_COUNT];
+        sampleDenominator = new double[COEFFICIENT_COUNT];
+        if ((rpc.getLineNumCoeffCount() != COEFFICIENT_COUNT) || (rpc.getLineDenCoeffCount() != COEFFICIENT_COUNT)
+                || (rpc.getSampNumCoeffCount() != COEFFICIENT_COUNT) || (rpc.getSampDenCoeffCount() != COEFFICIENT_COUNT)) {
+            throw new NitfFormatException("RPC00B does not have " + COEFFICIENT_COUNT + " coefficients for each polynomial");
+        }
+        for (int i = 0; i < COEFFICIENT_COUNT; ++i) {
+            lineNumerator[i] = rpc.getLineNumCoeff(i);
+            lineDenominator[i] = rpc.getLineDenCoeff(i);
+            sampleNumerator[i] = rpc.getSampNumCoeff(i);
+            sampleDenominator[i] = rpc.getSampDenCoeff(i);
+        }
+    }
+
+    /**
+     * Create a projection from an RPC00B TRE.
+     *
+     * @param tre the RPC00B TRE.
+     * @return the projection.
+     * @throws NitfFormatException if the TRE has a field that could not be decoded, or the SUCCESS flag is not set.
+     */
+    public static RpcProjection fromTre(final Tre tre) throws NitfFormatException {
+        return new RpcProjection(new RPC00BAccessor(tre));
+    }
+
+    /**
+     * Create a projection from an RPC00B accessor.
+     *
+     * @param rpc the accessor for the RPC00B TRE.
+     * @return the projection.
+     * @throws NitfFormatException if the TRE has a field that could not be decoded, or the SUCCESS flag is not set.
+     */
+    public static RpcProjection fromAccessor(final RPC00BAccessor rpc) throws NitfFormatException {
+        return new RpcProjection(rpc);
+    }
+
+    /**
+     * Get the height offset, which is a reasonable default height for imageToGround() without a terrain model.
+     *
+     * @return the height offset, in metres.
+     */
+    public double getHeightOffset() {
+        return heightOffset;
+    }
+
+    /**
+     * Project ground points into the image.
+     *
+     * @param latitudes the latitude of each point.
+     * @param longitudes the longitude of each point.
+     * @param heights the height of each point.
+     * @param lines the array to receive the line of each point.
+     * @param samples the array to receive the sample of each point.
+     * @param count the number of points, which may be less than the array lengths.
+     */
+    public void groundToImage(final double[] latitudes, final double[] longitudes, final double[] heights,
+            final double[] lines, final double[] samples, final int count) {
+        checkCount(count, latitudes, longitudes, heights, lines, samples);
+        Scratch scratch = new Scratch();
+        for (int start = 0; start < count; start += CHUNK_SIZE) {
+            int n = Math.min(CHUNK_SIZE, count - start);
+            for (int i = 0; i < n; ++i) {
+                scratch.latitude[i] = (latitudes[start + i] - latitudeOffset) / latitudeScale;
+                scratch.longitude[i] = (longitudes[start + i] - longitudeOffset) / longitudeScale;
+                scratch.height[i] = (heights[start + i] - heightOffset) / heightScale;
+            }
+            evaluate(scratch, scratch.latitude, scratch.longitude, n, scratch.line, scratch.sample);
+            for (int i = 0; i < n; ++i) {
+                lines[start + i] = scratch.line[i] * lineScale + lineOffset;
+                samples[start + i] = scratch.sample[i] * sampleScale + sampleOffset;
+            }
+        }
+    }
+
+    /**
+     * Project image points onto the ground, using the default tolerance.
+     *
+     * @param lines the line of each point.
+     * @param samples the sample of each point.
+     * @param heights the (known) height of each point.
+     * @param latitudes the array to receive the latitude of each point.
+     * @param longitudes the array to receive the longitude of each point.
+     * @param count the number of points, which may be less than the array lengths.
+     * @return the number of points that did not converge.
+     */
+    public int imageToGround(final double[] lines, final double[] samples, final double[] heights,
+            final double[] latitudes, final double[] longitudes, final int count) {
+        return imageToGround(lines, samples, heights, latitudes, longitudes, count, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Project image points onto the ground.
+     * <p>
+     * The RPC model has no closed form inverse, so each point is found by Newton iteration, starting from the
+     * ground offset. A point has converged once its ground position projects back to within the tolerance of the
+     * requested line and sample. Points that have not converged after MAX_ITERATIONS are returned as NaN.
+     *
+     * @param lines the line of each point.
+     * @param samples the sample of each point.
+     * @param heights the (known) height of each point.
+     * @param latitudes the array to receive the latitude of each point.
+     * @param longitudes the array to receive the longitude of each point.
+     * @param count the number of points, which may be less than the array lengths.
+     * @param tolerance the tolerance, in pixels.
+     * @return the number of points that did not converge.
+     */
+    public int imageToGround(final double[] lines, final double[] samples, final double[] heights,
+            final double[] latitudes, final double[] longitudes, final int count, final double tolerance) {
+        checkCount(count, lines, samples, heights, latitudes, longitudes);
+        Scratch scratch = new Scratch();
+        double[] targetLine = new double[CHUNK_SIZE];
+        double[] targetSample = new double[CHUNK_SIZE];
+        double[] stepped = new double[CHUNK_SIZE];
+        double[] lineByLatitude = new double[CHUNK_SIZE];
+        double[] sampleByLatitude = new double[CHUNK_SIZE];
+        double[] lineByLongitude = new double[CHUNK_SIZE];
+        double[] sampleByLongitude = new double[CHUNK_SIZE];
+        double lineTolerance = tolerance / lineScale;
+        double sampleTolerance = tolerance / sampleScale;
+        int failures = 0;
+        for (int start = 0; start < count; start += CHUNK_SIZE) {
+            int n = Math.min(CHUNK_SIZE, count - start);
+            for (int i = 0; i < n; ++i) {
+                targetLine[i] = (lines[start + i] - lineOffset) / lineScale;
+                targetSample[i] = (samples[start + i] - sampleOffset) / sampleScale;
+                scratch.height[i] = (heights[start + i] - heightOffset) / heightScale;
+            }
+            Arrays.fill(scratch.latitude, 0, n, 0.0);
+            Arrays.fill(scratch.longitude, 0, n, 0.0);
+            for (int iteration = 0;; ++iteration) {
+                evaluate(scratch, scratch.latitude, scratch.longitude, n, scratch.line, scratch.sample);
+                if (isConverged(scratch, targetLine, targetSample, lineTolerance, sampleTolerance, n) || (iteration == MAX_ITERATIONS)) {
+                    break;
+                }
+                for (int i = 0; i < n; ++i) {
+                    stepped[i] = scratch.latitude[i] + DERIVATIVE_STEP;
+                }
+                evaluate(scratch, stepped, scratch.longitude, n, lineByLatitude, sampleByLatitude);
+                for (int i = 0; i < n; ++i) {
+                    stepped[i] = scratch.longitude[i] + DERIVATIVE_STEP;
+                }
+                evaluate(scratch, scratch.latitude, stepped, n, lineByLongitude, sampleByLongitude);
+                for (int i = 0; i < n; ++i) {
+                    double dLineDLatitude = (lineByLatitude[i] - scratch.line[i]) / DERIVATIVE_STEP;
+                    double dSampleDLatitude = (sampleByLatitude[i] - scratch.sample[i]) / DERIVATIVE_STEP;
+                    double dLineDLongitude = (lineByLongitude[i] - scratch.line[i]) / DERIVATIVE_STEP;
+                    double dSampleDLongitude = (sampleByLongitude[i] - scratch.sample[i]) / DERIVATIVE_STEP;
+                    double lineResidual = targetLine[i] - scratch.line[i];
+                    double sampleResidual = targetSample[i] - scratch.sample[i];
+                    double determinant = dLineDLatitude * dSampleDLongitude - dLineDLongitude * dSampleDLatitude;
+                    scratch.latitude[i] += (lineResidual * dSampleDLongitude - dLineDLongitude * sampleResidual) / determinant;
+                    scratch.longitude[i] += (dLineDLatitude * sampleResidual - lineResidual * dSampleDLatitude) / determinant;
+                }
+            }
+            for (int i = 0; i < n; ++i) {
+                if ((Math.abs(targetLine[i] - scratch.line[i]) <= lineTolerance)
+                        && (Math.abs(targetSample[i] - scratch.sample[i]) <= sampleTolerance)) {
+                    latitudes[start + i] = scratch.latitude[i] * latitudeScale + latitudeOffset;
+                    longitudes[start + i] = scratch.longitude[i] * longitudeScale + longitudeOffset;
+                } else {
+                    latitudes[start + i] = Double.NaN;
+                    longitudes[start + i] = Double.NaN;
+                    failures++;
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Create a grid of projected points, for fast approximate ground to image projection.
+     * <p>
+     * The grid nodes are spread evenly over the bounding box (including its edges), and projected at a single
+     * height.
+     *
+     * @param minLatitude the southern edge of the grid.
+     * @param minLongitude the western edge of the grid.
+     * @param maxLatitude the northern edge of the grid.
+     * @param maxLongitude the eastern edge of the grid.
+     * @param height the height of the grid.
+     * @param rows the number of rows of grid nodes, at least 2.
+     * @param columns the number of columns of grid nodes, at least 2.
+     * @return the grid.
+     */
+    public RpcProjectionGrid createGrid(final double minLatitude, final double minLongitude, final double maxLatitude,
+            final double maxLongitude, final double height, final int rows, final int columns) {
+        return new RpcProjectionGrid(this, new double[] {minLatitude, minLongitude, maxLatitude, maxLongitude}, height, rows, columns);
+    }
+
+    private static boolean isConverged(final Scratch scratch, final double[] targetLine, final double[] targetSample,
+            final double lineTolerance, final double sampleTolerance, final int n) {
+        double worstLine = 0.0;
+        double worstSample = 0.0;
+        for (int i = 0; i < n; ++i) {
+            worstLine = Math.max(worstLine, Math.abs(targetLine[i] - scratch.line[i]));
+            worstSample = Math.max(worstSample, Math.abs(targetSample[i] - scratch.sample[i]));
+        }
+        // NaN comparisons are false, so NaN points are never converged
+        return (worstLine <= lineTolerance) && (worstSample <= sampleTolerance);
+    }
+
+    private static void checkCount(final int count, final double[]... arrays) {
+        for (double[] array : arrays) {
+            if ((count < 0) || (count > array.length)) {
+                throw new IllegalArgumentException("Invalid count ( " + count + " ), it should be between 0 and " + array.length);
+            }
+        }
+    }
+
+    /**
+     * Evaluate the four polynomials for a chunk of normalised ground points, giving normalised line and sample.
+     *
+     * @param scratch the working arrays, including the normalised heights.
+     * @param latitude the normalised latitudes.
+     * @param longitude the normalised longitudes.
+     * @param n the number of points in the chunk.
+     * @param line the array to receive the normalised lines.
+     * @param sample the array to receive the normalised samples.
+     */
+    private void evaluate(final Scratch scratch, final double[] latitude, final double[] longitude, final int n,
+            final double[] line, final double[] sample) {
+        double[][] factors = new double[][] {longitude, latitude, scratch.height};
+        double[][] terms = scratch.terms;
+        double[] lineNum = scratch.lineNumerator;
+        double[] lineDen = scratch.lineDenominator;
+        double[] sampleNum = scratch.sampleNumerator;
+        double[] sampleDen = scratch.sampleDenominator;
+        Arrays.fill(terms[0], 0, n, 1.0);
+        Arrays.fill(lineNum, 0, n, lineNumerator[0]);
+        Arrays.fill(lineDen, 0, n, lineDenominator[0]);
+        Arrays.fill(sampleNum, 0, n, sampleNumerator[0]);
+        Arrays.fill(sampleDen, 0, n, sampleDenominator[0]);
+        for (int t = 1; t < COEFFICIENT_COUNT; ++t) {
+            double[] term = terms[t];
+            double[] parent = terms[TERM_PARENT[t]];
+            double[] factor = factors[TERM_FACTOR[t]];
+            double lineNumCoefficient = lineNumerator[t];
+            double lineDenCoefficient = lineDenominator[t];
+            double sampleNumCoefficient = sampleNumerator[t];
+            double sampleDenCoefficient = sampleDenominator[t];
+            for (int i = 0; i < n; ++i) {
+                double value = parent[i] * factor[i];
+                term[i] = value;
+                lineNum[i] += lineNumCoefficient * value;
+                lineDen[i] += lineDenCoefficient * value;
+                sampleNum[i] += sampleNumCoefficient * value;
+                sampleDen[i] += sampleDenCoefficient * value;
+            }
+        }
+        for (int i = 0; i < n; ++i) {
+            line[i] = lineNum[i] / lineDen[i];
+            sample[i] = sampleNum[i] / sampleDen[i];
+        }
+    }
+
+    /**
+     * Working arrays for one batch call, sized for a single chunk.
+     */
+    private static final class Scratch {
+
+        private final double[] latitude = new double[CHUNK_SIZE];
+
+        private final double[] longitude = new double[CHUNK_SIZE];
+
+        private final double[] height = new double[CHUNK_SIZE];
+
+        private final double[] line = new double[CHUNK_SIZE];
+
+        private final double[] sample = new double[CHUNK_SIZE];
+
+        private final double[][] terms = new double[COEFFICIENT_COUNT][CHUNK_SIZE];
+
+        private final double[] lineNumerator = new double[CHUNK_SIZE];
+
+        private final double[] lineDenominator = new double[CHUNK_SIZE];
+
+        private final double[] sampleNumerator = new double[CHUNK_SIZE];
+
+        private final double[] sampleDenominator = new double[CHUNK_SIZE];
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.trewrap;
+
+/**
+ * Cached grid of RPC ground to image projections, for fast approximate projection.
+ * <p>
+ * The grid nodes are projected exactly when the grid is created. Points are then projected by bilinear
+ * interpolation between the four surrounding nodes, which is much cheaper than evaluating the RPC polynomials.
+ * The error depends on the grid spacing and on how far the points are from the grid height; estimateError() gives
+ * the error at the centre of each grid cell, which can be used to choose the spacing.
+ * <p>
+ * Instances are immutable, and may be shared between threads.
+ */
+public final class RpcProjectionGrid {
+
+    private static final int SOUTH = 0;
+
+    private static final int WEST = 1;
+
+    private static final int NORTH = 2;
+
+    private static final int EAST = 3;
+
+    private final RpcProjection projection;
+
+    private final double minLatitude;
+
+    private final double minLongitude;
+
+    private final double latitudeStep;
+
+    private final double longitudeStep;
+
+    private final double height;
+
+    private final int rows;
+
+    private final int columns;
+
+    private final double[] lines;
+
+    private final double[] samples;
+
+    /**
+     * Constructor.
+     *
+     * @param rpcProjection the projection to cache.
+     * @param bounds the south, west, north and east edges of the grid.
+     * @param gridHeight the height of the grid.
+     * @param rowCount the number of rows of grid nodes.
+     * @param columnCount the number of columns of grid nodes.
+     */
+    RpcProjectionGrid(final RpcProjection rpcProjection, final double[] bounds, final double gridHeight, final int rowCount,
+            final int columnCount) {
+        double south = bounds[SOUTH];
+        double west = bounds[WEST];
+        double north = bounds[NORTH];
+        double east = bounds[EAST];
+        if ((rowCount < 2) || (columnCount < 2)) {
+            throw new IllegalArgumentException("Grid must have at least 2 rows and 2 columns");
+        }
+        if (!(north > south) || !(east > west)) {
+            throw new IllegalArgumentException("Grid bounding box is empty");
+        }
+        projection = rpcProjection;
+        minLatitude = south;
+        minLongitude = west;
+        latitudeStep = (north - south) / (rowCount - 1);
+        longitudeStep = (east - west) / (columnCount - 1);
+        height = gridHeight;
+        rows = rowCount;
+        columns = columnCount;
+        int nodes = rows * columns;
+        double[] latitudes = new double[nodes];
+        double[] longitudes = new double[nodes];
+        double[] heights = new double[nodes];
+        for (int row = 0; row < rows; ++row) {
+            for (int column = 0; column < columns; ++column) {
+                latitudes[row * columns + column] = minLatitude + row * latitudeStep;
+                longitudes[row * columns + column] = minLongitude + column * longitudeStep;
+                heights[row * columns + column] = height;
+            }
+        }
+        lines = new double[nodes];
+        samples = new double[nodes];
+        projection.groundToImage(latitudes, longitudes, heights, lines, samples, nodes);
+    }
+
+    /**
+     * Project ground points into the image, by interpolation in the grid.
+     * <p>
+     * Points outside the grid are returned as NaN.
+     *
+     * @param latitudes the latitude of each point.
+     * @param longitudes the longitude of each point.
+     * @param outputLines the array to receive the line of each point.
+     * @param outputSamples the array to receive the sample of each point.
+     * @param count the number of points, which may be less than the array lengths.
+     */
+    public void groundToImage(final double[] latitudes, final double[] longitudes, final double[] outputLines,
+            final double[] outputSamples, final int count) {
+        if ((count < 0) || (count > latitudes.length) || (count > longitudes.length) || (count > outputLines.length)
+                || (count > outputSamples.length)) {
+            throw new IllegalArgumentException("Invalid count ( " + count + " ), it is larger than an array length");
+        }
+        for (int i = 0; i < count; ++i) {
+            double y = (latitudes[i] - minLatitude) / latitudeStep;
+            double x = (longitudes[i] - minLongitude) / longitudeStep;
+            if (!(y >= 0.0) || !(x >= 0.0) || (y > rows - 1) || (x > columns - 1)) {
+                outputLines[i] = Double.NaN;
+                outputSamples[i] = Double.NaN;
+                continue;
+            }
+            int row = Math.min((int) y, rows - 2);
+            int column = Math.min((int) x, columns - 2);
+            double fy = y - row;
+            double fx = x - column;
+            int node = row * columns + column;
+            outputLines[i] = interpolate(lines, node, fx, fy);
+            outputSamples[i] = interpolate(samples, node, fx, fy);
+        }
+    }
+
+    private double interpolate(final double[] values, final int node, final double fx, final double fy) {
+        double bottom = values[node] + (values[node + 1] - values[node]) * fx;
+        double top = values[node + columns] + (values[node + columns + 1] - values[node + columns]) * fx;
+        return bottom + (top - bottom) * fy;
+    }
+
+    /**
+     * Estimate the interpolation error of the grid.
+     * <p>
+     * This projects the centre of each grid cell exactly, and compares it with the interpolated projection.
+     *
+     * @return the largest distance between exact and interpolated projections, in pixels.
+     */
+    public double estimateError() {
+        int cells = (rows - 1) * (columns - 1);
+        double[] latitudes = new double[cells];
+        double[] longitudes = new double[cells];
+        double[] heights = new double[cells];
+        for (int row = 0; row < rows - 1; ++row) {
+            for (int column = 0; column < columns - 1; ++column) {
+                latitudes[row * (columns - 1) + column] = minLatitude + (2 * row + 1) * latitudeStep / 2;
+                longitudes[row * (columns - 1) + column] = minLongitude + (2 * column + 1) * longitudeStep / 2;
+                heights[row * (columns - 1) + column] = height;
+            }
+        }
+        double[] exactLines = new double[cells];
+        double[] exactSamples = new double[cells];
+        projection.groundToImage(latitudes, longitudes, heights, exactLines, exactSamples, cells);
+        double[] gridLines = new double[cells];
+        double[] gridSamples = new double[cells];
+        groundToImage(latitudes, longitudes, gridLines, gridSamples, cells);
+        double error = 0.0;
+        for (int i = 0; i < cells; ++i) {
+            error = Math.max(error, Math.hypot(exactLines[i] - gridLines[i], exactSamples[i] - gridSamples[i]));
+        }
+        return error;
+    }
+}
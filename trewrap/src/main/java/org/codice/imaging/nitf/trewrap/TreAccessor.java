@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.trewrap;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.tre.Tre;
+import org.codice.imaging.nitf.core.tre.TreEntry;
+import org.codice.imaging.nitf.core.tre.TreGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parent class for generated TRE accessors.
+ * <p>
+ * TreWrapper looks up and parses a field each time it is requested. Accessors instead decode every field once, when
+ * they are constructed, and hold the results in primitive members. The decode methods here are used by the generated
+ * constructors, and record which values could be decoded, so the getters can report missing or invalid fields.
+ * <p>
+ * The generated accessors are in the org.codice.imaging.nitf.trewrap.accessors package.
+ */
+public abstract class TreAccessor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TreAccessor.class);
+
+    private static final int BYTE_MASK = 0xFF;
+
+    private final Tre mTre;
+
+    private final String mTag;
+
+    /**
+     * Construct a new accessor for an existing TRE.
+     *
+     * @param tre the existing TRE
+     * @param tag the tag that this accessor is meant to be for, without any padding.
+     */
+    protected TreAccessor(final Tre tre, final String tag) {
+        mTre = tre;
+        mTag = tag;
+        if (!mTre.getName().trim().equals(mTag)) {
+            throw new IllegalStateException(String.format("Incorrect TRE name for %s accessor", mTag));
+        }
+    }
+
+    /**
+     * Get the TRE structure.
+     * <p>
+     * This can be used for anything the accessor does not provide, such as nested loops.
+     *
+     * @return the Tre that this object reads from.
+     */
+    public final Tre getTRE() {
+        return mTre;
+    }
+
+    /**
+     * Decode an integer field.
+     *
+     * @param group the group to find the field in.
+     * @param fieldName the name of the field.
+     * @param decoded the set to record successful decoding in.
+     * @param bit the index to set in decoded if the field was decoded.
+     * @return the value, or zero if the field was not present or could not be decoded.
+     */
+    protected static int decodeInt(final TreGroup group, final String fieldName, final BitSet decoded, final int bit) {
+        String value = findValue(group, fieldName);
+        if (value != null) {
+            try {
+                int result = Integer.parseInt(value.trim());
+                decoded.set(bit);
+                return result;
+            } catch (NumberFormatException ex) {
+                LOGGER.debug("Could not decode {} value \"{}\" as an integer", fieldName, value);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Decode a long integer field.
+     *
+     * @param group the group to find the field in.
+     * @param fieldName the name of the field.
+     * @param decoded the set to record successful decoding in.
+     * @param bit the index to set in decoded if the field was decoded.
+     * @return the value, or zero if the field was not present or could not be decoded.
+     */
+    protected static long decodeLong(final TreGroup group, final String fieldName, final BitSet decoded, final int bit) {
+        String value = findValue(group, fieldName);
+        if (value != null) {
+            try {
+                long result = Long.parseLong(value.trim());
+                decoded.set(bit);
+                return result;
+            } catch (NumberFormatException ex) {
+                LOGGER.debug("Could not decode {} value \"{}\" as a long integer", fieldName, value);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Decode an integer field that may be too long for a long.
+     *
+     * @param group the group to find the field in.
+     * @param fieldName the name of the field.
+     * @param decoded the set to record successful decoding in.
+     * @param bit the index to set in decoded if the field was decoded.
+     * @return the value, or null if the field was not present or could not be decoded.
+     */
+    protected static BigInteger decodeBigInteger(final TreGroup group, final String fieldName, final BitSet decoded, final int bit) {
+        String value = findValue(group, fieldName);
+        if (value != null) {
+            try {
+                BigInteger result = new BigInteger(value.trim());
+                decoded.set(bit);
+                return result;
+            } catch (NumberFormatException ex) {
+                LOGGER.debug("Could not decode {} value \"{}\" as an integer", fieldName, value);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decode a real field.
+     * <p>
+     * A value of "NaN" (in any case) is decoded as Double.NaN.
+     *
+     * @param group the group to find the field in.
+     * @param fieldName the name of the field.
+     * @param decoded the set to record successful decoding in.
+     * @param bit the index to set in decoded if the field was decoded.
+     * @return the value, or zero if the field was not present or could not be decoded.
+     */
+    protected static double decodeDouble(final TreGroup group, final String fieldName, final BitSet decoded, final int bit) {
+        String value = findValue(group, fieldName);
+        if (value != null) {
+            String trimmed = value.trim();
+            if ("NaN".equalsIgnoreCase(trimmed)) {
+                decoded.set(bit);
+                return Double.NaN;
+            }
+            try {
+                double result = Double.parseDouble(trimmed);
+                decoded.set(bit);
+                return result;
+            } catch (NumberFormatException ex) {
+                LOGGER.debug("Could not decode {} value \"{}\" as a real", fieldName, value);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Decode an unsigned binary integer (UINT) field.
+     * <p>
+     * The value is big endian, and must be no more than seven bytes long.
+     *
+     * @param group the group to find the field in.
+     * @param fieldName the name of the field.
+     * @param decoded the set to record successful decoding in.
+     * @param bit the index to set in decoded if the field was decoded.
+     * @return the value, or zero if the field was not present or could not be decoded.
+     */
+    protected static long decodeUnsigned(final TreGroup group, final String fieldName, final BitSet decoded, final int bit) {
+        String value = findValue(group, fieldName);
+        if ((value == null) || (value.length() >= Long.BYTES)) {
+            return 0;
+        }
+        long result = 0;
+        for (byte b : value.getBytes(StandardCharsets.ISO_8859_1)) {
+            result = (result << Byte.SIZE) | (b & BYTE_MASK);
+        }
+        decoded.set(bit);
+        return result;
+    }
+
+    /**
+     * Decode an unsigned binary integer (UINT) field of any length.
+     * <p>
+     * The value is big endian.
+     *
+     * @param group the group to find the field in.
+     * @param fieldName the name of the field.
+     * @param decoded the set to record successful decoding in.
+     * @param bit the index to set in decoded if the field was decoded.
+     * @return the value, or null if the field was not present.
+     */
+    protected static BigInteger decodeBigUnsigned(final TreGroup group, final String fieldName, final BitSet decoded, final int bit) {
+        String value = findValue(group, fieldName);
+        if (value == null) {
+            return null;
+        }
+        decoded.set(bit);
+        return new BigInteger(1, value.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Decode an IEEE 754 binary floating point field.
+     * <p>
+     * The value is big endian, and must be either four or eight bytes long.
+     *
+     * @param group the group to find the field in.
+     * @param fieldName the name of the field.
+     * @param decoded the set to record successful decoding in.
+     * @param bit the index to set in decoded if the field was decoded.
+     * @return the value, or zero if the field was not present or could not be decoded.
+     */
+    protected static double decodeIeee754(final TreGroup group, final String fieldName, final BitSet decoded, final int bit) {
+        String value = findValue(group, fieldName);
+        if (value == null) {
+            return 0;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(value.getBytes(StandardCharsets.ISO_8859_1));
+        if (bytes.remaining() == Float.BYTES) {
+            decoded.set(bit);
+            return bytes.getFloat();
+        } else if (bytes.remaining() == Double.BYTES) {
+            decoded.set(bit);
+            return bytes.getDouble();
+        }
+        LOGGER.debug("Unexpected length for {} IEEE754 value: {}", fieldName, bytes.remaining());
+        return 0;
+    }
+
+    /**
+     * Decode a string field.
+     *
+     * @param group the group to find the field in.
+     * @param fieldName the name of the field.
+     * @param decoded the set to record successful decoding in.
+     * @param bit the index to set in decoded if the field was decoded.
+     * @return the value with leading and trailing spaces removed, or null if the field was not present.
+     */
+    protected static String decodeString(final TreGroup group, final String fieldName, final BitSet decoded, final int bit) {
+        String value = findValue(group, fieldName);
+        if (value == null) {
+            return null;
+        }
+        decoded.set(bit);
+        return value.trim();
+    }
+
+    /**
+     * Decode a binary field that has no better representation.
+     *
+     * @param group the group to find the field in.
+     * @param fieldName the name of the field.
+     * @param decoded the set to record successful decoding in.
+     * @param bit the index to set in decoded if the field was decoded.
+     * @return the value as it was read, without trimming, or null if the field was not present.
+     */
+    protected static String decodeRawString(final TreGroup group, final String fieldName, final BitSet decoded, final int bit) {
+        String value = findValue(group, fieldName);
+        if (value == null) {
+            return null;
+        }
+        decoded.set(bit);
+        return value;
+    }
+
+    /**
+     * Get the groups (iterations) of a loop.
+     *
+     * @param group the group to find the loop in.
+     * @param loopName the name of the loop.
+     * @return the loop groups, which is empty if the loop is not present.
+     */
+    protected static List<TreGroup> getGroups(final TreGroup group, final String loopName) {
+        TreEntry entry = findEntry(group, loopName);
+        if ((entry == null) || !entry.hasGroups()) {
+            return Collections.emptyList();
+        }
+        return entry.getGroups();
+    }
+
+    /**
+     * Check whether a value was decoded.
+     *
+     * @param decoded the set that decoding was recorded in.
+     * @param bit the index to check.
+     * @return true if the value was decoded, otherwise false.
+     */
+    protected static boolean isDecoded(final BitSet decoded, final int bit) {
+        return (bit >= 0) && decoded.get(bit);
+    }
+
+    /**
+     * Check that a value was decoded, before returning it.
+     *
+     * @param decoded the set that decoding was recorded in.
+     * @param bit the index to check.
+     * @param fieldName the name of the field, for the exception message.
+     * @throws NitfFormatException if the value was not decoded.
+     */
+    protected final void requireDecoded(final BitSet decoded, final int bit, final String fieldName) throws NitfFormatException {
+        if (!isDecoded(decoded, bit)) {
+            throw new NitfFormatException(String.format("%s field %s is not present or could not be decoded", mTag, fieldName));
+        }
+    }
+
+    private static String findValue(final TreGroup group, final String fieldName) {
+        TreEntry entry = findEntry(group, fieldName);
+        if (entry == null) {
+            return null;
+        }
+        return entry.getFieldValue();
+    }
+
+    private static TreEntry findEntry(final TreGroup group, final String name) {
+        for (TreEntry entry : group.getEntries()) {
+            if (entry.getName().equals(name)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+}
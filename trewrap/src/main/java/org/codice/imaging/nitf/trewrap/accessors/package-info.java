@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+/**
+ * Typed accessors for the TREs described in nitf_spec.xml.
+ * <p>
+ * The accessor classes (and the TreAccessors factory) in this package are generated at build time by the
+ * trewrap-generator annotation processor.
+ */
+@GenerateTreAccessors
+package org.codice.imaging.nitf.trewrap.accessors;
+
+import org.codice.imaging.nitf.trewrap.generator.GenerateTreAccessors;
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.trewrap;
+
+import java.util.Random;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.tre.Tre;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Tests for the RPC00B projection engine.
+ */
+public class RpcProjectionTest extends SharedTreTestSupport {
+
+    private static final double LINE_OFF = 5000;
+    private static final double SAMP_OFF = 6000;
+    private static final double LAT_OFF = 33.1234;
+    private static final double LONG_OFF = 44.5678;
+    private static final double HEIGHT_OFF = 100;
+    private static final double LINE_SCALE = 5000;
+    private static final double SAMP_SCALE = 6000;
+    private static final double LAT_SCALE = 0.05;
+    private static final double LONG_SCALE = 0.06;
+    private static final double HEIGHT_SCALE = 500;
+
+    private final double[] mLineNum = new double[20];
+    private final double[] mLineDen = new double[20];
+    private final double[] mSampNum = new double[20];
+    private final double[] mSampDen = new double[20];
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    public RpcProjectionTest() {
+        mLineNum[1] = 0.05;
+        mLineNum[2] = -1.0;
+        mLineNum[3] = 0.01;
+        mLineNum[4] = 0.003;
+        mLineNum[8] = 0.002;
+        mLineNum[15] = 0.0005;
+        mLineDen[0] = 1.0;
+        mLineDen[1] = 0.001;
+        mLineDen[2] = 0.0005;
+        mSampNum[1] = 1.0;
+        mSampNum[2] = 0.02;
+        mSampNum[3] = -0.01;
+        mSampNum[7] = 0.003;
+        mSampNum[14] = 0.0004;
+        mSampNum[19] = 0.0001;
+        mSampDen[0] = 1.0;
+        mSampDen[2] = -0.001;
+    }
+
+    private static String formatCoefficient(final double value) {
+        if (value == 0.0) {
+            return "+0.000000E+0";
+        }
+        int exponent = (int) Math.floor(Math.log10(Math.abs(value)));
+        return String.format("%+.6fE%+d", value / Math.pow(10, exponent), exponent);
+    }
+
+    private Tre buildRpc(final String success) throws NitfFormatException {
+        StringBuilder rpc = new StringBuilder("RPC00B01041");
+        rpc.append(success).append("0000.50").append("0001.25").append("005000").append("06000").append("+33.1234").append("+044.5678")
+                .append("+0100").append("005000").append("06000").append("+00.0500").append("+000.0600").append("+0500");
+        for (double[] coefficients : new double[][] {mLineNum, mLineDen, mSampNum, mSampDen}) {
+            for (double coefficient : coefficients) {
+                rpc.append(formatCoefficient(coefficient));
+            }
+        }
+        return parseTRE(rpc.toString(), "RPC00B");
+    }
+
+    private static double polynomial(final double[] c, final double p, final double l, final double h) {
+        double[] terms = new double[] {1, l, p, h, l * p, l * h, p * h, l * l, p * p, h * h, p * l * h, l * l * l, l * p * p,
+            l * h * h, l * l * p, p * p * p, p * h * h, l * l * h, p * p * h, h * h * h};
+        double sum = 0.0;
+        for (int i = 0; i < terms.length; ++i) {
+            sum += c[i] * terms[i];
+        }
+        return sum;
+    }
+
+    private double referenceLine(final double lat, final double lon, final double height) {
+        double p = (lat - LAT_OFF) / LAT_SCALE;
+        double l = (lon - LONG_OFF) / LONG_SCALE;
+        double h = (height - HEIGHT_OFF) / HEIGHT_SCALE;
+        return polynomial(mLineNum, p, l, h) / polynomial(mLineDen, p, l, h) * LINE_SCALE + LINE_OFF;
+    }
+
+    private double referenceSample(final double lat, final double lon, final double height) {
+        double p = (lat - LAT_OFF) / LAT_SCALE;
+        double l = (lon - LONG_OFF) / LONG_SCALE;
+        double h = (height - HEIGHT_OFF) / HEIGHT_SCALE;
+        return polynomial(mSampNum, p, l, h) / polynomial(mSampDen, p, l, h) * SAMP_SCALE + SAMP_OFF;
+    }
+
+    @Test
+    public void checkOffsetProjectsToImageOffset() throws NitfFormatException {
+        RpcProjection rpc = RpcProjection.fromTre(buildRpc("1"));
+        double[] lines = new double[1];
+        double[] samples = new double[1];
+        rpc.groundToImage(new double[] {LAT_OFF}, new double[] {LONG_OFF}, new double[] {HEIGHT_OFF}, lines, samples, 1);
+        assertEquals(LINE_OFF, lines[0], 1e-9);
+        assertEquals(SAMP_OFF, samples[0], 1e-9);
+        assertEquals(HEIGHT_OFF, rpc.getHeightOffset(), 0.0);
+    }
+
+    @Test
+    public void checkGroundToImageMatchesReference() throws NitfFormatException {
+        RpcProjection rpc = RpcProjection.fromTre(buildRpc("1"));
+        // More than one chunk, with a partial last chunk, and arrays longer than the count
+        int count = 1000;
+        double[] lats = new double[count + 5];
+        double[] lons = new double[count + 5];
+        double[] heights = new double[count + 5];
+        Random random = new Random(46);
+        for (int i = 0; i < count; ++i) {
+            lats[i] = LAT_OFF + (random.nextDouble() * 2 - 1) * LAT_SCALE;
+            lons[i] = LONG_OFF + (random.nextDouble() * 2 - 1) * LONG_SCALE;
+            heights[i] = HEIGHT_OFF + (random.nextDouble() * 2 - 1) * HEIGHT_SCALE;
+        }
+        double[] lines = new double[count + 5];
+        double[] samples = new double[count + 5];
+        rpc.groundToImage(lats, lons, heights, lines, samples, count);
+        for (int i = 0; i < count; ++i) {
+            assertEquals(referenceLine(lats[i], lons[i], heights[i]), lines[i], 1e-6);
+            assertEquals(referenceSample(lats[i], lons[i], heights[i]), samples[i], 1e-6);
+        }
+        assertEquals(0.0, lines[count], 0.0);
+    }
+
+    @Test
+    public void checkImageToGroundRoundTrip() throws NitfFormatException {
+        RpcProjection rpc = RpcProjection.fromTre(buildRpc("1"));
+        int count = 700;
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        double[] heights = new double[count];
+        Random random = new Random(47);
+        for (int i = 0; i < count; ++i) {
+            lats[i] = LAT_OFF + (random.nextDouble() * 2 - 1) * LAT_SCALE;
+            lons[i] = LONG_OFF + (random.nextDouble() * 2 - 1) * LONG_SCALE;
+            heights[i] = HEIGHT_OFF + (random.nextDouble() * 2 - 1) * HEIGHT_SCALE;
+        }
+        double[] lines = new double[count];
+        double[] samples = new double[count];
+        rpc.groundToImage(lats, lons, heights, lines, samples, count);
+        double[] groundLats = new double[count];
+        double[] groundLons = new double[count];
+        assertThat(rpc.imageToGround(lines, samples, heights, groundLats, groundLons, count), is(0));
+        for (int i = 0; i < count; ++i) {
+            assertEquals(lats[i], groundLats[i], 1e-8);
+            assertEquals(lons[i], groundLons[i], 1e-8);
+        }
+    }
+
+    @Test
+    public void checkImageToGroundNotConverged() throws NitfFormatException {
+        RpcProjection rpc = RpcProjection.fromTre(buildRpc("1"));
+        double[] lats = new double[2];
+        double[] lons = new double[2];
+        int failures = rpc.imageToGround(new double[] {LINE_OFF, Double.NaN}, new double[] {SAMP_OFF, SAMP_OFF},
+                new double[] {HEIGHT_OFF, HEIGHT_OFF}, lats, lons, 2);
+        assertThat(failures, is(1));
+        assertEquals(LAT_OFF, lats[0], 1e-8);
+        assertTrue(Double.isNaN(lats[1]));
+        assertTrue(Double.isNaN(lons[1]));
+    }
+
+    @Test
+    public void checkGrid() throws NitfFormatException {
+        RpcProjection rpc = RpcProjection.fromTre(buildRpc("1"));
+        RpcProjectionGrid grid = rpc.createGrid(LAT_OFF - LAT_SCALE, LONG_OFF - LONG_SCALE, LAT_OFF + LAT_SCALE, LONG_OFF + LONG_SCALE,
+                HEIGHT_OFF, 65, 65);
+        double error = grid.estimateError();
+        assertTrue(error < 1.0);
+        assertTrue(error > 0.0);
+
+        double[] lats = new double[] {LAT_OFF + 0.0123, LAT_OFF - LAT_SCALE, LAT_OFF + LAT_SCALE + 0.001};
+        double[] lons = new double[] {LONG_OFF - 0.0234, LONG_OFF + LONG_SCALE, LONG_OFF};
+        double[] lines = new double[3];
+        double[] samples = new double[3];
+        grid.groundToImage(lats, lons, lines, samples, 3);
+        assertEquals(referenceLine(lats[0], lons[0], HEIGHT_OFF), lines[0], error);
+        assertEquals(referenceSample(lats[0], lons[0], HEIGHT_OFF), samples[0], error);
+        assertEquals(referenceLine(lats[1], lons[1], HEIGHT_OFF), lines[1], 1e-6);
+        assertTrue(Double.isNaN(lines[2]));
+        assertTrue(Double.isNaN(samples[2]));
+    }
+
+    @Test
+    public void checkInvalidGrid() throws NitfFormatException {
+        RpcProjection rpc = RpcProjection.fromTre(buildRpc("1"));
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Grid must have at least 2 rows and 2 columns");
+        rpc.createGrid(LAT_OFF, LONG_OFF, LAT_OFF + 1, LONG_OFF + 1, HEIGHT_OFF, 1, 2);
+    }
+
+    @Test
+    public void checkInvalidCount() throws NitfFormatException {
+        RpcProjection rpc = RpcProjection.fromTre(buildRpc("1"));
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("Invalid count ( 2 )");
+        rpc.groundToImage(new double[2], new double[2], new double[2], new double[1], new double[2], 2);
+    }
+
+    @Test
+    public void checkNotSuccessful() throws NitfFormatException {
+        Tre tre = buildRpc("0");
+        exception.expect(NitfFormatException.class);
+        exception.expectMessage("RPC00B SUCCESS flag is not set");
+        RpcProjection.fromTre(tre);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) Codice Foundation
+ *
+ * This is free software: you can redistribute it and/or modify it under the terms of the GNU Lesser
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details. A copy of the GNU Lesser General Public License
+ * is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ *
+ */
+package org.codice.imaging.nitf.trewrap;
+
+import static jakarta.xml.bind.DatatypeConverter.parseHexBinary;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import org.codice.imaging.nitf.core.common.NitfFormatException;
+import org.codice.imaging.nitf.core.tre.Tre;
+import org.codice.imaging.nitf.core.tre.TreSource;
+import org.codice.imaging.nitf.core.tre.impl.TreFactory;
+import org.codice.imaging.nitf.trewrap.accessors.ACCHZBAccessor;
+import org.codice.imaging.nitf.trewrap.accessors.ACFTBAccessor;
+import org.codice.imaging.nitf.trewrap.accessors.MTIMSAAccessor;
+import org.codice.imaging.nitf.trewrap.accessors.RPC00BAccessor;
+import org.codice.imaging.nitf.trewrap.accessors.TreAccessors;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Tests for TreAccessor and the generated TRE accessors.
+ */
+public class TreAccessorTest extends SharedTreTestSupport {
+
+    private static final String ACFTB_DATA = "ACFTB 00207FOOLS_MATE          0000000001201411030748HHFRACESHY00000002014110300000000000005+33.36200000+044.35100000000.00+22555f+33.36500000+044.35100000+23555045.0000000000u0000000u999.990000010001.00201411030000000";
+    private static final String ACFTB_EMPTY_LOCATIONS = "ACFTB 00207NOT AVAILABLE                             HHFRDPY-1  0000002014110300000000000005                         000.00       +33.36500000+044.35100000             0000000u0000000u999.99                     0000000";
+    private static final String ACCHZB_DATA = "ACCHZB0014101M  00129M  00129004+044.4130499724+33.69234401034+044.4945572008+33.67855217830+044.1731373448+32.79106350687+044.2538103407+32.77733592314";
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    public TreAccessorTest() {
+    }
+
+    @Test
+    public void checkFlatAccessor() throws NitfFormatException {
+        Tre tre = parseTRE(ACFTB_DATA, "ACFTB ");
+        TreAccessor accessor = TreAccessors.forTre(tre);
+        assertThat(accessor, instanceOf(ACFTBAccessor.class));
+        assertThat(accessor.getTRE(), sameInstance(tre));
+        ACFTBAccessor acftb = (ACFTBAccessor) accessor;
+        ACFTB wrapper = new ACFTB(tre);
+        assertEquals(wrapper.getAircraftMissionIdentification(), acftb.getAcMsnId());
+        assertEquals(wrapper.getAircraftTailNumber(), acftb.getAcTailNo());
+        assertEquals(wrapper.getSceneNumber(), acftb.getScnum());
+        assertEquals(wrapper.getMissionPlanMode(), acftb.getMplan());
+        assertEquals("+33.36200000+044.35100000", acftb.getEntloc());
+        assertEquals(22555, acftb.getEntelv());
+        assertEquals(45.0, acftb.getTmap(), 0.0);
+        assertEquals(999.99, acftb.getFocalLength(), 0.0);
+        assertTrue(acftb.hasEntelv());
+    }
+
+    @Test
+    public void checkMissingValues() throws NitfFormatException {
+        ACFTBAccessor acftb = new ACFTBAccessor(parseTRE(ACFTB_EMPTY_LOCATIONS, "ACFTB "));
+        assertEquals("NOT AVAILABLE", acftb.getAcMsnId());
+        assertEquals("", acftb.getEntloc());
+        assertFalse(acftb.hasEntelv());
+        exception.expect(NitfFormatException.class);
+        exception.expectMessage("ACFTB field ENTELV is not present or could not be decoded");
+        acftb.getEntelv();
+    }
+
+    @Test
+    public void checkEmptyTre() throws NitfFormatException {
+        RPC00BAccessor rpc = new RPC00BAccessor(TreFactory.getDefault("RPC00B", TreSource.ImageExtendedSubheaderData));
+        assertFalse(rpc.hasSuccess());
+        assertEquals(0, rpc.getLineNumCoeffCount());
+        assertFalse(rpc.hasLineNumCoeff(0));
+        exception.expect(NitfFormatException.class);
+        rpc.getSuccess();
+    }
+
+    @Test
+    public void checkLoopAccessor() throws NitfFormatException {
+        ACCHZBAccessor acchzb = (ACCHZBAccessor) TreAccessors.forTre(parseTRE(ACCHZB_DATA, "ACCHZB"));
+        assertEquals(1, acchzb.getNumAchz());
+        assertEquals(1, acchzb.getAcchzCount());
+        assertEquals("M", acchzb.getAcchzUniaah(0));
+        assertEquals(129, acchzb.getAcchzAah(0));
+        assertEquals(129, acchzb.getAcchzAph(0));
+        assertEquals(4, acchzb.getAcchzNumPts(0));
+        assertFalse(acchzb.hasAcchzAah(1));
+        assertFalse(acchzb.hasAcchzAah(-1));
+        exception.expect(NitfFormatException.class);
+        exception.expectMessage("ACCHZB field AAH is not present or could not be decoded");
+        acchzb.getAcchzAah(1);
+    }
+
+    @Test
+    public void checkRpcCoefficients() throws NitfFormatException {
+        StringBuilder rpc = new StringBuilder("RPC00B01041");
+        rpc.append("1").append("0000.50").append("0001.25").append("000512").append("00768").append("+33.1234").append("+044.5678")
+                .append("+0100").append("000512").append("00768").append("+00.0500").append("+000.0600").append("+0500");
+        for (int i = 0; i < 80; ++i) {
+            rpc.append(String.format("%+.6fE+%d", (i % 20) / 10.0, i / 20));
+        }
+        RPC00BAccessor rpc00b = (RPC00BAccessor) TreAccessors.forTre(parseTRE(rpc.toString(), "RPC00B"));
+        assertEquals("1", rpc00b.getSuccess());
+        assertEquals(0.5, rpc00b.getErrBias(), 0.0);
+        assertEquals(1.25, rpc00b.getErrRand(), 0.0);
+        assertEquals(512, rpc00b.getLineOff());
+        assertEquals(768, rpc00b.getSampOff());
+        assertEquals(33.1234, rpc00b.getLatOff(), 0.0);
+        assertEquals(44.5678, rpc00b.getLongOff(), 0.0);
+        assertEquals(100, rpc00b.getHeightOff());
+        assertEquals(500, rpc00b.getHeightScale());
+        assertEquals(20, rpc00b.getLineNumCoeffCount());
+        assertEquals(20, rpc00b.getSampDenCoeffCount());
+        for (int i = 0; i < 20; ++i) {
+            assertEquals(i / 10.0, rpc00b.getLineNumCoeff(i), 1e-9);
+            assertEquals(i, rpc00b.getLineDenCoeff(i), 1e-9);
+            assertEquals(i * 10.0, rpc00b.getSampNumCoeff(i), 1e-9);
+            assertEquals(i * 100.0, rpc00b.getSampDenCoeff(i), 1e-9);
+        }
+    }
+
+    @Test
+    public void checkBinaryFields() throws NitfFormatException, IOException {
+        Tre tre = parseMtimsa();
+        MTIMSAAccessor mtimsa = (MTIMSAAccessor) TreAccessors.forTre(tre);
+        assertEquals(BigInteger.valueOf(20000000), mtimsa.getDtMultiplier());
+        assertEquals(1, mtimsa.getDtSize());
+        assertEquals(16909060, mtimsa.getNumberFrames());
+        assertEquals(1, mtimsa.getNumberDt());
+        assertEquals(1, mtimsa.getDeltaTimeCount());
+        assertEquals(BigInteger.valueOf(78), mtimsa.getDeltaTimeDt(0));
+        assertTrue(Double.isNaN(mtimsa.getNominalFrameRate()));
+        assertEquals(3, mtimsa.getTimeIntervalIndex());
+
+        BitSet decoded = new BitSet();
+        assertEquals(Float.intBitsToFloat(0x01020304), TreAccessor.decodeIeee754(tre, "NUMBER_FRAMES", decoded, 0), 0.0);
+        assertEquals(Double.longBitsToDouble(0x0000000001312D00L), TreAccessor.decodeIeee754(tre, "DT_MULTIPLIER", decoded, 1), 0.0);
+        assertEquals(0.0, TreAccessor.decodeIeee754(tre, "DT_SIZE", decoded, 2), 0.0);
+        assertEquals(0.0, TreAccessor.decodeIeee754(tre, "NO_SUCH_FIELD", decoded, 3), 0.0);
+        assertEquals(0, TreAccessor.decodeUnsigned(tre, "DT_MULTIPLIER", decoded, 4));
+        assertEquals(0, TreAccessor.decodeUnsigned(tre, "NO_SUCH_FIELD", decoded, 5));
+        assertNull(TreAccessor.decodeBigUnsigned(tre, "NO_SUCH_FIELD", decoded, 6));
+        assertEquals("\u0001", TreAccessor.decodeRawString(tre, "DT_SIZE", decoded, 7));
+        assertNull(TreAccessor.decodeRawString(tre, "NO_SUCH_FIELD", decoded, 8));
+        assertThat(decoded, is(bits(0, 1, 7)));
+    }
+
+    @Test
+    public void checkTextDecoding() throws NitfFormatException {
+        Tre tre = parseTRE(ACFTB_DATA, "ACFTB ");
+        BitSet decoded = new BitSet();
+        assertEquals(0, TreAccessor.decodeInt(tre, "AC_MSN_ID", decoded, 0));
+        assertEquals(0, TreAccessor.decodeLong(tre, "AC_MSN_ID", decoded, 1));
+        assertEquals(201411030748L, TreAccessor.decodeLong(tre, "AC_TO", decoded, 2));
+        assertEquals(0, TreAccessor.decodeLong(tre, "NO_SUCH_FIELD", decoded, 3));
+        assertNull(TreAccessor.decodeBigInteger(tre, "AC_MSN_ID", decoded, 4));
+        assertEquals(BigInteger.valueOf(201411030748L), TreAccessor.decodeBigInteger(tre, "AC_TO", decoded, 5));
+        assertNull(TreAccessor.decodeBigInteger(tre, "NO_SUCH_FIELD", decoded, 6));
+        assertEquals(0.0, TreAccessor.decodeDouble(tre, "AC_MSN_ID", decoded, 7), 0.0);
+        assertEquals(0.0, TreAccessor.decodeDouble(tre, "NO_SUCH_FIELD", decoded, 8), 0.0);
+        assertNull(TreAccessor.decodeString(tre, "NO_SUCH_FIELD", decoded, 9));
+        assertEquals(0, TreAccessor.decodeInt(tre, "NO_SUCH_FIELD", decoded, 10));
+        assertTrue(TreAccessor.getGroups(tre, "AC_MSN_ID").isEmpty());
+        assertThat(decoded, is(bits(2, 5)));
+    }
+
+    @Test
+    public void checkUnknownTre() {
+        assertNull(TreAccessors.forTre(TreFactory.getDefault("NOSUCH", TreSource.ImageExtendedSubheaderData)));
+    }
+
+    @Test
+    public void checkWrongTre() throws NitfFormatException {
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("Incorrect TRE name for ACFTB accessor");
+        new ACFTBAccessor(parseTRE(ACCHZB_DATA, "ACCHZB"));
+    }
+
+    private Tre parseMtimsa() throws IOException, NitfFormatException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write("MTIMSA0015300199fa238862-73ed-41fc-8d52-bfc7a954428c00295cb5511-7350-479b-9c8a-f028aba01e84000003004NaN                   20160716215756.012345678".getBytes(StandardCharsets.ISO_8859_1));
+        baos.write(parseHexBinary("0000000001312D00"));
+        baos.write(parseHexBinary("01"));
+        baos.write(parseHexBinary("01020304"));
+        baos.write(parseHexBinary("00000001"));
+        baos.write(parseHexBinary("4e"));
+        return parseTRE(new ByteArrayInputStream(baos.toByteArray()), 164, "MTIMSA");
+    }
+
+    private static BitSet bits(final int... indexes) {
+        BitSet bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+}